@@ -9,6 +9,7 @@ plugins {
     java
     application
     id("com.github.johnrengelman.shadow") version "7.0.0"
+    id("me.champeau.jmh") version "0.6.5"
 } 
 
 repositories {
@@ -42,6 +43,21 @@ java {
     targetCompatibility = JavaVersion.VERSION_11
 }
 
+// Benchmarks of the simulation core live in src/jmh and run with "./gradlew jmh".
+// Use -Pjmh.includes=<regex> to run only some of them.
+jmh {
+    jmhVersion.set("1.32")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(file("$buildDir/reports/jmh/results.json"))
+    if (project.hasProperty("jmh.includes")) {
+        includes.add(project.property("jmh.includes") as String)
+    }
+    jvmArgsAppend.add("-Djava.awt.headless=true")
+}
+
 task<Jar>("sourcesJar") {
     group = "build"
     description = "Creates a source jar archive."
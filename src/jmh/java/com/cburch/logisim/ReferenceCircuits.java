@@ -0,0 +1,85 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim;
+
+import com.cburch.logisim.circuit.Analyze;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.file.LoadFailedException;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.Instance;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The circuits the benchmarks run on. They are bundled in src/jmh/resources/circuits so that every
+ * run measures the same thing:
+ *
+ * <ul>
+ *   <li>ripple_adder32.circ: a 32 bit ripple-carry adder built from 160 gates, with input pins a,
+ *       b and cin and output pins s and cout; all its nets go through tunnels and splitters.
+ *   <li>large_ram.circ: a RAM with 20 address and 32 data bits (labeled "mem") that two counters
+ *       fill with a new word on every clock cycle.
+ * </ul>
+ */
+public final class ReferenceCircuits {
+  public static final String RIPPLE_ADDER = "ripple_adder32.circ";
+  public static final String LARGE_RAM = "large_ram.circ";
+
+  private ReferenceCircuits() {}
+
+  /** Copies a bundled circuit to a temporary file, as the loader only reads circuits from files. */
+  public static File extract(String name) throws IOException {
+    File file = File.createTempFile(name.replace(".circ", ""), ".circ");
+    file.deleteOnExit();
+    try (InputStream in = ReferenceCircuits.class.getResourceAsStream("/circuits/" + name)) {
+      if (in == null) throw new IOException("no reference circuit " + name);
+      Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    return file;
+  }
+
+  public static LogisimFile load(String name) throws IOException, LoadFailedException {
+    return new Loader(null).openLogisimFile(extract(name));
+  }
+
+  /** Returns the pins of the circuit by their labels. */
+  public static Map<String, Instance> getPins(Circuit circuit) {
+    Map<String, Instance> pins = new HashMap<>();
+    for (Map.Entry<Instance, String> entry : Analyze.getPinLabels(circuit).entrySet()) {
+      pins.put(entry.getValue(), entry.getKey());
+    }
+    return pins;
+  }
+}
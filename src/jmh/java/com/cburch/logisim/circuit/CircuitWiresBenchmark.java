@@ -0,0 +1,78 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.ReferenceCircuits;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.proj.Project;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link CircuitWires#propagate} on the ripple adder, whose nets all run through tunnels
+ * and splitters: every point of the circuit is handed in, so every wire thread is recomputed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CircuitWiresBenchmark {
+  private Circuit circuit;
+  private CircuitState state;
+  private CircuitWires.BundleMap bundleMap;
+  private final Set<Location> points = new HashSet<>();
+
+  @Setup
+  public void setUp() throws Exception {
+    LogisimFile file = ReferenceCircuits.load(ReferenceCircuits.RIPPLE_ADDER);
+    circuit = file.getMainCircuit();
+    state = new CircuitState(new Project(file), circuit);
+    state.getPropagator().propagate();
+    bundleMap = circuit.getSnapshot().bundleMap;
+    for (Component comp : circuit.getNonWires()) {
+      for (EndData end : comp.getEnds()) points.add(end.getLocation());
+    }
+  }
+
+  @Benchmark
+  public CircuitState propagateAllPoints() {
+    circuit.wires.propagate(state, points, bundleMap);
+    return state;
+  }
+}
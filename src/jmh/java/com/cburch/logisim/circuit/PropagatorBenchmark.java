@@ -0,0 +1,114 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.ReferenceCircuits;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures {@link Propagator#propagate()} on the reference circuits. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PropagatorBenchmark {
+  private static final int OPERANDS = 1024;
+
+  private CircuitState adderState;
+  private Instance adderA;
+  private Instance adderB;
+  private Instance adderSum;
+  private final Value[] operands = new Value[OPERANDS];
+  private int next;
+
+  private CircuitState ramState;
+
+  @Setup
+  public void setUp() throws Exception {
+    LogisimFile adder = ReferenceCircuits.load(ReferenceCircuits.RIPPLE_ADDER);
+    Circuit circuit = adder.getMainCircuit();
+    adderState = new CircuitState(new Project(adder), circuit);
+    Map<String, Instance> pins = ReferenceCircuits.getPins(circuit);
+    adderA = pins.get("a");
+    adderB = pins.get("b");
+    adderSum = pins.get("s");
+    Pin.FACTORY.setValue(adderState.getInstanceState(pins.get("cin")), Value.FALSE);
+    Random rand = new Random(1);
+    for (int i = 0; i < OPERANDS; i++) {
+      operands[i] = Value.createKnown(BitWidth.create(32), rand.nextInt());
+    }
+    adderState.getPropagator().propagate();
+
+    LogisimFile ram = ReferenceCircuits.load(ReferenceCircuits.LARGE_RAM);
+    ramState = new CircuitState(new Project(ram), ram.getMainCircuit());
+    ramState.getPropagator().propagate();
+  }
+
+  /**
+   * Puts new operands on the ripple adder and propagates until its sum is stable, which takes
+   * about one gate delay per bit of carry chain.
+   */
+  @Benchmark
+  public Value rippleAdder() {
+    setPin(adderA, operands[next]);
+    setPin(adderB, operands[(next + 1) % OPERANDS]);
+    next = (next + 2) % OPERANDS;
+    adderState.getPropagator().propagate();
+    return Pin.FACTORY.getValue(adderState.getInstanceState(adderSum));
+  }
+
+  /** Runs one full clock cycle of the RAM circuit, which writes one word and counts twice. */
+  @Benchmark
+  public int largeRamCycle() {
+    Propagator prop = ramState.getPropagator();
+    prop.toggleClocks();
+    prop.propagate();
+    prop.toggleClocks();
+    prop.propagate();
+    return prop.getTickCount();
+  }
+
+  private void setPin(Instance pin, Value value) {
+    Pin.FACTORY.setValue(adderState.getInstanceState(pin), value);
+    adderState.markComponentAsDirty(pin.getComponent());
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.data;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the logic operations on {@link Value}, for fully known values and for values with
+ * unknown and error bits, which take the slower paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValueBenchmark {
+  private static final int COUNT = 256;
+
+  @Param({"1", "8", "32", "64"})
+  public int width;
+
+  @Param({"false", "true"})
+  public boolean unknownBits;
+
+  private final Value[] values = new Value[COUNT];
+  private int next;
+
+  @Setup
+  public void setUp() {
+    Random rand = new Random(1);
+    for (int i = 0; i < COUNT; i++) {
+      Value[] bits = new Value[width];
+      for (int b = 0; b < width; b++) {
+        // with unknownBits, one bit in eight is unknown and one in eight is an error
+        int kind = rand.nextInt(unknownBits ? 8 : 2);
+        if (kind == 2) bits[b] = Value.UNKNOWN;
+        else if (kind == 3) bits[b] = Value.ERROR;
+        else bits[b] = rand.nextBoolean() ? Value.TRUE : Value.FALSE;
+      }
+      values[i] = Value.create(bits);
+    }
+  }
+
+  private Value nextValue() {
+    next = (next + 1) & (COUNT - 1);
+    return values[next];
+  }
+
+  @Benchmark
+  public Value and() {
+    return nextValue().and(nextValue());
+  }
+
+  @Benchmark
+  public Value or() {
+    return nextValue().or(nextValue());
+  }
+
+  @Benchmark
+  public Value xor() {
+    return nextValue().xor(nextValue());
+  }
+
+  @Benchmark
+  public Value not() {
+    return nextValue().not();
+  }
+
+  @Benchmark
+  public Value combine() {
+    return nextValue().combine(nextValue());
+  }
+
+  /** Splits a value into its bits and puts it back together, as splitters and Value.get do. */
+  @Benchmark
+  public Value splitAndCreate() {
+    return Value.create(nextValue().getAll());
+  }
+}
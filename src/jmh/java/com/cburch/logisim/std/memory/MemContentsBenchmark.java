@@ -0,0 +1,91 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.std.memory;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures reads and writes of {@link MemContents}, at random and at consecutive addresses. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MemContentsBenchmark {
+  private static final int COUNT = 4096;
+
+  @Param({"10", "20", "24"})
+  public int addrBits;
+
+  @Param({"8", "32"})
+  public int dataBits;
+
+  private MemContents contents;
+  private final long[] addresses = new long[COUNT];
+  private final long[] data = new long[COUNT];
+  private int next;
+  private long sequential;
+
+  @Setup
+  public void setUp() {
+    contents = MemContents.create(addrBits, dataBits);
+    Random rand = new Random(1);
+    long mask = (1L << dataBits) - 1;
+    for (int i = 0; i < COUNT; i++) {
+      addresses[i] = rand.nextLong() & ((1L << addrBits) - 1);
+      data[i] = rand.nextLong() & mask;
+      contents.set(addresses[i], data[i]);
+    }
+  }
+
+  @Benchmark
+  public long readRandom() {
+    next = (next + 1) & (COUNT - 1);
+    return contents.get(addresses[next]);
+  }
+
+  @Benchmark
+  public void writeRandom() {
+    next = (next + 1) & (COUNT - 1);
+    contents.set(addresses[next], data[next]);
+  }
+
+  /** Walks through the whole memory, the way a program fetching instructions mostly does. */
+  @Benchmark
+  public long readSequential() {
+    sequential = (sequential + 1) & ((1L << addrBits) - 1);
+    return contents.get(sequential);
+  }
+}
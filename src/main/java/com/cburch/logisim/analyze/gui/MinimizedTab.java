@@ -65,6 +65,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.awt.print.PageFormat;
 import java.awt.print.Printable;
+import java.util.Arrays;
 import javax.swing.AbstractListModel;
 import javax.swing.ComboBoxModel;
 import javax.swing.InputMap;
@@ -177,6 +178,59 @@ class MinimizedTab extends AnalyzerTab {
     }
   }
   
+  @SuppressWarnings("rawtypes")
+  private static class AlgorithmModel extends AbstractListModel implements ComboBoxModel {
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] ALGORITHMS = {
+      AppPreferences.MINIMIZER_AUTO,
+      AppPreferences.MINIMIZER_EXACT,
+      AppPreferences.MINIMIZER_HEURISTIC
+    };
+
+    private final String[] choices;
+    private int selected;
+
+    private AlgorithmModel() {
+      String algorithm = AppPreferences.MINIMIZER_ALGORITHM.get();
+      selected = Math.max(0, Arrays.asList(ALGORITHMS).indexOf(algorithm));
+      choices = new String[ALGORITHMS.length];
+      localeChanged();
+    }
+
+    public int getSize() {
+      return choices.length;
+    }
+
+    public Object getElementAt(int index) {
+      return choices[index];
+    }
+
+    void localeChanged() {
+      choices[0] = S.get("minimizedAlgorithmAuto");
+      choices[1] = S.get("minimizedAlgorithmExact");
+      choices[2] = S.get("minimizedAlgorithmHeuristic");
+      fireContentsChanged(this, 0, choices.length);
+    }
+
+    public void setSelectedItem(Object anItem) {
+      for (int i = 0; i < choices.length; i++) {
+        if (choices[i].equals(anItem)) {
+          selected = i;
+        }
+      }
+    }
+
+    String getSelectedAlgorithm() {
+      return ALGORITHMS[selected];
+    }
+
+    @Override
+    public Object getSelectedItem() {
+      return choices[selected];
+    }
+  }
+
   @SuppressWarnings("rawtypes")
   public static class NotationModel extends AbstractListModel implements ComboBoxModel {
     private static final long serialVersionUID = 1L;
@@ -248,6 +302,12 @@ class MinimizedTab extends AnalyzerTab {
         FormatModel model = (FormatModel) formatChoice.getModel();
         outputExprs.setMinimizedFormat(output, model.getSelectedFormat());
         karnaughMap.setFormat(model.getSelectedFormat());
+      } else if (event.getSource() == algorithmChoice) {
+        AlgorithmModel model = (AlgorithmModel) algorithmChoice.getModel();
+        if (!model.getSelectedAlgorithm().equals(AppPreferences.MINIMIZER_ALGORITHM.get())) {
+          AppPreferences.MINIMIZER_ALGORITHM.set(model.getSelectedAlgorithm());
+          outputExprs.minimizerChanged();
+        }
       } else if (event.getSource() == formatStyle) {
         StyleModel model = (StyleModel) formatStyle.getModel();
         model.setStyle(karnaughMap);
@@ -266,12 +326,16 @@ class MinimizedTab extends AnalyzerTab {
   private final OutputSelector selector;
   private final KarnaughMapPanel karnaughMap;
   private final JLabel formatLabel = new JLabel();
+  private final JLabel algorithmLabel = new JLabel();
   private final JLabel styleLabel = new JLabel();
   private final JLabel notationLabel = new JLabel();
 
   @SuppressWarnings({"rawtypes", "unchecked"})
   private final JComboBox formatChoice = new JComboBox<>(new FormatModel());
 
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private final JComboBox algorithmChoice = new JComboBox<>(new AlgorithmModel());
+
   @SuppressWarnings({"rawtypes", "unchecked"})
   private final JComboBox formatStyle = new JComboBox<>(new StyleModel());
   
@@ -295,6 +359,7 @@ class MinimizedTab extends AnalyzerTab {
     karnaughMap = new KarnaughMapPanel(model,minimizedExpr);
     setAsExpr.addActionListener(myListener);
     formatChoice.addItemListener(myListener);
+    algorithmChoice.addItemListener(myListener);
     formatStyle.addItemListener(myListener);
     notationChoice.addItemListener(myListener);
 
@@ -394,6 +459,9 @@ class MinimizedTab extends AnalyzerTab {
     gb.setConstraints(formatLabel, gc);
     control.add(formatLabel);
     gc.gridy++;
+    gb.setConstraints(algorithmLabel, gc);
+    control.add(algorithmLabel);
+    gc.gridy++;
     gb.setConstraints(styleLabel, gc);
     control.add(styleLabel);
     gc.gridy++;
@@ -408,6 +476,9 @@ class MinimizedTab extends AnalyzerTab {
     gb.setConstraints(formatChoice, gc);
     control.add(formatChoice);
     gc.gridy++;
+    gb.setConstraints(algorithmChoice, gc);
+    control.add(algorithmChoice);
+    gc.gridy++;
     gb.setConstraints(formatStyle, gc);
     control.add(formatStyle);
     gc.gridy++;
@@ -426,9 +497,11 @@ class MinimizedTab extends AnalyzerTab {
     karnaughMap.localeChanged();
     setAsExpr.setText(S.get("minimizedSetButton"));
     formatLabel.setText(S.get("minimizedFormat"));
+    algorithmLabel.setText(S.get("minimizedAlgorithm"));
     styleLabel.setText(S.get("KmapStyle"));
     notationLabel.setText(S.get("ExpressionNotation"));
     ((FormatModel) formatChoice.getModel()).localeChanged();
+    ((AlgorithmModel) algorithmChoice.getModel()).localeChanged();
     ((StyleModel) formatStyle.getModel()).localeChanged();
     ((NotationModel) notationChoice.getModel()).localeChanged();
   }
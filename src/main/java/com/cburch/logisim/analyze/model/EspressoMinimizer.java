@@ -0,0 +1,313 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.analyze.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Heuristic two-level minimizer in the style of Espresso. The cover is kept as parallel arrays of
+ * value and don't care masks; the on and off sets are bit sets over all input combinations. An
+ * initial cover is built by expanding the hardest to cover minterms first, after which reduce,
+ * expand and irredundant passes are repeated as long as they lower the cost and the time budget
+ * allows. The result is always a valid cover, but need not be minimal.
+ */
+class EspressoMinimizer {
+  private final int inputs;
+  private final long[] on;
+  private final long[] off;
+  private final int[] coverCount;
+  private final long deadline;
+
+  private int[] cubeValues = new int[16];
+  private int[] cubeUnknowns = new int[16];
+  private int cubes = 0;
+
+  private EspressoMinimizer(int inputs, long[] on, long[] off, long deadline) {
+    this.inputs = inputs;
+    this.on = on;
+    this.off = off;
+    this.coverCount = new int[1 << inputs];
+    this.deadline = deadline;
+  }
+
+  /**
+   * Returns implicants covering the rows of column holding desired, none of the rows holding the
+   * opposite value, or null when the column has neither value. Other entries are don't cares.
+   */
+  static List<Implicant> minimize(TruthTable table, int column, Entry desired, long deadline) {
+    Entry undesired = desired == Entry.ONE ? Entry.ZERO : Entry.ONE;
+    int inputs = table.getInputColumnCount();
+    int rows = table.getRowCount();
+    long[] on = new long[(rows + 63) >>> 6];
+    long[] off = new long[(rows + 63) >>> 6];
+    boolean knownFound = false;
+    for (int i = 0; i < rows; i++) {
+      Entry entry = table.getOutputEntry(i, column);
+      if (entry == desired) {
+        on[i >>> 6] |= 1L << i;
+        knownFound = true;
+      } else if (entry == undesired) {
+        off[i >>> 6] |= 1L << i;
+        knownFound = true;
+      }
+    }
+    if (!knownFound) return null;
+    return new EspressoMinimizer(inputs, on, off, deadline).minimize();
+  }
+
+  private boolean isOn(int idx) {
+    return (on[idx >>> 6] & (1L << idx)) != 0;
+  }
+
+  private boolean isOff(int idx) {
+    return (off[idx >>> 6] & (1L << idx)) != 0;
+  }
+
+  private boolean inTime() {
+    return System.nanoTime() < deadline;
+  }
+
+  private List<Implicant> minimize() {
+    // cover the minterms with the fewest free neighbours first, since they
+    // leave the least choice in how they can be expanded
+    int rows = 1 << inputs;
+    int count = 0;
+    long[] order = new long[rows];
+    for (int i = 0; i < rows; i++) {
+      if (!isOn(i)) continue;
+      int free = 0;
+      for (int b = 0; b < inputs; b++) if (!isOff(i ^ (1 << b))) free++;
+      order[count++] = ((long) free << 32) | i;
+    }
+    Arrays.sort(order, 0, count);
+    for (int i = 0; i < count; i++) {
+      int idx = (int) order[i];
+      if (coverCount[idx] == 0) addCube(expand(idx, 0));
+    }
+    irredundant();
+
+    int[] bestValues = Arrays.copyOf(cubeValues, cubes);
+    int[] bestUnknowns = Arrays.copyOf(cubeUnknowns, cubes);
+    int bestCost = cost();
+    while (inTime()) {
+      reduce();
+      for (int i = 0; i < cubes; i++) {
+        int values = cubeValues[i];
+        int unknowns = cubeUnknowns[i];
+        removeCube(i);
+        long cube = expand(values, unknowns);
+        insertCube(i, (int) cube, (int) (cube >>> 32));
+      }
+      irredundant();
+      int cost = cost();
+      if (cost >= bestCost) break;
+      bestCost = cost;
+      bestValues = Arrays.copyOf(cubeValues, cubes);
+      bestUnknowns = Arrays.copyOf(cubeUnknowns, cubes);
+    }
+
+    ArrayList<Implicant> ret = new ArrayList<>(bestValues.length);
+    for (int i = 0; i < bestValues.length; i++) {
+      ret.add(new Implicant(bestUnknowns[i], bestValues[i]));
+    }
+    Collections.sort(ret);
+    return ret;
+  }
+
+  private int cost() {
+    int literals = 0;
+    for (int i = 0; i < cubes; i++) literals += inputs - Integer.bitCount(cubeUnknowns[i]);
+    return cubes * (inputs + 1) + literals;
+  }
+
+  /**
+   * Raises literals of the given cube one at a time for as long as it stays clear of the off set,
+   * preferring the literal that newly covers the most uncovered and then the most on minterms.
+   * Once the time budget is spent the first valid literal is taken instead. Returns the expanded
+   * cube with the values in the low and the don't care mask in the high word.
+   */
+  private long expand(int values, int unknowns) {
+    while (true) {
+      int bestBit = 0;
+      long bestScore = -1;
+      boolean scored = inTime();
+      for (int b = 0; b < inputs; b++) {
+        int bit = 1 << b;
+        if ((unknowns & bit) != 0) continue;
+        long score = scanHalf((values ^ bit) & ~unknowns, unknowns);
+        if (score > bestScore) {
+          bestScore = score;
+          bestBit = bit;
+          if (!scored) break;
+        }
+      }
+      if (bestScore < 0) return ((long) unknowns << 32) | (values & 0xFFFFFFFFL);
+      unknowns |= bestBit;
+      values &= ~bestBit;
+    }
+  }
+
+  /**
+   * Scans the cube given by values and unknowns; returns -1 when it meets the off set and
+   * otherwise a score ordering by newly covered and then by covered on minterms.
+   */
+  private long scanHalf(int values, int unknowns) {
+    int uncovered = 0;
+    int covered = 0;
+    int sub = 0;
+    do {
+      int idx = values | sub;
+      if (isOff(idx)) return -1;
+      if (isOn(idx)) {
+        if (coverCount[idx] == 0) uncovered++;
+        else covered++;
+      }
+      sub = (sub - unknowns) & unknowns;
+    } while (sub != 0);
+    return ((long) uncovered << 32) | covered;
+  }
+
+  private void count(int values, int unknowns, int delta) {
+    int sub = 0;
+    do {
+      int idx = values | sub;
+      if (isOn(idx)) coverCount[idx] += delta;
+      sub = (sub - unknowns) & unknowns;
+    } while (sub != 0);
+  }
+
+  private void addCube(long cube) {
+    insertCube(cubes, (int) cube, (int) (cube >>> 32));
+  }
+
+  private void insertCube(int pos, int values, int unknowns) {
+    if (pos == cubes) {
+      if (cubes == cubeValues.length) {
+        cubeValues = Arrays.copyOf(cubeValues, 2 * cubes);
+        cubeUnknowns = Arrays.copyOf(cubeUnknowns, 2 * cubes);
+      }
+      cubes++;
+    }
+    cubeValues[pos] = values;
+    cubeUnknowns[pos] = unknowns;
+    count(values, unknowns, 1);
+  }
+
+  /** Uncounts cube i; the slot keeps its place until insertCube or dropCube fills it. */
+  private void removeCube(int i) {
+    count(cubeValues[i], cubeUnknowns[i], -1);
+  }
+
+  private void dropCube(int i) {
+    cubes--;
+    cubeValues[i] = cubeValues[cubes];
+    cubeUnknowns[i] = cubeUnknowns[cubes];
+  }
+
+  private boolean isRedundant(int i) {
+    int values = cubeValues[i];
+    int unknowns = cubeUnknowns[i];
+    int sub = 0;
+    do {
+      int idx = values | sub;
+      if (isOn(idx) && coverCount[idx] < 2) return false;
+      sub = (sub - unknowns) & unknowns;
+    } while (sub != 0);
+    return true;
+  }
+
+  /** Removes cubes whose on minterms are all covered elsewhere, smallest cubes first. */
+  private void irredundant() {
+    sortBySize(false);
+    for (int i = 0; i < cubes; i++) {
+      if (isRedundant(i)) {
+        removeCube(i);
+        cubeValues[i] = -1;
+      }
+    }
+    int kept = 0;
+    for (int i = 0; i < cubes; i++) {
+      if (cubeValues[i] == -1) continue;
+      cubeValues[kept] = cubeValues[i];
+      cubeUnknowns[kept++] = cubeUnknowns[i];
+    }
+    cubes = kept;
+  }
+
+  /**
+   * Shrinks each cube, largest first, to the smallest cube holding the on minterms that no other
+   * cube covers, so that the following expand can move it in a different direction.
+   */
+  private void reduce() {
+    sortBySize(true);
+    for (int i = 0; i < cubes; i++) {
+      int values = cubeValues[i];
+      int unknowns = cubeUnknowns[i];
+      int ones = -1;
+      int zeros = -1;
+      int sub = 0;
+      do {
+        int idx = values | sub;
+        if (isOn(idx) && coverCount[idx] == 1) {
+          ones &= idx;
+          zeros &= ~idx;
+        }
+        sub = (sub - unknowns) & unknowns;
+      } while (sub != 0);
+      removeCube(i);
+      if (ones == -1 && zeros == -1) {
+        dropCube(i--);
+      } else {
+        int reduced = unknowns & ~(ones | zeros);
+        insertCube(i, values | (ones & unknowns), reduced);
+      }
+    }
+  }
+
+  private void sortBySize(boolean largestFirst) {
+    long[] keys = new long[cubes];
+    for (int i = 0; i < cubes; i++) {
+      int size = Integer.bitCount(cubeUnknowns[i]);
+      keys[i] = ((long) (largestFirst ? inputs - size : size) << 32) | i;
+    }
+    Arrays.sort(keys);
+    int[] values = new int[cubes];
+    int[] unknowns = new int[cubes];
+    for (int i = 0; i < cubes; i++) {
+      int j = (int) keys[i];
+      values[i] = cubeValues[j];
+      unknowns[i] = cubeUnknowns[j];
+    }
+    System.arraycopy(values, 0, cubeValues, 0, cubes);
+    System.arraycopy(unknowns, 0, cubeUnknowns, 0, cubes);
+  }
+}
@@ -28,6 +28,7 @@
 
 package com.cburch.logisim.analyze.model;
 
+import com.cburch.logisim.prefs.AppPreferences;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -71,12 +72,52 @@ public class Implicant implements Comparable<Implicant> {
     public void remove() {}
   }
 
-  static List<Implicant> computeMinimal(int format, AnalyzerModel model, String variable) {
+  /**
+   * Time the automatic and heuristic minimizers may spend, in milliseconds, on all the outputs
+   * recomputed for one change (see OutputExpressions).
+   */
+  static final long MINIMIZE_TIME_BUDGET = 2000;
+
+  /** Largest number of inputs for which the automatic minimizer tries the exact algorithm. */
+  static final int AUTO_EXACT_MAX_INPUTS = 14;
+
+  private static class BudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+  }
+
+  private static void checkBudget(long deadline) {
+    if (System.nanoTime() > deadline) throw new BudgetExceededException();
+  }
+
+  /**
+   * Returns the implicants of a minimal expression for the output. Unless the exact algorithm was
+   * chosen, the minimizers give up their search at the deadline (a System.nanoTime value); the
+   * heuristic one then returns the best cover found so far.
+   */
+  static List<Implicant> computeMinimal(
+      int format, AnalyzerModel model, String variable, long deadline) {
     TruthTable table = model.getTruthTable();
     int column = model.getOutputs().bits.indexOf(variable);
     if (column < 0) return Collections.emptyList();
 
     Entry desired = format == AnalyzerModel.FORMAT_SUM_OF_PRODUCTS ? Entry.ONE : Entry.ZERO;
+    String algorithm = AppPreferences.MINIMIZER_ALGORITHM.get();
+    if (algorithm.equals(AppPreferences.MINIMIZER_EXACT)) {
+      return computeExact(table, column, desired, Long.MAX_VALUE);
+    }
+    if (algorithm.equals(AppPreferences.MINIMIZER_AUTO)
+        && table.getInputColumnCount() <= AUTO_EXACT_MAX_INPUTS) {
+      try {
+        return computeExact(table, column, desired, deadline);
+      } catch (BudgetExceededException e) {
+        // fall back on the heuristic minimizer below
+      }
+    }
+    return EspressoMinimizer.minimize(table, column, desired, deadline);
+  }
+
+  private static List<Implicant> computeExact(
+      TruthTable table, int column, Entry desired, long deadline) {
     Entry undesired = desired == Entry.ONE ? Entry.ZERO : Entry.ONE;
 
     // determine the first-cut implicants, as well as the rows
@@ -105,6 +146,7 @@ public class Implicant implements Comparable<Implicant> {
     HashSet<Implicant> primes = new HashSet<>();
     HashMap<Implicant, Entry> current = base;
     while (current.size() > 1) {
+      checkBudget(deadline);
       HashSet<Implicant> toRemove = new HashSet<>();
       HashMap<Implicant, Entry> next = new HashMap<>();
       for (Map.Entry<Implicant, Entry> curEntry : current.entrySet()) {
@@ -154,6 +196,7 @@ public class Implicant implements Comparable<Implicant> {
     HashSet<Implicant> covered = new HashSet<>();
     for (Implicant required : toCover) {
       if (covered.contains(required)) continue;
+      checkBudget(deadline);
       int row = required.getRow();
       Implicant essential = null;
       for (Implicant imp : primes) {
@@ -184,6 +227,7 @@ public class Implicant implements Comparable<Implicant> {
     boolean ContainsDontCare;
     HashSet<Implicant> primesNoDontCare = new HashSet<>();
     for (Implicant implicant : primes) {
+      checkBudget(deadline);
       ContainsDontCare = false;
       for (Implicant term : implicant.getTerms()) {
         if (table.getOutputEntry(term.getRow(), column).equals(Entry.DONT_CARE))
@@ -197,6 +241,7 @@ public class Implicant implements Comparable<Implicant> {
     // Now we determine again the essential primes of this reduced set
     for (Implicant required : toCover) {
       if (covered.contains(required)) continue;
+      checkBudget(deadline);
       int row = required.getRow();
       Implicant essential = null;
       for (Implicant imp : primesNoDontCare) {
@@ -221,6 +266,7 @@ public class Implicant implements Comparable<Implicant> {
 
     /* When this did not do the job we use a greedy algorithm */
     while (!toCover.isEmpty()) {
+      checkBudget(deadline);
       // find the implicant covering the most rows
       Implicant max = null;
       int maxCount = 0;
@@ -287,7 +333,7 @@ public class Implicant implements Comparable<Implicant> {
 
   final int unknowns, values;
 
-  private Implicant(int unknowns, int values) {
+  Implicant(int unknowns, int values) {
     this.unknowns = unknowns;
     this.values = values;
   }
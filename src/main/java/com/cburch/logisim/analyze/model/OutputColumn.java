@@ -0,0 +1,187 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.analyze.model;
+
+import java.util.Arrays;
+
+/**
+ * One output column of a {@link TruthTable}, packed to two bits per row so that a column of a
+ * 20-input table takes 256 KiB instead of 4 MiB of references. The two error kinds share one
+ * code; rows holding an oscillation error are marked in a separate bit set that is only
+ * allocated once such an error is stored.
+ */
+final class OutputColumn {
+  private static final int ZERO = 0;
+  private static final int ONE = 1;
+  private static final int DONT_CARE = 2;
+  private static final int ERROR = 3;
+  private static final long ALL_DONT_CARE = 0xAAAAAAAAAAAAAAAAL;
+
+  private final int size;
+  private final long[] codes;
+  private long[] oscillating;
+
+  OutputColumn(int size) {
+    this.size = size;
+    codes = new long[(size + 31) >>> 5];
+    Arrays.fill(codes, ALL_DONT_CARE);
+  }
+
+  OutputColumn(Entry[] values) {
+    this(values.length);
+    for (int i = 0; i < values.length; i++) set(i, values[i]);
+  }
+
+  int size() {
+    return size;
+  }
+
+  private int code(int idx) {
+    return (int) (codes[idx >>> 5] >>> ((idx & 31) << 1)) & 3;
+  }
+
+  private boolean isOscillating(int idx) {
+    return oscillating != null && (oscillating[idx >>> 6] & (1L << idx)) != 0;
+  }
+
+  Entry get(int idx) {
+    switch (code(idx)) {
+      case ZERO:
+        return Entry.ZERO;
+      case ONE:
+        return Entry.ONE;
+      case DONT_CARE:
+        return Entry.DONT_CARE;
+      default:
+        return isOscillating(idx) ? Entry.OSCILLATE_ERROR : Entry.BUS_ERROR;
+    }
+  }
+
+  /** Stores value at idx and returns whether the column changed. */
+  boolean set(int idx, Entry value) {
+    int code;
+    if (value == Entry.ZERO) code = ZERO;
+    else if (value == Entry.ONE) code = ONE;
+    else if (value == Entry.DONT_CARE) code = DONT_CARE;
+    else code = ERROR;
+    boolean osc = value == Entry.OSCILLATE_ERROR;
+    int old = code(idx);
+    if (old == code && (code != ERROR || isOscillating(idx) == osc)) return false;
+    int shift = (idx & 31) << 1;
+    codes[idx >>> 5] = (codes[idx >>> 5] & ~(3L << shift)) | ((long) code << shift);
+    if (osc) {
+      if (oscillating == null) oscillating = new long[(size + 63) >>> 6];
+      oscillating[idx >>> 6] |= 1L << idx;
+    } else if (oscillating != null) {
+      oscillating[idx >>> 6] &= ~(1L << idx);
+    }
+    return true;
+  }
+
+  boolean sameEntry(int idx1, int idx2) {
+    int code = code(idx1);
+    return code == code(idx2) && (code != ERROR || isOscillating(idx1) == isOscillating(idx2));
+  }
+
+  /** Copies the entry at from to to and returns whether the column changed. */
+  boolean copyEntry(int from, int to) {
+    return !sameEntry(from, to) && set(to, get(from));
+  }
+
+  /**
+   * Returns whether every row matched by base and dcMask holds the same entry. When the
+   * don't-care mask covers the five low index bits, the rows are compared a word at a time.
+   */
+  boolean isUniform(int base, int dcMask) {
+    int code = code(base);
+    boolean osc = isOscillating(base);
+    if ((dcMask & 31) == 31) {
+      long word = code * 0x5555555555555555L;
+      int hi = dcMask & ~31;
+      int sub = 0;
+      do {
+        int idx = base | sub;
+        if (codes[idx >>> 5] != word) return false;
+        if (code == ERROR && oscillationWord(idx) != (osc ? 0xFFFFFFFFL : 0)) return false;
+        sub = (sub - hi) & hi;
+      } while (sub != 0);
+      return true;
+    }
+    int sub = 0;
+    do {
+      int idx = base | sub;
+      if (code(idx) != code || (code == ERROR && isOscillating(idx) != osc)) return false;
+      sub = (sub - dcMask) & dcMask;
+    } while (sub != 0);
+    return true;
+  }
+
+  /**
+   * Stores value in every row matched by base and dcMask, a word at a time where the mask allows,
+   * and returns whether the column changed.
+   */
+  boolean fill(int base, int dcMask, Entry value) {
+    if ((dcMask & 31) != 31) {
+      boolean changed = false;
+      int sub = 0;
+      do {
+        changed |= set(base | sub, value);
+        sub = (sub - dcMask) & dcMask;
+      } while (sub != 0);
+      return changed;
+    }
+    if (get(base) == value && isUniform(base, dcMask)) return false;
+    set(base, value);
+    long word = code(base) * 0x5555555555555555L;
+    boolean osc = value == Entry.OSCILLATE_ERROR;
+    int hi = dcMask & ~31;
+    int sub = 0;
+    do {
+      int idx = base | sub;
+      codes[idx >>> 5] = word;
+      if (oscillating != null) {
+        long bits = osc ? 0xFFFFFFFFL : 0;
+        int shift = idx & 32;
+        oscillating[idx >>> 6] = (oscillating[idx >>> 6] & ~(0xFFFFFFFFL << shift)) | (bits << shift);
+      }
+      sub = (sub - hi) & hi;
+    } while (sub != 0);
+    return true;
+  }
+
+  private long oscillationWord(int idx) {
+    return oscillating == null ? 0 : (oscillating[idx >>> 6] >>> (idx & 32)) & 0xFFFFFFFFL;
+  }
+
+  Entry[] toArray() {
+    Entry[] ret = new Entry[size];
+    for (int i = 0; i < size; i++) ret[i] = get(i);
+    return ret;
+  }
+}
@@ -33,6 +33,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import javax.swing.SwingUtilities;
 
 public class OutputExpressions {
   private class MyListener implements VariableListListener, TruthTableListener {
@@ -160,7 +161,7 @@ public class OutputExpressions {
       try {
         List<Implicant> oldImplicants = minimalImplicants;
         Expression oldMinExpr = minimalExpr;
-        minimalImplicants = Implicant.computeMinimal(format, model, output);
+        minimalImplicants = Implicant.computeMinimal(format, model, output, getMinimizeDeadline());
         minimalExpr = Implicant.toExpression(format, model, minimalImplicants);
         boolean minChanged = !implicantsSame(oldImplicants, minimalImplicants);
 
@@ -425,6 +426,20 @@ public class OutputExpressions {
     return ret;
   }
 
+  /*
+   * The outputs minimized while one event is handled share a single time budget, so that a change
+   * to a table with many outputs holds the event thread for that budget at most, rather than for
+   * the budget of every output.
+   */
+  private long getMinimizeDeadline() {
+    if (!minimizeBudgetStarted) {
+      minimizeBudgetStarted = true;
+      minimizeDeadline = System.nanoTime() + Implicant.MINIMIZE_TIME_BUDGET * 1000000L;
+      SwingUtilities.invokeLater(() -> minimizeBudgetStarted = false);
+    }
+    return minimizeDeadline;
+  }
+
   private void invalidate(String output, boolean formatChanged) {
     OutputData data = getOutputData(output, false);
     if (data != null) {
@@ -462,7 +477,14 @@ public class OutputExpressions {
     }
   }
 
+  /** Recomputes the minimal expressions after the minimizer algorithm preference changed. */
+  public void minimizerChanged() {
+    for (OutputData data : outputData.values()) data.invalidate(false, false);
+  }
+
   private boolean allowUpdates = false;
+  private boolean minimizeBudgetStarted = false;
+  private long minimizeDeadline;
 
   public void enableUpdates() {
     allowUpdates = true;
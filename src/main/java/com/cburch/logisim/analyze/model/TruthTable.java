@@ -35,6 +35,7 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.SortedMap;
 
 public class TruthTable {
@@ -46,54 +47,56 @@ public class TruthTable {
 
   private final AnalyzerModel model;
   private ArrayList<Row> rows = new ArrayList<>(); // visible input rows
-  private final ArrayList<Entry[]> columns = new ArrayList<>(); // output columns
+  private final ArrayList<OutputColumn> columns = new ArrayList<>(); // output columns
   private static final CompareInputs sortByInputs = new CompareInputs();
 
   private static class Row implements Iterable<Integer> {
-    // todo: probably more efficient to store this in baseIdx/dcMask format.
-    final Entry[] inputs;
+    final int numInputs;
+    final int base; // index of the row with all don't cares set to zero
+    final int dc; // mask of the inputs that are don't cares
 
     Row(int idx, int numInputs, int mask) {
-      inputs = new Entry[numInputs];
-      for (int i = numInputs - 1; i >= 0; i--) {
-        inputs[i] = (mask & 1) == 0 ? (idx & 1) == 0 ? Entry.ZERO : Entry.ONE : Entry.DONT_CARE;
-        idx = idx >> 1;
-        mask = mask >> 1;
-      }
+      this.numInputs = numInputs;
+      int all = (1 << numInputs) - 1;
+      dc = mask & all;
+      base = idx & all & ~dc;
     }
 
     Row(Entry[] entries, int numInputs) {
-      inputs = new Entry[numInputs];
-      System.arraycopy(entries, 0, inputs, 0, numInputs);
+      this.numInputs = numInputs;
+      int idx = 0;
+      int mask = 0;
+      for (int i = 0; i < numInputs; i++) {
+        idx = (idx << 1) | (entries[i] == Entry.ONE ? 1 : 0);
+        mask = (mask << 1) | (entries[i] == Entry.DONT_CARE ? 1 : 0);
+      }
+      base = idx;
+      dc = mask;
+    }
+
+    public Entry input(int col) {
+      int bit = 1 << (numInputs - 1 - col);
+      return (dc & bit) != 0 ? Entry.DONT_CARE : (base & bit) != 0 ? Entry.ONE : Entry.ZERO;
     }
 
     public int baseIndex() {
-      int idx = 0;
-      for (Entry input : inputs)
-        idx = (idx << 1) | (input == Entry.ONE ? 1 : 0);
-      return idx;
+      return base;
     }
 
     public int dcMask() {
-      int mask = 0;
-      for (Entry input : inputs)
-        mask = (mask << 1) | (input == Entry.DONT_CARE ? 1 : 0);
-      return mask;
+      return dc;
     }
 
     public int duplicity() {
-      int count = 1;
-      for (Entry input : inputs)
-        count *= (input == Entry.DONT_CARE ? 2 : 1);
-      return count;
+      return 1 << Integer.bitCount(dc);
     }
 
     @Override
     public String toString() {
       StringBuilder s = new StringBuilder("row[");
-      for (int i = 0; i < inputs.length; i++) {
+      for (int i = 0; i < numInputs; i++) {
         if (i != 0) s.append(" ");
-        s.append(inputs[i].getDescription());
+        s.append(input(i).getDescription());
       }
       s.append("]");
       s.append(" dup=").append(duplicity());
@@ -107,49 +110,42 @@ public class TruthTable {
       for (Var v : vars) {
         if (s == null) s = new StringBuilder();
         else s.append(" ");
-        for (int j = 0; j < v.width; j++) s.append(inputs[i++].toBitString());
+        for (int j = 0; j < v.width; j++) s.append(input(i++).toBitString());
       }
       return s.toString();
     }
 
     public boolean contains(int idx) {
-      return (idx & ~dcMask()) == baseIndex();
+      return (idx & ~dc) == base;
     }
 
     public boolean contains(Row other) {
-      return contains(other.baseIndex()) && (other.dcMask() & ~dcMask()) == 0;
+      return contains(other.base) && (other.dc & ~dc) == 0;
     }
 
     public boolean intersects(Row other) {
-      int dc = dcMask() | other.dcMask();
-      return (other.baseIndex() & ~dc) == (baseIndex() & ~dc);
+      int mask = dc | other.dc;
+      return (other.base & ~mask) == (base & ~mask);
     }
 
     public Iterator<Integer> iterator() {
       return new Iterator<>() {
-        final int base = baseIndex();
-        final int mask = dcMask();
-        final int nbits = inputs.length;
-        final int count = duplicity();
-        int iter = 0;
+        // walks the subsets of the don't care mask in increasing order
+        int sub = 0;
+        boolean done = false;
 
         @Override
         public boolean hasNext() {
-          return iter < count;
+          return !done;
         }
 
         @Override
         public Integer next() {
-          int add = iter;
-          int keep = 0;
-          for (int b = 0; b < nbits; b++) {
-            if ((mask & (1 << b)) == 0) {
-              add = ((add & ~keep) << 1) | (add & keep);
-            }
-            keep |= (1 << b);
-          }
-          iter++;
-          return base | add;
+          if (done) throw new NoSuchElementException();
+          int idx = base | sub;
+          sub = (sub - dc) & dc;
+          done = sub == 0;
+          return idx;
         }
 
         @Override
@@ -208,12 +204,10 @@ public class TruthTable {
       rows.add(r);
       for (int col = 0; col < no; col++) {
         Entry value = Entry.parse("" + val.charAt(col));
-        Entry[] column = columns.get(col);
+        OutputColumn column = columns.get(col);
         if (column == null && value == DEFAULT_ENTRY) continue;
-        else if (column == null) column = getOutputColumn(col);
-        for (Integer idx : r) {
-          column[idx] = value;
-        }
+        else if (column == null) column = createOutputColumn(col);
+        column.fill(r.base, r.dc, value);
       }
     }
     fireRowsChanged();
@@ -224,14 +218,14 @@ public class TruthTable {
 
   public void setOutputColumn(int col, Entry[] values) {
     if (values.length != getRowCount()) throw new IllegalArgumentException("bad column length");
-    Entry[] oldValues = columns.set(col, values);
-    if (oldValues == values) return;
+    OutputColumn column = new OutputColumn(values);
+    columns.set(col, column);
     // Expand rows as dictated by column inconsistencies
     boolean rowsChanged = false;
     for (int i = rows.size() - 1; i >= 0; i--) {
       Row r = rows.get(i);
-      int base = r.baseIndex();
-      Entry v = values[base];
+      if (r.dc == 0 || column.isUniform(r.base, r.dc)) continue;
+      Entry v = values[r.base];
       boolean split = true;
       while (split) {
         split = false;
@@ -255,11 +249,11 @@ public class TruthTable {
     int diff = idx ^ base;
     int n = r.duplicity();
     if (n <= 1) throw new IllegalStateException("row duplicity should be at least 2");
-    Row splits = new Row(base, r.inputs.length, diff);
+    Row splits = new Row(base, r.numInputs, diff);
     int m = 0;
     rows.remove(r);
     for (Integer other : splits) {
-      Row s = new Row(other, r.inputs.length, r.dcMask() & ~diff);
+      Row s = new Row(other, r.numInputs, r.dc & ~diff);
       m += s.duplicity();
       int pos = Collections.binarySearch(rows, s, sortByInputs);
       if (pos < 0) rows.add(-pos - 1, s);
@@ -276,22 +270,22 @@ public class TruthTable {
 
   public Entry getOutputEntry(int idx, int col) {
     if (idx < 0 || col < 0) return DEFAULT_ENTRY;
-    Entry[] column = columns.get(col);
-    return (column == null ? DEFAULT_ENTRY : idx < column.length ? column[idx] : DEFAULT_ENTRY);
+    OutputColumn column = columns.get(col);
+    return (column == null ? DEFAULT_ENTRY : idx < column.size() ? column.get(idx) : DEFAULT_ENTRY);
   }
 
   public String getVisibleOutputs(int row) {
     Row r = rows.get(row);
     int idx = r.baseIndex();
     StringBuilder s = new StringBuilder();
-    for (Entry[] column : columns)
-      s.append((column == null ? DEFAULT_ENTRY : column[idx]).getDescription());
+    for (OutputColumn column : columns)
+      s.append((column == null ? DEFAULT_ENTRY : column.get(idx)).getDescription());
     return s.toString();
   }
 
   public Entry getVisibleInputEntry(int row, int col) {
     Row r = rows.get(row);
-    return r.inputs[col];
+    return r.input(col);
   }
 
   public int getVisibleRowDcMask(int row) {
@@ -319,64 +313,56 @@ public class TruthTable {
     return (idx & (1 << (inputs - col - 1))) != 0;
   }
 
+  /** Returns a copy of the given output column with one entry per input combination. */
   public Entry[] getOutputColumn(int col) {
-    Entry[] column = columns.get(col);
+    if (col < 0 || col >= getOutputColumnCount())
+      throw new IndexOutOfBoundsException("bad output column index");
+    OutputColumn column = columns.get(col);
     if (column == null) {
-      if (col < 0 || col >= getOutputColumnCount())
-        throw new IndexOutOfBoundsException("bad output column index");
-      column = new Entry[getRowCount()];
-      Arrays.fill(column, DEFAULT_ENTRY);
-      columns.set(col, column);
+      Entry[] ret = new Entry[getRowCount()];
+      Arrays.fill(ret, DEFAULT_ENTRY);
+      return ret;
     }
+    return column.toArray();
+  }
+
+  private OutputColumn createOutputColumn(int col) {
+    if (col < 0 || col >= getOutputColumnCount())
+      throw new IndexOutOfBoundsException("bad output column index");
+    OutputColumn column = new OutputColumn(getRowCount());
+    columns.set(col, column);
     return column;
   }
 
-  private boolean identicalOutputs(int idx1, int idx2) {
-    if (idx1 == idx2) return true;
-    for (Entry[] column : columns) {
-      if (column == null)
-        continue;
-      if (column[idx1] != column[idx2])
-        return false;
+  private boolean identicalOutputs(Row r) {
+    for (OutputColumn column : columns) {
+      if (column != null && !column.isUniform(r.base, r.dc)) return false;
     }
     return true;
   }
 
-  private void mergeOutputs(int idx1, int idx2, boolean[] changed) {
-    if (idx1 == idx2) return;
+  private void mergeOutputs(int base, Row r, boolean[] changed) {
     for (int col = 0; col < columns.size(); col++) {
-      Entry[] column = columns.get(col);
-      if (column == null) continue;
-      if (column[idx1] != column[idx2]) {
-        column[idx2] = column[idx1];
-        changed[col] = true;
-      }
+      OutputColumn column = columns.get(col);
+      if (column != null && column.fill(r.base, r.dc, column.get(base))) changed[col] = true;
     }
   }
 
   private boolean setDontCare(Row r, int dc, boolean force, boolean[] changed) {
-    Row rNew = new Row(r.baseIndex(), r.inputs.length, r.dcMask() | dc);
-    int base = rNew.baseIndex();
-    if (!force) {
-      for (Integer idx : rNew) {
-        if (!identicalOutputs(base, idx)) return false;
-      }
-    }
+    Row rNew = new Row(r.base, r.numInputs, r.dc | dc);
+    int base = rNew.base;
+    if (!force && !identicalOutputs(rNew)) return false;
     for (int i = 0; i < rows.size(); i++) {
       Row s = rows.get(i);
       if (!rNew.intersects(s)) continue;
       if (rNew.contains(s)) {
-        for (Integer idx : s) mergeOutputs(base, idx, changed);
+        mergeOutputs(base, s, changed);
         rows.remove(i);
       } else {
         // find a bit we can flip in s so it doesn't conflict
-        int pos;
-        for (pos = s.inputs.length - 1; pos >= 0; pos--) {
-          if (s.inputs[pos] == Entry.DONT_CARE && rNew.inputs[pos] != Entry.DONT_CARE) break;
-        }
-        if (pos < 0) throw new IllegalStateException("failed row merge");
-        int bit = (1 << (s.inputs.length - 1 - pos));
-        splitRow(s, s.baseIndex() ^ bit);
+        int free = s.dc & ~rNew.dc;
+        if (free == 0) throw new IllegalStateException("failed row merge");
+        splitRow(s, s.base ^ Integer.lowestOneBit(free));
       }
       i--; // back up, may need a second split
     }
@@ -388,8 +374,8 @@ public class TruthTable {
 
   public boolean setVisibleInputEntry(int row, int col, Entry value, boolean force) {
     Row r = rows.get(row);
-    if (r.inputs[col] == value) return false;
-    int dc = (1 << (r.inputs.length - 1 - col));
+    if (r.input(col) == value) return false;
+    int dc = (1 << (r.numInputs - 1 - col));
     if (value == Entry.DONT_CARE) {
       boolean[] changed = new boolean[columns.size()];
       if (!setDontCare(r, dc, force, changed)) return false;
@@ -399,7 +385,7 @@ public class TruthTable {
       }
       return true;
     } else if (value == Entry.ONE || value == Entry.ZERO) {
-      if (r.inputs[col] != Entry.DONT_CARE) return false;
+      if (r.input(col) != Entry.DONT_CARE) return false;
       splitRow(r, r.baseIndex() | dc);
       fireRowsChanged();
       return true;
@@ -410,16 +396,10 @@ public class TruthTable {
 
   public void setVisibleOutputEntry(int row, int col, Entry value) {
     Row r = rows.get(row);
-    Entry[] column = columns.get(col);
+    OutputColumn column = columns.get(col);
     if (column == null && value == DEFAULT_ENTRY) return;
-    else if (column == null) column = getOutputColumn(col);
-    boolean changed = false;
-    for (Integer idx : r) {
-      if (column[idx] == value) continue;
-      changed = true;
-      column[idx] = value;
-    }
-    if (changed) fireCellsChanged(col);
+    else if (column == null) column = createOutputColumn(col);
+    if (column.fill(r.base, r.dc, value)) fireCellsChanged(col);
   }
 
   Row findRow(int idx) {
@@ -491,12 +471,10 @@ public class TruthTable {
       Row r = new Row(values, ni);
       for (int col = 0; col < no; col++) {
         Entry value = values[ni + col];
-        Entry[] column = columns.get(col);
+        OutputColumn column = columns.get(col);
         if (column == null && value == DEFAULT_ENTRY) continue;
-        else if (column == null) column = getOutputColumn(col);
-        for (Integer idx : r) {
-          column[idx] = value;
-        }
+        else if (column == null) column = createOutputColumn(col);
+        column.fill(r.base, r.dc, value);
       }
     }
     fireRowsChanged();
@@ -506,11 +484,10 @@ public class TruthTable {
   }
 
   public void setOutputEntry(int idx, int col, Entry value) {
-    Entry[] column = columns.get(col);
+    OutputColumn column = columns.get(col);
     if (column == null && value == DEFAULT_ENTRY) return;
-    else if (column == null) column = getOutputColumn(col);
-    if (column[idx] == value) return;
-    column[idx] = value;
+    else if (column == null) column = createOutputColumn(col);
+    if (!column.set(idx, value)) return;
     Row r = findRow(idx);
     if (r.duplicity() > 1) {
       splitRow(r, idx);
@@ -525,7 +502,7 @@ public class TruthTable {
       if (event.getSource() == model.getInputs()) {
         inputsChanged(event);
         for (int col = 0; col < columns.size(); col++) {
-          Entry[] column = columns.get(col);
+          OutputColumn column = columns.get(col);
           if (column == null) continue;
           column = inputsChangedForOutput(column, event);
           columns.set(col, column);
@@ -550,12 +527,12 @@ public class TruthTable {
         int newIndex = getOutputIndex(v.bitName(0));
         if (delta > 0) {
           for (int b = 0; b < v.width; b++) {
-            Entry[] column = columns.remove(newIndex - delta - b);
+            OutputColumn column = columns.remove(newIndex - delta - b);
             columns.add(newIndex - b, column);
           }
         } else if (delta < 0) {
           for (int b = v.width - 1; b >= 0; b--) {
-            Entry[] column = columns.remove(newIndex - delta - b);
+            OutputColumn column = columns.remove(newIndex - delta - b);
             columns.add(newIndex - b, column);
           }
         }
@@ -664,7 +641,7 @@ public class TruthTable {
       int b = (1 << (oldCount - 1 - index)); // _0001000
       boolean[] changed = new boolean[columns.size()];
       for (Row r : rows) {
-        if (r.inputs[index] == Entry.DONT_CARE)
+        if (r.input(index) == Entry.DONT_CARE)
           continue;
         setDontCare(r, b, true, changed);
       }
@@ -681,7 +658,7 @@ public class TruthTable {
       rows = ret;
     }
 
-    private Entry[] inputsChangedForOutput(Entry[] column, VariableListEvent event) {
+    private OutputColumn inputsChangedForOutput(OutputColumn column, VariableListEvent event) {
       Var v = event.getVariable();
       int action = event.getType();
       if (action == VariableListEvent.ADD) {
@@ -719,52 +696,52 @@ public class TruthTable {
       return column;
     }
 
-    private Entry[] moveInputForOutput(Entry[] old, int oldIndex, int newIndex) {
+    private OutputColumn moveInputForOutput(OutputColumn old, int oldIndex, int newIndex) {
       int inputs = getInputColumnCount();
       oldIndex = inputs - 1 - oldIndex;
       newIndex = inputs - 1 - newIndex;
-      Entry[] ret = new Entry[old.length];
+      int size = old.size();
+      OutputColumn ret = new OutputColumn(size);
       int sameMask =
-          (old.length - 1)
+          (size - 1)
               ^ ((1 << (1 + Math.max(oldIndex, newIndex))) - 1)
               ^ ((1 << Math.min(oldIndex, newIndex)) - 1); // bits that don't change
       int moveMask = 1 << oldIndex; // bit that moves
       int moveDist = Math.abs(newIndex - oldIndex);
       boolean moveLeft = newIndex > oldIndex;
-      int blockMask = (old.length - 1) ^ sameMask ^ moveMask; // bits that move by one
-      for (int i = 0; i < old.length; i++) {
+      int blockMask = (size - 1) ^ sameMask ^ moveMask; // bits that move by one
+      for (int i = 0; i < size; i++) {
         int j; // new index
         if (moveLeft) {
           j = (i & sameMask) | ((i & moveMask) << moveDist) | ((i & blockMask) >> 1);
         } else {
           j = (i & sameMask) | ((i & moveMask) >> moveDist) | ((i & blockMask) << 1);
         }
-        ret[j] = old[i];
+        ret.set(j, old.get(i));
       }
       return ret;
     }
 
-    private Entry[] removeInputForOutput(Entry[] old, int index, int oldCount) {
-      Entry[] ret = new Entry[old.length / 2];
+    private OutputColumn removeInputForOutput(OutputColumn old, int index, int oldCount) {
+      OutputColumn ret = new OutputColumn(old.size() / 2);
       int j = 0;
       int mask = 1 << (oldCount - 1 - index);
-      for (int i = 0; i < old.length; i++) {
+      for (int i = 0; i < old.size(); i++) {
         if ((i & mask) == 0) {
-          Entry e0 = old[i];
-          Entry e1 = old[i | mask];
-          ret[j++] = (e0 == e1 ? e0 : Entry.DONT_CARE);
+          ret.set(j++, old.sameEntry(i, i | mask) ? old.get(i) : Entry.DONT_CARE);
         }
       }
       return ret;
     }
 
-    private Entry[] addInputForOutput(Entry[] old, int index, int oldCount) {
-      Entry[] ret = new Entry[2 * old.length];
+    private OutputColumn addInputForOutput(OutputColumn old, int index, int oldCount) {
+      OutputColumn ret = new OutputColumn(2 * old.size());
       int b = 1 << (oldCount - index); // _0001000
       int mask = b - 1; // _0000111
-      for (int i = 0; i < old.length; i++) {
-        ret[((i & ~mask) << 1) | 0 | (i & mask)] = old[i]; // xxxx0yyy
-        ret[((i & ~mask) << 1) | b | (i & mask)] = old[i]; // xxxx1yyy
+      for (int i = 0; i < old.size(); i++) {
+        Entry value = old.get(i);
+        ret.set(((i & ~mask) << 1) | 0 | (i & mask), value); // xxxx0yyy
+        ret.set(((i & ~mask) << 1) | b | (i & mask), value); // xxxx1yyy
       }
       return ret;
     }
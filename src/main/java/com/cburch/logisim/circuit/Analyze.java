@@ -37,6 +37,7 @@ import com.cburch.logisim.analyze.model.Expressions;
 import com.cburch.logisim.analyze.model.TruthTable;
 import com.cburch.logisim.analyze.model.Var;
 import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
@@ -44,7 +45,9 @@ import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.tcl.TclComponent;
 import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.vhdl.base.VhdlEntity;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -54,6 +57,9 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Analyze {
   public static class LocationBit {
@@ -185,9 +191,48 @@ public class Analyze {
   //
   // ComputeTable
   //
+  /** Receives the progress of a truth table computation, and may cancel it. */
+  public interface TableProgress {
+    /** Called after each block of rows, possibly from several worker threads at once. */
+    void rowsComputed(int rowsDone, int rowCount);
+
+    boolean isCancelled();
+  }
+
+  /** A computed truth table that has not been put into an analyzer model yet. */
+  public static class ComputedTable {
+    private final ArrayList<Var> inputVars;
+    private final ArrayList<Var> outputVars;
+    private final Entry[][] columns;
+
+    private ComputedTable(ArrayList<Var> inputVars, ArrayList<Var> outputVars, Entry[][] columns) {
+      this.inputVars = inputVars;
+      this.outputVars = outputVars;
+      this.columns = columns;
+    }
+
+    public void applyTo(AnalyzerModel model) {
+      model.setVariables(inputVars, outputVars);
+      for (int i = 0; i < columns.length; i++) {
+        model.getTruthTable().setOutputColumn(i, columns[i]);
+      }
+    }
+  }
+
+  private static final int ROWS_PER_BLOCK = 256;
+
   /** Returns a truth table corresponding to the circuit. */
   public static void computeTable(
       AnalyzerModel model, Project proj, Circuit circuit, Map<Instance, String> pinLabels) {
+    computeTable(proj, circuit, pinLabels, null).applyTo(model);
+  }
+
+  /**
+   * Computes the truth table of the circuit, spreading the rows over several threads when the
+   * circuit allows it. Returns null when the computation was cancelled through the progress.
+   */
+  public static ComputedTable computeTable(
+      Project proj, Circuit circuit, Map<Instance, String> pinLabels, TableProgress progress) {
     ArrayList<Instance> inputPins = new ArrayList<>();
     ArrayList<Var> inputVars = new ArrayList<>();
     ArrayList<String> inputNames = new ArrayList<>();
@@ -213,58 +258,186 @@ public class Analyze {
     int rowCount = 1 << inputCount;
     Entry[][] columns = new Entry[outputNames.size()][rowCount];
 
-    for (int i = 0; i < rowCount; i++) {
-      CircuitState circuitState = new CircuitState(proj, circuit);
+    // Circuits made only of gates can be evaluated for 64 rows at once; all of the pins must be
+    // in the table though, since the others would keep their default values.
+    BitSliceEvaluator evaluator = null;
+    int pinCount = circuit.getAppearance().getCircuitPins().getPins().size();
+    if (inputPins.size() + outputPins.size() == pinCount) {
+      evaluator = BitSliceEvaluator.create(proj, circuit);
+    }
+    boolean done;
+    if (evaluator != null) {
+      done = computeTableBitSliced(evaluator, inputPins, outputPins, inputCount, columns, progress);
+    } else {
+      done = computeTableByPropagation(proj, circuit, inputPins, outputPins, inputCount, columns,
+          progress);
+    }
+    return done ? new ComputedTable(inputVars, outputVars, columns) : null;
+  }
+
+  // fills the columns 64 rows at a time, row i + k being lane k
+  private static boolean computeTableBitSliced(
+      BitSliceEvaluator evaluator,
+      ArrayList<Instance> inputPins,
+      ArrayList<Instance> outputPins,
+      int inputCount,
+      Entry[][] columns,
+      TableProgress progress) {
+    int rowCount = 1 << inputCount;
+    for (int i = 0; i < rowCount; i += 64) {
+      if (progress != null && i % ROWS_PER_BLOCK == 0) {
+        if (progress.isCancelled()) return false;
+        progress.rowsComputed(i, rowCount);
+      }
+      int lanes = Math.min(64, rowCount - i);
       int incol = 0;
       for (Instance pin : inputPins) {
         int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
-        Value[] v = new Value[width];
         for (int b = width - 1; b >= 0; b--) {
-          boolean value = TruthTable.isInputSet(i, incol++, inputCount);
-          v[b] = value ? Value.TRUE : Value.FALSE;
+          long value = 0;
+          for (int k = 0; k < lanes; k++) {
+            if (TruthTable.isInputSet(i + k, incol, inputCount)) value |= 1L << k;
+          }
+          evaluator.setInput(pin, b, value);
+          incol++;
         }
-        InstanceState pinState = circuitState.getInstanceState(pin);
-        Pin.FACTORY.setValue(pinState, Value.create(v));
       }
 
-      Propagator prop = circuitState.getPropagator();
-      prop.propagate();
-      /*
-       * TODO for the SimulatorPrototype class do { prop.step(); } while
-       * (prop.isPending());
-       */
-      // TODO: Search for circuit state
-
-      if (prop.isOscillating()) {
-        for (int j = 0; j < columns.length; j++) {
-          columns[j][i] = Entry.OSCILLATE_ERROR;
-        }
-      } else {
-        int outcol = 0;
-        for (Instance pin : outputPins) {
-          int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
-          InstanceState pinState = circuitState.getInstanceState(pin);
-          Entry out;
-          for (int b = width - 1; b >= 0; b--) {
-            Value outValue = Pin.FACTORY.getValue(pinState).get(b);
-            if (outValue == Value.TRUE)
-              out = Entry.ONE;
-            else if (outValue == Value.FALSE)
-              out = Entry.ZERO;
-            else if (outValue == Value.ERROR)
-              out = Entry.BUS_ERROR;
-            else
-              out = Entry.DONT_CARE;
-            columns[outcol++][i] = out;
+      evaluator.evaluate();
+
+      int outcol = 0;
+      for (Instance pin : outputPins) {
+        int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+        for (int b = width - 1; b >= 0; b--) {
+          long value = evaluator.getOutput(pin, b);
+          for (int k = 0; k < lanes; k++) {
+            columns[outcol][i + k] = ((value >>> k) & 1) == 1 ? Entry.ONE : Entry.ZERO;
           }
+          outcol++;
         }
       }
     }
+    if (progress != null) progress.rowsComputed(rowCount, rowCount);
+    return true;
+  }
 
-    model.setVariables(inputVars, outputVars);
-    for (int i = 0; i < columns.length; i++) {
-      model.getTruthTable().setOutputColumn(i, columns[i]);
+  // Simulates the circuit row by row. The rows are handed out in blocks to one worker per
+  // processor, and each worker resets its own circuit state between the rows instead of building
+  // a new one.
+  private static boolean computeTableByPropagation(
+      Project proj,
+      Circuit circuit,
+      ArrayList<Instance> inputPins,
+      ArrayList<Instance> outputPins,
+      int inputCount,
+      Entry[][] columns,
+      TableProgress progress) {
+    int rowCount = 1 << inputCount;
+    int blockCount = (rowCount + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+    AtomicInteger nextBlock = new AtomicInteger();
+    AtomicInteger rowsDone = new AtomicInteger();
+    AtomicBoolean cancelled = new AtomicBoolean();
+    Runnable[] workers = new Runnable[canComputeInParallel(circuit)
+        ? Math.min(Runtime.getRuntime().availableProcessors(), blockCount) : 1];
+    for (int w = 0; w < workers.length; w++) {
+      CircuitState circuitState = new CircuitState(proj, circuit);
+      workers[w] =
+          () -> {
+            int block;
+            while (!cancelled.get() && (block = nextBlock.getAndIncrement()) < blockCount) {
+              if (progress != null && progress.isCancelled()) {
+                cancelled.set(true);
+                return;
+              }
+              int end = Math.min(rowCount, (block + 1) * ROWS_PER_BLOCK);
+              for (int i = block * ROWS_PER_BLOCK; i < end; i++) {
+                computeRow(circuitState, inputPins, outputPins, inputCount, columns, i);
+              }
+              int done = rowsDone.addAndGet(end - block * ROWS_PER_BLOCK);
+              if (progress != null) progress.rowsComputed(done, rowCount);
+            }
+          };
+    }
+    if (workers.length == 1) {
+      workers[0].run();
+    } else {
+      // The first row is done here, such that the bundle maps of all circuits involved are built
+      // before the workers need them; otherwise they would wait on the AWT thread, which may be
+      // the one waiting for them.
+      computeRow(new CircuitState(proj, circuit), inputPins, outputPins, inputCount, columns, 0);
+      ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(workers.length);
+      for (Runnable worker : workers) tasks.add(ForkJoinTask.adapt(worker));
+      ForkJoinTask.invokeAll(tasks);
+    }
+    return !cancelled.get();
+  }
+
+  private static void computeRow(
+      CircuitState circuitState,
+      ArrayList<Instance> inputPins,
+      ArrayList<Instance> outputPins,
+      int inputCount,
+      Entry[][] columns,
+      int row) {
+    Propagator prop = circuitState.getPropagator();
+    prop.reset();
+    int incol = 0;
+    for (Instance pin : inputPins) {
+      int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+      Value[] v = new Value[width];
+      for (int b = width - 1; b >= 0; b--) {
+        boolean value = TruthTable.isInputSet(row, incol++, inputCount);
+        v[b] = value ? Value.TRUE : Value.FALSE;
+      }
+      InstanceState pinState = circuitState.getInstanceState(pin);
+      Pin.FACTORY.setValue(pinState, Value.create(v));
+    }
+
+    prop.propagate();
+    /*
+     * TODO for the SimulatorPrototype class do { prop.step(); } while
+     * (prop.isPending());
+     */
+    // TODO: Search for circuit state
+
+    if (prop.isOscillating()) {
+      for (Entry[] column : columns) {
+        column[row] = Entry.OSCILLATE_ERROR;
+      }
+    } else {
+      int outcol = 0;
+      for (Instance pin : outputPins) {
+        int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+        InstanceState pinState = circuitState.getInstanceState(pin);
+        Entry out;
+        for (int b = width - 1; b >= 0; b--) {
+          Value outValue = Pin.FACTORY.getValue(pinState).get(b);
+          if (outValue == Value.TRUE)
+            out = Entry.ONE;
+          else if (outValue == Value.FALSE)
+            out = Entry.ZERO;
+          else if (outValue == Value.ERROR)
+            out = Entry.BUS_ERROR;
+          else
+            out = Entry.DONT_CARE;
+          columns[outcol++][row] = out;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether independent states of the circuit may be simulated on several threads at once.
+   * Components that talk to an external simulator keep a single connection for all states.
+   */
+  public static boolean canComputeInParallel(Circuit circuit) {
+    for (Component comp : circuit.getNonWires()) {
+      ComponentFactory factory = comp.getFactory();
+      if (factory instanceof VhdlEntity || factory instanceof TclComponent) return false;
+      if (factory instanceof SubcircuitFactory
+          && !canComputeInParallel(((SubcircuitFactory) factory).getSubcircuit())) return false;
     }
+    return true;
   }
 
   // computes outputs of affected components
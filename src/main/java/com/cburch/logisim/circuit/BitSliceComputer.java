@@ -0,0 +1,63 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.data.Location;
+
+public interface BitSliceComputer {
+  /**
+   * Computes the outputs of a component for 64 input vectors at once, as used by {@link
+   * BitSliceEvaluator}. Each vector is one bit position (lane) of a <code>long</code>: the map gives,
+   * for a point and a bit of the bus there, the lanes in which that bit is 1. The method should read
+   * its inputs from the map and place its outputs into it. It is only called if
+   * canComputeBitSlices accepted the component.
+   */
+  void computeBitSlices(Map laneMap);
+
+  /**
+   * Tells whether computeBitSlices gives the outputs of the component, as it is connected. Only
+   * fully defined values can be represented: a component that would produce an undefined or error
+   * value, for instance because none of its inputs is connected, returns false, and its circuit is
+   * left to the propagator.
+   */
+  default boolean canComputeBitSlices(Connections connections) {
+    return true;
+  }
+
+  interface Connections {
+    /** Tells whether anything besides the component being computed is attached at the point. */
+    boolean isConnected(Location point);
+  }
+
+  interface Map extends Connections {
+    long get(Location point, int bit);
+
+    void put(Location point, int bit, long lanes);
+  }
+}
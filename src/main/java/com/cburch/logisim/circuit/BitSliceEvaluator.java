@@ -0,0 +1,239 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.Probe;
+import com.cburch.logisim.std.wiring.Tunnel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Evaluates a purely combinational circuit for 64 input vectors at once. Every net of the circuit
+ * holds one <code>long</code>, whose bit <i>k</i> is the value of that net for the <i>k</i>-th
+ * vector, and every component computes its outputs through its {@link BitSliceComputer} in
+ * topological order. This is only possible for circuits that never produce anything but 0 and 1;
+ * {@link #create} returns <code>null</code> for any other circuit, which is then to be simulated by
+ * the propagator as usual.
+ */
+public class BitSliceEvaluator {
+  private final CircuitSnapshot snapshot;
+  private final HashMap<Location, int[]> netsAt;
+  private final Component[] order;
+  private final BitSliceComputer[] computers;
+  private final long[] lanes;
+  private final LaneMap laneMap = new LaneMap();
+
+  private BitSliceEvaluator(
+      CircuitSnapshot snapshot,
+      HashMap<Location, int[]> netsAt,
+      Component[] order,
+      BitSliceComputer[] computers,
+      int netCount) {
+    this.snapshot = snapshot;
+    this.netsAt = netsAt;
+    this.order = order;
+    this.computers = computers;
+    this.lanes = new long[netCount];
+  }
+
+  /** Sets the lanes of the given bit of an input pin. */
+  public void setInput(Instance pin, int bit, long value) {
+    lanes[netsAt.get(pin.getLocation())[bit]] = value;
+  }
+
+  /** Returns the lanes of the given bit of an output pin, as of the last call to evaluate. */
+  public long getOutput(Instance pin, int bit) {
+    return lanes[netsAt.get(pin.getLocation())[bit]];
+  }
+
+  public void evaluate() {
+    for (int i = 0; i < order.length; i++) {
+      laneMap.current = order[i];
+      computers[i].computeBitSlices(laneMap);
+    }
+    laneMap.current = null;
+  }
+
+  private class LaneMap implements BitSliceComputer.Map {
+    Component current;
+
+    @Override
+    public boolean isConnected(Location point) {
+      return snapshot.isConnected(point, current);
+    }
+
+    @Override
+    public long get(Location point, int bit) {
+      return lanes[netsAt.get(point)[bit]];
+    }
+
+    @Override
+    public void put(Location point, int bit, long value) {
+      lanes[netsAt.get(point)[bit]] = value;
+    }
+  }
+
+  /**
+   * Returns an evaluator for the circuit, or <code>null</code> if some of its components cannot be
+   * evaluated bitwise, if a net has several drivers or none, or if the circuit has a feedback loop.
+   */
+  public static BitSliceEvaluator create(Project proj, Circuit circuit) {
+    CircuitSnapshot snapshot = circuit.getSnapshot();
+    CircuitWires.BundleMap bmap = snapshot.bundleMap;
+    if (!bmap.isValid()) return null;
+    boolean errorIfUndefined = proj.getOptions().isGateUndefinedError();
+
+    // Number the nets: one per wire thread, and one per bit of a point that no wire reaches.
+    HashMap<Location, int[]> netsAt = new HashMap<>();
+    HashMap<WireThread, Integer> threadNets = new HashMap<>();
+    int netCount = 0;
+    ArrayList<Component> comps = new ArrayList<>();
+    ArrayList<BitSliceComputer> computers = new ArrayList<>();
+    for (Component comp : snapshot.getNonWires()) {
+      if (comp instanceof Splitter || comp.getFactory() instanceof Tunnel) continue;
+      if (comp.getFactory() instanceof Probe || comp.getEnds().isEmpty()) continue;
+      if (comp.getFactory().HasThreeStateDrivers(comp.getAttributeSet())) return null;
+      for (EndData end : comp.getEnds()) {
+        Location loc = end.getLocation();
+        int width = end.getWidth().getWidth();
+        int[] nets = netsAt.get(loc);
+        if (nets == null) {
+          nets = new int[width];
+          WireBundle bundle = bmap.getBundleAt(loc);
+          if (bundle == null) {
+            for (int b = 0; b < width; b++) nets[b] = netCount++;
+          } else if (bundle.threads == null || !bundle.isValid()
+              || bundle.threads.length != width) {
+            return null;
+          } else {
+            for (int b = 0; b < width; b++) {
+              Integer net = threadNets.get(bundle.threads[b]);
+              if (net == null) {
+                net = netCount++;
+                threadNets.put(bundle.threads[b], net);
+              }
+              nets[b] = net;
+            }
+          }
+          netsAt.put(loc, nets);
+        } else if (nets.length != width) {
+          return null;
+        }
+      }
+      if (comp.getFactory() instanceof Pin) {
+        if (comp.getEnds().size() != 1) return null;
+        continue;
+      }
+      Object computer = comp.getFeature(BitSliceComputer.class);
+      if (!(computer instanceof BitSliceComputer)) return null;
+      BitSliceComputer bitSlices = (BitSliceComputer) computer;
+      if (!bitSlices.canComputeBitSlices(loc -> snapshot.isConnected(loc, comp))) return null;
+      comps.add(comp);
+      computers.add(bitSlices);
+    }
+
+    // Every net needs exactly one driver, and an input pin is one of them.
+    int[] driver = new int[netCount];
+    Arrays.fill(driver, -1);
+    final int pinDriver = comps.size();
+    for (Component comp : snapshot.getNonWires()) {
+      if (!(comp.getFactory() instanceof Pin)) continue;
+      EndData end = comp.getEnd(0);
+      if (end.isInput() == end.isOutput()) return null;
+      if (end.isOutput() && !claim(driver, netsAt.get(end.getLocation()), pinDriver)) return null;
+    }
+    for (int i = 0; i < comps.size(); i++) {
+      for (EndData end : comps.get(i).getEnds()) {
+        if (end.isInput() && end.isOutput()) return null;
+        if (end.isOutput() && !claim(driver, netsAt.get(end.getLocation()), i)) return null;
+      }
+    }
+
+    // Order the components so that each one comes after the drivers of its inputs.
+    int[] pending = new int[comps.size()];
+    ArrayList<ArrayList<Integer>> successors = new ArrayList<>();
+    for (int i = 0; i < comps.size(); i++) successors.add(new ArrayList<>());
+    ArrayList<Integer> ready = new ArrayList<>();
+    for (int i = 0; i < comps.size(); i++) {
+      Component comp = comps.get(i);
+      for (EndData end : comp.getEnds()) {
+        if (!end.isInput()) continue;
+        boolean connected = snapshot.isConnected(end.getLocation(), comp);
+        if (!connected && errorIfUndefined) return null;
+        for (int net : netsAt.get(end.getLocation())) {
+          int d = driver[net];
+          if (d < 0) {
+            if (connected) return null; // a floating net reads as undefined
+          } else if (d != pinDriver) {
+            successors.get(d).add(i);
+            pending[i]++;
+          }
+        }
+      }
+      if (pending[i] == 0) ready.add(i);
+    }
+    for (Component comp : snapshot.getNonWires()) {
+      if (!(comp.getFactory() instanceof Pin)) continue;
+      EndData end = comp.getEnd(0);
+      if (end.isInput()) {
+        for (int net : netsAt.get(end.getLocation())) {
+          if (driver[net] < 0) return null;
+        }
+      }
+    }
+    for (int k = 0; k < ready.size(); k++) {
+      for (int succ : successors.get(ready.get(k))) {
+        if (--pending[succ] == 0) ready.add(succ);
+      }
+    }
+    if (ready.size() != comps.size()) return null; // feedback loop
+
+    Component[] order = new Component[ready.size()];
+    BitSliceComputer[] sorted = new BitSliceComputer[ready.size()];
+    for (int k = 0; k < order.length; k++) {
+      order[k] = comps.get(ready.get(k));
+      sorted[k] = computers.get(ready.get(k));
+    }
+    return new BitSliceEvaluator(snapshot, netsAt, order, sorted, netCount);
+  }
+
+  private static boolean claim(int[] driver, int[] nets, int comp) {
+    for (int net : nets) {
+      if (driver[net] >= 0) return false;
+      driver[net] = comp;
+    }
+    return true;
+  }
+}
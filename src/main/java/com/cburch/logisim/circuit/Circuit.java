@@ -69,12 +69,12 @@ import com.cburch.logisim.util.CollectionUtil;
 import com.cburch.logisim.util.EventSourceWeakSupport;
 import com.cburch.logisim.vhdl.base.VhdlEntity;
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -84,6 +84,8 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -126,6 +128,7 @@ public class Circuit {
   private class MyComponentListener implements ComponentListener {
     @Override
     public void componentInvalidated(ComponentEvent e) {
+      grid.invalidate(e.getSource());
       fireEvent(CircuitEvent.ACTION_INVALIDATE, e.getSource());
     }
 
@@ -139,6 +142,7 @@ public class Circuit {
       HashMap<Location, EndData> toAdd = toMap(e.getData());
       EndChangedTransaction xn = new EndChangedTransaction(comp, toRemove, toAdd);
       locker.execute(xn);
+      grid.invalidate(comp);
       fireEvent(CircuitEvent.ACTION_INVALIDATE, comp);
     }
 
@@ -242,6 +246,10 @@ public class Circuit {
   }
 
   private static final int MAX_TIMEOUT_TEST_BENCH_SEC = 60000;
+  // slack around queries, since contains() may accept points just outside the bounds
+  private static final int HIT_MARGIN = 2;
+  // slack around the clip, for highlights and marks drawn outside component bounds
+  private static final int DRAW_MARGIN = 20;
   private final MyComponentListener myComponentListener = new MyComponentListener();
   private final CircuitAppearance appearance;
   private final AttributeSet staticAttrs;
@@ -252,8 +260,13 @@ public class Circuit {
   // include
   // wires
   CircuitWires wires = new CircuitWires();
+  // spatial index over comps and wires, for hit-testing and clipped drawing
+  private final ComponentGrid grid = new ComponentGrid();
   private final ArrayList<Component> clocks = new ArrayList<>();
   private final CircuitLocker locker;
+  // what the simulator sees of this circuit, published after each change
+  private volatile CircuitSnapshot snapshot;
+  private final AtomicBoolean snapshotRequested = new AtomicBoolean(false);
 
   static final Logger logger = LoggerFactory.getLogger(Circuit.class);
 
@@ -272,6 +285,7 @@ public class Circuit {
     appearance = new CircuitAppearance(this);
     subcircuitFactory = new SubcircuitFactory(this);
     locker = new CircuitLocker();
+    snapshot = wires.takeSnapshot(comps, clocks);
     circuitsUsingThis = new WeakHashMap<>();
     MyNetList = new Netlist(this);
     MyMappableResources = new HashMap<>();
@@ -493,7 +507,11 @@ public class Circuit {
    * Code taken from Cornell's version of Logisim: http://www.cs.cornell.edu/courses/cs3410/2015sp/
    */
   public void doTestVector(Project project, Instance[] pin, Value[] val) throws TestException {
-    CircuitState state = project.getCircuitState();
+    doTestVector(project.getCircuitState(), pin, val);
+  }
+
+  /** Runs one test vector line on the given state, which is reset first. */
+  public void doTestVector(CircuitState state, Instance[] pin, Value[] val) throws TestException {
     state.reset();
 
     for (int i = 0; i < pin.length; ++i) {
@@ -539,12 +557,25 @@ public class Circuit {
   //
   public void draw(ComponentDrawContext context, Collection<Component> hidden) {
     Graphics g = context.getGraphics();
+    Rectangle clipRect = g.getClipBounds();
+    Bounds clip = null;
+    Collection<Component> visibleComps = comps;
+    Collection<Wire> visibleWires = null;
+    if (clipRect != null) {
+      clip = Bounds.create(clipRect).expand(DRAW_MARGIN);
+      visibleComps = new ArrayList<>();
+      visibleWires = new ArrayList<>();
+      for (Component c : grid.find(clip, g)) {
+        if (c instanceof Wire) visibleWires.add((Wire) c);
+        else visibleComps.add(c);
+      }
+    }
     Graphics g_copy = g.create();
     context.setGraphics(g_copy);
-    wires.draw(context, hidden);
+    wires.draw(context, hidden, visibleWires, clip);
 
     if (hidden == null || hidden.size() == 0) {
-      for (Component c : comps) {
+      for (Component c : visibleComps) {
         Graphics g_new = g.create();
         context.setGraphics(g_new);
         g_copy.dispose();
@@ -553,7 +584,7 @@ public class Circuit {
         c.draw(context);
       }
     } else {
-      for (Component c : comps) {
+      for (Component c : visibleComps) {
         if (!hidden.contains(c)) {
           Graphics g_new = g.create();
           context.setGraphics(g_new);
@@ -590,7 +621,7 @@ public class Circuit {
 
   public Collection<Component> getAllContaining(Location pt) {
     LinkedHashSet<Component> ret = new LinkedHashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : grid.find(Bounds.create(pt).expand(HIT_MARGIN), null)) {
       if (comp.contains(pt)) ret.add(comp);
     }
     return ret;
@@ -598,7 +629,7 @@ public class Circuit {
 
   public Collection<Component> getAllContaining(Location pt, Graphics g) {
     LinkedHashSet<Component> ret = new LinkedHashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : grid.find(Bounds.create(pt).expand(HIT_MARGIN), g)) {
       if (comp.contains(pt, g)) ret.add(comp);
     }
     return ret;
@@ -606,7 +637,7 @@ public class Circuit {
 
   public Collection<Component> getAllWithin(Bounds bds) {
     LinkedHashSet<Component> ret = new LinkedHashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : grid.find(bds, null)) {
       if (bds.contains(comp.getBounds())) ret.add(comp);
     }
     return ret;
@@ -614,7 +645,7 @@ public class Circuit {
 
   public Collection<Component> getAllWithin(Bounds bds, Graphics g) {
     LinkedHashSet<Component> ret = new LinkedHashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : grid.find(bds, g)) {
       if (bds.contains(comp.getBounds(g))) ret.add(comp);
     }
     return ret;
@@ -626,27 +657,8 @@ public class Circuit {
 
   public Bounds getBounds() {
     Bounds wireBounds = wires.getWireBounds();
-    Iterator<Component> it = comps.iterator();
-    if (!it.hasNext()) return wireBounds;
-    Component first = it.next();
-    Bounds firstBounds = first.getBounds();
-    int xMin = firstBounds.getX();
-    int yMin = firstBounds.getY();
-    int xMax = xMin + firstBounds.getWidth();
-    int yMax = yMin + firstBounds.getHeight();
-    while (it.hasNext()) {
-      Component c = it.next();
-      Bounds bds = c.getBounds();
-      int x0 = bds.getX();
-      int x1 = x0 + bds.getWidth();
-      int y0 = bds.getY();
-      int y1 = y0 + bds.getHeight();
-      if (x0 < xMin) xMin = x0;
-      if (x1 > xMax) xMax = x1;
-      if (y0 < yMin) yMin = y0;
-      if (y1 > yMax) yMax = y1;
-    }
-    Bounds compBounds = Bounds.create(xMin, yMin, xMax - xMin, yMax - yMin);
+    Bounds compBounds = grid.getComponentBounds(null);
+    if (compBounds == null) return wireBounds;
     if (wireBounds.getWidth() == 0 || wireBounds.getHeight() == 0) {
       return compBounds;
     } else {
@@ -655,32 +667,11 @@ public class Circuit {
   }
 
   public Bounds getBounds(Graphics g) {
-    Bounds ret = wires.getWireBounds();
-    int xMin = ret.getX();
-    int yMin = ret.getY();
-    int xMax = xMin + ret.getWidth();
-    int yMax = yMin + ret.getHeight();
-    if (ret == Bounds.EMPTY_BOUNDS) {
-      xMin = Integer.MAX_VALUE;
-      yMin = Integer.MAX_VALUE;
-      xMax = Integer.MIN_VALUE;
-      yMax = Integer.MIN_VALUE;
-    }
-    for (Component c : comps) {
-      Bounds bds = c.getBounds(g);
-      if (bds != null && bds != Bounds.EMPTY_BOUNDS) {
-        int x0 = bds.getX();
-        int x1 = x0 + bds.getWidth();
-        int y0 = bds.getY();
-        int y1 = y0 + bds.getHeight();
-        if (x0 < xMin) xMin = x0;
-        if (x1 > xMax) xMax = x1;
-        if (y0 < yMin) yMin = y0;
-        if (y1 > yMax) yMax = y1;
-      }
-    }
-    if (xMin > xMax || yMin > yMax) return Bounds.EMPTY_BOUNDS;
-    return Bounds.create(xMin, yMin, xMax - xMin, yMax - yMin);
+    Bounds wireBounds = wires.getWireBounds();
+    // with no graphics (an export while the canvas is not shown), the bounds without text metrics
+    Bounds compBounds = grid.getComponentBounds(g);
+    if (compBounds == null || compBounds == Bounds.EMPTY_BOUNDS) return wireBounds;
+    return wireBounds.add(compBounds);
   }
 
   public Collection<Circuit> getCircuitsUsingThis() {
@@ -711,6 +702,34 @@ public class Circuit {
     return locker;
   }
 
+  /**
+   * Returns the last snapshot published for the simulator. Transactions publish a new one before
+   * they release their locks; a change made outside of one (such as a tunnel renamed directly)
+   * leaves it stale until the AWT thread publishes the next, and meanwhile the stale one is
+   * returned rather than waiting for it.
+   */
+  CircuitSnapshot getSnapshot() {
+    CircuitSnapshot ret = snapshot;
+    if (!ret.isCurrent(wires) && snapshotRequested.compareAndSet(false, true)) {
+      SwingUtilities.invokeLater(this::republishSnapshot);
+    }
+    return ret;
+  }
+
+  // To be called with the circuit locked, once a change is complete
+  void publishSnapshot() {
+    snapshot = wires.takeSnapshot(comps, clocks);
+  }
+
+  private void republishSnapshot() {
+    snapshotRequested.set(false);
+    if (snapshot.isCurrent(wires)) return;
+    // if a transaction holds the circuit, it publishes once it is done
+    if (locker.tryRead(this::publishSnapshot) && proj != null) {
+      proj.getSimulator().nudge();
+    }
+  }
+
   //
   // access methods
   //
@@ -836,10 +855,12 @@ public class Circuit {
       if (w.getEnd0().equals(w.getEnd1())) return;
       boolean added = wires.add(w);
       if (!added) return;
+      grid.add(w);
     } else {
       // add it into the circuit
       boolean added = comps.add(c);
       if (!added) return;
+      grid.add(c);
       socSim.registerComponent(c);
       /* Here we check for duplicated labels and clear the label if it already exists in
        * the circuit
@@ -886,6 +907,7 @@ public class Circuit {
     Set<Component> oldComps = comps;
     comps = new LinkedHashSet<>();
     wires = new CircuitWires();
+    grid.clear();
     clocks.clear();
     MyNetList.clear();
     Annotated = false;
@@ -904,6 +926,7 @@ public class Circuit {
 
     Annotated = false;
     MyNetList.clear();
+    grid.remove(c);
     if (c instanceof Wire) {
       wires.remove(c);
     } else {
@@ -0,0 +1,169 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.std.gates.Gates;
+import com.cburch.logisim.std.wiring.Tunnel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Topological levels of the combinational gates of a circuit, as used by the levelized simulation
+ * engine. A gate is at one level above the highest gate driving any of its inputs, so that
+ * evaluating the gates by increasing level evaluates each of them only after all of its inputs have
+ * settled. Gates that are part of (or fed by) a feedback loop, and gates reading or driving a net
+ * with several drivers, get no level and are left to the event-driven propagation.
+ */
+class CircuitLevels {
+  private final HashMap<Component, Integer> levels = new HashMap<>();
+  private int maxLevel = 0;
+
+  private CircuitLevels() {}
+
+  int getMaxLevel() {
+    return maxLevel;
+  }
+
+  /** Returns the level of the given component, or -1 if it has to be propagated event by event. */
+  int getLevel(Component comp) {
+    Integer level = levels.get(comp);
+    return level == null ? -1 : level;
+  }
+
+  static CircuitLevels compute(CircuitSnapshot snapshot) {
+    CircuitWires.BundleMap bmap = snapshot.bundleMap;
+    CircuitLevels ret = new CircuitLevels();
+    // A net is identified by its wire thread; one bit of a bus is one net. Points that
+    // are not on any wire are their own net.
+    HashMap<Object, ArrayList<Component>> drivers = new HashMap<>();
+    HashMap<Component, ArrayList<Object>> inputNets = new HashMap<>();
+    HashMap<Component, ArrayList<Object>> outputNets = new HashMap<>();
+    for (Component comp : snapshot.getNonWires()) {
+      if (comp instanceof Splitter || comp.getFactory() instanceof Tunnel) continue;
+      boolean combinational = Gates.isCombinational(comp);
+      ArrayList<Object> ins = combinational ? new ArrayList<>() : null;
+      ArrayList<Object> outs = combinational ? new ArrayList<>() : null;
+      boolean valid = true;
+      for (EndData end : comp.getEnds()) {
+        ArrayList<Object> nets = getNets(bmap, end.getLocation());
+        if (nets == null) {
+          valid = false;
+          continue;
+        }
+        if (end.isOutput()) {
+          for (Object net : nets) drivers.computeIfAbsent(net, k -> new ArrayList<>()).add(comp);
+          if (outs != null) outs.addAll(nets);
+        }
+        if (end.isInput() && ins != null) ins.addAll(nets);
+      }
+      if (combinational && valid) {
+        inputNets.put(comp, ins);
+        outputNets.put(comp, outs);
+      }
+    }
+
+    // Drop the gates that share a net with another driver; then find, for each remaining
+    // gate, the gates it depends on.
+    HashSet<Component> candidates = new HashSet<>();
+    for (Component comp : inputNets.keySet()) {
+      if (hasSingleDrivers(drivers, inputNets.get(comp))
+          && hasSingleDrivers(drivers, outputNets.get(comp))) candidates.add(comp);
+    }
+    HashMap<Component, Integer> pending = new HashMap<>();
+    HashMap<Component, ArrayList<Component>> successors = new HashMap<>();
+    ArrayList<Component> ready = new ArrayList<>();
+    for (Component comp : candidates) {
+      HashSet<Component> preds = new HashSet<>();
+      boolean blocked = false;
+      for (Object net : inputNets.get(comp)) {
+        ArrayList<Component> ds = drivers.get(net);
+        if (ds == null) continue;
+        Component d = ds.get(0);
+        if (candidates.contains(d)) preds.add(d);
+        else if (Gates.isCombinational(d)) blocked = true; // fed by a gate left to events
+      }
+      if (blocked) continue;
+      for (Component pred : preds) {
+        successors.computeIfAbsent(pred, k -> new ArrayList<>()).add(comp);
+      }
+      if (preds.isEmpty()) ready.add(comp);
+      else pending.put(comp, preds.size());
+    }
+
+    // Kahn's algorithm; whatever lies on or behind a loop is never ready and keeps no level.
+    for (Component comp : ready) ret.levels.put(comp, 1);
+    for (int i = 0; i < ready.size(); i++) {
+      Component comp = ready.get(i);
+      int level = ret.levels.get(comp);
+      ArrayList<Component> succs = successors.get(comp);
+      if (succs == null) continue;
+      for (Component succ : succs) {
+        Integer left = pending.get(succ);
+        if (left == null) continue;
+        Integer succLevel = ret.levels.get(succ);
+        if (succLevel == null || succLevel <= level) ret.levels.put(succ, level + 1);
+        if (left == 1) {
+          pending.remove(succ);
+          ready.add(succ);
+        } else {
+          pending.put(succ, left - 1);
+        }
+      }
+    }
+    for (Component comp : pending.keySet()) ret.levels.remove(comp);
+    for (int level : ret.levels.values()) ret.maxLevel = Math.max(ret.maxLevel, level);
+    return ret;
+  }
+
+  private static ArrayList<Object> getNets(CircuitWires.BundleMap bmap, Location loc) {
+    ArrayList<Object> ret = new ArrayList<>();
+    WireBundle bundle = bmap.getBundleAt(loc);
+    if (bundle == null) {
+      ret.add(loc);
+    } else if (bundle.threads == null || !bundle.isValid()) {
+      return null;
+    } else {
+      for (WireThread t : bundle.threads) ret.add(t);
+    }
+    return ret;
+  }
+
+  private static boolean hasSingleDrivers(
+      HashMap<Object, ArrayList<Component>> drivers, ArrayList<Object> nets) {
+    for (Object net : nets) {
+      ArrayList<Component> ds = drivers.get(net);
+      if (ds != null && ds.size() > 1) return false;
+    }
+    return true;
+  }
+}
@@ -139,6 +139,18 @@ public class CircuitLocker {
     return mutatingMutator;
   }
 
+  // Runs the given reader unless a transaction is changing the circuit; returns whether it ran
+  boolean tryRead(Runnable reader) {
+    Lock lock = circuitLock.readLock();
+    if (!lock.tryLock()) return false;
+    try {
+      reader.run();
+    } finally {
+      lock.unlock();
+    }
+    return true;
+  }
+
   public boolean hasWriteLock() {
     return mutatingThread == Thread.currentThread();
   }
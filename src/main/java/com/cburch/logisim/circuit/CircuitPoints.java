@@ -37,6 +37,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
 
 class CircuitPoints {
@@ -50,6 +51,7 @@ class CircuitPoints {
   private final HashMap<Location, LocationData> map = new HashMap<>();
   private final HashMap<Location, WidthIncompatibilityData> incompatibilityData =
       new HashMap<>();
+  private HashSet<Location> changed = new HashSet<>();
 
   public CircuitPoints() {}
 
@@ -82,6 +84,7 @@ class CircuitPoints {
     }
     locData.components.add(comp);
     locData.ends.add(endData);
+    changed.add(loc);
     computeIncompatibilityData(loc, locData);
   }
 
@@ -179,6 +182,14 @@ class CircuitPoints {
   //
   // access methods
   //
+
+  /** The points whose components changed since the last call, for the next snapshot */
+  Set<Location> takeChanges() {
+    Set<Location> ret = changed;
+    changed = new HashSet<>();
+    return ret;
+  }
+
   Set<Location> getSplitLocations() {
     return map.keySet();
   }
@@ -236,6 +247,7 @@ class CircuitPoints {
     int index = locData.components.indexOf(comp);
     if (index < 0) return;
 
+    changed.add(loc);
     if (locData.components.size() == 1) {
       map.remove(loc);
       incompatibilityData.remove(loc);
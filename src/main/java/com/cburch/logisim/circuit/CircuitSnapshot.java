@@ -0,0 +1,321 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Location;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * What the simulator sees of a circuit: its components, the components at each point and the
+ * bundle map, as they were at the end of a change. A snapshot is never modified; the circuit
+ * publishes a new one after each transaction, so the simulation thread can keep propagating while
+ * the editor changes the circuit, without locking, retrying or waiting for the AWT thread. Each
+ * snapshot is derived from the previous one and shares with it all but what the change touched.
+ */
+final class CircuitSnapshot {
+  private static final Component[] NO_COMPONENTS = new Component[0];
+  // the fewest bits of its hash that pick the bucket of a point
+  private static final int MIN_POINT_BITS = 6;
+
+  /** The components at a point and the width known there */
+  private static final class Point {
+    final Location loc;
+    final Component[] components;
+    final BitWidth width; // null if unknown
+
+    Point(Location loc, Component[] components, BitWidth width) {
+      this.loc = loc;
+      this.components = components;
+      this.width = width;
+    }
+  }
+
+  /**
+   * Takes the snapshots of one CircuitWires, each from the last one and the changes recorded
+   * since. To be used with the circuit locked.
+   */
+  static final class Builder {
+    private final CircuitWires wires;
+    private CircuitSnapshot last = null;
+    // the components but wires added or removed since the last snapshot
+    private final LinkedHashSet<Component> changedComponents = new LinkedHashSet<>();
+    // where each of the components of the last snapshot is in its nonWires
+    private final HashMap<Component, Integer> slots = new HashMap<>();
+
+    Builder(CircuitWires wires) {
+      this.wires = wires;
+    }
+
+    void componentChanged(Component comp) {
+      changedComponents.add(comp);
+    }
+
+    synchronized CircuitSnapshot build(
+        int version,
+        CircuitWires.BundleMap bundleMap,
+        Set<Component> nonWires,
+        List<Component> clocks) {
+      CircuitPoints points = wires.points;
+      Set<Location> changedPoints = points.takeChanges();
+      CircuitSnapshot prev = last;
+      CircuitSnapshot ret = new CircuitSnapshot(wires, version, bundleMap);
+
+      if (prev == null) {
+        buildPoints(ret, points);
+      } else {
+        ret.points = prev.points;
+        ret.pointBits = prev.pointBits;
+        ret.pointCount = prev.pointCount;
+        for (Location loc : changedPoints) ret.setPoint(loc, getPoint(points, loc));
+        // past four points a bucket, the hash takes one more bit
+        if (ret.pointCount > 4 << ret.pointBits) buildPoints(ret, points);
+      }
+
+      if (prev == null) {
+        buildNonWires(ret, nonWires);
+      } else {
+        ret.nonWires = prev.nonWires;
+        ret.nonWireCount = prev.nonWireCount;
+        for (Component comp : changedComponents) {
+          Integer slot = slots.get(comp);
+          boolean present = nonWires.contains(comp);
+          if (present && slot == null) {
+            slots.put(comp, ret.nonWires.length());
+            ret.nonWires = ret.nonWires.set(ret.nonWires.length(), comp);
+            ret.nonWireCount++;
+          } else if (!present && slot != null) {
+            slots.remove(comp);
+            ret.nonWires = ret.nonWires.set(slot, null);
+            ret.nonWireCount--;
+          }
+        }
+        // once most slots are empty, it is time to pack the components again
+        if (ret.nonWires.length() > 2 * ret.nonWireCount + 64) buildNonWires(ret, nonWires);
+      }
+      changedComponents.clear();
+
+      ret.clocks = prev != null && prev.clocks.equals(clocks) ? prev.clocks : List.copyOf(clocks);
+      last = ret;
+      return ret;
+    }
+
+    private static Point getPoint(CircuitPoints points, Location loc) {
+      Collection<? extends Component> comps = points.getComponents(loc);
+      if (comps.isEmpty()) return null;
+      BitWidth width = points.getWidth(loc);
+      return new Point(
+          loc, comps.toArray(NO_COMPONENTS), width == BitWidth.UNKNOWN ? null : width);
+    }
+
+    private static void buildPoints(CircuitSnapshot snap, CircuitPoints points) {
+      Set<Location> locs = points.getSplitLocations();
+      int bits = MIN_POINT_BITS;
+      while (1 << bits < locs.size()) bits++;
+      Point[][] buckets = new Point[1 << bits][];
+      for (Location loc : locs) {
+        int b = bucket(loc, bits);
+        buckets[b] = addPoint(buckets[b], getPoint(points, loc));
+      }
+      snap.points = SharedArray.of(buckets, buckets.length);
+      snap.pointBits = bits;
+      snap.pointCount = locs.size();
+    }
+
+    private void buildNonWires(CircuitSnapshot snap, Set<Component> nonWires) {
+      Component[] comps = nonWires.toArray(NO_COMPONENTS);
+      slots.clear();
+      for (int i = 0; i < comps.length; i++) slots.put(comps[i], i);
+      snap.nonWires = SharedArray.of(comps, comps.length);
+      snap.nonWireCount = comps.length;
+    }
+  }
+
+  private final CircuitWires wires;
+  private final int version;
+  final CircuitWires.BundleMap bundleMap;
+  // the points in buckets picked by their hash, each bucket an array of points or null
+  private SharedArray<Point[]> points;
+  private int pointBits;
+  private int pointCount;
+  // the components but wires in the order they were added, null where one was removed
+  private SharedArray<Component> nonWires;
+  private int nonWireCount;
+  private List<Component> clocks;
+
+  // the fields but these are set by the builder before the snapshot is published
+  private CircuitSnapshot(CircuitWires wires, int version, CircuitWires.BundleMap bundleMap) {
+    this.wires = wires;
+    this.version = version;
+    this.bundleMap = bundleMap;
+  }
+
+  private static int bucket(Location loc, int bits) {
+    return (loc.hashCode() * 0x9e3779b9) >>> (32 - bits);
+  }
+
+  private static Point[] addPoint(Point[] bucket, Point point) {
+    if (bucket == null) return new Point[] {point};
+    Point[] ret = new Point[bucket.length + 1];
+    System.arraycopy(bucket, 0, ret, 0, bucket.length);
+    ret[bucket.length] = point;
+    return ret;
+  }
+
+  private Point getPoint(Location loc) {
+    Point[] bucket = points.get(bucket(loc, pointBits));
+    if (bucket != null) {
+      for (Point p : bucket) {
+        if (p.loc.equals(loc)) return p;
+      }
+    }
+    return null;
+  }
+
+  // replaces the point at loc, removing it if point is null
+  private void setPoint(Location loc, Point point) {
+    int b = bucket(loc, pointBits);
+    Point[] bucket = points.get(b);
+    int n = bucket == null ? 0 : bucket.length;
+    int index = 0;
+    while (index < n && !bucket[index].loc.equals(loc)) index++;
+    Point[] ret;
+    if (index == n) {
+      if (point == null) return;
+      ret = addPoint(bucket, point);
+      pointCount++;
+    } else if (point != null) {
+      ret = bucket.clone();
+      ret[index] = point;
+    } else {
+      pointCount--;
+      if (n == 1) {
+        ret = null;
+      } else {
+        ret = new Point[n - 1];
+        System.arraycopy(bucket, 0, ret, 0, index);
+        System.arraycopy(bucket, index + 1, ret, index, n - 1 - index);
+      }
+    }
+    points = points.set(b, ret);
+  }
+
+  /** Whether no change was made to the given connections since the snapshot was taken */
+  boolean isCurrent(CircuitWires current) {
+    return current == wires && version == current.getVoidCount();
+  }
+
+  List<Component> getClocks() {
+    return clocks;
+  }
+
+  /** All the components at the point, wires included */
+  Component[] getComponents(Location loc) {
+    Point p = getPoint(loc);
+    return p == null ? NO_COMPONENTS : p.components;
+  }
+
+  Collection<Component> getNonWires() {
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<Component> iterator() {
+        return nonWires.iterator();
+      }
+
+      @Override
+      public int size() {
+        return nonWireCount;
+      }
+    };
+  }
+
+  Set<Location> getSplitLocations() {
+    return new AbstractSet<>() {
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof Location && getPoint((Location) o) != null;
+      }
+
+      @Override
+      public Iterator<Location> iterator() {
+        return new Iterator<>() {
+          private final Iterator<Point[]> buckets = points.iterator();
+          private Point[] bucket = null;
+          private int index = 0;
+
+          @Override
+          public boolean hasNext() {
+            while ((bucket == null || index == bucket.length) && buckets.hasNext()) {
+              bucket = buckets.next();
+              index = 0;
+            }
+            return bucket != null && index < bucket.length;
+          }
+
+          @Override
+          public Location next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return bucket[index++].loc;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return pointCount;
+      }
+    };
+  }
+
+  /** Same as Circuit.getWidth at the time of the snapshot */
+  BitWidth getWidth(Location loc) {
+    Point p = getPoint(loc);
+    if (p != null && p.width != null) return p.width;
+    if (!bundleMap.isValid()) return BitWidth.UNKNOWN;
+    WireBundle b = bundleMap.getBundleAt(loc);
+    return b != null && b.isValid() ? b.getWidth() : BitWidth.UNKNOWN;
+  }
+
+  /** Same as Circuit.isConnected at the time of the snapshot */
+  boolean isConnected(Location loc, Component ignore) {
+    for (Component comp : getComponents(loc)) {
+      if (comp != ignore) return true;
+    }
+    return false;
+  }
+}
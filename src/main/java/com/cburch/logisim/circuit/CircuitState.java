@@ -32,6 +32,7 @@ import com.cburch.logisim.circuit.Propagator.SetData;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.comp.ComponentState;
+import com.cburch.logisim.comp.EndData;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
@@ -39,21 +40,60 @@ import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceData;
 import com.cburch.logisim.instance.InstanceFactory;
 import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.InstanceStateImpl;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.io.extra.Buzzer;
 import com.cburch.logisim.std.memory.Ram;
 import com.cburch.logisim.std.memory.RamState;
 import com.cburch.logisim.std.wiring.Clock;
 import com.cburch.logisim.std.wiring.Pin;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 public class CircuitState implements InstanceData {
+  /**
+   * The ends of a component resolved against the wiring of a circuit: the wire bundle holding
+   * each end's value and whether anything else is attached there. Obtained through
+   * getPortSlots(), and valid until the state moves to a new snapshot of the circuit or the
+   * component's ends change.
+   */
+  public static final class PortSlots {
+    private final List<EndData> ends;
+    private final CircuitSnapshot snapshot;
+    private final CircuitWires.BundleMap bundleMap; // null if resolved before any propagation
+    private final Location[] points;
+    private final int[] bundles; // WireBundle.id, or -1 for a point on no wire
+    private final boolean[] connected;
+
+    private PortSlots(
+        CircuitSnapshot snapshot, Component comp, List<EndData> ends, CircuitWires.State s) {
+      this.ends = ends;
+      this.snapshot = snapshot;
+      this.bundleMap = s == null ? null : s.bundleMap;
+      int n = ends.size();
+      points = new Location[n];
+      bundles = new int[n];
+      connected = new boolean[n];
+      for (int i = 0; i < n; i++) {
+        EndData end = ends.get(i);
+        if (end == null) continue;
+        Location pt = end.getLocation();
+        WireBundle b = bundleMap == null ? null : bundleMap.getBundleAt(pt);
+        points[i] = pt;
+        bundles[i] = b == null ? -1 : b.id;
+        connected[i] = snapshot.isConnected(pt, comp);
+      }
+    }
+  }
+
 
   private class MyCircuitListener implements CircuitListener {
     public void circuitChanged(CircuitEvent event) {
@@ -67,6 +107,7 @@ public class CircuitState implements InstanceData {
           markPointAsDirty(w.getEnd0());
           markPointAsDirty(w.getEnd1());
         } else {
+          removedComponents.remove(comp);
           markComponentAsDirty(comp);
         }
       }
@@ -96,8 +137,10 @@ public class CircuitState implements InstanceData {
           markPointAsDirty(w.getEnd0());
           markPointAsDirty(w.getEnd1());
         } else {
-          if (base != null) base.checkComponentEnds(CircuitState.this, comp);
+          // its outputs are withdrawn by the simulation thread, which owns the values
+          removedComponents.add(comp);
           dirtyComponents.remove(comp);
+          instanceStates.remove(comp);
         }
       }
 
@@ -115,9 +158,11 @@ public class CircuitState implements InstanceData {
           }
         }
         componentData.clear();
+        instanceStates.clear();
         values.clear();
         dirtyComponents.clear();
         dirtyPoints.clear();
+        removedComponents.clear();
         causes.clear();
       }
 
@@ -164,14 +209,27 @@ public class CircuitState implements InstanceData {
   private CircuitState parentState = null; // parent in tree of CircuitStates
   private Component parentComp = null; // subcircuit component containing this
   // state
-  private HashSet<CircuitState> substates = new HashSet<>();
+  // read by the simulation thread while the AWT thread adds and removes subcircuits
+  private CopyOnWriteArraySet<CircuitState> substates = new CopyOnWriteArraySet<>();
 
   private CircuitWires.State wireData = null;
+  // the snapshot of the circuit that wireData was last brought up to date with
+  private CircuitSnapshot snapshot = null;
   private final HashMap<Component, Object> componentData = new HashMap<>();
+  // one InstanceState per component, so that propagation does not allocate a new one for every
+  // evaluation; shared with the GUI thread, hence concurrent
+  private final ConcurrentHashMap<Component, InstanceStateImpl> instanceStates =
+      new ConcurrentHashMap<>();
+  // values of points that are not part of a wire bundle; wired points keep
+  // their values in wireData, indexed by bundle
   private final Map<Location, Value> values = new HashMap<>();
-  private CopyOnWriteArraySet<Component> dirtyComponents = new CopyOnWriteArraySet<>();
-  private final CopyOnWriteArraySet<Location> dirtyPoints = new CopyOnWriteArraySet<>();
+  private final DirtyQueue<Component> dirtyComponents = new DirtyQueue<>();
+  private final DirtyQueue<Location> dirtyPoints = new DirtyQueue<>();
+  // components removed from the circuit whose outputs are still to be withdrawn
+  private final DirtyQueue<Component> removedComponents = new DirtyQueue<>();
   final HashMap<Location, SetData> causes = new HashMap<>();
+  // gate whose outputs are being given at once by the levelized engine
+  private Component immediateCause = null;
 
   private static int lastId = 0;
   private final int id = lastId++;
@@ -196,7 +254,7 @@ public class CircuitState implements InstanceData {
   }
 
   public boolean containsKey(Location pt) {
-    return values.containsKey(pt);
+    return getValueByWire(pt) != null;
   }
 
   private void copyFrom(CircuitState src, Propagator base) {
@@ -204,7 +262,7 @@ public class CircuitState implements InstanceData {
     this.parentComp = src.parentComp;
     this.parentState = src.parentState;
     HashMap<CircuitState, CircuitState> substateData = new HashMap<>();
-    this.substates = new HashSet<>();
+    this.substates = new CopyOnWriteArraySet<>();
     for (CircuitState oldSub : src.substates) {
       CircuitState newSub = new CircuitState(src.proj, oldSub.circuit);
       newSub.copyFrom(oldSub, base);
@@ -236,9 +294,11 @@ public class CircuitState implements InstanceData {
     if (src.wireData != null) {
       this.wireData = (CircuitWires.State) src.wireData.clone();
     }
+    this.snapshot = src.snapshot;
     this.values.putAll(src.values);
     this.dirtyComponents.addAll(src.dirtyComponents);
     this.dirtyPoints.addAll(src.dirtyPoints);
+    this.removedComponents.addAll(src.removedComponents);
   }
 
   public void drawOscillatingPoints(ComponentDrawContext context) {
@@ -265,19 +325,20 @@ public class CircuitState implements InstanceData {
   public InstanceState getInstanceState(Component comp) {
     Object factory = comp.getFactory();
     if (factory instanceof InstanceFactory) {
-      return ((InstanceFactory) factory).createInstanceState(this, comp);
+      InstanceStateImpl ret = instanceStates.get(comp);
+      if (ret == null) {
+        ret = (InstanceStateImpl) ((InstanceFactory) factory).createInstanceState(this, comp);
+        InstanceStateImpl old = instanceStates.putIfAbsent(comp, ret);
+        if (old != null) ret = old;
+      }
+      return ret;
     } else {
       throw new RuntimeException("getInstanceState requires instance component");
     }
   }
 
   public InstanceState getInstanceState(Instance instance) {
-    Object factory = instance.getFactory();
-    if (factory instanceof InstanceFactory) {
-      return ((InstanceFactory) factory).createInstanceState(this, instance);
-    } else {
-      throw new RuntimeException("getInstanceState requires instance component");
-    }
+    return getInstanceState(instance.getComponent());
   }
 
   public CircuitState getParentState() {
@@ -305,14 +366,58 @@ public class CircuitState implements InstanceData {
   }
 
   public Value getValue(Location pt) {
-    Value ret = values.get(pt);
+    Value ret = getValueByWire(pt);
     if (ret != null) return ret;
 
-    BitWidth wid = circuit.getWidth(pt);
+    BitWidth wid = currentSnapshot().getWidth(pt);
     return Value.createUnknown(wid);
   }
 
+  /**
+   * Returns the slots for the ends of <code>comp</code> in this state. If <code>slots</code>
+   * is still current it is returned as is, so callers can keep the result and pass it back in
+   * on the next call.
+   */
+  public PortSlots getPortSlots(Component comp, PortSlots slots) {
+    CircuitWires.State s = wireData;
+    CircuitSnapshot snap = currentSnapshot();
+    List<EndData> ends = comp.getEnds();
+    // a reset drops the wire values, but not the bundle map they will be rebuilt from
+    if (slots != null
+        && (s == null || s.bundleMap == slots.bundleMap)
+        && slots.ends == ends
+        && slots.snapshot == snap) {
+      return slots;
+    }
+    return new PortSlots(snap, comp, ends, s);
+  }
+
+  /** Same as getValue() at the location of end <code>index</code>, without hashing it. */
+  public Value getValue(PortSlots slots, int index) {
+    Location pt = slots.points[index];
+    CircuitWires.State s = wireData;
+    Value ret;
+    if (s == null || s.bundleMap != slots.bundleMap) {
+      ret = getValueByWire(pt);
+    } else {
+      int b = slots.bundles[index];
+      ret = b >= 0 ? s.bundle_values[b] : values.get(pt);
+    }
+    if (ret != null) return ret;
+    return Value.createUnknown(slots.snapshot.getWidth(pt));
+  }
+
+  /** Returns whether anything besides the component itself is attached to end index. */
+  public boolean isConnected(PortSlots slots, int index) {
+    return slots.connected[index];
+  }
+
   Value getValueByWire(Location p) {
+    CircuitWires.State s = wireData;
+    if (s != null) {
+      WireBundle b = s.bundleMap.getBundleAt(p);
+      if (b != null) return s.bundle_values[b.id];
+    }
     return values.get(p);
   }
 
@@ -320,6 +425,13 @@ public class CircuitState implements InstanceData {
     return wireData;
   }
 
+  // The snapshot the wire values belong to, or the circuit's latest if they are not set up yet.
+  // Reading the circuit itself would see the editor's changes before the wires do.
+  private CircuitSnapshot currentSnapshot() {
+    CircuitSnapshot ret = snapshot;
+    return ret != null ? ret : circuit.getSnapshot();
+  }
+
   //
   // methods for other classes within package
   //
@@ -331,17 +443,11 @@ public class CircuitState implements InstanceData {
   // private methods
   //
   private void markAllComponentsDirty() {
-    dirtyComponents.addAll(circuit.getNonWires());
+    dirtyComponents.addAll(circuit.getSnapshot().getNonWires());
   }
 
   public void markComponentAsDirty(Component comp) {
-    try {
-      dirtyComponents.add(comp);
-    } catch (RuntimeException e) {
-      CopyOnWriteArraySet<Component> set = new CopyOnWriteArraySet<>();
-      set.add(comp);
-      dirtyComponents = set;
-    }
+    dirtyComponents.add(comp);
   }
 
   public void markComponentsDirty(Collection<Component> comps) {
@@ -354,68 +460,115 @@ public class CircuitState implements InstanceData {
 
   void processDirtyComponents() {
     if (!dirtyComponents.isEmpty()) {
-      // This seeming wasted copy is to avoid ConcurrentModifications
-      // if we used an iterator instead.
-      Object[] toProcess;
-      RuntimeException firstException = null;
-      for (int tries = 4; true; tries--) {
-        try {
-          toProcess = dirtyComponents.toArray();
-          break;
-        } catch (RuntimeException e) {
-          if (firstException == null) firstException = e;
-          if (tries == 0) {
-            toProcess = new Object[0];
-            dirtyComponents = new CopyOnWriteArraySet<>();
-            throw firstException;
-          }
-        }
+      CircuitLevels levels = base != null && base.isLevelized() ? getLevels() : null;
+      if (levels != null) {
+        processDirtyComponentsLevelized(levels);
+      } else {
+        for (Component comp : dirtyComponents.take()) propagateComponent(comp);
       }
-      dirtyComponents.clear();
-      for (Object compObj : toProcess) {
-        if (compObj instanceof Component) {
-          Component comp = (Component) compObj;
-          comp.propagate(this);
-          if (comp.getFactory() instanceof Pin && parentState != null) {
-            // should be propagated in superstate
-            parentComp.propagate(parentState);
-          }
-        }
+    }
+
+    CircuitState[] subs = substates.toArray(new CircuitState[0]);
+    if (subs.length > 1 && base != null && base.isParallel()) {
+      base.processDirtyComponents(subs);
+    } else {
+      for (CircuitState substate : subs) {
+        substate.processDirtyComponents();
       }
     }
+  }
 
-    CircuitState[] subs = new CircuitState[substates.size()];
-    for (CircuitState substate : substates.toArray(subs)) {
-      substate.processDirtyComponents();
+  private void propagateComponent(Component comp) {
+    comp.propagate(this);
+    if (comp.getFactory() instanceof Pin && parentState != null) {
+      // should be propagated in superstate
+      if (base != null && base.isParallel()) {
+        // the subcircuit reads the parent state, and may create its substates; the siblings
+        // running on other workers of parallel propagation do the same
+        synchronized (parentState) {
+          parentComp.propagate(parentState);
+        }
+      } else {
+        parentComp.propagate(parentState);
+      }
     }
   }
 
-  void processDirtyPoints() {
-    HashSet<Location> dirty = new HashSet<>(dirtyPoints);
-    dirtyPoints.clear();
-    if (circuit.wires.isMapVoided()) {
-      for (int i = 3; i >= 0; i--) {
+  /**
+   * Evaluates the dirty gates of this state by increasing level. The outputs of the gates of one
+   * level are given at once and carried through the wires before the next level is looked at, so
+   * each gate is evaluated once, after its inputs have settled. The other components are kept for
+   * last and then propagated as usual, once: an event-driven component must not emit twice for the
+   * same step, as only the first of two such events would be applied.
+   */
+  private void processDirtyComponentsLevelized(CircuitLevels levels) {
+    ArrayList<ArrayList<Component>> byLevel = new ArrayList<>();
+    for (int i = 0; i <= levels.getMaxLevel(); i++) byLevel.add(new ArrayList<>());
+    HashSet<Component> queued = new HashSet<>();
+    LinkedHashSet<Component> others = new LinkedHashSet<>();
+    int done = 0;
+    while (true) {
+      for (Component comp : dirtyComponents.take()) {
+        int level = levels.getLevel(comp);
+        // A gate whose level is done has been marked again only by the change of its own
+        // outputs; its inputs all come from lower levels, which are settled.
+        if (level < 0) others.add(comp);
+        else if (level > done && queued.add(comp)) byLevel.get(level).add(comp);
+      }
+      int next = done + 1;
+      while (next < byLevel.size() && byLevel.get(next).isEmpty()) next++;
+      if (next >= byLevel.size()) break;
+      for (Component comp : byLevel.get(next)) {
+        immediateCause = comp;
         try {
-          dirty.addAll(circuit.wires.points.getSplitLocations());
-          break;
-        } catch (ConcurrentModificationException e) {
-          // try again...
-          try {
-            Thread.sleep(1);
-          } catch (InterruptedException ignored) {
-          }
-          if (i == 0) e.printStackTrace();
+          comp.propagate(this);
+        } finally {
+          immediateCause = null;
         }
       }
+      done = next;
+      propagateDirtyPoints();
     }
-    if (!dirty.isEmpty()) {
-      circuit.wires.propagate(this, dirty);
+    for (Component comp : others) propagateComponent(comp);
+  }
+
+  private CircuitLevels getLevels() {
+    CircuitSnapshot snap = currentSnapshot();
+    if (wireData == null) {
+      // the wires of a fresh state have not run yet; set them up so the first step is levelized too
+      circuit.wires.propagate(this, new HashSet<>(), snap.bundleMap);
+    }
+    CircuitWires.State s = wireData;
+    if (s == null || s.bundleMap != snap.bundleMap || !s.bundleMap.isValid()) return null;
+    CircuitLevels ret = s.bundleMap.levels;
+    if (ret == null) {
+      ret = CircuitLevels.compute(snap);
+      s.bundleMap.levels = ret;
     }
+    return ret;
+  }
 
-    CircuitState[] subs = new CircuitState[substates.size()];
-    for (CircuitState substate : substates.toArray(subs)) {
-      /* TODO: Analyze why this bug happens, e.g. a substate that is null! */
-      if (substate != null) substate.processDirtyPoints();
+  void processDirtyPoints() {
+    propagateDirtyPoints();
+
+    for (CircuitState substate : substates) {
+      substate.processDirtyPoints();
+    }
+  }
+
+  private void propagateDirtyPoints() {
+    if (base != null) {
+      for (Component comp : removedComponents.take()) base.checkComponentEnds(this, comp);
+    }
+    HashSet<Location> dirty = new HashSet<>(dirtyPoints.take());
+    CircuitSnapshot snap = circuit.getSnapshot();
+    if (snap != snapshot) {
+      // the circuit has changed since the last step; bring all of it up to date
+      dirty.addAll(snap.getSplitLocations());
+      snapshot = snap;
+    }
+    if (!dirty.isEmpty()) {
+      circuit.wires.propagate(this, dirty, snap.bundleMap);
     }
   }
 
@@ -441,6 +594,7 @@ public class CircuitState implements InstanceData {
     values.clear();
     dirtyComponents.clear();
     dirtyPoints.clear();
+    removedComponents.clear();
     causes.clear();
     markAllComponentsDirty();
 
@@ -481,11 +635,22 @@ public class CircuitState implements InstanceData {
   }
 
   public void setValue(Location pt, Value val, Component cause, int delay) {
-    if (base != null) base.setValue(this, pt, val, cause, delay);
+    if (base == null) return;
+    if (cause != null && cause == immediateCause) base.setValueNow(this, pt, val, cause);
+    else base.setValue(this, pt, val, cause, delay);
   }
 
   void setValueByWire(Location p, Value v) {
     // for CircuitWires - to set value at point
+    CircuitWires.State s = wireData;
+    if (s != null) {
+      WireBundle b = s.bundleMap.getBundleAt(p);
+      if (b != null) {
+        // a wired point always shares the value of its whole bundle
+        setValueByWire(s, b, v);
+        return;
+      }
+    }
     boolean changed;
     if (v == Value.NIL) {
       Object old = values.remove(p);
@@ -494,22 +659,57 @@ public class CircuitState implements InstanceData {
       Object old = values.put(p, v);
       changed = !v.equals(old);
     }
+    if (changed) pointChanged(p);
+  }
+
+  void setValueByWire(CircuitWires.State s, WireBundle b, Value v) {
+    // for CircuitWires - to set value of all points of a bundle
+    Value old = s.bundle_values[b.id];
+    boolean changed;
+    if (v == Value.NIL) {
+      s.bundle_values[b.id] = null;
+      changed = (old != null && old != Value.NIL);
+    } else {
+      s.bundle_values[b.id] = v;
+      changed = !v.equals(old);
+    }
     if (changed) {
-      boolean found = false;
-      for (Component comp : circuit.getComponents(p)) {
-        if (!(comp instanceof Wire) && !(comp instanceof Splitter)) {
-          found = true;
-          markComponentAsDirty(comp);
-        }
-      }
-      // NOTE: this will cause a double-propagation on components
-      // whose outputs have just changed.
+      for (Location p : b.points) pointChanged(p);
+    }
+  }
 
-      if (found && base != null) base.locationTouched(this, p);
+  private void pointChanged(Location p) {
+    boolean found = false;
+    for (Component comp : currentSnapshot().getComponents(p)) {
+      if (!(comp instanceof Wire) && !(comp instanceof Splitter)) {
+        found = true;
+        markComponentAsDirty(comp);
+      }
     }
+    // NOTE: this will cause a double-propagation on components
+    // whose outputs have just changed.
+
+    if (found && base != null) base.locationTouched(this, p);
   }
 
   void setWireData(CircuitWires.State data) {
+    // Carry the current values over to the new bundles, so that only points
+    // whose value really changes are reported as changed. A bundle only
+    // inherits a value if all its points agreed on it before.
+    CircuitWires.State old = wireData;
+    for (WireBundle b : data.bundleMap.getBundles()) {
+      Value common = null;
+      boolean first = true;
+      for (Location p : b.points) {
+        Value v = old == null ? null : old.getValue(p);
+        Value unwired = values.remove(p);
+        if (v == null) v = unwired;
+        if (first) common = v;
+        else if (common != null && !common.equals(v)) common = null;
+        first = false;
+      }
+      data.bundle_values[b.id] = common;
+    }
     wireData = data;
   }
 
@@ -518,11 +718,10 @@ public class CircuitState implements InstanceData {
     if (temporaryClock != null)
       ret |= temporaryClockValidateOrTick(ticks);
 
-    for (Component clock : circuit.getClocks())
+    for (Component clock : circuit.getSnapshot().getClocks())
       ret |= Clock.tick(this, ticks, clock);
 
-    CircuitState[] subs = new CircuitState[substates.size()];
-    for (CircuitState substate : substates.toArray(subs)) 
+    for (CircuitState substate : substates)
       ret |= substate.toggleClocks(ticks);
     return ret;
   }
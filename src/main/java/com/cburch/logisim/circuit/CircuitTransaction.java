@@ -95,6 +95,13 @@ public abstract class CircuitTransaction {
         }
       }
 
+      // Publish the finished circuits to the simulator before anyone else can change them
+      for (Circuit circuit : modified) {
+        if (circuit.getLocker().getMutator() == mutator) {
+          circuit.publishSnapshot();
+        }
+      }
+
       result = new CircuitTransactionResult(mutator);
       for (Circuit circuit : result.getModifiedCircuits()) {
         circuit.fireEvent(CircuitEvent.TRANSACTION_DONE, result);
@@ -47,15 +47,16 @@ import com.cburch.logisim.util.IteratorUtil;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Stroke;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
 import javax.swing.SwingUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,10 +66,49 @@ class CircuitWires {
   static class BundleMap {
     final HashMap<Location, WireBundle> pointBundles = new HashMap<>();
     final HashSet<WireBundle> bundles = new HashSet<>();
+    int bundleCount = 0;
+    int threadCount = 0;
     boolean isValid = true;
     // NOTE: It would make things more efficient if we also had
     // a set of just the first bundle in each tree.
     HashSet<WidthIncompatibilityData> incompatibilityData = null;
+    // levels of the circuit's gates, computed on first use by the levelized engine
+    volatile CircuitLevels levels = null;
+
+    /**
+     * Numbers the bundles and threads of the finished map densely from zero, so that the values a
+     * CircuitState holds for them can be stored in flat arrays instead of maps.
+     */
+    void assignIds() {
+      bundleCount = 0;
+      threadCount = 0;
+      for (WireBundle b : bundles) {
+        b.id = bundleCount++;
+        if (b.threads != null) {
+          for (WireThread t : b.threads) {
+            if (t.id < 0) t.id = threadCount++;
+          }
+        }
+      }
+    }
+
+    /**
+     * Takes over the bundles of a map computed for part of the circuit, numbering them after the
+     * bundles and threads already here; those keep their numbers, so the values that a
+     * CircuitState holds for them stay where they are.
+     */
+    void addBundles(BundleMap part) {
+      for (WireBundle b : part.bundles) {
+        b.id = bundleCount++;
+        if (b.threads != null) {
+          for (WireThread t : b.threads) {
+            if (t.id < 0) t.id = threadCount++;
+          }
+        }
+      }
+      bundles.addAll(part.bundles);
+      pointBundles.putAll(part.pointBundles);
+    }
 
     void addWidthIncompatibilityData(WidthIncompatibilityData e) {
       if (incompatibilityData == null) {
@@ -127,17 +167,29 @@ class CircuitWires {
 
   static class State {
     final BundleMap bundleMap;
-    final HashMap<WireThread, Value> thr_values = new HashMap<>();
+    final Value[] thr_values; // indexed by WireThread.id
+    final Value[] bundle_values; // indexed by WireBundle.id; null if no value
 
     State(BundleMap bundleMap) {
       this.bundleMap = bundleMap;
+      this.thr_values = new Value[bundleMap.threadCount];
+      this.bundle_values = new Value[bundleMap.bundleCount];
+    }
+
+    private State(State src) {
+      this.bundleMap = src.bundleMap;
+      this.thr_values = src.thr_values.clone();
+      this.bundle_values = src.bundle_values.clone();
     }
 
     @Override
     public Object clone() {
-      State ret = new State(this.bundleMap);
-      ret.thr_values.putAll(this.thr_values);
-      return ret;
+      return new State(this);
+    }
+
+    Value getValue(Location p) {
+      WireBundle b = bundleMap.getBundleAt(p);
+      return b == null ? null : bundle_values[b.id];
     }
   }
 
@@ -198,15 +250,23 @@ class CircuitWires {
   // derived data
   private Bounds bounds = Bounds.EMPTY_BOUNDS;
 
-  private BundleMap masterBundleMap = null;
+  private volatile BundleMap masterBundleMap = null;
+  // the last map computed, and the points touched by the changes made since then; null when
+  // the next map has to be computed from scratch
+  private BundleMap lastBundleMap = null;
+  private HashSet<Location> changedPoints = null;
+  // bumped on every change to the connections, whether or not the map was already void
+  private volatile int voidCount = 0;
+  // the map of the last snapshot taken, for the threads other than AWT
+  private volatile BundleMap publishedBundleMap = null;
+  private final Object buildLock = new Object();
+  private final CircuitSnapshot.Builder snapshots = new CircuitSnapshot.Builder(this);
 
   CircuitWires() {}
 
   //
   // action methods
   //
-  // NOTE: this could be made much more efficient in most cases to
-  // avoid voiding the bundle map.
   /*synchronized*/ boolean add(Component comp) {
     boolean added = true;
     if (comp instanceof Wire) {
@@ -225,14 +285,15 @@ class CircuitWires {
     }
     if (added) {
       points.add(comp);
-      voidBundleMap();
+      if (!(comp instanceof Wire)) snapshots.componentChanged(comp);
+      voidBundleMap(comp);
     }
     return added;
   }
 
   /*synchronized*/ void add(Component comp, EndData end) {
     points.add(comp, end);
-    voidBundleMap();
+    voidBundleMap(end.getLocation());
   }
 
   private boolean addWire(Wire w) {
@@ -247,10 +308,78 @@ class CircuitWires {
 
   // To be called by getBundleMap only
   private void computeBundleMap(BundleMap ret) {
+    connectBundles(ret, wires, tunnels, pulls, splitters);
+    addWidthIncompatibilityData(ret);
+    ret.assignIds();
+  }
+
+  // To be called by getBundleMap only. Computes the bundles that the changes at the given points
+  // can affect, and takes the others over from the previous map. A bundle is affected if it holds
+  // one of the points, or shares a tunnel label or a splitter (and so possibly a thread) with one
+  // that is.
+  private void updateBundleMap(BundleMap old, Set<Location> changed, BundleMap ret) {
+    HashSet<WireBundle> affected = new HashSet<>();
+    HashSet<Location> scope = new HashSet<>(changed);
+    ArrayDeque<Location> queue = new ArrayDeque<>(changed);
+    HashMap<String, ArrayList<Location>> tunnelSets = null;
+    LinkedHashSet<Splitter> scopeSplitters = new LinkedHashSet<>();
+    while (!queue.isEmpty()) {
+      Location p = queue.poll();
+      ArrayList<Location> linked = new ArrayList<>();
+      WireBundle b = old.getBundleAt(p);
+      if (b != null && affected.add(b)) linked.addAll(b.points);
+      for (Component comp : points.getComponents(p)) {
+        if (comp instanceof Splitter) {
+          if (scopeSplitters.add((Splitter) comp)) {
+            for (EndData end : comp.getEnds()) linked.add(end.getLocation());
+          }
+        } else if (comp.getFactory() instanceof Tunnel) {
+          if (tunnelSets == null) tunnelSets = getTunnelSets(tunnels);
+          ArrayList<Location> tunnelSet = tunnelSets.get(getTunnelLabel(comp));
+          if (tunnelSet != null) linked.addAll(tunnelSet);
+        }
+      }
+      for (Location q : linked) {
+        if (scope.add(q)) queue.add(q);
+      }
+    }
+
+    HashSet<Wire> scopeWires = new HashSet<>();
+    ArrayList<Component> scopeTunnels = new ArrayList<>();
+    ArrayList<Component> scopePulls = new ArrayList<>();
+    for (Location p : scope) {
+      scopeWires.addAll(points.getWires(p));
+      for (Component comp : points.getNonWires(p)) {
+        Object factory = comp.getFactory();
+        if (factory instanceof Tunnel && tunnels.contains(comp)) scopeTunnels.add(comp);
+        else if (factory instanceof PullResistor && pulls.contains(comp)) scopePulls.add(comp);
+      }
+    }
+    BundleMap part = new BundleMap();
+    connectBundles(part, scopeWires, scopeTunnels, scopePulls, scopeSplitters);
+
+    ret.bundles.addAll(old.bundles);
+    ret.pointBundles.putAll(old.pointBundles);
+    for (WireBundle b : affected) {
+      ret.bundles.remove(b);
+      for (Location p : b.points) ret.pointBundles.remove(p);
+    }
+    ret.bundleCount = old.bundleCount;
+    ret.threadCount = old.threadCount;
+    ret.addBundles(part);
+    addWidthIncompatibilityData(ret);
+  }
+
+  private void connectBundles(
+      BundleMap ret,
+      Collection<Wire> wires,
+      Collection<Component> tunnels,
+      Collection<Component> pulls,
+      Collection<Splitter> splitters) {
     // create bundles corresponding to wires and tunnels
-    connectWires(ret);
-    connectTunnels(ret);
-    connectPullResistors(ret);
+    connectWires(ret, wires);
+    connectTunnels(ret, tunnels);
+    connectPullResistors(ret, pulls);
 
     // merge any WireBundle objects united by previous steps
     for (Iterator<WireBundle> it = ret.getBundles().iterator(); it.hasNext(); ) {
@@ -343,8 +472,11 @@ class CircuitWires {
       }
     }
 
-    // All threads are sewn together! Compute the exception set before
-    // leaving
+  }
+
+  // All threads are sewn together! Compute the exception set before
+  // leaving
+  private void addWidthIncompatibilityData(BundleMap ret) {
     Collection<WidthIncompatibilityData> exceptions = points.getWidthIncompatibilityData();
     if (exceptions != null && exceptions.size() > 0) {
       for (WidthIncompatibilityData wid : exceptions) {
@@ -357,7 +489,7 @@ class CircuitWires {
     }
   }
 
-  private void connectPullResistors(BundleMap ret) {
+  private void connectPullResistors(BundleMap ret, Collection<Component> pulls) {
     for (Component comp : pulls) {
       Location loc = comp.getEnd(0).getLocation();
       WireBundle b = ret.getBundleAt(loc);
@@ -371,17 +503,26 @@ class CircuitWires {
     }
   }
 
-  private void connectTunnels(BundleMap ret) {
-    // determine the sets of tunnels
+  // determine the sets of tunnels
+  private static HashMap<String, ArrayList<Location>> getTunnelSets(
+      Collection<Component> tunnels) {
     HashMap<String, ArrayList<Location>> tunnelSets = new HashMap<>();
     for (Component comp : tunnels) {
-      String label = comp.getAttributeSet().getValue(StdAttr.LABEL);
-      label = label.trim();
+      String label = getTunnelLabel(comp);
       if (!label.equals("")) {
         ArrayList<Location> tunnelSet = tunnelSets.computeIfAbsent(label, k -> new ArrayList<>(3));
         tunnelSet.add(comp.getLocation());
       }
     }
+    return tunnelSets;
+  }
+
+  private static String getTunnelLabel(Component comp) {
+    return comp.getAttributeSet().getValue(StdAttr.LABEL).trim();
+  }
+
+  private void connectTunnels(BundleMap ret, Collection<Component> tunnels) {
+    HashMap<String, ArrayList<Location>> tunnelSets = getTunnelSets(tunnels);
 
     // now connect the bundles that are tunnelled together
     for (ArrayList<Location> tunnelSet : tunnelSets.values()) {
@@ -413,7 +554,7 @@ class CircuitWires {
     }
   }
 
-  private void connectWires(BundleMap ret) {
+  private void connectWires(BundleMap ret, Collection<Wire> wires) {
     // make a WireBundle object for each tree of connected wires
     for (Wire w : wires) {
       WireBundle b0 = ret.getBundleAt(w.e0);
@@ -433,7 +574,16 @@ class CircuitWires {
     }
   }
 
-  void draw(ComponentDrawContext context, Collection<Component> hidden) {
+  /**
+   * Draws the wires and split points. When <code>visible</code> is given only those wires are
+   * drawn, and only split points inside <code>clip</code> when that is given.
+   */
+  void draw(
+      ComponentDrawContext context,
+      Collection<Component> hidden,
+      Collection<Wire> visible,
+      Bounds clip) {
+    Collection<Wire> drawn = visible == null ? wires : visible;
     boolean showState = context.getShowState();
     CircuitState state = context.getCircuitState();
     Graphics2D g = (Graphics2D) context.getGraphics();
@@ -444,7 +594,7 @@ class CircuitWires {
     BundleMap bmap = getBundleMap();
     boolean isValid = bmap.isValid();
     if (hidden == null || hidden.size() == 0) {
-      for (Wire w : wires) {
+      for (Wire w : drawn) {
         Location s = w.e0;
         Location t = w.e1;
         WireBundle wb = bmap.getBundleAt(s);
@@ -492,6 +642,7 @@ class CircuitWires {
       }
 
       for (Location loc : points.getSplitLocations()) {
+        if (clip != null && !clip.contains(loc)) continue;
         if (points.getComponentCount(loc) > 2) {
           WireBundle wb = bmap.getBundleAt(loc);
           if (wb != null) {
@@ -521,7 +672,7 @@ class CircuitWires {
         }
       }
     } else {
-      for (Wire w : wires) {
+      for (Wire w : drawn) {
         if (!hidden.contains(w)) {
           Location s = w.e0;
           Location t = w.e1;
@@ -550,6 +701,7 @@ class CircuitWires {
       // the problem is minor, and hidden only exists for a short
       // while at a time anway.
       for (Location loc : points.getSplitLocations()) {
+        if (clip != null && !clip.contains(loc)) continue;
         if (points.getComponentCount(loc) > 2) {
           int icount = 0;
           for (Component comp : points.getComponents(loc)) {
@@ -585,44 +737,69 @@ class CircuitWires {
   //	getBundleMap();
   // }
 
-  // There are only two threads that need to use the bundle map, I think:
-  // the AWT event thread, and the simulation worker thread.
-  // AWT does modifications to the components and wires, then voids the
-  // masterBundleMap, and eventually recomputes a new map (if needed) during
-  // painting. AWT sometimes locks a splitter, then changes components and
-  // wires.
-  // Computing a new bundle map requires both locking splitters and touching
-  // the components and wires, so to avoid deadlock, only the AWT should
-  // create the new bundle map.
-
-  /*synchronized*/ private BundleMap getBundleMap() {
-    if (SwingUtilities.isEventDispatchThread()) {
-      // AWT event thread.
-      if (masterBundleMap != null) return masterBundleMap;
+  // The AWT event thread builds a new map when it needs one, typically while painting after a
+  // change. The simulator never does: it works on the map of the circuit's last snapshot (see
+  // takeSnapshot), which the transaction that made a change publishes before it releases its
+  // locks. Other threads take the last published map, so none of them waits for the AWT thread.
+
+  /*synchronized*/ BundleMap getBundleMap() {
+    BundleMap master = masterBundleMap;
+    if (master != null) return master;
+    if (!SwingUtilities.isEventDispatchThread()) {
+      BundleMap published = publishedBundleMap;
+      if (published != null) return published;
+    }
+    return buildBundleMap();
+  }
+
+  // Builds the map for the connections as they are now. Builds are serialized, since they use
+  // the splitters' wire data as scratch space.
+  private BundleMap buildBundleMap() {
+    synchronized (buildLock) {
+      BundleMap master = masterBundleMap;
+      if (master != null) return master;
       BundleMap ret = new BundleMap();
+      BundleMap last;
+      Set<Location> changed;
+      int count;
+      synchronized (this) {
+        count = voidCount;
+        last = lastBundleMap;
+        changed = changedPoints;
+        lastBundleMap = null;
+        changedPoints = null;
+      }
       try {
-        computeBundleMap(ret);
+        if (last != null && changed != null && !isWorthRenumbering(last)) {
+          updateBundleMap(last, changed, ret);
+        } else {
+          computeBundleMap(ret);
+        }
+        synchronized (this) {
+          // a change made meanwhile (at startup, by another thread) was not recorded
+          if (voidCount == count) lastBundleMap = ret;
+        }
         masterBundleMap = ret;
       } catch (Exception t) {
         ret.invalidate();
         logger.error("{}", t.getLocalizedMessage());
       }
       return ret;
-    } else {
-      // Simulation thread.
-      try {
-        final BundleMap[] ret = new BundleMap[1];
-        SwingUtilities.invokeAndWait(
-            () -> ret[0] = getBundleMap());
-        return ret[0];
-      } catch (Exception e) {
-        BundleMap ret = new BundleMap();
-        ret.invalidate();
-        return ret;
-      }
     }
   }
 
+  // Takes a snapshot of the connections, with the given components, for the simulator. The
+  // caller must keep the circuit from changing meanwhile. The snapshot is built from the last one
+  // taken and the changes made since, which costs in proportion to what changed.
+  CircuitSnapshot takeSnapshot(Set<Component> nonWires, List<Component> clocks) {
+    // read first, so that a change made while the map is built leaves the snapshot stale
+    int count = voidCount;
+    BundleMap map = buildBundleMap();
+    CircuitSnapshot ret = snapshots.build(count, map, nonWires, clocks);
+    publishedBundleMap = map;
+    return ret;
+  }
+
   Iterator<? extends Component> getComponents() {
     return IteratorUtil.createJoinedIterator(splitters.iterator(), wires.iterator());
   }
@@ -702,18 +879,15 @@ class CircuitWires {
   //
   // query methods
   //
-  boolean isMapVoided() {
-    return masterBundleMap == null;
+  int getVoidCount() {
+    return voidCount;
   }
 
   //
   // utility methods
   //
-  void propagate(CircuitState circState, Set<Location> points) {
-    BundleMap map = getBundleMap();
-    CopyOnWriteArraySet<WireThread> dirtyThreads =
-        new CopyOnWriteArraySet<>(); // affected
-    // threads
+  void propagate(CircuitState circState, Set<Location> points, BundleMap map) {
+    LinkedHashSet<WireThread> dirtyThreads = new LinkedHashSet<>(); // affected threads
 
     // get state, or create a new one if current state is outdated
     State s = circState.getWireData();
@@ -738,14 +912,7 @@ class CircuitWires {
         WireThread[] th = pb.threads;
         if (!pb.isValid() || th == null) {
           // immediately propagate NILs across invalid bundles
-          CopyOnWriteArraySet<Location> pbPoints = pb.points;
-          if (pbPoints == null) {
-            circState.setValueByWire(p, Value.NIL);
-          } else {
-            for (Location loc2 : pbPoints) {
-              circState.setValueByWire(loc2, Value.NIL);
-            }
-          }
+          circState.setValueByWire(s, pb, Value.NIL);
         } else {
           dirtyThreads.addAll(Arrays.asList(th));
         }
@@ -755,26 +922,24 @@ class CircuitWires {
     if (dirtyThreads.isEmpty()) return;
 
     // determine values of affected threads
-    HashSet<ThreadBundle> bundles = new HashSet<>();
+    LinkedHashSet<WireBundle> bundles = new LinkedHashSet<>();
     for (WireThread t : dirtyThreads) {
       Value v = getThreadValue(circState, t);
-      s.thr_values.put(t, v);
-      bundles.addAll(t.getBundles());
+      s.thr_values[t.id] = v;
+      for (ThreadBundle tb : t.getBundles()) bundles.add(tb.b);
     }
 
     // now propagate values through circuit
-    for (ThreadBundle tb : bundles) {
-      WireBundle b = tb.b;
-
+    for (WireBundle b : bundles) {
       Value bv = null;
       if (!b.isValid() || b.threads == null) {// do nothing
       } else if (b.threads.length == 1) {
-        bv = s.thr_values.get(b.threads[0]);
+        bv = s.thr_values[b.threads[0].id];
       } else {
         Value[] tvs = new Value[b.threads.length];
         boolean tvs_valid = true;
         for (int i = 0; i < tvs.length; i++) {
-          Value tv = s.thr_values.get(b.threads[i]);
+          Value tv = s.thr_values[b.threads[i].id];
           if (tv == null) {
             tvs_valid = false;
             break;
@@ -785,9 +950,7 @@ class CircuitWires {
       }
 
       if (bv != null) {
-        for (Location p : b.points) {
-          circState.setValueByWire(p, bv);
-        }
+        circState.setValueByWire(s, b, bv);
       }
     }
   }
@@ -836,12 +999,13 @@ class CircuitWires {
       }
     }
     points.remove(comp);
-    voidBundleMap();
+    if (!(comp instanceof Wire)) snapshots.componentChanged(comp);
+    voidBundleMap(comp);
   }
 
   /*synchronized*/ void remove(Component comp, EndData end) {
     points.remove(comp, end);
-    voidBundleMap();
+    voidBundleMap(end.getLocation());
   }
 
   private void removeWire(Wire w) {
@@ -860,7 +1024,8 @@ class CircuitWires {
   /*synchronized*/ void replace(Component comp, EndData oldEnd, EndData newEnd) {
     points.remove(comp, oldEnd);
     points.add(comp, newEnd);
-    voidBundleMap();
+    voidBundleMap(oldEnd.getLocation());
+    voidBundleMap(newEnd.getLocation());
   }
 
   //
@@ -870,6 +1035,37 @@ class CircuitWires {
     // This should really only be called by AWT thread, but main() also
     // calls it during startup. It should not be called by the simulation
     // thread.
+    synchronized (this) {
+      changedPoints = null;
+      lastBundleMap = null;
+      voidCount++;
+    }
     masterBundleMap = null;
   }
+
+  // voids the map for a change confined to the given points, so that the next map can be
+  // derived from the last one
+  private void voidBundleMap(Location... locs) {
+    synchronized (this) {
+      if (lastBundleMap != null) {
+        if (changedPoints == null) changedPoints = new HashSet<>();
+        changedPoints.addAll(Arrays.asList(locs));
+      }
+      voidCount++;
+    }
+    masterBundleMap = null;
+  }
+
+  private void voidBundleMap(Component comp) {
+    List<EndData> ends = comp.getEnds();
+    Location[] locs = new Location[ends.size()];
+    for (int i = 0; i < locs.length; i++) locs[i] = ends.get(i).getLocation();
+    voidBundleMap(locs);
+  }
+
+  // Bundles and threads keep their numbers across updates, so the numbers of the ones dropped
+  // are lost; once most of them are, it is time for a map computed from scratch.
+  private static boolean isWorthRenumbering(BundleMap map) {
+    return map.bundleCount > 2 * map.getBundles().size() + 64;
+  }
 }
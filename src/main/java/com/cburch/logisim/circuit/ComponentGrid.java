@@ -0,0 +1,249 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Bounds;
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Uniform grid over the components and wires of a circuit, used so that hit-testing and
+ * painting only look at the components near the area of interest.
+ *
+ * <p>Each component is filed under every cell its bounds touch. Bounds that depend on a
+ * <code>Graphics</code> (component labels) are only known once a query supplies one, so
+ * components are first filed by their plain bounds and widened on the next such query.
+ * A component whose bounds or label change fires componentInvalidated, upon which the circuit
+ * has the grid re-file that component alone.
+ */
+class ComponentGrid {
+  private static final int CELL_SHIFT = 7; // 128 x 128 pixel cells
+
+  private static final Comparator<Entry> ORDER =
+      (a, b) -> a.wire != b.wire ? (a.wire ? 1 : -1) : Long.compare(a.seq, b.seq);
+
+  private static class Entry {
+    final Component comp;
+    final boolean wire;
+    final long seq;
+    Bounds bounds;
+    Bounds graphicsBounds; // null until computed with a Graphics
+    boolean removed;
+    int cx0, cy0, cx1, cy1; // cells this entry is filed under
+    int mark;
+
+    Entry(Component comp, long seq) {
+      this.comp = comp;
+      this.wire = comp instanceof Wire;
+      this.seq = seq;
+    }
+  }
+
+  private final HashMap<Long, ArrayList<Entry>> cells = new HashMap<>();
+  private final HashMap<Component, Entry> entries = new HashMap<>();
+  private final ArrayList<Entry> pending = new ArrayList<>();
+  private long nextSeq = 0;
+  private int mark = 0;
+  private int componentCount = 0;
+  private Bounds plainUnion = null;
+  private Bounds graphicsUnion = null;
+
+  synchronized void add(Component comp) {
+    if (entries.containsKey(comp)) return;
+    Entry e = new Entry(comp, nextSeq++);
+    entries.put(comp, e);
+    e.bounds = comp.getBounds();
+    if (!e.wire) {
+      componentCount++;
+      pending.add(e);
+    }
+    file(e);
+    unionsChanged();
+  }
+
+  synchronized void remove(Component comp) {
+    Entry e = entries.remove(comp);
+    if (e == null) return;
+    unfile(e);
+    e.removed = true;
+    if (!e.wire) componentCount--;
+    unionsChanged();
+  }
+
+  synchronized void clear() {
+    cells.clear();
+    entries.clear();
+    pending.clear();
+    componentCount = 0;
+    unionsChanged();
+  }
+
+  /** Re-reads the bounds of a component after it reported a change. */
+  synchronized void invalidate(Component comp) {
+    Entry e = entries.get(comp);
+    if (e == null || e.wire) return;
+    refresh(e);
+    unionsChanged();
+  }
+
+  /**
+   * Returns every component whose bounds may intersect <code>area</code>: the non-wire
+   * components in insertion order, followed by the wires. When <code>g</code> is given, label
+   * bounds are taken into account as well.
+   */
+  synchronized List<Component> find(Bounds area, Graphics g) {
+    validate(g);
+    ArrayList<Entry> found = new ArrayList<>();
+    int stamp = ++mark;
+    int cx0 = area.getX() >> CELL_SHIFT;
+    int cy0 = area.getY() >> CELL_SHIFT;
+    int cx1 = (area.getX() + area.getWidth()) >> CELL_SHIFT;
+    int cy1 = (area.getY() + area.getHeight()) >> CELL_SHIFT;
+    if ((long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1) > entries.size()) {
+      for (Entry e : entries.values()) {
+        if (e.cx0 <= cx1 && cx0 <= e.cx1 && e.cy0 <= cy1 && cy0 <= e.cy1) found.add(e);
+      }
+    } else {
+      for (int cx = cx0; cx <= cx1; cx++) {
+        for (int cy = cy0; cy <= cy1; cy++) {
+          ArrayList<Entry> cell = cells.get(key(cx, cy));
+          if (cell == null) continue;
+          for (Entry e : cell) {
+            if (e.mark != stamp) {
+              e.mark = stamp;
+              found.add(e);
+            }
+          }
+        }
+      }
+    }
+    found.sort(ORDER);
+    ArrayList<Component> ret = new ArrayList<>(found.size());
+    for (Entry e : found) ret.add(e.comp);
+    return ret;
+  }
+
+  /**
+   * Returns the union of the bounds of all non-wire components, with labels included when
+   * <code>g</code> is given, or <code>null</code> if there are no such components.
+   */
+  synchronized Bounds getComponentBounds(Graphics g) {
+    validate(g);
+    if (componentCount == 0) return null;
+    if (g == null) {
+      if (plainUnion == null) plainUnion = union(false);
+      return plainUnion;
+    } else {
+      if (graphicsUnion == null) graphicsUnion = union(true);
+      return graphicsUnion;
+    }
+  }
+
+  private Bounds union(boolean useGraphics) {
+    int xMin = Integer.MAX_VALUE;
+    int yMin = Integer.MAX_VALUE;
+    int xMax = Integer.MIN_VALUE;
+    int yMax = Integer.MIN_VALUE;
+    for (Entry e : entries.values()) {
+      if (e.wire) continue;
+      Bounds bds = useGraphics ? e.graphicsBounds : e.bounds;
+      if (useGraphics && (bds == null || bds == Bounds.EMPTY_BOUNDS)) continue;
+      int x0 = bds.getX();
+      int y0 = bds.getY();
+      xMin = Math.min(xMin, x0);
+      yMin = Math.min(yMin, y0);
+      xMax = Math.max(xMax, x0 + bds.getWidth());
+      yMax = Math.max(yMax, y0 + bds.getHeight());
+    }
+    if (xMin > xMax || yMin > yMax) return Bounds.EMPTY_BOUNDS;
+    return Bounds.create(xMin, yMin, xMax - xMin, yMax - yMin);
+  }
+
+  private void validate(Graphics g) {
+    if (g != null && !pending.isEmpty()) {
+      for (Entry e : pending) {
+        if (e.removed) continue;
+        Bounds bds = e.comp.getBounds(g);
+        e.graphicsBounds = bds == null ? Bounds.EMPTY_BOUNDS : bds;
+        unfile(e);
+        file(e);
+      }
+      pending.clear();
+      graphicsUnion = null;
+    }
+  }
+
+  private void refresh(Entry e) {
+    e.bounds = e.comp.getBounds();
+    if (e.graphicsBounds != null) {
+      e.graphicsBounds = null;
+      pending.add(e);
+    }
+    unfile(e);
+    file(e);
+  }
+
+  private void unionsChanged() {
+    plainUnion = null;
+    graphicsUnion = null;
+  }
+
+  private void file(Entry e) {
+    Bounds bds = e.bounds == null ? Bounds.EMPTY_BOUNDS : e.bounds;
+    if (e.graphicsBounds != null) bds = bds.add(e.graphicsBounds);
+    e.cx0 = bds.getX() >> CELL_SHIFT;
+    e.cy0 = bds.getY() >> CELL_SHIFT;
+    e.cx1 = (bds.getX() + bds.getWidth()) >> CELL_SHIFT;
+    e.cy1 = (bds.getY() + bds.getHeight()) >> CELL_SHIFT;
+    for (int cx = e.cx0; cx <= e.cx1; cx++) {
+      for (int cy = e.cy0; cy <= e.cy1; cy++) {
+        cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>(4)).add(e);
+      }
+    }
+  }
+
+  private void unfile(Entry e) {
+    for (int cx = e.cx0; cx <= e.cx1; cx++) {
+      for (int cy = e.cy0; cy <= e.cy1; cy++) {
+        Long k = key(cx, cy);
+        ArrayList<Entry> cell = cells.get(k);
+        if (cell == null) continue;
+        cell.remove(e);
+        if (cell.isEmpty()) cells.remove(k);
+      }
+    }
+  }
+
+  private static long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xffffffffL);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The components or points of a CircuitState that wait to be propagated. Adding an element that is
+ * already waiting does nothing, and the elements are handed out in the order they were first added.
+ * Any thread may add elements (the GUI pokes inputs while the simulator runs) without locking, and
+ * at constant cost.
+ */
+class DirtyQueue<E> {
+  // An element is waiting if it is in the set; the queue gives the order, and may hold elements
+  // that have been removed since, which are skipped.
+  private final Set<E> waiting = ConcurrentHashMap.newKeySet();
+  private final ConcurrentLinkedQueue<E> order = new ConcurrentLinkedQueue<>();
+
+  void add(E elt) {
+    if (waiting.add(elt)) order.add(elt);
+  }
+
+  void addAll(Collection<? extends E> elts) {
+    for (E elt : elts) add(elt);
+  }
+
+  void addAll(DirtyQueue<? extends E> other) {
+    for (E elt : other.order) {
+      if (other.waiting.contains(elt)) add(elt);
+    }
+  }
+
+  void clear() {
+    waiting.clear();
+    order.clear();
+  }
+
+  boolean isEmpty() {
+    return waiting.isEmpty();
+  }
+
+  void remove(E elt) {
+    waiting.remove(elt);
+  }
+
+  /**
+   * Removes and returns the waiting elements. An element added again afterwards, even while the
+   * returned ones are processed, waits for the next call.
+   */
+  ArrayList<E> take() {
+    ArrayList<E> ret = new ArrayList<>();
+    E elt;
+    while ((elt = order.poll()) != null) {
+      if (waiting.remove(elt)) ret.add(elt);
+    }
+    return ret;
+  }
+}
@@ -37,31 +37,84 @@ import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.file.Options;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.PriorityQueue;
+import java.util.LinkedHashSet;
 import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Propagator {
-  private static class ComponentPoint {
-    final Component cause;
-    final Location loc;
+  /**
+   * Set of (state, cause, location) triples already handled during the current clock tick. It is an
+   * open-addressing table whose slots are invalidated by bumping a stamp, so that clearing it between
+   * ticks costs nothing and no objects are allocated once it has grown to its working size.
+   */
+  private static class HandledSet {
+    private CircuitState[] states;
+    private Component[] causes;
+    private Location[] locs;
+    private int[] stamps;
+    private int mask;
+    private int stamp = 1;
+    private int size = 0;
+
+    HandledSet(int capacity) {
+      allocate(capacity);
+    }
 
-    public ComponentPoint(Component cause, Location loc) {
-      this.cause = cause;
-      this.loc = loc;
+    private void allocate(int capacity) {
+      states = new CircuitState[capacity];
+      causes = new Component[capacity];
+      locs = new Location[capacity];
+      stamps = new int[capacity];
+      mask = capacity - 1;
     }
 
-    @Override
-    public boolean equals(Object other) {
-      if (!(other instanceof ComponentPoint)) return false;
-      ComponentPoint o = (ComponentPoint) other;
-      return this.cause.equals(o.cause) && this.loc.equals(o.loc);
+    private static int hash(CircuitState state, Component cause, Location loc) {
+      int h = (state.hashCode() * 31 + cause.hashCode()) * 31 + loc.hashCode();
+      return h ^ (h >>> 16);
     }
 
-    @Override
-    public int hashCode() {
-      return 31 * cause.hashCode() + loc.hashCode();
+    void clear() {
+      size = 0;
+      if (++stamp == 0) {
+        Arrays.fill(stamps, 0);
+        stamp = 1;
+      }
+    }
+
+    /** Returns false if the triple was already added since the last call to clear. */
+    boolean add(CircuitState state, Component cause, Location loc) {
+      int i = hash(state, cause, loc) & mask;
+      while (stamps[i] == stamp) {
+        if (states[i] == state && causes[i].equals(cause) && locs[i].equals(loc)) return false;
+        i = (i + 1) & mask;
+      }
+      stamps[i] = stamp;
+      states[i] = state;
+      causes[i] = cause;
+      locs[i] = loc;
+      if (++size * 2 > stamps.length) grow();
+      return true;
+    }
+
+    private void grow() {
+      CircuitState[] oldStates = states;
+      Component[] oldCauses = causes;
+      Location[] oldLocs = locs;
+      int[] oldStamps = stamps;
+      allocate(oldStamps.length * 2);
+      for (int j = 0; j < oldStamps.length; j++) {
+        if (oldStamps[j] != stamp) continue;
+        int i = hash(oldStates[j], oldCauses[j], oldLocs[j]) & mask;
+        while (stamps[i] == stamp) i = (i + 1) & mask;
+        stamps[i] = stamp;
+        states[i] = oldStates[j];
+        causes[i] = oldCauses[j];
+        locs[i] = oldLocs[j];
+      }
     }
   }
 
@@ -80,27 +133,56 @@ public class Propagator {
         e.getSource().removeAttributeListener(this);
       } else if (e.getAttribute().equals(Options.ATTR_SIM_RAND)) {
         p.updateRandomness();
+      } else if (e.getAttribute().equals(Options.ATTR_SIM_PARALLEL)) {
+        p.updateParallelism();
+      } else if (e.getAttribute().equals(Options.ATTR_SIM_ENGINE)) {
+        p.updateEngine();
       }
     }
   }
 
-  static class SetData implements Comparable<SetData> {
-    final int time;
-    final int serialNumber;
-    final CircuitState state; // state of circuit containing component
-    final Component cause; // component emitting the value
-    final Location loc; // the location at which value is emitted
+  /** A value emitted on a worker thread, waiting to be handed to setValue in sequential order. */
+  private static class DeferredValue {
+    final CircuitState state;
+    final Location loc;
+    final Value val;
+    final Component cause;
+    final int delay;
+
+    DeferredValue(CircuitState state, Location loc, Value val, Component cause, int delay) {
+      this.state = state;
+      this.loc = loc;
+      this.val = val;
+      this.cause = cause;
+      this.delay = delay;
+    }
+  }
+
+  static class SetData {
+    int time;
+    int serialNumber;
+    CircuitState state; // state of circuit containing component
+    Component cause; // component emitting the value
+    Location loc; // the location at which value is emitted
     Value val; // value being emitted
-    SetData next = null;
+    SetData next = null; // next cause at the same location
+    SetData nextEvent = null; // next pending event in the same timing wheel bucket
 
     private SetData(
         int time, int serialNumber, CircuitState state, Location loc, Component cause, Value val) {
+      init(time, serialNumber, state, loc, cause, val);
+    }
+
+    private void init(
+        int time, int serialNumber, CircuitState state, Location loc, Component cause, Value val) {
       this.time = time;
       this.serialNumber = serialNumber;
       this.state = state;
       this.cause = cause;
       this.loc = loc;
       this.val = val;
+      this.next = null;
+      this.nextEvent = null;
     }
 
     public SetData cloneFor(CircuitState newState) {
@@ -113,14 +195,6 @@ public class Propagator {
       return ret;
     }
 
-    public int compareTo(SetData o) {
-      // Yes, these subtractions may overflow. This is intentional, as it
-      // avoids potential wraparound problems as the counters increment.
-      int ret = this.time - o.time;
-      if (ret != 0) return ret;
-      return this.serialNumber - o.serialNumber;
-    }
-
     @Override
     public String toString() {
       return loc + ":" + val + "(" + cause + ")";
@@ -151,12 +225,55 @@ public class Propagator {
    */
   private volatile int simRandomShift;
 
-  private final PriorityQueue<SetData> toProcess = new PriorityQueue<>();
+  /**
+   * When set, the subcircuit states below a circuit state are processed concurrently. Each worker
+   * collects the values it emits in its own list (see deferredValues), and these lists are replayed
+   * in the order the sequential walk would have produced them, so serial numbers and delay noise,
+   * and thus the simulation results, are the same as when propagating on a single thread.
+   */
+  private volatile boolean parallelPropagation;
+
+  // components that want to act once all the components of a step have been processed
+  private final LinkedHashSet<Runnable> stepEndTasks = new LinkedHashSet<>();
+
+  private static final ThreadLocal<ArrayList<DeferredValue>> deferredValues = new ThreadLocal<>();
+
+  /**
+   * When set, each circuit state evaluates its combinational gates in topological order, giving
+   * their outputs at once instead of through timed events (see CircuitLevels). Gates then settle
+   * within a single step and are evaluated once per change of their inputs' cone, but the transient
+   * glitches of the event-driven model are no longer visible.
+   */
+  private volatile boolean levelized;
+
+  /** Initial number of buckets of the timing wheel; must be a power of two. */
+  private static final int WHEEL_INITIAL_SIZE = 64;
+
+  /** Maximum number of spent SetData nodes kept around for reuse. */
+  private static final int MAX_FREE_NODES = 4096;
+
+  /*
+   * Pending events are kept in a timing wheel: bucket (time & wheelMask) holds a FIFO list of the
+   * events scheduled at that time, linked through SetData.nextEvent. Every pending event lies in
+   * (clock, clock + wheelHead.length), so a bucket never mixes different times, and since events
+   * are appended as they are created each bucket stays ordered by serial number. The wheel is
+   * enlarged whenever a delay would not fit.
+   */
+  private SetData[] wheelHead = new SetData[WHEEL_INITIAL_SIZE];
+  private SetData[] wheelTail = new SetData[WHEEL_INITIAL_SIZE];
+  private int wheelMask = WHEEL_INITIAL_SIZE - 1;
+  private int pendingEvents = 0;
+  private final HandledSet handled = new HandledSet(256);
+  private SetData freeNodes = null;
+  private int freeNodeCount = 0;
   private int clock = 0;
   private boolean isOscillating = false;
   private boolean oscAdding = false;
   private PropagationPoints oscPoints = new PropagationPoints();
   private int halfClockCycles = 0;
+  // events applied from the wheel, and values set by levelized gates (possibly from workers)
+  private long eventCount = 0;
+  private final LongAdder immediateCount = new LongAdder();
   private final Random noiseSource = new Random();
   private int noiseCount = 0;
 
@@ -170,6 +287,8 @@ public class Propagator {
     Listener l = new Listener(this);
     root.getProject().getOptions().getAttributeSet().addAttributeListener(l);
     updateRandomness();
+    updateParallelism();
+    updateEngine();
   }
 
   private SetData addCause(CircuitState state, SetData head, SetData data) {
@@ -237,12 +356,21 @@ public class Propagator {
     return halfClockCycles;
   }
 
+  /**
+   * Returns how many values this propagator has applied to points so far, counting both the events
+   * taken from the wheel and the values set directly by levelized gates. Events superseded within
+   * the same clock tick are not counted.
+   */
+  public long getEventCount() {
+    return eventCount + immediateCount.sum();
+  }
+
   public boolean isOscillating() {
     return isOscillating;
   }
 
   boolean isPending() {
-    return !toProcess.isEmpty();
+    return pendingEvents > 0;
   }
 
   /*
@@ -274,7 +402,12 @@ public class Propagator {
    */
 
   void locationTouched(CircuitState state, Location loc) {
-    if (oscAdding) oscPoints.add(state, loc);
+    if (oscAdding) {
+      // the levelized engine may run the wires of several states on parallel workers
+      synchronized (this) {
+        oscPoints.add(state, loc);
+      }
+    }
   }
 
   public boolean propagate() {
@@ -285,11 +418,12 @@ public class Propagator {
     oscPoints.clear();
     root.processDirtyPoints();
     root.processDirtyComponents();
+    runStepEndTasks();
 
     int oscThreshold = simLimit;
     int logThreshold = 3 * oscThreshold / 4;
     int iters = 0;
-    while (!toProcess.isEmpty()) {
+    while (pendingEvents > 0) {
       if (iters > 0 && propListener != null)
         propListener.propagationInProgress(propEvent);
       iters++;
@@ -335,7 +469,17 @@ public class Propagator {
 
   void reset() {
     halfClockCycles = 0;
-    toProcess.clear();
+    for (int i = 0; i < wheelHead.length; i++) {
+      SetData data = wheelHead[i];
+      wheelHead[i] = null;
+      wheelTail[i] = null;
+      while (data != null) {
+        SetData nextEvent = data.nextEvent;
+        recycle(data);
+        data = nextEvent;
+      }
+    }
+    pendingEvents = 0;
     root.reset();
     isOscillating = false;
   }
@@ -345,6 +489,13 @@ public class Propagator {
   //
   void setValue(CircuitState state, Location pt, Value val, Component cause, int delay) {
     if (cause instanceof Wire || cause instanceof Splitter) return;
+    if (parallelPropagation) {
+      ArrayList<DeferredValue> deferred = deferredValues.get();
+      if (deferred != null) {
+        deferred.add(new DeferredValue(state, pt, val, cause, delay));
+        return;
+      }
+    }
     if (delay <= 0) {
       delay = 1;
     }
@@ -362,7 +513,7 @@ public class Propagator {
         }
       }
     }
-    toProcess.add(new SetData(clock + delay, setDataSerialNumber, state, pt, cause, val));
+    schedule(obtain(clock + delay, setDataSerialNumber, state, pt, cause, val));
     /*
      * DEBUGGING - comment out Simulator.log(clock + ": set " + pt + " in "
      * + state + " to " + val + " by " + cause + " after " + delay); //
@@ -371,12 +522,69 @@ public class Propagator {
     setDataSerialNumber++;
   }
 
+  boolean isLevelized() {
+    return levelized;
+  }
+
+  /**
+   * Gives a point the value a levelized gate emits, right away rather than after the gate's delay.
+   * This leaves the event wheel alone, so the workers of parallel propagation may call it for the
+   * state they are working on.
+   */
+  void setValueNow(CircuitState state, Location pt, Value val, Component cause) {
+    SetData data = new SetData(clock, 0, state, pt, cause, val);
+    immediateCount.increment();
+    SetData oldHead = state.causes.get(pt);
+    Value oldVal = computeValue(oldHead);
+    SetData newHead = addCause(state, oldHead, data);
+    Value newVal = computeValue(newHead);
+    if (!newVal.equals(oldVal)) state.markPointAsDirty(pt);
+  }
+
+  boolean isParallel() {
+    return parallelPropagation;
+  }
+
+  /**
+   * Processes the dirty components of the given sibling states, and of everything below them, with
+   * one fork-join task per state. The states share nothing but their common parent, which they only
+   * use at the subcircuit boundary, one at a time (see CircuitState.propagateComponent). Whatever
+   * they schedule is held back until all tasks are done and then passed on in the order of the
+   * array.
+   */
+  void processDirtyComponents(CircuitState[] states) {
+    @SuppressWarnings("unchecked")
+    ArrayList<DeferredValue>[] emitted = new ArrayList[states.length];
+    ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(states.length);
+    for (int i = 0; i < states.length; i++) {
+      final int index = i;
+      tasks.add(
+          ForkJoinTask.adapt(
+              () -> {
+                ArrayList<DeferredValue> outer = deferredValues.get();
+                ArrayList<DeferredValue> mine = new ArrayList<>();
+                deferredValues.set(mine);
+                try {
+                  states[index].processDirtyComponents();
+                } finally {
+                  deferredValues.set(outer);
+                }
+                emitted[index] = mine;
+              }));
+    }
+    ForkJoinTask.invokeAll(tasks);
+    for (ArrayList<DeferredValue> list : emitted) {
+      for (DeferredValue d : list) setValue(d.state, d.loc, d.val, d.cause, d.delay);
+    }
+  }
+
   boolean step(PropagationPoints changedPoints) {
     oscPoints.clear();
     root.processDirtyPoints();
     root.processDirtyComponents();
+    runStepEndTasks();
 
-    if (toProcess.isEmpty())
+    if (pendingEvents == 0)
       return false;
 
     PropagationPoints oldOsc = oscPoints;
@@ -389,28 +597,31 @@ public class Propagator {
   }
 
   private void stepInternal(PropagationPoints changedPoints) {
-    if (toProcess.isEmpty()) return;
+    if (pendingEvents == 0) return;
 
     // update clock
-    clock = toProcess.peek().time;
+    int t = clock + 1;
+    while (wheelHead[t & wheelMask] == null) t++;
+    clock = t;
 
     // propagate all values for this clock tick
-    HashMap<CircuitState, HashSet<ComponentPoint>> visited =
-        new HashMap<>();
-    while (true) {
-      SetData data = toProcess.peek();
-      if (data == null || data.time != clock) break;
-      toProcess.remove();
+    int bucket = t & wheelMask;
+    SetData data = wheelHead[bucket];
+    wheelHead[bucket] = null;
+    wheelTail[bucket] = null;
+    handled.clear();
+    long applied = 0;
+    while (data != null) {
+      SetData nextEvent = data.nextEvent;
+      data.nextEvent = null;
+      pendingEvents--;
       CircuitState state = data.state;
 
       // if it's already handled for this clock tick, continue
-      HashSet<ComponentPoint> handled = visited.get(state);
-      if (handled != null) {
-        if (!handled.add(new ComponentPoint(data.cause, data.loc))) continue;
-      } else {
-        handled = new HashSet<>();
-        visited.put(state, handled);
-        handled.add(new ComponentPoint(data.cause, data.loc));
+      if (!handled.add(state, data.cause, data.loc)) {
+        recycle(data);
+        data = nextEvent;
+        continue;
       }
 
       /*
@@ -419,6 +630,7 @@ public class Propagator {
        * data.cause); //
        */
 
+      applied++;
       if (changedPoints != null) changedPoints.add(state, data.loc);
 
       // change the information about value
@@ -431,10 +643,92 @@ public class Propagator {
       if (!newVal.equals(oldVal)) {
         state.markPointAsDirty(data.loc);
       }
+
+      // if data did not become part of the list of causes, it can be reused
+      if (!isLinked(newHead, data)) recycle(data);
+      data = nextEvent;
     }
+    eventCount += applied;
 
     root.processDirtyPoints();
     root.processDirtyComponents();
+    runStepEndTasks();
+  }
+
+  /**
+   * Asks for a task to run once the dirty components of the current step have all been processed,
+   * before the clock moves on. This lets components batch work across instances, such as the
+   * round trips to an external simulator, and apply the results with setPort as if they had been
+   * computed during propagate. A task registered several times in a step runs once. May be called
+   * from the workers of parallel propagation.
+   */
+  public void runAtStepEnd(Runnable task) {
+    synchronized (stepEndTasks) {
+      stepEndTasks.add(task);
+    }
+  }
+
+  private void runStepEndTasks() {
+    while (true) {
+      Runnable[] tasks;
+      synchronized (stepEndTasks) {
+        if (stepEndTasks.isEmpty()) return;
+        tasks = stepEndTasks.toArray(new Runnable[0]);
+        stepEndTasks.clear();
+      }
+      for (Runnable task : tasks) task.run();
+    }
+  }
+
+  private static boolean isLinked(SetData head, SetData data) {
+    for (SetData n = head; n != null; n = n.next) {
+      if (n == data) return true;
+    }
+    return false;
+  }
+
+  private SetData obtain(
+      int time, int serialNumber, CircuitState state, Location loc, Component cause, Value val) {
+    SetData ret = freeNodes;
+    if (ret == null) return new SetData(time, serialNumber, state, loc, cause, val);
+    freeNodes = ret.nextEvent;
+    freeNodeCount--;
+    ret.init(time, serialNumber, state, loc, cause, val);
+    return ret;
+  }
+
+  private void recycle(SetData data) {
+    if (freeNodeCount >= MAX_FREE_NODES) return;
+    data.init(0, 0, null, null, null, null);
+    data.nextEvent = freeNodes;
+    freeNodes = data;
+    freeNodeCount++;
+  }
+
+  private void schedule(SetData data) {
+    int delta = data.time - clock;
+    if (delta >= wheelHead.length) growWheel(delta);
+    int bucket = data.time & wheelMask;
+    if (wheelTail[bucket] == null) wheelHead[bucket] = data;
+    else wheelTail[bucket].nextEvent = data;
+    wheelTail[bucket] = data;
+    pendingEvents++;
+  }
+
+  private void growWheel(int delta) {
+    int size = wheelHead.length;
+    while (size <= delta) size <<= 1;
+    SetData[] newHead = new SetData[size];
+    SetData[] newTail = new SetData[size];
+    for (int i = 0; i < wheelHead.length; i++) {
+      if (wheelHead[i] == null) continue;
+      int bucket = wheelHead[i].time & (size - 1);
+      newHead[bucket] = wheelHead[i];
+      newTail[bucket] = wheelTail[i];
+    }
+    wheelHead = newHead;
+    wheelTail = newTail;
+    wheelMask = size - 1;
   }
 
   public boolean toggleClocks() {
@@ -447,6 +741,17 @@ public class Propagator {
     return "Prop" + id;
   }
 
+  private void updateEngine() {
+    Options opts = root.getProject().getOptions();
+    Object engine = opts.getAttributeSet().getValue(Options.ATTR_SIM_ENGINE);
+    levelized = engine == Options.SIM_ENGINE_LEVELIZED;
+  }
+
+  private void updateParallelism() {
+    Options opts = root.getProject().getOptions();
+    parallelPropagation = opts.getAttributeSet().getValue(Options.ATTR_SIM_PARALLEL);
+  }
+
   private void updateRandomness() {
     Options opts = root.getProject().getOptions();
     Object rand = opts.getAttributeSet().getValue(Options.ATTR_SIM_RAND);
@@ -0,0 +1,149 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An array that is never modified once built: set returns a new array, which shares with the old
+ * one all the nodes of its 32-way tree but those on the path to the element set. Snapshots of a
+ * circuit keep their contents in these, so that the snapshot taken after a change costs a few
+ * small copies for each point or component changed rather than a copy of the whole circuit.
+ */
+final class SharedArray<T> implements Iterable<T> {
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+  private static final SharedArray<?> EMPTY = new SharedArray<>(null, 0, 0);
+
+  // the root node; the leaves hold the elements, the other nodes hold nodes
+  private final Object[] root;
+  // the index bits taken by the levels below the root
+  private final int shift;
+  // one past the highest index ever set
+  private final int length;
+
+  private SharedArray(Object[] root, int shift, int length) {
+    this.root = root;
+    this.shift = shift;
+    this.length = length;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> SharedArray<T> empty() {
+    return (SharedArray<T>) EMPTY;
+  }
+
+  /** Returns an array holding the given elements, built without the copies of set. */
+  static <T> SharedArray<T> of(T[] elements, int length) {
+    if (length == 0) return empty();
+    Object[] level = new Object[(length + MASK) >>> BITS];
+    for (int i = 0; i < level.length; i++) {
+      Object[] leaf = new Object[WIDTH];
+      System.arraycopy(elements, i << BITS, leaf, 0, Math.min(WIDTH, length - (i << BITS)));
+      level[i] = leaf;
+    }
+    int shift = 0;
+    while (level.length > 1) {
+      Object[] up = new Object[(level.length + MASK) >>> BITS];
+      for (int i = 0; i < up.length; i++) {
+        Object[] node = new Object[WIDTH];
+        System.arraycopy(level, i << BITS, node, 0, Math.min(WIDTH, level.length - (i << BITS)));
+        up[i] = node;
+      }
+      level = up;
+      shift += BITS;
+    }
+    return new SharedArray<>((Object[]) level[0], shift, length);
+  }
+
+  /** One past the highest index set, counting the elements set to null */
+  int length() {
+    return length;
+  }
+
+  @SuppressWarnings("unchecked")
+  T get(int index) {
+    if (index >= length) return null;
+    Object[] node = root;
+    for (int s = shift; s > 0 && node != null; s -= BITS) {
+      node = (Object[]) node[(index >>> s) & MASK];
+    }
+    return node == null ? null : (T) node[index & MASK];
+  }
+
+  /** Returns a copy of this array with the element at index replaced */
+  SharedArray<T> set(int index, T value) {
+    Object[] top = root;
+    int s = shift;
+    while ((index >>> s) >= WIDTH) {
+      if (top != null) {
+        Object[] up = new Object[WIDTH];
+        up[0] = top;
+        top = up;
+      }
+      s += BITS;
+    }
+    return new SharedArray<>(set(top, s, index, value), s, Math.max(length, index + 1));
+  }
+
+  private static Object[] set(Object[] node, int shift, int index, Object value) {
+    Object[] ret = node == null ? new Object[WIDTH] : node.clone();
+    int i = (index >>> shift) & MASK;
+    ret[i] = shift == 0 ? value : set((Object[]) ret[i], shift - BITS, index, value);
+    return ret;
+  }
+
+  /** Iterates over the elements that are not null, in the order of their indices */
+  @Override
+  public Iterator<T> iterator() {
+    return new Iterator<>() {
+      private int next = advance(0);
+
+      private int advance(int from) {
+        while (from < length && get(from) == null) from++;
+        return from;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next < length;
+      }
+
+      @Override
+      public T next() {
+        if (next >= length) throw new NoSuchElementException();
+        T ret = get(next);
+        next = advance(next + 1);
+        return ret;
+      }
+    };
+  }
+}
@@ -99,7 +99,7 @@ public final class Wire implements Component, AttributeSet, CustomHandles, Itera
   private static final List<Attribute<?>> ATTRIBUTES =
       Arrays.asList(dir_attr, len_attr);
 
-  private static final Cache cache = new Cache();
+  private static final Cache cache = new Cache("wire", 8);
 
   final Location e0;
   final Location e1;
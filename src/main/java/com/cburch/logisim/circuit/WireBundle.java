@@ -40,6 +40,7 @@ class WireBundle {
   private Location widthDeterminant = null;
   private boolean isBuss = false;
   WireThread[] threads = null;
+  int id = -1; // dense index assigned by BundleMap.assignIds
   final CopyOnWriteArraySet<Location> points = new CopyOnWriteArraySet<>(); // points
   // bundle
   // hits
@@ -32,6 +32,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
 
 class WireThread {
   private WireThread parent;
+  int id = -1; // dense index assigned by BundleMap.assignIds
   private final CopyOnWriteArraySet<CircuitWires.ThreadBundle> bundles =
       new CopyOnWriteArraySet<>();
 
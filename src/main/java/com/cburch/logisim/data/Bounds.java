@@ -58,7 +58,7 @@ public class Bounds {
 
   public static final Bounds EMPTY_BOUNDS = new Bounds(0, 0, 0, 0);
 
-  private static final Cache cache = new Cache();
+  private static final Cache cache = new Cache("bounds", 8);
 
   private final int x;
   private final int y;
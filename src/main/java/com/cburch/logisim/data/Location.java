@@ -73,7 +73,7 @@ public class Location implements Comparable<Location> {
     return Location.create(x, y);
   }
 
-  private static final Cache cache = new Cache();
+  private static final Cache cache = new Cache("location", 12);
   private final int hashCode;
 
   private final int x;
@@ -35,7 +35,12 @@ import java.util.Arrays;
 
 public class Value {
 
-  private static Value create(int width, long error, long unknown, long value) {
+  /**
+   * Returns the value of the given width with the given error, unknown and value bit masks,
+   * as reported by {@link #getErrorMask}, {@link #getUnknownMask} and {@link #getValueMask}.
+   * Bits beyond the width are ignored.
+   */
+  public static Value create(int width, long error, long unknown, long value) {
     if (width == 0) {
       return Value.NIL;
     } else if (width == 1) {
@@ -49,6 +54,17 @@ public class Value {
       unknown = unknown & mask & ~error;
       value = value & mask & ~unknown & ~error;
 
+      if (error == 0) {
+        if (unknown == 0) {
+          if (value >= 0 && value < COMMON_KNOWN) return COMMON[width][(int) value];
+          if (value == mask) return COMMON[width][COMMON_ONES];
+        } else if (unknown == mask) {
+          return COMMON[width][COMMON_UNKNOWN];
+        }
+      } else if (error == mask) {
+        return COMMON[width][COMMON_ERROR];
+      }
+
       int hashCode = width;
       hashCode = 31 * hashCode + (int) (error ^ (error >>> 32));
       hashCode = 31 * hashCode + (int) (unknown ^ (unknown >>> 32));
@@ -214,7 +230,30 @@ public class Value {
   public static Color WIDTH_ERROR_CAPTION_BGCOLOR = new Color(AppPreferences.WIDTH_ERROR_BACKGROUND_COLOR.get());
 
 
-  private static final Cache cache = new Cache();
+  private static final Cache cache = new Cache("value", 14);
+
+  // The values that come up for buses of every width: the small numbers, all ones, all unknown
+  // and all error. They are made up front so that creating them never goes through the cache.
+  private static final int COMMON_KNOWN_BITS = 4;
+  private static final int COMMON_KNOWN = 1 << COMMON_KNOWN_BITS;
+  private static final int COMMON_ONES = COMMON_KNOWN;
+  private static final int COMMON_UNKNOWN = COMMON_KNOWN + 1;
+  private static final int COMMON_ERROR = COMMON_KNOWN + 2;
+  private static final Value[][] COMMON = new Value[MAX_WIDTH + 1][];
+
+  static {
+    for (int width = 2; width <= MAX_WIDTH; width++) {
+      long mask = (width == 64 ? -1L : ~(-1L << width));
+      Value[] common = new Value[COMMON_KNOWN + 3];
+      boolean narrow = width <= COMMON_KNOWN_BITS;
+      int known = narrow ? 1 << width : COMMON_KNOWN;
+      for (int i = 0; i < known; i++) common[i] = new Value(width, 0, 0, i);
+      common[COMMON_ONES] = narrow ? common[(int) mask] : new Value(width, 0, 0, mask);
+      common[COMMON_UNKNOWN] = new Value(width, 0, mask, 0);
+      common[COMMON_ERROR] = new Value(width, mask, 0, 0);
+      COMMON[width] = common;
+    }
+  }
 
   private final int width;
 
@@ -362,6 +401,18 @@ public class Value {
     }
   }
 
+  public long getErrorMask() {
+    return error;
+  }
+
+  public long getUnknownMask() {
+    return unknown;
+  }
+
+  public long getValueMask() {
+    return value;
+  }
+
   public int getWidth() {
     return width;
   }
@@ -31,21 +31,44 @@ package com.cburch.logisim.file;
 import static com.cburch.logisim.file.Strings.S;
 
 import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeEvent;
+import com.cburch.logisim.data.AttributeListener;
 import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.AttributeSets;
 import com.cburch.logisim.data.Attributes;
 
 public class Options {
+  private class MyListener implements AttributeListener {
+    public void attributeListChanged(AttributeEvent e) {}
+
+    public void attributeValueChanged(AttributeEvent e) {
+      if (e.getAttribute() == ATTR_GATE_UNDEFINED) {
+        gateUndefinedError = GATE_UNDEFINED_ERROR.equals(e.getValue());
+      }
+    }
+  }
+
   public static final AttributeOption GATE_UNDEFINED_IGNORE =
       new AttributeOption("ignore", S.getter("gateUndefinedIgnore"));
   public static final AttributeOption GATE_UNDEFINED_ERROR =
       new AttributeOption("error", S.getter("gateUndefinedError"));
+  public static final AttributeOption SIM_ENGINE_EVENT =
+      new AttributeOption("event", S.getter("simEngineEvent"));
+  public static final AttributeOption SIM_ENGINE_LEVELIZED =
+      new AttributeOption("levelized", S.getter("simEngineLevelized"));
 
   public static final Attribute<Integer> ATTR_SIM_LIMIT =
       Attributes.forInteger("simlimit", S.getter("simLimitOption"));
   public static final Attribute<Integer> ATTR_SIM_RAND =
       Attributes.forInteger("simrand", S.getter("simRandomOption"));
+  public static final Attribute<Boolean> ATTR_SIM_PARALLEL =
+      Attributes.forBoolean("simparallel", S.getter("simParallelOption"));
+  public static final Attribute<AttributeOption> ATTR_SIM_ENGINE =
+      Attributes.forOption(
+          "simengine",
+          S.getter("simEngineOption"),
+          new AttributeOption[] {SIM_ENGINE_EVENT, SIM_ENGINE_LEVELIZED});
   public static final Attribute<AttributeOption> ATTR_GATE_UNDEFINED =
       Attributes.forOption(
           "gateUndefined",
@@ -54,15 +77,22 @@ public class Options {
 
   public static final Integer sim_rand_dflt = 32;
 
-  private static final Attribute<?>[] ATTRIBUTES = {ATTR_GATE_UNDEFINED, ATTR_SIM_LIMIT, ATTR_SIM_RAND};
-  private static final Object[] DEFAULTS = {GATE_UNDEFINED_IGNORE, 1000, 0};
+  private static final Attribute<?>[] ATTRIBUTES = {
+    ATTR_GATE_UNDEFINED, ATTR_SIM_LIMIT, ATTR_SIM_RAND, ATTR_SIM_PARALLEL, ATTR_SIM_ENGINE
+  };
+  private static final Object[] DEFAULTS = {
+    GATE_UNDEFINED_IGNORE, 1000, 0, Boolean.FALSE, SIM_ENGINE_EVENT
+  };
 
   private final AttributeSet attrs;
   private final MouseMappings mmappings;
   private final ToolbarData toolbar;
+  // ATTR_GATE_UNDEFINED as a flag, since gates consult it on every evaluation
+  private volatile boolean gateUndefinedError = false;
 
   public Options() {
     attrs = AttributeSets.fixedSet(ATTRIBUTES, DEFAULTS);
+    attrs.addAttributeListener(new MyListener());
     mmappings = new MouseMappings();
     toolbar = new ToolbarData();
   }
@@ -84,4 +114,8 @@ public class Options {
   public ToolbarData getToolbarData() {
     return toolbar;
   }
+
+  public boolean isGateUndefinedError() {
+    return gateUndefinedError;
+  }
 }
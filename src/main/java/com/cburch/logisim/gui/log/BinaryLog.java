@@ -0,0 +1,263 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.gui.log;
+
+import com.cburch.logisim.circuit.RadixOption;
+import com.cburch.logisim.data.Value;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Objects;
+
+/**
+ * The compact binary log file format, and a converter from it to the text format. A file is a
+ * sequence of records, each starting with a tag byte:
+ *
+ * <pre>
+ *   'L' "GLOG" version                  start of a session, whenever the file is (re)opened
+ *   'M' mode granularity                 the capture mode, as two UTF strings
+ *   'H' names n (name width radix)*      the signals in the rows that follow
+ *   'R' duration (column value)* 0       a row, giving only values that differ from the row before
+ * </pre>
+ *
+ * Numbers are unsigned variable-length integers of seven bits per byte. Each value starts with its
+ * column number and kind in one number, followed by as many bit masks as the kind needs.
+ */
+public class BinaryLog {
+  private static final byte[] MAGIC = {'L', 'G', 'L', 'O', 'G', 1};
+  private static final int TAG_MAGIC = 'L';
+  private static final int TAG_MODE = 'M';
+  private static final int TAG_HEADER = 'H';
+  private static final int TAG_ROW = 'R';
+
+  // kinds of values
+  private static final int NONE = 0; // no data, shown as "-"
+  private static final int KNOWN = 1; // value mask
+  private static final int PARTIAL = 2; // value, unknown and error masks
+  private static final int RESIZED = 3; // width, value, unknown and error masks
+
+  static class Writer implements LogThread.Output {
+    private final DataOutputStream out;
+    private int[] widths = new int[0];
+    private Value[] prev = new Value[0];
+
+    Writer(File file) throws IOException {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+      out.write(MAGIC);
+    }
+
+    @Override
+    public void mode(String mode, String granularity) throws IOException {
+      out.write(TAG_MODE);
+      out.writeUTF(mode);
+      out.writeUTF(granularity);
+    }
+
+    @Override
+    public void header(LogThread.Header h) throws IOException {
+      out.write(TAG_HEADER);
+      out.write(h.showNames ? 1 : 0);
+      writeLong(out, h.names.length);
+      for (int i = 0; i < h.names.length; i++) {
+        out.writeUTF(h.names[i]);
+        writeLong(out, h.widths[i]);
+        out.writeUTF(h.radix[i].getSaveString());
+      }
+      widths = h.widths;
+      prev = new Value[h.names.length];
+    }
+
+    @Override
+    public void row(Value[] values, long duration) throws IOException {
+      out.write(TAG_ROW);
+      writeLong(out, duration);
+      for (int i = 0; i < values.length; i++) {
+        Value v = values[i];
+        if (Objects.equals(v, prev[i]))
+          continue;
+        prev[i] = v;
+        long col = (long) (i + 1) << 2;
+        if (v == null) {
+          writeLong(out, col | NONE);
+        } else if (v.getWidth() != widths[i]) {
+          writeLong(out, col | RESIZED);
+          writeLong(out, v.getWidth());
+          writeLong(out, v.getValueMask());
+          writeLong(out, v.getUnknownMask());
+          writeLong(out, v.getErrorMask());
+        } else if (v.getUnknownMask() == 0 && v.getErrorMask() == 0) {
+          writeLong(out, col | KNOWN);
+          writeLong(out, v.getValueMask());
+        } else {
+          writeLong(out, col | PARTIAL);
+          writeLong(out, v.getValueMask());
+          writeLong(out, v.getUnknownMask());
+          writeLong(out, v.getErrorMask());
+        }
+      }
+      writeLong(out, 0);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads a binary log and writes it out as a text log, the same as the one that would have been
+   * written had the binary format not been selected.
+   */
+  public static void convert(InputStream in, PrintWriter out) throws IOException {
+    convert(in, new LogThread.TextOutput(out));
+    out.flush();
+  }
+
+  static void convert(InputStream in, LogThread.Output text) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    int[] widths = new int[0];
+    Value[] values = new Value[0];
+    int tag;
+    while ((tag = data.read()) >= 0) {
+      switch (tag) {
+        case TAG_MAGIC:
+          byte[] magic = new byte[MAGIC.length];
+          magic[0] = (byte) tag;
+          data.readFully(magic, 1, magic.length - 1);
+          for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i])
+              throw new IOException("not a binary log file, or an unsupported version");
+          }
+          break;
+        case TAG_MODE:
+          text.mode(data.readUTF(), data.readUTF());
+          break;
+        case TAG_HEADER:
+          boolean showNames = data.read() != 0;
+          int n = (int) readLong(data);
+          String[] names = new String[n];
+          RadixOption[] radix = new RadixOption[n];
+          widths = new int[n];
+          for (int i = 0; i < n; i++) {
+            names[i] = data.readUTF();
+            widths[i] = (int) readLong(data);
+            radix[i] = RadixOption.decode(data.readUTF());
+          }
+          values = new Value[n];
+          text.header(new LogThread.Header(names, widths, radix, showNames));
+          break;
+        case TAG_ROW:
+          long duration = readLong(data);
+          long col;
+          while ((col = readLong(data)) != 0) {
+            int i = (int) (col >>> 2) - 1;
+            int kind = (int) (col & 3);
+            if (i < 0 || i >= values.length)
+              throw new IOException("bad column " + (i + 1) + " in binary log row");
+            if (kind == NONE) {
+              values[i] = null;
+            } else if (kind == KNOWN) {
+              values[i] = Value.create(widths[i], 0, 0, readLong(data));
+            } else {
+              int w = kind == RESIZED ? (int) readLong(data) : widths[i];
+              long val = readLong(data);
+              long unk = readLong(data);
+              long err = readLong(data);
+              values[i] = Value.create(w, err, unk, val);
+            }
+          }
+          text.row(values, duration);
+          break;
+        default:
+          throw new IOException("bad record type " + tag + " in binary log");
+      }
+    }
+  }
+
+  private static void writeLong(DataOutputStream out, long v) throws IOException {
+    while ((v & ~0x7FL) != 0) {
+      out.write((int) (v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out.write((int) v);
+  }
+
+  private static long readLong(DataInputStream in) throws IOException {
+    long v = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in.read();
+      if (b < 0)
+        throw new EOFException("binary log ends in the middle of a record");
+      v |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return v;
+  }
+
+  /**
+   * Converts a binary log to text. Usage: BinaryLog input [output], writing to standard output if
+   * no output file is given.
+   */
+  public static void main(String[] args) {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("usage: BinaryLog input.log [output.txt]");
+      System.exit(1);
+    }
+    try (InputStream in = new BufferedInputStream(new FileInputStream(args[0]))) {
+      PrintWriter out = args.length == 2
+          ? new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1]))))
+          : new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+      try {
+        convert(in, out);
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      System.err.println(args[0] + ": " + e.getMessage());
+      System.exit(1);
+    }
+  }
+}
@@ -58,6 +58,7 @@ class FilePanel extends LogPanel {
   private final JTextField fileField = new JTextField();
   private final JButton selectButton = new JButton();
   private final JCheckBox headerCheckBox = new JCheckBox();
+  private final JCheckBox binaryCheckBox = new JCheckBox();
   private final JFileChooser chooser = JFileChoosers.create();
 
   public FilePanel(LogFrame frame) {
@@ -114,6 +115,8 @@ class FilePanel extends LogPanel {
     gc.weighty = 0.0;
     gb.setConstraints(headerCheckBox, gc);
     add(headerCheckBox);
+    gb.setConstraints(binaryCheckBox, gc);
+    add(binaryCheckBox);
     glue = new JPanel();
     gc.weighty = 1.0;
     gb.setConstraints(glue, gc);
@@ -123,6 +126,7 @@ class FilePanel extends LogPanel {
     enableButton.addActionListener(listener);
     selectButton.addActionListener(listener);
     headerCheckBox.addActionListener(listener);
+    binaryCheckBox.addActionListener(listener);
     modelChanged(null, getModel());
     localeChanged();
   }
@@ -143,6 +147,7 @@ class FilePanel extends LogPanel {
     fileLabel.setText(S.get("fileLabel") + " ");
     selectButton.setText(S.get("fileSelectButton"));
     headerCheckBox.setText(S.get("fileHeaderCheck"));
+    binaryCheckBox.setText(S.get("fileBinaryCheck"));
   }
 
   @Override
@@ -200,6 +205,8 @@ class FilePanel extends LogPanel {
         getModel().setFile(file);
       } else if (src == headerCheckBox) {
         getModel().setFileHeader(headerCheckBox.isSelected());
+      } else if (src == binaryCheckBox) {
+        getModel().setFileBinary(binaryCheckBox.isSelected());
       }
     }
 
@@ -235,6 +242,7 @@ class FilePanel extends LogPanel {
       enableButton.setEnabled(file != null);
 
       headerCheckBox.setSelected(model.getFileHeader());
+      binaryCheckBox.setSelected(model.getFileBinary());
     }
   }
 }
@@ -0,0 +1,79 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.gui.log;
+
+/**
+ * A bounded queue handing records from one producer thread to one consumer thread without
+ * locking. Each index is only written by one side, so offer and poll are each a few reads and one
+ * volatile write.
+ */
+class LogQueue {
+  private final Object[] items;
+  private final int mask;
+  private volatile long head; // next to poll, written only by the consumer
+  private volatile long tail; // next to fill, written only by the producer
+
+  LogQueue(int capacity) {
+    int n = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+    items = new Object[n];
+    mask = n - 1;
+  }
+
+  int capacity() {
+    return items.length;
+  }
+
+  int size() {
+    return (int) (tail - head);
+  }
+
+  boolean isEmpty() {
+    return head == tail;
+  }
+
+  /** Adds a record, or returns false if the queue is full. Producer only. */
+  boolean offer(Object record) {
+    long t = tail;
+    if (t - head == items.length) return false;
+    items[(int) t & mask] = record;
+    tail = t + 1;
+    return true;
+  }
+
+  /** Removes and returns the oldest record, or null if there is none. Consumer only. */
+  Object poll() {
+    long h = head;
+    if (h == tail) return null;
+    int i = (int) h & mask;
+    Object record = items[i];
+    items[i] = null;
+    head = h + 1;
+    return record;
+  }
+}
@@ -28,12 +28,20 @@
 
 package com.cburch.logisim.gui.log;
 
+import com.cburch.logisim.circuit.RadixOption;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.util.UniquelyNamedThread;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.HashMap;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.SwingUtilities;
 
+// The simulator thread, through the model listener methods, turns the signal
+// history into rows of values and queues them; this thread formats and writes
+// them. The simulator only waits for the file when the queue is full.
 class LogThread extends UniquelyNamedThread implements Model.Listener {
   // file will be flushed with at least this frequency (ms)
   private static final int FLUSH_FREQUENCY = 500;
@@ -41,14 +49,133 @@ class LogThread extends UniquelyNamedThread implements Model.Listener {
   // file will be closed after waiting this long between writes (ms)
   private static final int IDLE_UNTIL_CLOSE = 10000;
 
+  // records queued before the simulator has to wait for the file
+  private static final int QUEUE_CAPACITY = 4096;
+
+  // how long the simulator waits before checking a full queue again (ns)
+  private static final long FULL_QUEUE_WAIT = 100000;
+
+  /** Writes log records to a file in one of the supported formats. */
+  interface Output {
+    void mode(String mode, String granularity) throws IOException;
+
+    void header(Header h) throws IOException;
+
+    void row(Value[] values, long duration) throws IOException;
+
+    void flush() throws IOException;
+
+    void close() throws IOException;
+  }
+
+  // The signals of the rows that follow, as they were when queued.
+  static class Header {
+    final String[] names;
+    final int[] widths;
+    final RadixOption[] radix;
+    final boolean showNames;
+
+    Header(String[] names, int[] widths, RadixOption[] radix, boolean showNames) {
+      this.names = names;
+      this.widths = widths;
+      this.radix = radix;
+      this.showNames = showNames;
+    }
+  }
+
+  // The tab-separated text format.
+  static class TextOutput implements Output {
+    private final PrintWriter writer;
+    private RadixOption[] radix = new RadixOption[0];
+
+    TextOutput(PrintWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public void mode(String mode, String granularity) {
+      writer.println("# mode: " + mode + " granularity: " + granularity);
+    }
+
+    @Override
+    public void header(Header h) {
+      radix = h.radix;
+      if (h.showNames)
+        writer.println(String.join("\t", h.names));
+    }
+
+    @Override
+    public void row(Value[] values, long duration) {
+      StringBuilder buf = new StringBuilder();
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0)
+          buf.append("\t");
+        buf.append(values[i] == null ? "-" : radix[i].toString(values[i]));
+      }
+      // todo: only write duration if not in coarse-step or coarse-clock mode?
+      writer.println(buf + "\t# " + Model.formatDuration(duration));
+    }
+
+    @Override
+    public void flush() {
+      writer.flush();
+    }
+
+    @Override
+    public void close() {
+      writer.close();
+    }
+  }
+
+  private static class Open {
+    final File file;
+    final boolean binary;
+
+    Open(File file, boolean binary) {
+      this.file = file;
+      this.binary = binary;
+    }
+  }
+
+  private static class Mode {
+    final String mode;
+    final String granularity;
+
+    Mode(String mode, String granularity) {
+      this.mode = mode;
+      this.granularity = granularity;
+    }
+  }
+
+  private static class Row {
+    final Value[] values;
+    final long duration;
+
+    Row(Value[] values, long duration) {
+      this.values = values;
+      this.duration = duration;
+    }
+  }
+
+  private static final Object CLOSE = new Object();
+
   private final Model model;
+  private final LogQueue queue = new LogQueue(QUEUE_CAPACITY);
+  private volatile boolean canceled = false;
+
+  // used by the simulator side, with lock held
   private final Object lock = new Object();
-  private boolean canceled = false;
-  private PrintWriter writer = null;
+  private File openFile = null; // file the queued records go to
+  private boolean openBinary;
   private boolean modeDirty = true, headerDirty = true;
-  private long lastWrite = 0;
   private long tNextWrite = 0; // done writing up to this time, exclusive
-  private final HashMap<Signal, Signal.Iterator> cursors = new HashMap<>();
+
+  // used by this thread only
+  private Output out = null;
+  private File outFile = null;
+  private boolean outBinary;
+  private Header outHeader = null;
+  private long lastWrite = 0;
 
   public LogThread(Model model) {
     super("LogThread");
@@ -57,71 +184,78 @@ class LogThread extends UniquelyNamedThread implements Model.Listener {
   }
 
   //precondition: lock held and writing()==true
-  private void writeSignals() {
-    if (writer == null) {
-      try {
-        writer = new PrintWriter(new FileWriter(model.getFile(), true));
-      } catch (IOException e) {
-        model.setFile(null);
-        return;
-      }
+  private void queueSignals() {
+    File file = model.getFile();
+    boolean binary = model.getFileBinary();
+    if (!file.equals(openFile) || binary != openBinary) {
+      if (openFile != null)
+        put(CLOSE);
+      put(new Open(file, binary));
+      openFile = file;
+      openBinary = binary;
+      modeDirty = true;
+      headerDirty = true;
     }
     if (modeDirty) {
       String mode = model.isStepMode() ? "step"
           : model.isRealMode() ? "real-time"
           : "clocked";
       String gran = model.isFine() ? "fine" : "coarse";
-      writer.println("# mode: " + mode + " granularity: " + gran);
+      put(new Mode(mode, gran));
       modeDirty = false;
     }
     if (headerDirty) {
-      if (model.getFileHeader()) {
-        StringBuilder buf = new StringBuilder();
-        for (int i = 0; i < model.getSignalCount(); i++) {
-          if (i > 0) buf.append("\t");
-          buf.append(model.getItem(i).getDisplayName());
-        }
-        writer.println(buf);
+      int n = model.getSignalCount();
+      String[] names = new String[n];
+      int[] widths = new int[n];
+      RadixOption[] radix = new RadixOption[n];
+      for (int i = 0; i < n; i++) {
+        SignalInfo item = model.getItem(i);
+        names[i] = item.getDisplayName();
+        widths[i] = item.getWidth();
+        radix[i] = item.getRadix();
       }
+      put(new Header(names, widths, radix, model.getFileHeader()));
       headerDirty = false;
     }
+    // Fresh iterators each time, as an iterator that reached the end of a
+    // signal stays there even after the signal is extended. These are cheap,
+    // as tNextWrite is near the end of the signals.
     Signal.Iterator[] cur = new Signal.Iterator[model.getSignalCount()];
-    for (int i = 0; i < model.getSignalCount(); i++) {
-      Signal s = model.getSignal(i);
-      cur[i] = cursors.get(s);
-      if (cur[i] == null) {
-        cur[i] = s.new Iterator(tNextWrite);
-        cursors.put(s, cur[i]);
-      }
-    }
+    for (int i = 0; i < cur.length; i++)
+      cur[i] = model.getSignal(i).new Iterator(tNextWrite);
     long tStop = model.getEndTime();
     while (tNextWrite < tStop) {
       long duration = tStop - tNextWrite;
-      StringBuilder buf = new StringBuilder();
+      Value[] values = new Value[cur.length];
       for (int i = 0; i < cur.length; i++) {
-        if (i > 0)
-          buf.append("\t");
-        buf.append(cur[i].getFormattedValue());
+        values[i] = cur[i].value;
         if (cur[i].duration < duration)
           duration = cur[i].duration;
       }
-      // todo: only write duration if not in coarse-step or coarse-clock mode?
-      writer.println(buf + "\t# " + Model.formatDuration(duration));
+      put(new Row(values, duration));
       for (Signal.Iterator c : cur)
         c.advance(duration);
       tNextWrite += duration;
     }
-    lastWrite = System.currentTimeMillis();
   }
 
-  public void cancel() {
-    synchronized (lock) {
-      canceled = true;
-      if (writer != null) {
-        writer.close();
-        writer = null;
-      }
+  //precondition: lock held
+  private void put(Object record) {
+    while (!queue.offer(record)) {
+      // the file can't keep up, so wait for it rather than lose data
+      LockSupport.unpark(this);
+      if (canceled)
+        return;
+      LockSupport.parkNanos(FULL_QUEUE_WAIT);
     }
+    if (queue.size() >= queue.capacity() / 2)
+      LockSupport.unpark(this);
+  }
+
+  public void cancel() {
+    canceled = true;
+    LockSupport.unpark(this);
   }
 
   @Override
@@ -129,8 +263,7 @@ class LogThread extends UniquelyNamedThread implements Model.Listener {
     synchronized (lock) {
       if (writing()) {
         tNextWrite = 0;
-        cursors.clear();
-        writeSignals();
+        queueSignals();
       }
     }
   }
@@ -138,7 +271,7 @@ class LogThread extends UniquelyNamedThread implements Model.Listener {
   @Override
   public void signalsExtended(Model.Event event) {
     synchronized (lock) {
-      if (writing()) writeSignals();
+      if (writing()) queueSignals();
     }
   }
 
@@ -146,50 +279,100 @@ class LogThread extends UniquelyNamedThread implements Model.Listener {
   public void filePropertyChanged(Model.Event event) {
     synchronized (lock) {
       if (writing()) {
-        if (writer == null) writeSignals();
-      } else {
-        if (writer != null) {
-          writer.close();
-          writer = null;
-        }
+        queueSignals();
+      } else if (openFile != null) {
+        put(CLOSE);
+        openFile = null;
       }
     }
+    LockSupport.unpark(this);
   }
 
   private boolean writing() {
     return !canceled && model.isSelected() && model.isFileEnabled() && model.getFile() != null;
   }
 
+  private void write(Object record) {
+    if (record instanceof Open) {
+      closeOutput();
+      outFile = ((Open) record).file;
+      outBinary = ((Open) record).binary;
+      outHeader = null;
+      return;
+    } else if (record == CLOSE) {
+      closeOutput();
+      outFile = null;
+      return;
+    } else if (outFile == null) {
+      return; // the file could not be opened
+    }
+    try {
+      if (out == null) {
+        out = outBinary ? new BinaryLog.Writer(outFile)
+            : new TextOutput(new PrintWriter(new BufferedWriter(new FileWriter(outFile, true))));
+        // reopened after being idle, so the rows need their columns again
+        if (outHeader != null)
+          out.header(new Header(outHeader.names, outHeader.widths, outHeader.radix, false));
+      }
+      if (record instanceof Mode) {
+        out.mode(((Mode) record).mode, ((Mode) record).granularity);
+      } else if (record instanceof Header) {
+        outHeader = (Header) record;
+        out.header(outHeader);
+      } else {
+        out.row(((Row) record).values, ((Row) record).duration);
+      }
+    } catch (IOException e) {
+      closeOutput();
+      outFile = null;
+      SwingUtilities.invokeLater(() -> model.setFile(null));
+    }
+  }
+
+  private void closeOutput() {
+    if (out == null)
+      return;
+    try {
+      out.close();
+    } catch (IOException ignored) {
+    }
+    out = null;
+  }
+
   @Override
   public void run() {
-    while (!canceled) {
-      synchronized (lock) {
-        if (writer != null) {
-          if (System.currentTimeMillis() - lastWrite > IDLE_UNTIL_CLOSE) {
-            writer.close();
-            writer = null;
-          } else {
-            writer.flush();
+    long lastFlush = System.currentTimeMillis();
+    while (true) {
+      boolean wrote = false;
+      Object record;
+      while ((record = queue.poll()) != null) {
+        write(record);
+        wrote = true;
+      }
+      long now = System.currentTimeMillis();
+      if (wrote)
+        lastWrite = now;
+      if (canceled && queue.isEmpty())
+        break;
+      if (out != null) {
+        if (now - lastWrite > IDLE_UNTIL_CLOSE) {
+          closeOutput();
+        } else if (now - lastFlush >= FLUSH_FREQUENCY) {
+          try {
+            out.flush();
+          } catch (IOException ignored) {
           }
+          lastFlush = now;
         }
       }
-      try {
-        Thread.sleep(FLUSH_FREQUENCY);
-      } catch (InterruptedException ignored) {
-      }
-    }
-    synchronized (lock) {
-      if (writer != null) {
-        writer.close();
-        writer = null;
-      }
+      LockSupport.parkNanos(FLUSH_FREQUENCY * 1000000L);
     }
+    closeOutput();
   }
 
   @Override
   public void selectionChanged(Model.Event event) {
     synchronized (lock) {
-      cursors.keySet().retainAll(model.getSignals()); // removes dead cursors
       headerDirty = true;
     }
   }
@@ -83,11 +83,13 @@ public class Model implements CircuitListener, SignalInfo.Listener {
   private boolean fileEnabled = false;
   private File file = null;
   private boolean fileHeader = true;
+  private boolean fileBinary = false;
   private boolean selected = false;
   private LogThread logger = null;
   private int mode = STEP, granularity = COARSE;
   private long timeScale = 5000, gateDelay = 200;
   private int historyLimit = 400;
+  private boolean historySpill = false;
   private long elapsedSinceTrigger;
   private long lastRealtimeUpdate;
   
@@ -145,8 +147,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     long duration = captureContinuous() ? gateDelay : timeScale;
     for (int i = 0; i < info.size(); i++) {
       SignalInfo item = info.get(i);
-      signals.add(new Signal(i, item, item.fetchValue(circuitState),
-            duration, 0, historyLimit));
+      signals.add(newSignal(i, item, duration, 0));
     }
     tEnd = duration;
 
@@ -168,8 +169,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
       if (i < 0) {
         info.add(idx, item); // put new item at idx
         signals.add(idx,
-            new Signal(idx, item, item.fetchValue(circuitState),
-              1, tEnd - 1, historyLimit));
+            newSignal(idx, item, 1, tEnd - 1));
         idx++;
       } else if (i > idx) {
         info.add(idx, info.remove(i)); // move later item up
@@ -255,7 +255,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
       if (idx < 0)
         continue;
       info.remove(idx);
-      signals.remove(idx);
+      signals.remove(idx).dispose();
       count++;
       item.setListener(null);
     }
@@ -300,7 +300,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     if (spotlight != null && signals.get(idx) == spotlight)
       spotlight = null;
     info.remove(idx).setListener(null);
-    signals.remove(idx);
+    signals.remove(idx).dispose();
     renumberSignals();
     fireSelectionChanged(null);
   }
@@ -345,6 +345,25 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     fireHistoryLimitChanged(null);
   }
 
+  public boolean getHistorySpill() {
+    return historySpill;
+  }
+
+  public void setHistorySpill(boolean spill) {
+    if (historySpill == spill)
+      return;
+    historySpill = spill;
+    for (Signal s : signals)
+      s.setSpillToDisk(historySpill);
+    fireHistoryLimitChanged(null);
+  }
+
+  private Signal newSignal(int idx, SignalInfo item, long duration, long tStart) {
+    Signal s = new Signal(idx, item, item.fetchValue(circuitState), duration, tStart, historyLimit);
+    s.setSpillToDisk(historySpill);
+    return s;
+  }
+
   public void setStepMode(boolean fine, long t, long d) {
     int g = fine ? FINE : COARSE;
     if (mode == STEP && granularity == g && timeScale == t && gateDelay == d)
@@ -396,8 +415,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
       if (!info.contains(clockSource)) {
         info.add(0, clockSource); // put it at the top of the list
         signals.add(0,
-            new Signal(0, clockSource, clockSource.fetchValue(circuitState),
-              1, tEnd - 1, historyLimit));
+            newSignal(0, clockSource, 1, tEnd - 1));
         clockSource.setListener(this);
         fireSelectionChanged(null);
       }
@@ -450,8 +468,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
       return signals.get(idx);
     idx = info.size();
     info.add(item);
-    Signal s = new Signal(idx, item, item.fetchValue(circuitState),
-        1, tEnd - 1, historyLimit);
+    Signal s = newSignal(idx, item, 1, tEnd - 1);
     signals.add(idx, s);
     item.setListener(this);
     if (fireUpdate)
@@ -508,6 +525,10 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     return fileHeader;
   }
 
+  public boolean getFileBinary() {
+    return fileBinary;
+  }
+
   public int getSignalCount() {
     return signals.size();
   }
@@ -738,6 +759,12 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     fireFilePropertyChanged(null);
   }
 
+  public void setFileBinary(boolean value) {
+    if (fileBinary == value) return;
+    fileBinary = value;
+    fireFilePropertyChanged(null);
+  }
+
   public void setSelected(boolean value) {
     if (selected == value) return;
     selected = value;
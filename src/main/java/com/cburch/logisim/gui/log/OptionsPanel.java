@@ -130,6 +130,7 @@ class OptionsPanel extends LogPanel implements ActionListener, ChangeListener, M
   
   final JCheckBox unlimited = new JCheckBox();
   final JSpinner limit = new JSpinner();
+  final JCheckBox spill = new JCheckBox();
   final JLabel limitLabel = new JLabel();
 
   final JLabel description = new JLabel();
@@ -220,6 +221,9 @@ class OptionsPanel extends LogPanel implements ActionListener, ChangeListener, M
     historyPanel.add(unlimited);
     historyPanel.add(Box.createRigidArea(new Dimension(0, 5)));
     historyPanel.add(limitBox);
+    spill.setAlignmentX(0.0f);
+    historyPanel.add(Box.createRigidArea(new Dimension(0, 5)));
+    historyPanel.add(spill);
     historyPanel.add(Box.createVerticalGlue());
 
     JPanel inner = new ScrollablePanel();
@@ -271,6 +275,7 @@ class OptionsPanel extends LogPanel implements ActionListener, ChangeListener, M
     add(pane, BorderLayout.CENTER);
 
     unlimited.addActionListener(this);
+    spill.addActionListener(this);
     limit.addChangeListener(this);
     stepTime.addActionListener(this);
     realTime.addActionListener(this);
@@ -332,6 +337,7 @@ class OptionsPanel extends LogPanel implements ActionListener, ChangeListener, M
   public void stateChanged(ChangeEvent e) {              
     Model m = getLogFrame().getModel();
     limit.setEnabled(!unlimited.isSelected());
+    spill.setEnabled(unlimited.isSelected());
     if (unlimited.isSelected()) {
       m.setHistoryLimit(0);
     } else {
@@ -359,6 +365,8 @@ class OptionsPanel extends LogPanel implements ActionListener, ChangeListener, M
     Model m = getLogFrame().getModel();
     if (e.getSource() == unlimited) {
       stateChanged(null);
+    } else if (e.getSource() == spill) {
+      m.setHistorySpill(spill.isSelected());
     } else if (e.getSource() == clockSrcButton) {
       doClockSourceDialog();
     } else {
@@ -540,6 +548,7 @@ class OptionsPanel extends LogPanel implements ActionListener, ChangeListener, M
 
     unlimited.setText(S.get("historyUnlimited"));
     limitLabel.setText(S.get("historyLimit"));
+    spill.setText(S.get("historySpill"));
     
     clockSrcLabel.setText(S.get("clockSourceLabel"));
 
@@ -554,6 +563,7 @@ class OptionsPanel extends LogPanel implements ActionListener, ChangeListener, M
 
   void updateDescription() {
     limit.setEnabled(!unlimited.isSelected());
+    spill.setEnabled(unlimited.isSelected());
     String mode;
     String d;
     if (stepTime.isSelected()) {
@@ -650,6 +660,8 @@ class OptionsPanel extends LogPanel implements ActionListener, ChangeListener, M
     unlimited.setSelected(n == 0);
     if (n > 0)
       limit.setValue(n);
+    spill.setSelected(newModel.getHistorySpill());
+    spill.setEnabled(n == 0);
     SignalInfo clockSource = newModel.getClockSourceInfo();
     if (clockSource == null) {
       clockSrcButton.setIcon(null);
@@ -37,221 +37,320 @@ import java.util.ArrayList;
 
 public class Signal {
 
-
-  private static final int CHUNK = 512;
+  private static final int INITIAL_CAPACITY = 64;
 
   // Signal position in list, name, etc.
   public int idx;
   public final SignalInfo info;
 
-  // Signal data
+  // Signal data. Each entry is a value and how long it lasted, so a new entry
+  // is only added when the value changes. Entries are kept in a ring buffer:
+  // durations in dur, and values packed into slots of (1 << slotShift) bits
+  // in up to three bit planes. The unknown and error planes are only
+  // allocated once some value needs them, so a clean 1-bit signal costs one
+  // bit per change plus its duration.
   private long tStart;
-  private Value[][] val; // values, in blocks no larger than CHUNK
+  private long tEnd;
   private Value last;
-  private long[][] dur; // duration of each value
-  private int curSize;
+  private long[] dur;
+  private long[] valBits;
+  private long[] unkBits; // null until some value has unknown bits
+  private long[] errBits; // null until some value has error bits
+  private int slotShift;
+  private int first; // for wrapping, only when limited
+  private int curSize; // entries held in memory
   private int maxSize; // limit, or zero for unlimited
-  private short firstIndex; // for wrapping, only when limited
+  private boolean spillToDisk;
+  private SignalSpill spill; // oldest entries, only when unlimited
 
   public Signal(int idx, SignalInfo info, Value initialValue, long duration, long tStart, int maxSize) {
     this.idx = idx;
     this.info = info;
     this.tStart = tStart;
+    this.tEnd = tStart;
     this.maxSize = maxSize;
-    this.val = new Value[1][maxSize == 0 || maxSize > CHUNK ? CHUNK : maxSize];
-    this.dur = new long[1][maxSize == 0 || maxSize > CHUNK ? CHUNK : maxSize];
+    this.dur = new long[0];
     this.curSize = 0;
-    this.firstIndex = 0;
+    this.first = 0;
+    layout(0, 0, initialCapacity(), slotShiftFor(info.getWidth()));
     extend(initialValue, duration);
   }
 
+  private int initialCapacity() {
+    return maxSize == 0 ? INITIAL_CAPACITY : Math.min(maxSize, INITIAL_CAPACITY);
+  }
+
+  private static int slotShiftFor(int width) {
+    return width <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(width - 1);
+  }
+
+  private static long[] plane(int capacity, int shift) {
+    return new long[(int) ((((long) capacity << shift) + 63) >>> 6)];
+  }
+
+  private static long getBits(long[] plane, int shift, int i) {
+    if (plane == null)
+      return 0;
+    if (shift == 6)
+      return plane[i];
+    long pos = (long) i << shift;
+    return (plane[(int) (pos >>> 6)] >>> pos) & ~(-1L << (1 << shift));
+  }
+
+  private static void setBits(long[] plane, int shift, int i, long bits) {
+    if (shift == 6) {
+      plane[i] = bits;
+      return;
+    }
+    long pos = (long) i << shift;
+    long mask = ~(-1L << (1 << shift));
+    int w = (int) (pos >>> 6);
+    plane[w] = (plane[w] & ~(mask << pos)) | ((bits & mask) << pos);
+  }
+
+  private int index(int p) {
+    int i = first + p;
+    return i >= dur.length ? i - dur.length : i;
+  }
+
+  // copy count entries, starting offset entries past the oldest one, into
+  // fresh arrays of the given capacity and slot size
+  private void layout(int offset, int count, int capacity, int shift) {
+    long[] d = new long[capacity];
+    long[] v = plane(capacity, shift);
+    long[] u = unkBits == null ? null : plane(capacity, shift);
+    long[] e = errBits == null ? null : plane(capacity, shift);
+    for (int p = 0; p < count; p++) {
+      int i = index(offset + p);
+      d[p] = dur[i];
+      setBits(v, shift, p, getBits(valBits, slotShift, i));
+      if (u != null)
+        setBits(u, shift, p, getBits(unkBits, slotShift, i));
+      if (e != null)
+        setBits(e, shift, p, getBits(errBits, slotShift, i));
+    }
+    dur = d;
+    valBits = v;
+    unkBits = u;
+    errBits = e;
+    slotShift = shift;
+    first = 0;
+    curSize = count;
+  }
+
+  // widen the slots if v doesn't fit in them
+  private void fit(Value v) {
+    int shift = slotShiftFor(v.getWidth());
+    if (shift > slotShift)
+      layout(0, curSize, dur.length, shift);
+  }
+
+  private void store(int i, Value v, long duration) {
+    dur[i] = duration;
+    setBits(valBits, slotShift, i, v.getValueMask());
+    long unk = v.getUnknownMask();
+    if (unk != 0 && unkBits == null)
+      unkBits = plane(dur.length, slotShift);
+    if (unkBits != null)
+      setBits(unkBits, slotShift, i, unk);
+    long err = v.getErrorMask();
+    if (err != 0 && errBits == null)
+      errBits = plane(dur.length, slotShift);
+    if (errBits != null)
+      setBits(errBits, slotShift, i, err);
+  }
+
+  private boolean holds(int i, Value v) {
+    return getBits(valBits, slotShift, i) == v.getValueMask()
+        && getBits(unkBits, slotShift, i) == v.getUnknownMask()
+        && getBits(errBits, slotShift, i) == v.getErrorMask();
+  }
+
+  private int spilled() {
+    return spill == null ? 0 : spill.getSize();
+  }
+
+  // the value of entry p, counting spilled entries, always at the current width
+  private Value valueAt(int p) {
+    int s = spilled();
+    if (p < s)
+      return Value.create(info.getWidth(),
+          spill.getErrorBits(p), spill.getUnknownBits(p), spill.getValueBits(p));
+    int i = index(p - s);
+    return Value.create(info.getWidth(),
+        getBits(errBits, slotShift, i), getBits(unkBits, slotShift, i), getBits(valBits, slotShift, i));
+  }
+
+  private long durationAt(int p) {
+    int s = spilled();
+    return p < s ? spill.getDuration(p) : dur[index(p - s)];
+  }
+
+  // move the oldest block of entries to disk, if allowed
+  private boolean spillOldest() {
+    int n = SignalSpill.BLOCK;
+    if (!spillToDisk || maxSize != 0 || curSize < 2 * n)
+      return false;
+    long[] d = new long[n];
+    long[] v = new long[n];
+    long[] u = new long[n];
+    long[] e = new long[n];
+    for (int p = 0; p < n; p++) {
+      int i = index(p);
+      d[p] = dur[i];
+      v[p] = getBits(valBits, slotShift, i);
+      u[p] = getBits(unkBits, slotShift, i);
+      e[p] = getBits(errBits, slotShift, i);
+    }
+    if (spill == null)
+      spill = new SignalSpill();
+    if (!spill.write(d, v, u, e)) {
+      spillToDisk = false;
+      return false;
+    }
+    first = index(n);
+    curSize -= n;
+    return true;
+  }
+
+  /**
+   * When enabled and the history is unlimited, the oldest parts of the history
+   * are moved to a temporary file rather than kept in memory.
+   */
+  public void setSpillToDisk(boolean enable) {
+    spillToDisk = enable;
+  }
+
   public long omittedDataTime() {
     return curSize == maxSize ? tStart : 0;
   }
 
   public long getEndTime() {
-    long t = tStart;
-    for (int p = 0; p < curSize; p++) {
-      int i = (firstIndex + p) % curSize;
-      t += dur[i/CHUNK][i%CHUNK];
-    }
-    return t;
+    return tEnd;
   }
 
   public void extend(long duration) {
     if (last == null) {
       tStart += duration;
     } else {
-      int i = (firstIndex + curSize - 1) % curSize;
-      dur[i/CHUNK][i%CHUNK] += duration;
+      dur[index(curSize - 1)] += duration;
     }
+    tEnd += duration;
   }
 
   public void extend(Value v, long duration) {
     if (v.getWidth() != info.getWidth())
       System.out.printf("*** notice: value width mismatch for %s: width=%d bits, newVal=%s (%d bits)\n",
           info, info.getWidth(), v, v.getWidth());
+    tEnd += duration;
     if (last != null && last.equals(v)) {
-      int i = (firstIndex + curSize - 1) % curSize;
-      dur[i/CHUNK][i%CHUNK] += duration;
+      dur[index(curSize - 1)] += duration;
       return;
     }
     last = v;
-    int c = val.length;
-    int cap = CHUNK*(c-1) + val[c-1].length;
-    if (curSize < cap) {
-      // fits in an existing chunk
-      val[curSize/CHUNK][curSize%CHUNK] = v;
-      dur[curSize/CHUNK][curSize%CHUNK] = duration;
-      curSize++;
-    } else if (curSize < maxSize || maxSize <= 0) {
-      // allocate another chunk
-      Value[][] val2 = new Value[c+1][];
-      long[][] dur2 = new long[c+1][];
-      System.arraycopy(val, 0, val2, 0, c);
-      System.arraycopy(dur, 0, dur2, 0, c);
-      val2[c+1] = new Value[maxSize == 0 || (maxSize-cap) > CHUNK ? CHUNK : (maxSize-cap)];
-      dur2[c+1] = new long[maxSize == 0 || (maxSize-cap) > CHUNK ? CHUNK : (maxSize-cap)];
-      val = val2;
-      dur = dur2;
-      val[curSize/CHUNK][curSize%CHUNK] = v;
-      dur[curSize/CHUNK][curSize%CHUNK] = duration;
-      curSize++;
-    } else {
-   // limited size is filled, wrap around, and adjust start offset
-      tStart += dur[firstIndex/CHUNK][firstIndex%CHUNK];
-      val[firstIndex/CHUNK][firstIndex%CHUNK] = v;
-      dur[firstIndex/CHUNK][firstIndex%CHUNK] = duration;
-      firstIndex++;
-      if (firstIndex >= maxSize)
-        firstIndex = 0;
+    fit(v);
+    if (curSize == dur.length) {
+      if (maxSize > 0 && curSize >= maxSize) {
+        // limited size is filled, wrap around, and adjust start offset
+        tStart += dur[first];
+        store(first, v, duration);
+        first = index(1);
+        return;
+      }
+      if (!spillOldest()) {
+        int cap = maxSize == 0 ? 2 * curSize : Math.min(2 * curSize, maxSize);
+        layout(0, curSize, cap, slotShift);
+      }
     }
+    store(index(curSize), v, duration);
+    curSize++;
   }
 
   public void replaceRecent(Value v, long duration) {
     if (last == null || curSize == 0)
       throw new IllegalStateException("signal should have at least "+duration+" ns of data");
-    int i = (firstIndex + curSize - 1) % curSize;
-    boolean checkMerge = true;
-    if (dur[i/CHUNK][i%CHUNK] == duration) {
-      val[i/CHUNK][i%CHUNK] = v;
+    fit(v);
+    int i = index(curSize - 1);
+    if (dur[i] == duration) {
+      store(i, v, duration);
       last = v;
-      int j = (i + curSize - 1) % curSize;
-      if (curSize > 1 && val[j/CHUNK][j%CHUNK].equals(v)) {
-        dur[j/CHUNK][j%CHUNK] += duration;
+      if (curSize > 1 && holds(index(curSize - 2), v)) {
+        dur[index(curSize - 2)] += duration;
         curSize--;
-        // special case: last chunk is now entirely empty, must be removed
-        if (i%CHUNK == 0) {
-          int c = val.length - 1;
-          Value[][] vNew = new Value[c][];
-          long[][] dNew = new long[c][];
-          System.arraycopy(val, 0, vNew, 0, c);
-          System.arraycopy(dur, 0, dNew, 0, c);
-          val = vNew;
-          dur = dNew;
-        }
       }
-    } else if (dur[i/CHUNK][i%CHUNK] > duration) {
-      dur[i/CHUNK][i%CHUNK] -= duration;
+    } else if (dur[i] > duration) {
+      dur[i] -= duration;
+      tEnd -= duration;
       extend(v, duration);
-    } else if (curSize == 1 && dur[i/CHUNK][i%CHUNK] + tStart >= duration) {
-      tStart -= (duration - dur[i/CHUNK][i%CHUNK]);
-      val[i/CHUNK][i%CHUNK] = v;
-      dur[i/CHUNK][i%CHUNK] = duration;
+    } else if (curSize == 1 && spill == null && dur[i] + tStart >= duration) {
+      tStart -= (duration - dur[i]);
+      store(i, v, duration);
       last = v;
     } else {
       throw new IllegalStateException("signal data should be at least "+duration+" ns in duration,"
-          + " but only " + dur[i/CHUNK][i%CHUNK] + " in last signal");
+          + " but only " + dur[i] + " in last signal");
     }
   }
 
-  private void retainOnly(int offset, int amt, int cap) {
-    // shift all values [from offset to offset+amt] left into new arrays
-    // of size appropriate for eventual capacity cap
-    int c = (amt + CHUNK - 1) / CHUNK;
-    int last = cap == 0 ? CHUNK : Math.min(CHUNK, cap - (c-1) * CHUNK);
-    Value[][] v = new Value[c][];
-    long[][] d = new long[c][];
-    for (int i = 0; i < c; i++) {
-      v[i] = new Value[i < c-1 ? CHUNK : last];
-      d[i] = new long[i < c-1 ? CHUNK : last];
+  public void resize(int newMaxSize) {
+    if (newMaxSize == maxSize)
+      return;
+    maxSize = newMaxSize;
+    if (newMaxSize == 0)
+      return; // growing to unlimited, the buffer grows as needed
+    int size = spilled() + curSize;
+    int keep = Math.min(size, newMaxSize);
+    int discard = size - keep;
+    if (spill == null) {
+      // everything is in memory, keep only the most recent data and shift it left
+      for (int p = 0; p < discard; p++)
+        tStart += dur[index(p)];
+      if (discard > 0 || dur.length > newMaxSize)
+        layout(discard, keep, Math.min(newMaxSize, Math.max(keep, initialCapacity())), slotShift);
+      return;
     }
-    for (int p = 0; p < amt; p++) {
-      int i = (firstIndex + offset + p) % curSize;
-      v[p/CHUNK][p%CHUNK] = val[i/CHUNK][i%CHUNK];
-      d[p/CHUNK][p%CHUNK] = dur[i/CHUNK][i%CHUNK];
+    // skip whole spilled blocks, then read back whatever part of the spilled
+    // data is still needed
+    int p = 0;
+    for (int b = 0; b < spill.getBlockCount() && p + SignalSpill.BLOCK <= discard; b++) {
+      tStart += spill.getBlockDuration(b);
+      p += SignalSpill.BLOCK;
     }
-    val = v;
-    dur = d;
-    firstIndex = 0;
-    curSize = amt;
+    for (; p < discard; p++)
+      tStart += durationAt(p);
+    long[] d = new long[keep];
+    Value[] v = new Value[keep];
+    for (int k = 0; k < keep; k++) {
+      d[k] = durationAt(discard + k);
+      v[k] = valueAt(discard + k);
+    }
+    spill.close();
+    spill = null;
+    unkBits = null;
+    errBits = null;
+    layout(0, 0, Math.min(newMaxSize, Math.max(keep, initialCapacity())), slotShiftFor(info.getWidth()));
+    for (int k = 0; k < keep; k++)
+      store(k, v[k], d[k]);
+    curSize = keep;
   }
 
-  public void resize(int newMaxSize) {
-    if (newMaxSize == maxSize)
-      return;
-    if (newMaxSize == 0 || newMaxSize > maxSize) {
-      // growing
-      if (firstIndex != 0)
-        retainOnly(0, curSize, newMaxSize); // keeps all data, but shifts it left
-    } else {
-      // shrinking: newMaxSize < maxSize
-      if (curSize <= newMaxSize) {
-        // Mostly empty, keep all data, but maybe truncate last chunk if needed
-        // to get capacity below new max size.
-        // Note: firstIndex must be 0, since otherwize curSize==maxSize,
-        // and that would mean curSize > newMaxSize.
-        // There are two cases:
-        //  very unfull:
-        //    cap -----------------------------------------------|
-        //    curSize --------------------------|
-        //    [ 0+ full large-chunks ] [ partly full large-chunk ] [ not yet allocated... ]
-        //  nearly full:
-        //    cap ---------------------------------------------|
-        //    curSize -------------------------|
-        //    [ 0+ full large-chunks ] [ partly full end-chunk ]
-        // In the very unfull case, we may be able to do nothing at all
-        // (if cap <= newMaxSize), or we may have to shrink that last allocated
-        // chunk (if cap > newMaxSize).
-        // In the nearly full case, cap > newMaxSize and we need to shrink the
-        // last allocated chunk.
-        int c = val.length;
-        int cap = CHUNK*(c-1) + val[c-1].length;
-        if (cap > newMaxSize) {
-          // Note: # of existing chunks (c) must be equal to # of new chunks
-          int last = Math.min(CHUNK, newMaxSize - (c-1) * CHUNK);
-          Value[] v = new Value[last];
-          long[] d = new long[last];
-          System.arraycopy(val[c-1], 0, v, 0, last);
-          System.arraycopy(dur[c-1], 0, d, 0, last);
-          val[c-1] = v;
-          dur[c-1] = d;
-        }
-      } else { // curSize > newMaxSize
-        // too much data, keep only most recent data and shift it left
-        int discard = (maxSize - newMaxSize);
-        for (int p = 0; p < discard; p++) {
-          int i = (firstIndex + p) % curSize;
-          tStart += dur[i/CHUNK][i%CHUNK];
-        }
-        retainOnly(discard, newMaxSize, newMaxSize);
-      }
+  // deletes the entries kept on disk, once the signal is dropped or reset
+  void dispose() {
+    if (spill != null) {
+      spill.close();
+      spill = null;
     }
-    maxSize = newMaxSize;
   }
 
   public void reset(Value v, long duration) {
-    if (val.length > 1) {
-      Value[][] val2 = new Value[1][];
-      long[][] dur2 = new long[1][];
-      val2[0] = val[0];
-      dur2[0] = dur[0];
-      val = val2;
-      dur = dur2;
-    }
+    tEnd = tStart;
     last = null;
     curSize = 0;
-    firstIndex = 0;
+    first = 0;
+    dispose();
+    unkBits = null;
+    errBits = null;
+    layout(0, 0, Math.min(dur.length, initialCapacity()), slotShiftFor(info.getWidth()));
     extend(v, duration);
   }
 
@@ -265,14 +364,34 @@ public class Signal {
     public Iterator() {
       position = 0;
       time = tStart;
-      int i = firstIndex;
-      int width = info.getWidth();
-      value = val[i/CHUNK][i%CHUNK].extendWidth(width, Value.FALSE);
-      duration = dur[i/CHUNK][i%CHUNK];
+      value = valueAt(0);
+      duration = durationAt(0);
     }
 
     public Iterator(long t) {
-      this();
+      if (t > tStart && t < tEnd && t - tStart > tEnd - t) {
+        // closer to the end, so search back from there
+        int p = spilled() + curSize - 1;
+        long start = tEnd - durationAt(p);
+        while (start > t)
+          start -= durationAt(--p);
+        position = p;
+        time = t;
+        value = valueAt(p);
+        duration = start + durationAt(p) - t;
+        return;
+      }
+      position = 0;
+      time = tStart;
+      if (spill != null) {
+        // skip whole spilled blocks without reading them back
+        for (int b = 0; b < spill.getBlockCount() && t >= time + spill.getBlockDuration(b); b++) {
+          time += spill.getBlockDuration(b);
+          position += SignalSpill.BLOCK;
+        }
+      }
+      value = valueAt(position);
+      duration = durationAt(position);
       if (t > time)
         advance(t-time);
     }
@@ -282,17 +401,15 @@ public class Signal {
     }
 
     public boolean advance() {
-      if (position == curSize-1) {
+      if (position == spilled() + curSize - 1) {
         value = null;
         duration = 0;
         return false;
       }
       position++;
       time += duration;
-      int i = (firstIndex + position) % curSize;
-      int width = info.getWidth();
-      value = val[i/CHUNK][i%CHUNK].extendWidth(width, Value.FALSE);
-      duration = dur[i/CHUNK][i%CHUNK];
+      value = valueAt(position);
+      duration = durationAt(position);
       return true;
     }
 
@@ -315,20 +432,13 @@ public class Signal {
 
   }
 
-  // todo: easily optimized
   public Value getValue(long t) { // always current width, even when width changes
     if (t < tStart)
       return null;
-    int width = info.getWidth();
-    long tt = tStart;
-    for (int p = 0; p < curSize; p++) {
-      int i = (firstIndex + p) % curSize;
-      long d = dur[i/CHUNK][i%CHUNK];
-      if (t < tt + d)
-        return val[i/CHUNK][i%CHUNK].extendWidth(width, Value.FALSE);
-      tt += d;
-    }
-    return null;
+    Iterator it = new Iterator(t);
+    while (it.value != null && it.duration == 0)
+      it.advance();
+    return it.value;
   }
 
   public String getFormattedValue(long t) {
@@ -0,0 +1,196 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.gui.log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// The oldest part of an unlimited signal history, kept in a temporary file in blocks of BLOCK
+// entries. Each entry is written as variable-length integers: the duration and the value bits,
+// followed by the unknown and error bits if the block has any. Only the block offsets and
+// durations stay in memory, plus the last block read back.
+class SignalSpill {
+  static final int BLOCK = 4096;
+  private static final Logger logger = LoggerFactory.getLogger(SignalSpill.class);
+
+  private File file;
+  private long fileLength;
+  private long[] blockOffset = new long[16];
+  private long[] blockDuration = new long[16];
+  private int blocks;
+  private long duration;
+
+  private int cachedBlock = -1;
+  private final long[] cacheDur = new long[BLOCK];
+  private final long[] cacheVal = new long[BLOCK];
+  private final long[] cacheUnk = new long[BLOCK];
+  private final long[] cacheErr = new long[BLOCK];
+
+  int getSize() {
+    return blocks * BLOCK;
+  }
+
+  int getBlockCount() {
+    return blocks;
+  }
+
+  long getDuration() {
+    return duration;
+  }
+
+  long getBlockDuration(int block) {
+    return blockDuration[block];
+  }
+
+  // appends one block of entries, returning false if the file could not be written
+  boolean write(long[] dur, long[] val, long[] unk, long[] err) {
+    boolean planes = false;
+    long total = 0;
+    for (int i = 0; i < BLOCK; i++) {
+      planes |= unk[i] != 0 || err[i] != 0;
+      total += dur[i];
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(BLOCK * 4);
+    out.write(planes ? 1 : 0);
+    for (int i = 0; i < BLOCK; i++) {
+      writeLong(out, dur[i]);
+      writeLong(out, val[i]);
+      if (planes) {
+        writeLong(out, unk[i]);
+        writeLong(out, err[i]);
+      }
+    }
+    try {
+      if (file == null) {
+        file = File.createTempFile("logisim-signal", ".bin");
+        file.deleteOnExit();
+      }
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.seek(fileLength);
+        raf.write(out.toByteArray());
+      }
+    } catch (IOException e) {
+      logger.error("Cannot write signal history to {}: {}", file, e.getMessage());
+      return false;
+    }
+    if (blocks == blockOffset.length) {
+      blockOffset = Arrays.copyOf(blockOffset, 2 * blocks);
+      blockDuration = Arrays.copyOf(blockDuration, 2 * blocks);
+    }
+    blockOffset[blocks] = fileLength;
+    blockDuration[blocks] = total;
+    blocks++;
+    fileLength += out.size();
+    duration += total;
+    return true;
+  }
+
+  long getDuration(int p) {
+    load(p / BLOCK);
+    return cacheDur[p % BLOCK];
+  }
+
+  long getValueBits(int p) {
+    load(p / BLOCK);
+    return cacheVal[p % BLOCK];
+  }
+
+  long getUnknownBits(int p) {
+    load(p / BLOCK);
+    return cacheUnk[p % BLOCK];
+  }
+
+  long getErrorBits(int p) {
+    load(p / BLOCK);
+    return cacheErr[p % BLOCK];
+  }
+
+  private void load(int block) {
+    if (block == cachedBlock) return;
+    long end = block + 1 < blocks ? blockOffset[block + 1] : fileLength;
+    byte[] buf = new byte[(int) (end - blockOffset[block])];
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      raf.seek(blockOffset[block]);
+      raf.readFully(buf);
+    } catch (IOException e) {
+      // show the block as errors rather than losing the rest of the history
+      logger.error("Cannot read signal history from {}: {}", file, e.getMessage());
+      Arrays.fill(cacheDur, blockDuration[block] / BLOCK);
+      cacheDur[0] += blockDuration[block] % BLOCK;
+      Arrays.fill(cacheVal, 0);
+      Arrays.fill(cacheUnk, 0);
+      Arrays.fill(cacheErr, -1L);
+      cachedBlock = block;
+      return;
+    }
+    int[] pos = {1};
+    boolean planes = buf[0] != 0;
+    for (int i = 0; i < BLOCK; i++) {
+      cacheDur[i] = readLong(buf, pos);
+      cacheVal[i] = readLong(buf, pos);
+      cacheUnk[i] = planes ? readLong(buf, pos) : 0;
+      cacheErr[i] = planes ? readLong(buf, pos) : 0;
+    }
+    cachedBlock = block;
+  }
+
+  void close() {
+    if (file != null && !file.delete()) file.deleteOnExit();
+    file = null;
+    blocks = 0;
+    fileLength = 0;
+    duration = 0;
+    cachedBlock = -1;
+  }
+
+  private static void writeLong(ByteArrayOutputStream out, long v) {
+    while ((v & ~0x7FL) != 0) {
+      out.write((int) (v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out.write((int) v);
+  }
+
+  private static long readLong(byte[] buf, int[] pos) {
+    long v = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = buf[pos[0]++];
+      v |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return v;
+  }
+}
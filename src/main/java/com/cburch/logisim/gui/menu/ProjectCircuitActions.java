@@ -50,6 +50,7 @@ import com.cburch.logisim.tools.Library;
 import com.cburch.logisim.tools.Tool;
 import com.cburch.logisim.util.StringUtil;
 import com.cburch.logisim.util.SyntaxChecker;
+import com.cburch.logisim.util.UniquelyNamedThread;
 import com.cburch.logisim.vhdl.base.VhdlContent;
 import java.awt.Dimension;
 import java.awt.GridBagConstraints;
@@ -58,12 +59,15 @@ import java.awt.event.WindowEvent;
 import java.awt.event.WindowFocusListener;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
 
 public class ProjectCircuitActions {
   private ProjectCircuitActions() {}
@@ -102,9 +106,67 @@ public class ProjectCircuitActions {
           OptionPane.INFORMATION_MESSAGE);
     }
 
-    // As a backup measure, we compute a truth table.
-    Analyze.computeTable(analyzer.getModel(), proj, circuit, pinNames);
-    analyzer.setSelectedTab(Analyzer.TABLE_TAB);
+    // As a backup measure, we compute a truth table. This is done in a
+    // thread, such that large tables show their progress and can be cancelled.
+    ProgressMonitor monitor =
+        new ProgressMonitor(analyzer, S.get("analyzeTableProgress"), null, 0, PROGRESS_MAX);
+    monitor.setMillisToDecideToPopup(100);
+    monitor.setMillisToPopup(200);
+    monitor.setProgress(0);
+    new TableThread(proj, circuit, analyzer, pinNames, monitor).start();
+  }
+
+  private static final int PROGRESS_MAX = 1000;
+
+  private static class TableThread extends UniquelyNamedThread implements Analyze.TableProgress {
+    final Project proj;
+    final Circuit circuit;
+    final Analyzer analyzer;
+    final Map<Instance, String> pinNames;
+    final ProgressMonitor monitor;
+    final AtomicInteger shownProgress = new AtomicInteger();
+
+    TableThread(
+        Project proj,
+        Circuit circuit,
+        Analyzer analyzer,
+        Map<Instance, String> pinNames,
+        ProgressMonitor monitor) {
+      super("TableThread");
+      this.proj = proj;
+      this.circuit = circuit;
+      this.analyzer = analyzer;
+      this.pinNames = pinNames;
+      this.monitor = monitor;
+    }
+
+    @Override
+    public void rowsComputed(int rowsDone, int rowCount) {
+      int progress = (int) ((long) rowsDone * PROGRESS_MAX / rowCount);
+      // only hand the changes of the shown value to the AWT thread
+      int shown = shownProgress.get();
+      if (progress > shown && shownProgress.compareAndSet(shown, progress)) {
+        SwingUtilities.invokeLater(() -> monitor.setProgress(progress));
+      }
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return monitor.isCanceled();
+    }
+
+    @Override
+    public void run() {
+      Analyze.ComputedTable table = Analyze.computeTable(proj, circuit, pinNames, this);
+      SwingUtilities.invokeLater(
+          () -> {
+            monitor.close();
+            if (table != null) {
+              table.applyTo(analyzer.getModel());
+              analyzer.setSelectedTab(Analyzer.TABLE_TAB);
+            }
+          });
+    }
   }
 
   public static void doAddCircuit(Project proj) {
@@ -59,6 +59,7 @@ class SimulateOptions extends OptionsPanel {
           });
 
   private final JCheckBox simRandomness = new JCheckBox();
+  private final JCheckBox simParallel = new JCheckBox();
   private final JCheckBox MemUnknown = new JCheckBox();
   private final JLabel gateUndefinedLabel = new JLabel();
 
@@ -70,6 +71,15 @@ class SimulateOptions extends OptionsPanel {
             new ComboOption(Options.GATE_UNDEFINED_ERROR)
           });
 
+  private final JLabel simEngineLabel = new JLabel();
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private final JComboBox simEngine =
+      new JComboBox(
+          new Object[] {
+            new ComboOption(Options.SIM_ENGINE_EVENT), new ComboOption(Options.SIM_ENGINE_LEVELIZED)
+          });
+
   public SimulateOptions(OptionsFrame window) {
     super(window);
 
@@ -83,7 +93,13 @@ class SimulateOptions extends OptionsPanel {
     gateUndefinedPanel.add(gateUndefined);
     gateUndefined.addActionListener(myListener);
 
+    JPanel simEnginePanel = new JPanel();
+    simEnginePanel.add(simEngineLabel);
+    simEnginePanel.add(simEngine);
+    simEngine.addActionListener(myListener);
+
     simRandomness.addActionListener(myListener);
+    simParallel.addActionListener(myListener);
 
     MemUnknown.addActionListener(myListener);
     MemUnknown.setSelected(AppPreferences.Memory_Startup_Unknown.get());
@@ -92,13 +108,17 @@ class SimulateOptions extends OptionsPanel {
     add(MemUnknown);
     add(simLimitPanel);
     add(gateUndefinedPanel);
+    add(simEnginePanel);
     add(simRandomness);
+    add(simParallel);
 
     window.getOptions().getAttributeSet().addAttributeListener(myListener);
     AttributeSet attrs = getOptions().getAttributeSet();
     myListener.loadSimLimit(attrs.getValue(Options.ATTR_SIM_LIMIT));
     myListener.loadGateUndefined(attrs.getValue(Options.ATTR_GATE_UNDEFINED));
     myListener.loadSimRandomness(attrs.getValue(Options.ATTR_SIM_RAND));
+    myListener.loadSimParallel(attrs.getValue(Options.ATTR_SIM_PARALLEL));
+    myListener.loadSimEngine(attrs.getValue(Options.ATTR_SIM_ENGINE));
   }
 
   @Override
@@ -115,7 +135,9 @@ class SimulateOptions extends OptionsPanel {
   public void localeChanged() {
     simLimitLabel.setText(S.get("simulateLimit"));
     gateUndefinedLabel.setText(S.get("gateUndefined"));
+    simEngineLabel.setText(S.get("simulateEngine"));
     simRandomness.setText(S.get("simulateRandomness"));
+    simParallel.setText(S.get("simulateParallel"));
     MemUnknown.setText(S.get("MemoriesStartupUnknown"));
   }
 
@@ -132,6 +154,10 @@ class SimulateOptions extends OptionsPanel {
         AttributeSet attrs = getOptions().getAttributeSet();
         Object val = simRandomness.isSelected() ? Options.sim_rand_dflt : Integer.valueOf(0);
         getProject().doAction(OptionsActions.setAttribute(attrs, Options.ATTR_SIM_RAND, val));
+      } else if (source == simParallel) {
+        AttributeSet attrs = getOptions().getAttributeSet();
+        Boolean val = simParallel.isSelected();
+        getProject().doAction(OptionsActions.setAttribute(attrs, Options.ATTR_SIM_PARALLEL, val));
       } else if (source == gateUndefined) {
         ComboOption opt = (ComboOption) gateUndefined.getSelectedItem();
         if (opt != null) {
@@ -140,6 +166,14 @@ class SimulateOptions extends OptionsPanel {
               .doAction(
                   OptionsActions.setAttribute(attrs, Options.ATTR_GATE_UNDEFINED, opt.getValue()));
         }
+      } else if (source == simEngine) {
+        ComboOption opt = (ComboOption) simEngine.getSelectedItem();
+        if (opt != null) {
+          AttributeSet attrs = getOptions().getAttributeSet();
+          getProject()
+              .doAction(
+                  OptionsActions.setAttribute(attrs, Options.ATTR_SIM_ENGINE, opt.getValue()));
+        }
       } else if (source == MemUnknown) {
         AppPreferences.Memory_Startup_Unknown.set(MemUnknown.isSelected());
         Simulator sim = getProject().getSimulator();
@@ -156,8 +190,12 @@ class SimulateOptions extends OptionsPanel {
         loadSimLimit((Integer) val);
       } else if (attr == Options.ATTR_SIM_RAND) {
         loadSimRandomness((Integer) val);
+      } else if (attr == Options.ATTR_SIM_PARALLEL) {
+        loadSimParallel((Boolean) val);
       } else if (attr == Options.ATTR_GATE_UNDEFINED) {
         loadGateUndefined(val);
+      } else if (attr == Options.ATTR_SIM_ENGINE) {
+        loadSimEngine(val);
       }
     }
 
@@ -165,6 +203,10 @@ class SimulateOptions extends OptionsPanel {
       ComboOption.setSelected(gateUndefined, val);
     }
 
+    private void loadSimEngine(Object val) {
+      ComboOption.setSelected(simEngine, val);
+    }
+
     @SuppressWarnings("rawtypes")
     private void loadSimLimit(Integer val) {
       int value = val;
@@ -180,5 +222,9 @@ class SimulateOptions extends OptionsPanel {
     private void loadSimRandomness(Integer val) {
       simRandomness.setSelected(val > 0);
     }
+
+    private void loadSimParallel(Boolean val) {
+      simParallel.setSelected(val);
+    }
   }
 }
@@ -120,6 +120,8 @@ public class Startup implements AWTEventListener {
   private boolean exitAfterStartup = false;
   private boolean showSplash;
   private File loadFile;
+  private File dumpDirectory;
+  private long tickLimit = 0;
   private int ttyFormat = 0;
   // from other sources
   private boolean initialized = false;
@@ -179,6 +181,8 @@ public class Startup implements AWTEventListener {
         return TtyInterface.FORMAT_TABLE_CSV;
       case "tabs":
         return TtyInterface.FORMAT_TABLE_TABBED;
+      case "batch":
+        return TtyInterface.FORMAT_BATCH;
       default:
         return 0;
     }
@@ -279,6 +283,29 @@ public class Startup implements AWTEventListener {
           logger.error("{}", S.get("loadNeedsFileError"));
           return null;
         }
+      } else if (arg.equals("-ticks")) {
+        long ticks = -1;
+        if (i + 1 < args.length) {
+          i++;
+          try {
+            ticks = Long.parseLong(args[i]);
+          } catch (NumberFormatException e) {
+            ticks = -1;
+          }
+        }
+        if (ticks <= 0) {
+          logger.error("{}", S.get("ticksNeedsNumberError"));
+          return null;
+        }
+        ret.tickLimit = ticks;
+      } else if (arg.equals("-dump")) {
+        if (i + 1 < args.length) {
+          i++;
+          ret.dumpDirectory = new File(args[i]);
+        } else {
+          logger.error("{}", S.get("dumpNeedsDirError"));
+          return null;
+        }
       } else if (arg.equals("-empty")) {
         if (ret.templFile != null || ret.templEmpty || ret.templPlain) {
           logger.error("{}", S.get("argOneTemplateError"));
@@ -515,6 +542,10 @@ public class Startup implements AWTEventListener {
       logger.error("{}", S.get("loadNeedsTtyError"));
       return null;
     }
+    if ((ret.tickLimit > 0 || ret.dumpDirectory != null) && !ret.isTty) {
+      logger.error("{}", S.get("ticksNeedsTtyError"));
+      return null;
+    }
 
     return ret;
   }
@@ -533,6 +564,8 @@ public class Startup implements AWTEventListener {
     System.err.println("   " + S.get("argGatesOption")); // OK
     System.err.println("   " + S.get("argHelpOption")); // OK
     System.err.println("   " + S.get("argLoadOption")); // OK
+    System.err.println("   " + S.get("argTicksOption")); // OK
+    System.err.println("   " + S.get("argDumpOption")); // OK
     System.err.println("   " + S.get("argLocaleOption")); // OK
     System.err.println("   " + S.get("argNoSplashOption")); // OK
     System.err.println("   " + S.get("argPlainOption")); // OK
@@ -832,6 +865,14 @@ public class Startup implements AWTEventListener {
     return loadFile;
   }
 
+  File getDumpDirectory() {
+    return dumpDirectory;
+  }
+
+  long getTickLimit() {
+    return tickLimit;
+  }
+
   String getCircuitToTest() {
     return circuitToTest;
   }
@@ -36,6 +36,7 @@ import com.cburch.logisim.circuit.Analyze;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.circuit.SubcircuitFactory;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
@@ -44,6 +45,7 @@ import com.cburch.logisim.file.LoadFailedException;
 import com.cburch.logisim.file.Loader;
 import com.cburch.logisim.file.LogisimFile;
 import com.cburch.logisim.gui.hex.HexFile;
+import com.cburch.logisim.gui.log.Loggable;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.StdAttr;
@@ -59,10 +61,17 @@ import com.cburch.logisim.util.UniquelyNamedThread;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.TreeMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,6 +86,7 @@ public class TtyInterface {
   public static final int FORMAT_TABLE_CSV = 64;
   public static final int FORMAT_TABLE_BIN = 128;
   public static final int FORMAT_TABLE_HEX = 256;
+  public static final int FORMAT_BATCH = 512;
   static final Logger logger = LoggerFactory.getLogger(TtyInterface.class);
   private static boolean lastIsNewline = true;
 
@@ -100,10 +110,39 @@ public class TtyInterface {
     else precision = 0.0000001;
     hertz = (int) (hertz / precision) * precision;
     String hertzStr = hertz == (int) hertz ? "" + (int) hertz : "" + hertz;
-    Object[] paramArray = {StringUtil.format(S.get("ttySpeedMsg")), hertzStr, tickCount, elapse};
+    Object[] paramArray = {
+      StringUtil.format(
+          S.get("ttySpeedMsg"), hertzStr, Long.toString(tickCount), Long.toString(elapse))
+    };
     logger.info("{}", paramArray);
   }
 
+  private static void displayThroughput(long tickCount, long eventCount, long elapse) {
+    double seconds = Math.max(elapse, 1) / 1000.0;
+    Object[] paramArray = {
+      StringUtil.format(
+          S.get("ttyBatchMsg"),
+          String.format("%.1f", tickCount / seconds),
+          String.format("%.1f", eventCount / seconds),
+          Long.toString(tickCount),
+          Long.toString(eventCount),
+          Long.toString(elapse),
+          Long.toString(getPeakHeapUsage() >> 20))
+    };
+    logger.info("{}", paramArray);
+  }
+
+  /** Returns the sum of the peak usage of all heap memory pools, in bytes. */
+  private static long getPeakHeapUsage() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() != MemoryType.HEAP) continue;
+      MemoryUsage usage = pool.getPeakUsage();
+      if (usage != null) peak += usage.getUsed();
+    }
+    return peak;
+  }
+
   private static void displayStatistics(LogisimFile file) {
     FileStatistics stats = FileStatistics.compute(file, file.getMainCircuit());
     FileStatistics.Count total = stats.getTotalWithSubcircuits();
@@ -259,6 +298,67 @@ public class TtyInterface {
     return found;
   }
 
+  private static String componentName(Component comp) {
+    String label = comp.getAttributeSet().getValue(StdAttr.LABEL);
+    if (label != null && !label.equals("")) return label;
+    return comp.getFactory().getName() + comp.getLocation();
+  }
+
+  private static String fileName(String path) {
+    return path.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  /**
+   * Writes the state of the simulation to the given directory: the value of every loggable
+   * component (registers, counters, flip-flops, pins, ...) goes to state.txt, one line per value,
+   * and the contents of every RAM go to a separate image file that "-load" can read back.
+   */
+  private static void dumpState(CircuitState circState, File dir) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException(dir.toString());
+    TreeMap<String, String> values = new TreeMap<>();
+    TreeMap<String, MemContents> memories = new TreeMap<>();
+    collectState(circState, circState.getCircuit().getName(), values, memories);
+
+    StringBuilder text = new StringBuilder();
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      text.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+    }
+    Files.write(new File(dir, "state.txt").toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+    for (Map.Entry<String, MemContents> entry : memories.entrySet()) {
+      String image = "v2.0 raw\n" + HexFile.saveToString(entry.getValue());
+      File file = new File(dir, fileName(entry.getKey()) + ".txt");
+      Files.write(file.toPath(), image.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private static void collectState(
+      CircuitState circState,
+      String path,
+      Map<String, String> values,
+      Map<String, MemContents> memories) {
+    for (Component comp : circState.getCircuit().getNonWires()) {
+      Object factory = comp.getFactory();
+      String name = path + "/" + componentName(comp);
+      if (factory instanceof SubcircuitFactory) {
+        CircuitState sub = ((SubcircuitFactory) factory).getSubstate(circState, comp);
+        if (sub != null) collectState(sub, name, values, memories);
+      } else if (factory instanceof Ram) {
+        InstanceState ramState = circState.getInstanceState(comp);
+        memories.put(name, ((Ram) factory).getContents(ramState));
+      } else {
+        Loggable log = (Loggable) comp.getFeature(Loggable.class);
+        if (log == null) continue;
+        Object[] options = log.getLogOptions();
+        if (options == null || options.length == 0) options = new Object[] {null};
+        for (Object option : options) {
+          Value val = log.getLogValue(circState, option);
+          if (val == null) continue;
+          values.put(option == null ? name : name + "." + option, val.toHexString());
+        }
+      }
+    }
+  }
+
   private static boolean prepareForTty(
       CircuitState circState, ArrayList<InstanceState> keybStates) {
     boolean found = false;
@@ -351,7 +451,15 @@ public class TtyInterface {
       }
     }
     int ttyFormat = args.getTtyFormat();
-    int simCode = runSimulation(circState, outputPins, haltPin, ttyFormat);
+    int simCode = runSimulation(circState, outputPins, haltPin, ttyFormat, args.getTickLimit());
+    if (args.getDumpDirectory() != null) {
+      try {
+        dumpState(circState, args.getDumpDirectory());
+      } catch (IOException e) {
+        logger.error("{}: {}", S.get("dumpIoError"), e.toString());
+        System.exit(-1);
+      }
+    }
     System.exit(simCode);
   }
 
@@ -451,12 +559,24 @@ public class TtyInterface {
     return 0;
   }
 
+  /**
+   * Clocks the circuit until the halt pin goes high, the circuit oscillates, or, when tickLimit is
+   * positive, tickLimit ticks have been run. Why it stopped is kept as 0 (halt pin), 1 (oscillation)
+   * or 2 (tick limit) for the message of the "halt" option. The tick limit is an expected end for a
+   * batch run, so code 2 is never returned: the result, used as the exit code, is 1 after an
+   * oscillation and 0 otherwise.
+   */
   private static int runSimulation(
-      CircuitState circState, ArrayList<Instance> outputPins, Instance haltPin, int format) {
+      CircuitState circState,
+      ArrayList<Instance> outputPins,
+      Instance haltPin,
+      int format,
+      long tickLimit) {
     boolean showTable = (format & FORMAT_TABLE) != 0;
     boolean showSpeed = (format & FORMAT_SPEED) != 0;
     boolean showTty = (format & FORMAT_TTY) != 0;
     boolean showHalt = (format & FORMAT_HALT) != 0;
+    boolean showBatch = (format & FORMAT_BATCH) != 0;
 
     ArrayList<InstanceState> keyboardStates = null;
     StdinThread stdinThread = null;
@@ -481,9 +601,16 @@ public class TtyInterface {
     boolean halted = false;
     ArrayList<Value> prevOutputs = null;
     Propagator prop = circState.getPropagator();
+    long startEvents = prop.getEventCount();
+    ArrayList<Instance> watchedPins = outputPins;
+    if (!showTable) {
+      // only the halt pin matters, don't read the other outputs every tick
+      watchedPins = new ArrayList<>();
+      if (haltPin != null) watchedPins.add(haltPin);
+    }
     while (true) {
       ArrayList<Value> curOutputs = new ArrayList<>();
-      for (Instance pin : outputPins) {
+      for (Instance pin : watchedPins) {
         InstanceState pinState = circState.getInstanceState(pin);
         Value val = Pin.FACTORY.getValue(pinState);
         if (pin == haltPin) {
@@ -504,6 +631,10 @@ public class TtyInterface {
         retCode = 1; // abnormal exit
         break;
       }
+      if (tickLimit > 0 && tickCount >= tickLimit) {
+        retCode = 2; // tick limit reached
+        break;
+      }
       if (keyboardStates != null) {
         char[] buffer = stdinThread.getBuffer();
         if (buffer != null) {
@@ -519,17 +650,23 @@ public class TtyInterface {
     }
     long elapse = System.currentTimeMillis() - start;
     if (showTty) ensureLineTerminated();
-    if (showHalt || retCode != 0) {
+    if (showHalt || retCode == 1) {
       if (retCode == 0) {
         logger.error("{}", S.get("ttyHaltReasonPin"));
       } else if (retCode == 1) {
         logger.error("{}", S.get("ttyHaltReasonOscillation"));
+      } else {
+        logger.error("{}", S.get("ttyHaltReasonTicks"));
       }
     }
     if (showSpeed) {
       displaySpeed(tickCount, elapse);
     }
-    return retCode;
+    if (showBatch) {
+      displayThroughput(tickCount, prop.getEventCount() - startEvents, elapse);
+    }
+    // reaching the tick limit is a normal way for a run to end
+    return retCode == 2 ? 0 : retCode;
   }
 
   public static void sendFromTty(char c) {
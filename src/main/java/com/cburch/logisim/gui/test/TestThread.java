@@ -30,6 +30,8 @@ package com.cburch.logisim.gui.test;
 
 import static com.cburch.logisim.gui.Strings.S;
 
+import com.cburch.logisim.circuit.Analyze;
+import com.cburch.logisim.circuit.BitSliceEvaluator;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitListener;
@@ -38,6 +40,7 @@ import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.FailException;
 import com.cburch.logisim.data.TestException;
 import com.cburch.logisim.data.TestVector;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.StdAttr;
@@ -45,15 +48,30 @@ import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.wiring.Pin;
 import com.cburch.logisim.util.StringUtil;
 import com.cburch.logisim.util.UniquelyNamedThread;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestThread extends UniquelyNamedThread implements CircuitListener {
 
+  private static final int LINES_PER_BLOCK = 64;
+
+  private interface ResultListener {
+    // returns false when no further results are wanted
+    boolean testDone(int idx, TestException result);
+  }
+
   private final Project project;
   private final Circuit circuit;
   private final TestVector vector;
   private Instance[] pin;
   private Model model;
-  private boolean canceled = false, paused = false;
+  private volatile boolean canceled = false, paused = false;
+  private volatile BitSliceEvaluator evaluator;
+  private TestException[] batch;
+  private int batchStart;
 
   public TestThread(Model model) throws TestException {
     super("TestThread-Model");
@@ -64,6 +82,7 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
     this.vector = model.getVector();
 
     matchPins();
+    evaluator = createEvaluator();
 
     model.getCircuit().addCircuitListener(this);
   }
@@ -76,6 +95,7 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
     this.vector = vec;
 
     matchPins();
+    evaluator = createEvaluator();
   }
 
   // used only for automated testing via command line arguments
@@ -99,30 +119,33 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
 
     System.out.println(StringUtil.format(S.get("testRunning"), Integer.toString(vec.data.size())));
 
-    int numPass = 0, numFail = 0;
-    for (int i = 0; i < vec.data.size(); i++) {
-      try {
-        System.out.print((i + 1) + " \r");
-        tester.test(i);
-        numPass++;
-      } catch (FailException e) {
-        System.out.println();
-        System.err.println(StringUtil.format(S.get("testFailed"), Integer.toString(i + 1)));
-        for (FailException e1 : e.getAll()) System.out.println("  " + e1.getMessage());
-        numFail++;
-        continue;
-      } catch (TestException e) {
-        System.out.println();
-        System.err.println(
-            StringUtil.format(S.get("testFailed"), (i + 1) + " " + e.getMessage()));
-        numFail++;
-        continue;
-      }
-    }
+    int[] numPassFail = new int[2];
+    tester.runAll(
+        (i, e) -> {
+          System.out.print((i + 1) + " \r");
+          if (e == null) {
+            numPassFail[0]++;
+          } else if (e instanceof FailException) {
+            System.out.println();
+            System.err.println(StringUtil.format(S.get("testFailed"), Integer.toString(i + 1)));
+            for (FailException e1 : ((FailException) e).getAll()) {
+              System.out.println("  " + e1.getMessage());
+            }
+            numPassFail[1]++;
+          } else {
+            System.out.println();
+            System.err.println(
+                StringUtil.format(S.get("testFailed"), (i + 1) + " " + e.getMessage()));
+            numPassFail[1]++;
+          }
+          return true;
+        });
     System.out.println();
     System.out.println(
         StringUtil.format(
-            S.get("testResults"), Integer.toString(numPass), Integer.toString(numFail)));
+            S.get("testResults"),
+            Integer.toString(numPassFail[0]),
+            Integer.toString(numPassFail[1])));
     return 0;
   }
 
@@ -133,7 +156,8 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
   public void circuitChanged(CircuitEvent event) {
     int action = event.getAction();
     if (action == CircuitEvent.ACTION_SET_NAME) return;
-    else model.clearResults();
+    evaluator = null;
+    model.clearResults();
   }
 
   void matchPins() throws TestException {
@@ -167,24 +191,108 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
 
   public void run() {
     try {
-      for (int i = 0; i < vector.data.size() && !canceled; i++) {
-        while (paused) {
-          if (canceled) return;
-          try {
-            Thread.sleep(1000);
-          } catch (InterruptedException ignored) {
-          }
-        }
+      runAll((i, result) -> waitWhilePaused() && model.setResult(vector, i, result));
+    } finally {
+      model.stop();
+    }
+  }
+
+  // returns false if the test was canceled
+  private boolean waitWhilePaused() {
+    while (paused && !canceled) {
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException ignored) {
+      }
+    }
+    return !canceled;
+  }
+
+  // Hands the result of every line to listener, in order, until it returns false. Lines that
+  // cannot be evaluated bitwise are simulated in blocks by workers that each own a circuit state,
+  // while this thread reports the finished blocks and helps with the remaining ones.
+  private void runAll(ResultListener listener) {
+    int n = vector.data.size();
+    int blockCount = (n + LINES_PER_BLOCK - 1) / LINES_PER_BLOCK;
+    int workerCount =
+        evaluator != null || !Analyze.canComputeInParallel(circuit)
+            ? 0
+            : Math.min(Runtime.getRuntime().availableProcessors() - 1, blockCount - 1);
+    if (workerCount <= 0) {
+      for (int i = 0; i < n && !canceled; i++) {
+        if (!listener.testDone(i, runTest(i))) canceled = true;
+      }
+      return;
+    }
+
+    TestException[] results = new TestException[n];
+    boolean[] blockDone = new boolean[blockCount]; // guarded by results
+    AtomicInteger nextBlock = new AtomicInteger(1);
+    // The first block is done here, such that the bundle maps of all circuits involved are built
+    // before the workers need them.
+    CircuitState ownState = new CircuitState(project, circuit);
+    testBlock(ownState, 0, results, blockDone);
+
+    ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(workerCount + 1);
+    tasks.add(
+        ForkJoinTask.adapt(
+            () -> {
+              for (int block = 0; block < blockCount && !canceled; block++) {
+                while (!isBlockDone(block, results, blockDone)) {
+                  int other = nextBlock.getAndIncrement();
+                  if (other < blockCount) testBlock(ownState, other, results, blockDone);
+                  else waitForBlock(block, results, blockDone);
+                }
+                int end = Math.min(n, (block + 1) * LINES_PER_BLOCK);
+                for (int i = block * LINES_PER_BLOCK; i < end && !canceled; i++) {
+                  if (!listener.testDone(i, results[i])) canceled = true;
+                }
+              }
+            }));
+    for (int w = 0; w < workerCount; w++) {
+      CircuitState state = new CircuitState(project, circuit);
+      tasks.add(
+          ForkJoinTask.adapt(
+              () -> {
+                int block;
+                while (waitWhilePaused() && (block = nextBlock.getAndIncrement()) < blockCount) {
+                  testBlock(state, block, results, blockDone);
+                }
+              }));
+    }
+    ForkJoinTask.invokeAll(tasks);
+  }
+
+  private void testBlock(
+      CircuitState state, int block, TestException[] results, boolean[] blockDone) {
+    int end = Math.min(vector.data.size(), (block + 1) * LINES_PER_BLOCK);
+    for (int i = block * LINES_PER_BLOCK; i < end && !canceled; i++) {
+      try {
+        circuit.doTestVector(state, pin, vector.data.get(i));
+      } catch (TestException e) {
+        results[i] = e;
+      }
+    }
+    synchronized (results) {
+      blockDone[block] = true;
+      results.notifyAll();
+    }
+  }
+
+  private static boolean isBlockDone(int block, TestException[] results, boolean[] blockDone) {
+    synchronized (results) {
+      return blockDone[block];
+    }
+  }
+
+  private static void waitForBlock(int block, TestException[] results, boolean[] blockDone) {
+    synchronized (results) {
+      while (!blockDone[block]) {
         try {
-          test(i);
-          canceled = canceled || !model.setResult(vector, i, null);
-        } catch (TestException e) {
-          canceled = canceled || !model.setResult(vector, i, e);
+          results.wait();
+        } catch (InterruptedException ignored) {
         }
-        Thread.yield();
       }
-    } finally {
-      model.stop();
     }
   }
 
@@ -195,4 +303,95 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
   private void test(int idx) throws TestException {
     circuit.doTestVector(project, pin, vector.data.get(idx));
   }
+
+  // Runs one line of the vector, returning null if it passes. When the circuit allows it, the
+  // lines are evaluated 64 at a time and the results of the others are kept for later calls.
+  private TestException runTest(int idx) {
+    BitSliceEvaluator eval = evaluator;
+    if (eval != null) {
+      if (batch == null || idx < batchStart || idx >= batchStart + batch.length) {
+        batchStart = idx;
+        batch = testBitSliced(eval, idx, Math.min(idx + 64, vector.data.size()));
+      }
+      return batch[idx - batchStart];
+    }
+    try {
+      test(idx);
+      return null;
+    } catch (TestException e) {
+      return e;
+    }
+  }
+
+  private TestException[] testBitSliced(BitSliceEvaluator eval, int start, int end) {
+    TestException[] ret = new TestException[end - start];
+
+    // Lanes whose inputs are not all 0 or 1 are run through the propagator instead.
+    long defined = 0;
+    for (int k = 0; k < ret.length; k++) {
+      Value[] row = vector.data.get(start + k);
+      boolean ok = true;
+      for (int i = 0; i < pin.length; i++) {
+        if (Pin.FACTORY.isInputPin(pin[i]) && !row[i].isFullyDefined()) ok = false;
+      }
+      if (ok) defined |= 1L << k;
+    }
+
+    for (int i = 0; i < pin.length; i++) {
+      if (!Pin.FACTORY.isInputPin(pin[i])) continue;
+      int width = vector.columnWidth[i].getWidth();
+      for (int b = 0; b < width; b++) {
+        long lanes = 0;
+        for (int k = 0; k < ret.length; k++) {
+          Value v = vector.data.get(start + k)[i];
+          boolean set = ((defined >>> k) & 1) == 1 && ((v.toLongValue() >>> b) & 1) == 1;
+          if (set) lanes |= 1L << k;
+        }
+        eval.setInput(pin[i], b, lanes);
+      }
+    }
+    eval.evaluate();
+
+    for (int k = 0; k < ret.length; k++) {
+      if (((defined >>> k) & 1) == 0) {
+        try {
+          test(start + k);
+        } catch (TestException e) {
+          ret[k] = e;
+        }
+        continue;
+      }
+      Value[] row = vector.data.get(start + k);
+      FailException err = null;
+      for (int i = 0; i < pin.length; i++) {
+        if (Pin.FACTORY.isInputPin(pin[i])) continue;
+        int width = vector.columnWidth[i].getWidth();
+        long value = 0;
+        for (int b = 0; b < width; b++) {
+          value |= ((eval.getOutput(pin[i], b) >>> k) & 1) << b;
+        }
+        Value v = Value.createKnown(vector.columnWidth[i], value);
+        if (!row[i].compatible(v)) {
+          FailException e =
+              new FailException(i, pin[i].getAttributeValue(StdAttr.LABEL), row[i], v);
+          if (err == null) err = e;
+          else err.add(e);
+        }
+      }
+      ret[k] = err;
+    }
+    return ret;
+  }
+
+  // The pins that are not in the vector would keep whatever value they have, so every input
+  // pin of the circuit has to be a column for the lines to be evaluated bitwise.
+  private BitSliceEvaluator createEvaluator() {
+    HashSet<Instance> columns = new HashSet<>(Arrays.asList(pin));
+    for (Component comp : circuit.getNonWires()) {
+      if (!(comp.getFactory() instanceof Pin)) continue;
+      Instance inst = Instance.getInstanceFor(comp);
+      if (Pin.FACTORY.isInputPin(inst) && !columns.contains(inst)) return null;
+    }
+    return BitSliceEvaluator.create(project, circuit);
+  }
 }
@@ -427,7 +427,10 @@ public final class InstanceComponent implements Component, AttributeListener, To
 
   void recomputeBounds() {
     Location p = loc;
+    Bounds old = bounds;
     bounds = factory.getOffsetBounds(attrs).translate(p.getX(), p.getY());
+    // the circuit re-files the component in its grid when told
+    if (!bounds.equals(old)) fireInvalidated();
   }
 
   public void removeComponentListener(ComponentListener l) {
@@ -28,19 +28,19 @@
 
 package com.cburch.logisim.instance;
 
-import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.EndData;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
-import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.proj.Project;
 
 public class InstanceStateImpl implements InstanceState {
   private CircuitState circuitState;
   private Component component;
+  // ends resolved against the wiring of circuitState; see getPorts()
+  private CircuitState.PortSlots ports;
 
   public InstanceStateImpl(CircuitState circuitState, Component component) {
     this.circuitState = circuitState;
@@ -95,8 +95,13 @@ public class InstanceStateImpl implements InstanceState {
   }
 
   public Value getPortValue(int portIndex) {
-    EndData data = component.getEnd(portIndex);
-    return circuitState.getValue(data.getLocation());
+    return circuitState.getValue(getPorts(), portIndex);
+  }
+
+  private CircuitState.PortSlots getPorts() {
+    CircuitState.PortSlots ret = circuitState.getPortSlots(component, ports);
+    ports = ret;
+    return ret;
   }
 
   public Project getProject() {
@@ -112,14 +117,13 @@ public class InstanceStateImpl implements InstanceState {
   }
 
   public boolean isPortConnected(int index) {
-    Circuit circ = circuitState.getCircuit();
-    Location loc = component.getEnd(index).getLocation();
-    return circ.isConnected(loc, component);
+    return circuitState.isConnected(getPorts(), index);
   }
 
   public void repurpose(CircuitState circuitState, Component component) {
     this.circuitState = circuitState;
     this.component = component;
+    this.ports = null;
   }
 
   public void setData(InstanceData value) {
@@ -79,12 +79,15 @@ public class InstanceTextField implements AttributeListener, TextFieldListener,
     Attribute<?> attr = e.getAttribute();
     if (attr == labelAttr) {
       updateField(comp.getAttributeSet());
+      comp.fireInvalidated();
     } else if (attr == fontAttr) {
       if (field != null) field.setFont((Font) e.getValue());
+      comp.fireInvalidated();
     } else if (attr == StdAttr.LABEL_COLOR) {
       fontColor = (Color) e.getValue();
     } else if (attr == StdAttr.LABEL_VISIBILITY) {
       LabelIsVisible = (Boolean) e.getValue();
+      comp.fireInvalidated();
     }
   }
 
@@ -168,6 +171,7 @@ public class InstanceTextField implements AttributeListener, TextFieldListener,
     if (wasReg && !shouldReg) attrs.removeAttributeListener(this);
 
     updateField(attrs);
+    comp.fireInvalidated();
   }
 
   private void updateField(AttributeSet attrs) {
@@ -536,6 +536,15 @@ public class AppPreferences {
       create(new PrefMonitorBoolean("namedBoxesFixed", true));
   public static final PrefMonitor<Boolean> KMAP_LINED_STYLE =
       create(new PrefMonitorBoolean("KmapLinedStyle", false));
+  public static final String MINIMIZER_AUTO = "auto";
+  public static final String MINIMIZER_EXACT = "exact";
+  public static final String MINIMIZER_HEURISTIC = "heuristic";
+  public static final PrefMonitor<String> MINIMIZER_ALGORITHM =
+      create(
+          new PrefMonitorStringOpts(
+              "minimizerAlgorithm",
+              new String[] {MINIMIZER_AUTO, MINIMIZER_EXACT, MINIMIZER_HEURISTIC},
+              MINIMIZER_AUTO));
   public static final PrefMonitor<Boolean> ANIMATED_ICONS =
       create(new PrefMonitorBoolean("AnimatedIcons",false));
   public static final PrefMonitor<String> DefaultAppearance =
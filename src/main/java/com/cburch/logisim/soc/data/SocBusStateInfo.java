@@ -194,6 +194,11 @@ public class SocBusStateInfo extends JDialog implements ActionListener,LocaleLis
   private final JLabel title;
   private final JScrollPane scroll;
   private final SocMemMapModel memMap;
+  /* write counters per line of 2^LINE_BITS bytes, used by the processors to detect that
+   * instructions they have cached were overwritten */
+  public static final int LINE_BITS = 8;
+  private static final int LINE_DIR_BITS = 12;
+  private final int[][] lineWrites = new int[1 << LINE_DIR_BITS][];
   
   public SocBusStateInfo(SocSimulationManager man , Component comp ) {
     super();
@@ -244,6 +249,29 @@ public class SocBusStateInfo extends JDialog implements ActionListener,LocaleLis
     return memMap.getSlaves();
   }
   
+  public int getMapVersion() {
+    return memMap.getMapVersion();
+  }
+  
+  public int getLineWriteCount(int address) {
+    int[] dir = lineWrites[address >>> (32 - LINE_DIR_BITS)];
+    return dir == null ? 0 : dir[(address >>> LINE_BITS) & ((1 << (32 - LINE_BITS - LINE_DIR_BITS)) - 1)];
+  }
+  
+  private void lineWritten(int address) {
+    int dirIndex = address >>> (32 - LINE_DIR_BITS);
+    int[] dir = lineWrites[dirIndex];
+    if (dir == null) {
+      dir = new int[1 << (32 - LINE_BITS - LINE_DIR_BITS)];
+      lineWrites[dirIndex] = dir;
+    }
+    dir[(address >>> LINE_BITS) & (dir.length - 1)]++;
+  }
+  
+  public boolean isTraceVisible() {
+    return myComp.getAttributeSet().getValue(SocBusAttributes.SOC_TRACE_VISIBLE);
+  }
+  
   public String getName() {
     String name = myComp.getAttributeSet().getValue(StdAttr.LABEL);
     if (name == null || name.isEmpty()) {
@@ -266,27 +294,23 @@ public class SocBusStateInfo extends JDialog implements ActionListener,LocaleLis
   }
   
   public void initializeTransaction(SocBusTransaction trans, String busId) {
-    int nrOfReponders = 0;
-    int reponder = -1;
-    ArrayList<SocBusSlaveInterface> slaves = memMap.getSlaves();
-    if (slaves.isEmpty())
+    if (memMap.getSlaves().isEmpty())
       trans.setError(SocBusTransaction.NoSlavesError);
     else if (trans.isReadTransaction()&&trans.isWriteTransaction()&&!trans.isAtomicTransaction())
       trans.setError(SocBusTransaction.NoneAtomicReadWriteError);
     else {
-      for (int i = 0 ; i < slaves.size() ; i++) {
-        if (slaves.get(i).canHandleTransaction(trans)) {
-          nrOfReponders++;
-          reponder = i;
-        }
-      }
+      SocMemMapModel.SlaveIndex index = memMap.getSlaveIndex();
+      int segment = index.getSegment(trans.getAddress());
+      int nrOfReponders = index.getNrOfResponders(segment);
       if (nrOfReponders == 0)
         trans.setError(SocBusTransaction.NoResponsError);
       else if (nrOfReponders != 1)
         trans.setError(SocBusTransaction.MultipleSlavesError);
       else
-        slaves.get(reponder).handleTransaction(trans);
+        index.getResponder(segment).handleTransaction(trans);
     }
+    if (trans.isWriteTransaction() && !trans.hasError())
+      lineWritten(trans.getAddress());
     if (!trans.hasError()&&!trans.isHidden()) {
       for (SocBusSnifferInterface sniffer : sniffers)
         sniffer.sniffTransaction(trans);
@@ -295,7 +319,7 @@ public class SocBusStateInfo extends JDialog implements ActionListener,LocaleLis
       SocBusState data = getRegPropagateState();
       if (data != null) {
         data.addTransaction(trans);
-        if (myComp.getAttributeSet().getValue(SocBusAttributes.SOC_TRACE_VISIBLE))
+        if (isTraceVisible())
           ((InstanceComponent) myComp).getInstance().fireInvalidated();
       }
     }
@@ -41,6 +41,8 @@ public abstract class SocInstanceFactory extends InstanceFactory {
   public static final int SocSlave = 2;
   public static final int SocBus = 4;
   public static final int SocSniffer = 8;
+  /* a slave without connections to the circuit, accessing it needs no propagation */
+  public static final int SocPassive = 16;
   
   private int myType = SocUnknown;
   
@@ -70,6 +72,10 @@ public abstract class SocInstanceFactory extends InstanceFactory {
     return (myType & SocSniffer) != 0;
   }
 	  
+  public boolean isSocPassive() {
+    return (myType & SocPassive) != 0;
+  }
+
   public boolean isSocBus() {
     return (myType & SocBus) != 0;
   }
@@ -38,7 +38,10 @@ import java.awt.Component;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeSet;
 import javax.swing.BorderFactory;
 import javax.swing.JLabel;
 import javax.swing.JTable;
@@ -213,11 +216,61 @@ public class SocMemMapModel extends AbstractTableModel implements SocBusSlaveLis
     }
   }
   
+  /* routing table of the bus: the address space is split into segments of which each is
+   * served by none, exactly one, or several (overlapping) slaves */
+  public static class SlaveIndex {
+    private final long[] segmentStart;
+    private final int[] nrOfResponders;
+    private final SocBusSlaveInterface[] responder;
+
+    private SlaveIndex(List<SocBusSlaveInterface> slaves) {
+      TreeSet<Long> bounds = new TreeSet<>();
+      bounds.add(0L);
+      for (SocBusSlaveInterface s : slaves) {
+        long start = ((long) s.getStartAddress()) & longMask;
+        long end = start + (((long) s.getMemorySize()) & longMask);
+        bounds.add(start);
+        if (end <= longMask)
+          bounds.add(end);
+      }
+      int nrOfSegments = bounds.size();
+      segmentStart = new long[nrOfSegments];
+      nrOfResponders = new int[nrOfSegments];
+      responder = new SocBusSlaveInterface[nrOfSegments];
+      int i = 0;
+      for (long bound : bounds)
+        segmentStart[i++] = bound;
+      for (SocBusSlaveInterface s : slaves) {
+        long start = ((long) s.getStartAddress()) & longMask;
+        long end = start + (((long) s.getMemorySize()) & longMask);
+        for (i = Arrays.binarySearch(segmentStart, start) ; i < nrOfSegments && segmentStart[i] < end ; i++) {
+          if (nrOfResponders[i]++ == 0)
+            responder[i] = s;
+        }
+      }
+    }
+
+    public int getSegment(int address) {
+      int index = Arrays.binarySearch(segmentStart, ((long) address) & longMask);
+      return index >= 0 ? index : -index - 2;
+    }
+
+    public int getNrOfResponders(int segment) {
+      return nrOfResponders[segment];
+    }
+
+    public SocBusSlaveInterface getResponder(int segment) {
+      return responder[segment];
+    }
+  }
+
   private final ArrayList<SocBusSlaveInterface> slaves;
+  private volatile SlaveIndex slaveIndex;
   private final SlaveMap slaveMap;
   private final SlaveInfoRenderer slaveRenderer;
   private final memMapHeaderRenderer headRenderer;
   private InstanceComponent marked;
+  private volatile int mapVersion;
   
   public SocMemMapModel() {
     super();
@@ -293,7 +346,20 @@ public class SocMemMapModel extends AbstractTableModel implements SocBusSlaveLis
   @Override
   public void memoryMapChanged() { rebuild(); }
 
+  /* incremented on every change of the memory map, such that processors can drop their
+   * cached instruction fetches when a slave is moved, added or removed */
+  public int getMapVersion() {
+    return mapVersion;
+  }
+
+  public SlaveIndex getSlaveIndex() {
+    return slaveIndex;
+  }
+
   private void rebuild() {
+    /* the new index has to be visible before the new version */
+    slaveIndex = new SlaveIndex(slaves);
+    mapVersion++;
     slaveMap.clear();
     if (slaves.isEmpty())
       slaveMap.add(new SlaveInfo(0, -1));
@@ -51,6 +51,12 @@ public class SocSupport {
     return (int)(value&LongMask);
   }
 
+  public static boolean isPassiveTransaction(SocBusTransaction trans) {
+    Component responder = trans.getTransactionResponder();
+    return responder != null && responder.getFactory() instanceof SocInstanceFactory
+        && ((SocInstanceFactory) responder.getFactory()).isSocPassive();
+  }
+
   public static void addAllFunctions(PrintWriter h , PrintWriter c , String compName, String functName, int base, int index) {
     addSetterFunction(h,compName,functName,base,index,true);
     addGetterFunction(h,compName,functName,base,index,true);
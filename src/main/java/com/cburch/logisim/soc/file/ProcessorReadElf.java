@@ -187,9 +187,24 @@ public class ProcessorReadElf {
         return false;
       }
       long startAddr = ElfHeader.getLongValue(h.getValue(ElfProgramHeader.P_PADDR));
-      for (int j = 0 ; j < memSize ; j++) {
+      int j = 0;
+      while (j < memSize) {
+        long byteAddr = startAddr+(long)j;
+        int addr = ElfHeader.getIntValue(ElfHeader.returnCorrectValue(byteAddr,true));
+        /* aligned words are written in one transaction, the bytes around them one by one */
+        if ((byteAddr & 3) == 0 && j+4 <= memSize) {
+          int data = 0;
+          for (int k = 0 ; k < 4 ; k++)
+            data |= ((j+k<buffer.length) ? buffer[j+k]&0xFF : 0) << (k*8);
+          SocBusTransaction trans = new SocBusTransaction(SocBusTransaction.WRITETransaction,addr,data,SocBusTransaction.WordAccess,"elf"); 
+          cpu.insertTransaction(trans,true,cState);
+          if (!trans.hasError()) {
+            j += 4;
+            continue;
+          }
+          /* the slave may not support word writes, so retry bytewise */
+        }
         int data = (j<buffer.length) ? buffer[j] : 0;
-        int addr = ElfHeader.getIntValue(ElfHeader.returnCorrectValue(startAddr+(long)j,true));
         SocBusTransaction trans = new SocBusTransaction(SocBusTransaction.WRITETransaction,addr,data,SocBusTransaction.ByteAccess,"elf"); 
         cpu.insertTransaction(trans,true,cState);
         if (trans.hasError()) {
@@ -198,6 +213,7 @@ public class ProcessorReadElf {
            status = MEM_LOAD_ERROR;
            return false;
         }
+        j++;
       }
     }
     cpu.setEntryPointandReset(cState,ElfHeader.getLongValue(elfHeader.getValue(ElfHeader.E_ENTRY)), 
@@ -52,7 +52,7 @@ import java.awt.Graphics2D;
 public class SocMemory extends SocInstanceFactory {
 
   public SocMemory() {
-    super("Socmem",S.getter("SocMemoryComponent"),SocSlave);
+    super("Socmem",S.getter("SocMemoryComponent"),SocSlave|SocPassive);
     setIcon(new ArithmeticIcon("SocMem",3));
     setOffsetBounds(Bounds.create(0, 0, 320, 60));
   }
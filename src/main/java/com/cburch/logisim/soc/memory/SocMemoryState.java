@@ -38,132 +38,74 @@ import com.cburch.logisim.soc.data.SocBusSlaveListener;
 import com.cburch.logisim.soc.data.SocBusTransaction;
 import com.cburch.logisim.soc.data.SocSupport;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.Random;
 
 public class SocMemoryState implements SocBusSlaveInterface {
 
+  /**
+   * The contents of the memory, as pages of 1024 words that are allocated on first write. A word
+   * address selects one of 1024 directories, a page within it, and the word in the page, so every
+   * access takes three array lookups whatever the size of the memory. Words of a new page start out
+   * random, like those of a real RAM; words on pages never written read as a new random value
+   * every time.
+   */
   public class SocMemoryInfo implements InstanceData,Cloneable {
-    private class SocMemoryInfoBlock {
-      private final LinkedList<Integer> contents = new LinkedList<>();
-      private int startAddress;
-      private final Random rand = new Random();
-    
-      public SocMemoryInfoBlock(int address, int data) {
-        startAddress = (address>>2)<<2;
-        contents.add(data);
-      }
-    
-      public boolean canAddBefore( int address ) {
-        int previousAddress = getStartAddress()-4;
-        return (address >= previousAddress) && (address < getStartAddress());
-      }
-    
-      public boolean canAddAfter( int address ) {
-        return (address >= getEndAddress())&&(address < getEndAddress()+4);
-      }
-    
-      public boolean contains( int address ) {
-        return (address >= getStartAddress()) && (address < getEndAddress());
-      }
-    
-      public boolean canAdd(int address) {
-        return canAddBefore(address) || canAddAfter(address);
-      }
-    
-      public boolean addInfo(int address, int data) {
-        if (canAddBefore(address)) {
-          contents.addFirst(data);
-          startAddress -= 4;
-          return true;
-        }
-        if (canAddAfter(address)) {
-          contents.add(data);
-          return true;
-        }
-        if (contains(address)) {
-          int index = (address-startAddress)>>2;
-          contents.set(index, data);
-          return true;
-        }
-        return false;
-      }
-    
-      public int getValue(int address) {
-        int index = (address-startAddress)>>2;
-        if (index >= contents.size()) {
-          return rand.nextInt();
-        }
-        return contents.get(index);
-      }
-    
-      public int getStartAddress() {
-        return startAddress;
-      }
-    
-      public int getEndAddress() {
-        return startAddress+contents.size()*4;
-      }
-    }
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int DIR_BITS = 10;
+    private static final int DIR_MASK = (1 << DIR_BITS) - 1;
 
-    private final ArrayList<SocMemoryInfoBlock> memInfo;
+    private int[][][] pages;
     
     public SocMemoryInfo() {
-      memInfo = new ArrayList<>();
+      pages = new int[1 << (30 - PAGE_BITS - DIR_BITS)][][];
     }
 
     public SocMemoryInfo clone() {
       try {
-        return (SocMemoryInfo) super.clone();
+        SocMemoryInfo ret = (SocMemoryInfo) super.clone();
+        ret.pages = pages.clone();
+        for (int i = 0; i < pages.length; i++) {
+          if (pages[i] == null) continue;
+          ret.pages[i] = pages[i].clone();
+          for (int j = 0; j < pages[i].length; j++) {
+            if (pages[i][j] != null) ret.pages[i][j] = pages[i][j].clone();
+          }
+        }
+        return ret;
       } catch (CloneNotSupportedException e) {
         return null;
       }
     }
       
     public int getWord(int address) {
-      for (SocMemoryInfoBlock info : memInfo)
-        if (info.contains(address))
-          return info.getValue(address);
-      return rand.nextInt();
+      int word = address >>> 2;
+      int[][] dir = pages[word >>> (PAGE_BITS + DIR_BITS)];
+      int[] page = dir == null ? null : dir[(word >>> PAGE_BITS) & DIR_MASK];
+      return page == null ? rand.nextInt() : page[word & PAGE_MASK];
     }
 
     public void writeWord(int address, int wdata) {
-      ArrayList<SocMemoryInfoBlock> adders = new ArrayList<>();
-      for (SocMemoryInfoBlock info : memInfo) {
-        if (info.contains(address)) {
-          info.addInfo(address, wdata);
-          return;
-        }
-        if (info.canAdd(address))
-          adders.add(info);
-      }
-      if (adders.isEmpty()) {
-        /* we have to create a new set */
-        memInfo.add(new SocMemoryInfoBlock(address,wdata));
-        return;
-      }
-      if (adders.size() == 1) {
-        /* easy case we can add in front or at the end of an existing one */
-        adders.get(0).addInfo(address, wdata);
-        return;
-      }
-      if (adders.size() > 2) {
-        System.out.println("BUG! Memory management does not function corectly for the SocMemory component!");
-        return;
-      }
-      SocMemoryInfoBlock addbefore = adders.get(0).canAddBefore(address) ? adders.get(0) :
-          adders.get(1).canAddBefore(address) ? adders.get(1) : null;
-      SocMemoryInfoBlock addAfter = adders.get(0).canAddAfter(address) ? adders.get(0) :
-          adders.get(1).canAddAfter(address) ? adders.get(1) : null;
-      if (addbefore == null || addAfter == null) {
-        System.out.println("BUG! Memory management does not function corectly for the SocMemory component!");
-        return;
+      int word = address >>> 2;
+      getPage(word)[word & PAGE_MASK] = wdata;
+    }
+
+    private int[] getPage(int word) {
+      int d = word >>> (PAGE_BITS + DIR_BITS);
+      int[][] dir = pages[d];
+      if (dir == null) {
+        dir = new int[1 << DIR_BITS][];
+        pages[d] = dir;
       }
-      addAfter.addInfo(address, wdata);
-      for (int i = addbefore.getStartAddress() ; i < addbefore.getEndAddress() ; i += 4) {
-        addAfter.addInfo(i, addbefore.getValue(i));
+      int p = (word >>> PAGE_BITS) & DIR_MASK;
+      int[] page = dir[p];
+      if (page == null) {
+        page = new int[PAGE_SIZE];
+        for (int i = 0; i < PAGE_SIZE; i++) page[i] = rand.nextInt();
+        dir[p] = page;
       }
-      memInfo.remove(addbefore);
+      return page;
     }
   }
   
@@ -54,6 +54,7 @@ public class Nios2Attributes extends AbstractAttributeSet {
   
   public static final Attribute<Nios2State> NIOS2_STATE = new Nios2StateAttribute();
   public static final Attribute<BitWidth> NR_OF_IRQS = Attributes.forBitWidth("irqWidth", S.getter("rv32imIrqWidth"),0,32);
+  public static final Attribute<Integer> INSTRUCTIONS_PER_TICK = Attributes.forIntegerRange("instrPerTick", S.getter("rv32InstructionsPerTick"), 1, 65536);
   public static final Attribute<Integer> RESET_VECTOR = Attributes.forHexInteger("resetVector", S.getter("rv32ResetVector"));
   public static final Attribute<Integer> EXCEPTION_VECTOR  = Attributes.forHexInteger("exceptionVector", S.getter("rv32ExceptionVector"));
   public static final Attribute<Integer> BREAK_VECTOR  = Attributes.forHexInteger("breakVector", S.getter("nios2BreakVector"));
@@ -70,6 +71,7 @@ public class Nios2Attributes extends AbstractAttributeSet {
             EXCEPTION_VECTOR,
             BREAK_VECTOR,
             NR_OF_IRQS,
+            INSTRUCTIONS_PER_TICK,
             NIOS_STATE_VISIBLE,
             StdAttr.LABEL,
             StdAttr.LABEL_FONT,
@@ -99,6 +101,7 @@ public class Nios2Attributes extends AbstractAttributeSet {
     if (attr == EXCEPTION_VECTOR) return (V) upState.getExceptionVector();
     if (attr == BREAK_VECTOR) return (V) upState.getBreakVector();
     if (attr == NR_OF_IRQS) return (V) BitWidth.create(upState.getNrOfIrqs());
+    if (attr == INSTRUCTIONS_PER_TICK) return (V) upState.getInstructionsPerTick();
     if (attr == StdAttr.LABEL) return (V) upState.getLabel();
     if (attr == StdAttr.LABEL_FONT) return (V) labelFont;
     if (attr == StdAttr.LABEL_VISIBILITY) return (V) labelVisible;
@@ -141,6 +144,11 @@ public class Nios2Attributes extends AbstractAttributeSet {
         fireAttributeValueChanged(attr, value, oldValue);
       return;
     }
+    if (attr == INSTRUCTIONS_PER_TICK) {
+      if (upState.setInstructionsPerTick((int) value))
+        fireAttributeValueChanged(attr, value, oldValue);
+      return;
+    }
     if (attr == SocSimulationManager.SOC_BUS_SELECT) {
       if (upState.setAttachedBus((SocBusInfo)value)) 
     fireAttributeValueChanged(attr, value, oldValue);
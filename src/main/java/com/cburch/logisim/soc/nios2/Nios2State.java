@@ -43,6 +43,7 @@ import com.cburch.logisim.instance.InstanceData;
 import com.cburch.logisim.instance.InstanceStateImpl;
 import com.cburch.logisim.prefs.AppPreferences;
 import com.cburch.logisim.soc.data.SocBusInfo;
+import com.cburch.logisim.soc.data.SocBusStateInfo;
 import com.cburch.logisim.soc.data.SocBusTransaction;
 import com.cburch.logisim.soc.data.SocProcessorInterface;
 import com.cburch.logisim.soc.data.SocSupport;
@@ -58,6 +59,7 @@ import com.cburch.logisim.soc.gui.BreakpointPanel;
 import com.cburch.logisim.soc.gui.CpuDrawSupport;
 import com.cburch.logisim.soc.util.AssemblerExecutionInterface;
 import com.cburch.logisim.soc.util.AssemblerInterface;
+import com.cburch.logisim.soc.util.DecodedInstructionCache;
 import com.cburch.logisim.util.GraphicsUtil;
 import java.awt.Color;
 import java.awt.Graphics;
@@ -94,6 +96,9 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
     private Integer entryPoint;
     private boolean programLoaded;
     private final BreakpointPanel bPanel;
+    private DecodedInstructionCache decodedInstructions;
+    private boolean peripheralAccessed;
+    private AssemblerExecutionInterface lastExecutionUnit;
 
     public ProcessorState(Instance inst) {
       registers = new int[32];
@@ -111,6 +116,7 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
       AbstractTokenMakerFactory atmf = (AbstractTokenMakerFactory) TokenMakerFactory.getDefaultInstance();
       atmf.putMapping(ASSEMBLER.getHighlightStringIdentifier(), "com.cburch.logisim.soc.nios2.Nios2SyntaxHighlighter");
       bPanel = new BreakpointPanel(ASSEMBLER.getHighlightStringIdentifier());
+      decodedInstructions = new DecodedInstructionCache();
       reset();
     }
 
@@ -129,6 +135,7 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
       for (int i = 0 ; i < 31 ; i++)
         registers_valid[i] = false;
       lastRegisterWritten = -1;
+      lastExecutionUnit = null;
       status = STATUS_RSIE;
       estatus = 0;
       bstatus = 0;
@@ -262,13 +269,25 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
     public Component getMasterComponent() { return attachedBus.getComponent(); }
 
     public void execute(CircuitState cState) {
-      /* check the simulation state */
       if (!simState.canExecute())
         return;
+      /* with more than one instruction per tick the batch is ended as soon as a peripheral
+       * is accessed, such that the circuit is propagated before the next access */
+      peripheralAccessed = false;
+      for (int i = 0 ; i < instructionsPerTick ; i++)
+        if (!executeInstruction(cState))
+          break;
+      if (visible) repaint();
+    }
+
+    private boolean executeInstruction(CircuitState cState) {
+      /* check the simulation state */
+      if (!simState.canExecute())
+        return false;
       /* here we handle the custom instructions */
-      if (ASSEMBLER.getExeUnit() != null && ASSEMBLER.getExeUnit() instanceof Nios2CustomInstructions) {
-        Nios2CustomInstructions cust = (Nios2CustomInstructions)ASSEMBLER.getExeUnit();
-        if (cust.isValid() && cust.waitingOnReady(this, cState)) return;
+      if (lastExecutionUnit instanceof Nios2CustomInstructions) {
+        Nios2CustomInstructions cust = (Nios2CustomInstructions)lastExecutionUnit;
+        if (cust.isValid() && cust.waitingOnReady(this, cState)) return false;
       }
       HashMap<Integer,Integer> breakPoints = bPanel.getBreakPoints();
       if (breakPoints.containsKey(pc)) {
@@ -276,7 +295,7 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
           bPanel.gotoLine(breakPoints.get(pc)-1);
           OptionPane.showMessageDialog(null,S.get("RV32imBreakPointReached"),
           SocSupport.getMasterName(cState,Nios2State.this.getName()),OptionPane.INFORMATION_MESSAGE);
-          return;
+          return false;
         }
       }
       /* check interrupts */
@@ -288,21 +307,34 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
           repaint();
         }
       }
-      /* fetch an instruction */
-      SocBusTransaction trans = new SocBusTransaction(SocBusTransaction.READTransaction,
-              pc,0,SocBusTransaction.WordAccess,attachedBus.getComponent());
-      attachedBus.getSocSimulationManager().initializeTransaction(trans, attachedBus.getBusId(),cState);
-      if (trans.hasError()) {
-        OptionPane.showMessageDialog(null,trans.getErrorMessage(),
-        SocSupport.getMasterName(cState,Nios2State.this.getName())+S.get("RV32imFetchTransaction"),OptionPane.ERROR_MESSAGE);
-            simState.errorInExecution();
-        return;
+      /* fetch an instruction, when the bus trace is hidden we can reuse an earlier decode */
+      SocBusStateInfo bus = attachedBus.getSocSimulationManager().getSocBusState(attachedBus.getBusId());
+      boolean useCache = bus != null && bus.getComponent() != null && !bus.isTraceVisible();
+      DecodedInstructionCache.Entry cached = useCache ? decodedInstructions.get(bus, pc) : null;
+      int instruction;
+      AssemblerExecutionInterface exe;
+      if (cached != null) {
+        instruction = cached.getInstruction();
+        exe = cached.decode();
+      } else {
+        SocBusTransaction trans = new SocBusTransaction(SocBusTransaction.READTransaction,
+                pc,0,SocBusTransaction.WordAccess,attachedBus.getComponent());
+        attachedBus.getSocSimulationManager().initializeTransaction(trans, attachedBus.getBusId(),cState);
+        if (trans.hasError()) {
+          OptionPane.showMessageDialog(null,trans.getErrorMessage(),
+          SocSupport.getMasterName(cState,Nios2State.this.getName())+S.get("RV32imFetchTransaction"),OptionPane.ERROR_MESSAGE);
+              simState.errorInExecution();
+          return false;
+        }
+        /* decode instruction */
+        instruction = trans.getReadData();
+        ASSEMBLER.decode(instruction);
+        exe = ASSEMBLER.getExeUnit();
+        if (exe != null && useCache)
+          decodedInstructions.put(bus, pc, instruction, exe);
       }
-      /* decode instruction */
-      int instruction = trans.getReadData(); 
-      ASSEMBLER.decode(instruction);
       /* execute instruction */
-      AssemblerExecutionInterface exe = ASSEMBLER.getExeUnit();
+      lastExecutionUnit = exe;
       lastRegisterWritten = -1;
       while (instrTrace.size() >= CpuDrawSupport.NrOfTraces)
         instrTrace.removeLast();
@@ -312,10 +344,10 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
         simState.errorInExecution();
         instrTrace.addFirst(new TraceInfo(pc,instruction,S.get("RV32imFetchInvInstrAsm"),true));
         pc = pc + 4;
-        if (visible) repaint();
-        return;
+        return false;
       }
-      TraceInfo trace = new TraceInfo(pc,instruction,exe.getAsmInstruction(),false);
+      TraceInfo trace = new TraceInfo(pc,instruction,
+          cached != null ? cached.getAsmInstruction() : exe.getAsmInstruction(),false);
       if (!exe.execute(this,cState)) {
         StringBuilder s = new StringBuilder();
         s.append(S.get("RV32imFetchExecutionError"));
@@ -326,19 +358,21 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
         simState.errorInExecution();
         trace.setError();
         instrTrace.addFirst(trace);
-        if (visible) repaint();
-        return;
+        return false;
       }
       instrTrace.addFirst(trace);
       /* all done increment pc */
       if (!exe.performedJump())
         pc = pc+4;
-      if (visible) repaint();
+      /* custom instructions hand shake with the circuit */
+      return !peripheralAccessed && !(exe instanceof Nios2CustomInstructions);
     }
 
     public ProcessorState clone() {
       try {
-        return (ProcessorState) super.clone();
+        ProcessorState ret = (ProcessorState) super.clone();
+        ret.decodedInstructions = new DecodedInstructionCache();
+        return ret;
       } catch (CloneNotSupportedException e) {
         return null;
       }
@@ -347,6 +381,8 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
     public void insertTransaction(SocBusTransaction trans, boolean hidden, CircuitState cState) {
       if (hidden) trans.setAsHiddenTransaction();
       attachedBus.getSocSimulationManager().initializeTransaction(trans, attachedBus.getBusId(),cState);
+      if (!SocSupport.isPassiveTransaction(trans))
+        peripheralAccessed = true;
     }
 
     public void draw(Graphics2D g, boolean scale) {
@@ -386,6 +422,7 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
   private int exceptionVector;
   private int breakVector;
   private int nrOfIrqs;
+  private int instructionsPerTick;
   private String label;
   private final SocBusInfo attachedBus;
 
@@ -433,6 +470,7 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
     exceptionVector = 0x14;
     breakVector = 0x30;
     nrOfIrqs = 0;
+    instructionsPerTick = 1;
     label = "";
     attachedBus = new SocBusInfo("");
   }
@@ -442,6 +480,7 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
     dest.exceptionVector = exceptionVector;
     dest.breakVector = breakVector;
     dest.nrOfIrqs = nrOfIrqs;
+    dest.instructionsPerTick = instructionsPerTick;
     dest.label = label;
     dest.attachedBus.setBusId(attachedBus.getBusId());
   }
@@ -489,6 +528,14 @@ public class Nios2State implements SocUpSimulationStateListener,SocProcessorInte
 
   public Integer getNrOfIrqs() { return nrOfIrqs; }
 
+  public boolean setInstructionsPerTick(int value) {
+    if (instructionsPerTick == value) return false;
+    instructionsPerTick = value;
+    return true;
+  }
+
+  public Integer getInstructionsPerTick() { return instructionsPerTick; }
+
   public boolean setLabel(String value) {
     if (label.equals(value)) return false;
     label = value;
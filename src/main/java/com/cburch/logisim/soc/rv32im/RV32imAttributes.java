@@ -54,6 +54,7 @@ public class RV32imAttributes extends AbstractAttributeSet {
   
   public static final Attribute<RV32im_state> RV32IM_STATE = new Rv32imStateAttribute();
   public static final Attribute<BitWidth> NR_OF_IRQS = Attributes.forBitWidth("irqWidth", S.getter("rv32imIrqWidth"),0,32);
+  public static final Attribute<Integer> INSTRUCTIONS_PER_TICK = Attributes.forIntegerRange("instrPerTick", S.getter("rv32InstructionsPerTick"), 1, 65536);
   public static final Attribute<Integer> RESET_VECTOR = Attributes.forHexInteger("resetVector", S.getter("rv32ResetVector"));
   public static final Attribute<Integer> EXCEPTION_VECTOR  = Attributes.forHexInteger("exceptionVector", S.getter("rv32ExceptionVector"));
   public static final Attribute<Boolean> RV32IM_STATE_VISIBLE = Attributes.forBoolean("stateVisible", S.getter("rv32StateVisible"));
@@ -68,6 +69,7 @@ public class RV32imAttributes extends AbstractAttributeSet {
             RESET_VECTOR,
             EXCEPTION_VECTOR,
             NR_OF_IRQS,
+            INSTRUCTIONS_PER_TICK,
             RV32IM_STATE_VISIBLE,
             StdAttr.LABEL,
             StdAttr.LABEL_FONT,
@@ -96,6 +98,7 @@ public class RV32imAttributes extends AbstractAttributeSet {
     if (attr == RESET_VECTOR) return (V) upState.getResetVector();
     if (attr == EXCEPTION_VECTOR) return (V) upState.getExceptionVector();
     if (attr == NR_OF_IRQS) return (V) BitWidth.create(upState.getNrOfIrqs());
+    if (attr == INSTRUCTIONS_PER_TICK) return (V) upState.getInstructionsPerTick();
     if (attr == StdAttr.LABEL) return (V) upState.getLabel();
     if (attr == StdAttr.LABEL_FONT) return (V) labelFont;
     if (attr == StdAttr.LABEL_VISIBILITY) return (V) labelVisible;
@@ -133,6 +136,11 @@ public class RV32imAttributes extends AbstractAttributeSet {
         fireAttributeValueChanged(attr, value, oldValue);
       return;
     }
+    if (attr == INSTRUCTIONS_PER_TICK) {
+      if (upState.setInstructionsPerTick((int) value))
+        fireAttributeValueChanged(attr, value, oldValue);
+      return;
+    }
     if (attr == SocSimulationManager.SOC_BUS_SELECT) {
       if (upState.setAttachedBus((SocBusInfo)value)) 
     	fireAttributeValueChanged(attr, value, oldValue);
@@ -43,6 +43,7 @@ import com.cburch.logisim.instance.InstanceData;
 import com.cburch.logisim.instance.InstanceStateImpl;
 import com.cburch.logisim.prefs.AppPreferences;
 import com.cburch.logisim.soc.data.SocBusInfo;
+import com.cburch.logisim.soc.data.SocBusStateInfo;
 import com.cburch.logisim.soc.data.SocBusTransaction;
 import com.cburch.logisim.soc.data.SocProcessorInterface;
 import com.cburch.logisim.soc.data.SocSupport;
@@ -58,6 +59,7 @@ import com.cburch.logisim.soc.gui.BreakpointPanel;
 import com.cburch.logisim.soc.gui.CpuDrawSupport;
 import com.cburch.logisim.soc.util.AssemblerExecutionInterface;
 import com.cburch.logisim.soc.util.AssemblerInterface;
+import com.cburch.logisim.soc.util.DecodedInstructionCache;
 import com.cburch.logisim.util.GraphicsUtil;
 import java.awt.Color;
 import java.awt.Graphics;
@@ -87,6 +89,8 @@ public class RV32im_state implements SocUpSimulationStateListener,SocProcessorIn
     private Integer entryPoint;
     private boolean programLoaded;
     private final BreakpointPanel bPanel;
+    private DecodedInstructionCache decodedInstructions;
+    private boolean peripheralAccessed;
     
     public ProcessorState(Instance inst) {
       registers = new int[32];
@@ -104,6 +108,7 @@ public class RV32im_state implements SocUpSimulationStateListener,SocProcessorIn
       AbstractTokenMakerFactory atmf = (AbstractTokenMakerFactory) TokenMakerFactory.getDefaultInstance();
       atmf.putMapping(ASSEMBLER.getHighlightStringIdentifier(), "com.cburch.logisim.soc.rv32im.RV32imSyntaxHighlighter");
       bPanel = new BreakpointPanel(ASSEMBLER.getHighlightStringIdentifier());
+      decodedInstructions = new DecodedInstructionCache();
       reset();
     }
     
@@ -195,34 +200,58 @@ public class RV32im_state implements SocUpSimulationStateListener,SocProcessorIn
     }
     
     public void execute(CircuitState cState) {
-      /* check the simulation state */
       if (!simState.canExecute())
         return;
+      /* with more than one instruction per tick the batch is ended as soon as a peripheral
+       * is accessed, such that the circuit is propagated before the next access */
+      peripheralAccessed = false;
+      for (int i = 0 ; i < instructionsPerTick ; i++)
+        if (!executeInstruction(cState))
+          break;
+      if (visible) repaint();
+    }
+
+    private boolean executeInstruction(CircuitState cState) {
+      /* check the simulation state */
+      if (!simState.canExecute())
+        return false;
       HashMap<Integer,Integer> breakPoints = bPanel.getBreakPoints();
       if (breakPoints.containsKey(pc)) {
         if (simState.breakPointReached()) {
           bPanel.gotoLine(breakPoints.get(pc)-1);
           OptionPane.showMessageDialog(null,S.get("RV32imBreakPointReached"),
                   SocSupport.getMasterName(cState,RV32im_state.this.getName()),OptionPane.INFORMATION_MESSAGE);
-          return;
+          return false;
         }
       }
       /* TODO: check interrupts */
-      /* fetch an instruction */
-      SocBusTransaction trans = new SocBusTransaction(SocBusTransaction.READTransaction,
-              pc,0,SocBusTransaction.WordAccess,attachedBus.getComponent());
-      attachedBus.getSocSimulationManager().initializeTransaction(trans, attachedBus.getBusId(),cState);
-      if (trans.hasError()) {
-        OptionPane.showMessageDialog(null,trans.getErrorMessage(),
-              SocSupport.getMasterName(cState,RV32im_state.this.getName())+S.get("RV32imFetchTransaction"),OptionPane.ERROR_MESSAGE);
-        simState.errorInExecution();
-        return;
+      /* fetch an instruction, when the bus trace is hidden we can reuse an earlier decode */
+      SocBusStateInfo bus = attachedBus.getSocSimulationManager().getSocBusState(attachedBus.getBusId());
+      boolean useCache = bus != null && bus.getComponent() != null && !bus.isTraceVisible();
+      DecodedInstructionCache.Entry cached = useCache ? decodedInstructions.get(bus, pc) : null;
+      int instruction;
+      AssemblerExecutionInterface exe;
+      if (cached != null) {
+        instruction = cached.getInstruction();
+        exe = cached.decode();
+      } else {
+        SocBusTransaction trans = new SocBusTransaction(SocBusTransaction.READTransaction,
+                pc,0,SocBusTransaction.WordAccess,attachedBus.getComponent());
+        attachedBus.getSocSimulationManager().initializeTransaction(trans, attachedBus.getBusId(),cState);
+        if (trans.hasError()) {
+          OptionPane.showMessageDialog(null,trans.getErrorMessage(),
+                SocSupport.getMasterName(cState,RV32im_state.this.getName())+S.get("RV32imFetchTransaction"),OptionPane.ERROR_MESSAGE);
+          simState.errorInExecution();
+          return false;
+        }
+        /* decode instruction */
+        instruction = trans.getReadData();
+        ASSEMBLER.decode(instruction);
+        exe = ASSEMBLER.getExeUnit();
+        if (exe != null && useCache)
+          decodedInstructions.put(bus, pc, instruction, exe);
       }
-      /* decode instruction */
-      int instruction = trans.getReadData(); 
-      ASSEMBLER.decode(instruction);
       /* execute instruction */
-      AssemblerExecutionInterface exe = ASSEMBLER.getExeUnit();
       lastRegisterWritten = -1;
       while (instrTrace.size() >= CpuDrawSupport.NrOfTraces)
         instrTrace.removeLast();
@@ -232,10 +261,10 @@ public class RV32im_state implements SocUpSimulationStateListener,SocProcessorIn
         simState.errorInExecution();
         instrTrace.addFirst(new TraceInfo(pc,instruction,S.get("RV32imFetchInvInstrAsm"),true));
         pc = pc + 4;
-        if (visible) repaint();
-        return;
+        return false;
       }
-      TraceInfo trace = new TraceInfo(pc,instruction,exe.getAsmInstruction(),false);
+      TraceInfo trace = new TraceInfo(pc,instruction,
+          cached != null ? cached.getAsmInstruction() : exe.getAsmInstruction(),false);
       if (!exe.execute(this,cState)) {
         StringBuilder s = new StringBuilder();
         s.append(S.get("RV32imFetchExecutionError"));
@@ -246,19 +275,20 @@ public class RV32im_state implements SocUpSimulationStateListener,SocProcessorIn
         simState.errorInExecution();
         trace.setError();
         instrTrace.addFirst(trace);
-        if (visible) repaint();
-        return;
+        return false;
       }
       instrTrace.addFirst(trace);
       /* all done increment pc */
       if (!exe.performedJump())
         pc = pc+4;
-      if (visible) repaint();
+      return !peripheralAccessed;
     }
       
     public ProcessorState clone() {
       try {
-        return (ProcessorState) super.clone();
+        ProcessorState ret = (ProcessorState) super.clone();
+        ret.decodedInstructions = new DecodedInstructionCache();
+        return ret;
       } catch (CloneNotSupportedException e) {
         return null;
       }
@@ -267,6 +297,8 @@ public class RV32im_state implements SocUpSimulationStateListener,SocProcessorIn
     public void insertTransaction(SocBusTransaction trans, boolean hidden, CircuitState cState) {
       if (hidden) trans.setAsHiddenTransaction();
       attachedBus.getSocSimulationManager().initializeTransaction(trans, attachedBus.getBusId(),cState);
+      if (!SocSupport.isPassiveTransaction(trans))
+        peripheralAccessed = true;
     }
     
     public void draw(Graphics2D g, boolean scale) {
@@ -299,6 +331,7 @@ public class RV32im_state implements SocUpSimulationStateListener,SocProcessorIn
   private int resetVector;
   private int exceptionVector;
   private int nrOfIrqs;
+  private int instructionsPerTick;
   private String label;
   private final SocBusInfo attachedBus;
   
@@ -325,6 +358,7 @@ public class RV32im_state implements SocUpSimulationStateListener,SocProcessorIn
     resetVector = 0;
     exceptionVector = 0x14;
     nrOfIrqs = 0;
+    instructionsPerTick = 1;
     label = "";
     attachedBus = new SocBusInfo("");
   }
@@ -333,6 +367,7 @@ public class RV32im_state implements SocUpSimulationStateListener,SocProcessorIn
     dest.resetVector = resetVector;
     dest.exceptionVector = exceptionVector;
     dest.nrOfIrqs = nrOfIrqs;
+    dest.instructionsPerTick = instructionsPerTick;
     dest.label = label;
     dest.attachedBus.setBusId(attachedBus.getBusId());
   }
@@ -379,6 +414,17 @@ public class RV32im_state implements SocUpSimulationStateListener,SocProcessorIn
     return nrOfIrqs;
   }
   
+  public boolean setInstructionsPerTick(int value) {
+    if (instructionsPerTick == value)
+      return false;
+    instructionsPerTick = value;
+    return true;
+  }
+  
+  public Integer getInstructionsPerTick() {
+    return instructionsPerTick;
+  }
+  
   public boolean setLabel(String value) {
     if (label.equals(value))
       return false;
@@ -0,0 +1,130 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.soc.util;
+
+import com.cburch.logisim.soc.data.SocBusStateInfo;
+import java.util.HashMap;
+
+/*
+ * Keeps the decoded instructions of a processor, such that an instruction that is executed
+ * again does not need to be fetched over the bus and decoded by all execution units.
+ * The cache is organized in lines of the same size as the write counters kept by the
+ * bus; a line is dropped as soon as the bus reports a write into it, and the complete
+ * cache is dropped when the memory map of the bus changes.
+ */
+public class DecodedInstructionCache {
+
+  public static class Entry {
+    private final int instruction;
+    private final AssemblerExecutionInterface unit;
+    private final String asm;
+
+    private Entry(int instruction, AssemblerExecutionInterface unit) {
+      this.instruction = instruction;
+      this.unit = unit;
+      asm = unit.getAsmInstruction();
+    }
+
+    public int getInstruction() {
+      return instruction;
+    }
+
+    public String getAsmInstruction() {
+      return asm;
+    }
+
+    /* re-decodes the instruction in the execution unit that accepted it the first time */
+    public AssemblerExecutionInterface decode() {
+      unit.setBinInstruction(instruction);
+      return unit;
+    }
+  }
+
+  private static class Line {
+    private final int index;
+    private final int writeCount;
+    private final Entry[] entries = new Entry[1 << (SocBusStateInfo.LINE_BITS - 2)];
+
+    private Line(int index, int writeCount) {
+      this.index = index;
+      this.writeCount = writeCount;
+    }
+  }
+
+  private final HashMap<Integer, Line> lines = new HashMap<>();
+  private Line lastLine;
+  private SocBusStateInfo bus;
+  private int mapVersion;
+
+  public Entry get(SocBusStateInfo bus, int pc) {
+    if ((pc & 3) != 0)
+      return null;
+    if (bus != this.bus || bus.getMapVersion() != mapVersion) {
+      clear();
+      this.bus = bus;
+      mapVersion = bus.getMapVersion();
+      return null;
+    }
+    int index = pc >>> SocBusStateInfo.LINE_BITS;
+    Line line = lastLine;
+    if (line == null || line.index != index) {
+      line = lines.get(index);
+      if (line == null)
+        return null;
+      lastLine = line;
+    }
+    if (line.writeCount != bus.getLineWriteCount(pc)) {
+      lines.remove(index);
+      lastLine = null;
+      return null;
+    }
+    return line.entries[(pc >>> 2) & (line.entries.length - 1)];
+  }
+
+  /* has to be called before the instruction is executed, as the instruction may overwrite itself */
+  public void put(SocBusStateInfo bus, int pc, int instruction, AssemblerExecutionInterface unit) {
+    if ((pc & 3) != 0 || bus != this.bus || bus.getMapVersion() != mapVersion)
+      return;
+    int index = pc >>> SocBusStateInfo.LINE_BITS;
+    int writeCount = bus.getLineWriteCount(pc);
+    Line line = lines.get(index);
+    if (line == null || line.writeCount != writeCount) {
+      line = new Line(index, writeCount);
+      lines.put(index, line);
+    }
+    lastLine = line;
+    line.entries[(pc >>> 2) & (line.entries.length - 1)] = new Entry(instruction, unit);
+  }
+
+  public void clear() {
+    lines.clear();
+    lastLine = null;
+    bus = null;
+  }
+}
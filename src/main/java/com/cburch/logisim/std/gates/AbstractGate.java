@@ -31,6 +31,7 @@ package com.cburch.logisim.std.gates;
 import com.cburch.logisim.LogisimVersion;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitSliceComputer;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
@@ -40,7 +41,6 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
-import com.cburch.logisim.file.Options;
 import com.cburch.logisim.fpga.designrulecheck.CorrectLabel;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceFactory;
@@ -82,6 +82,10 @@ abstract class AbstractGate extends InstanceFactory {
     }
   }
 
+  // scratch array for the input values in propagate(); computeOutput() must not keep it
+  private static final ThreadLocal<Value[]> inputBuffer =
+      ThreadLocal.withInitial(() -> new Value[GateAttributes.MAX_INPUTS]);
+
   private int bonusWidth = 0;
   private boolean negateOutput = false;
   private boolean isXor = false;
@@ -137,6 +141,12 @@ abstract class AbstractGate extends InstanceFactory {
 
   protected abstract Value computeOutput(Value[] inputs, int numInputs, InstanceState state);
 
+  /**
+   * Lane-wise counterpart of computeOutput: each input holds one bit of 64 input vectors, and
+   * the result holds the same bit of the 64 outputs.
+   */
+  protected abstract long computeBitSlice(long[] inputs, int numInputs, AttributeSet attrs);
+
   void computePorts(Instance instance) {
     GateAttributes attrs = (GateAttributes) instance.getAttributeSet();
     int inputs = attrs.inputs;
@@ -326,6 +336,46 @@ abstract class AbstractGate extends InstanceFactory {
         }
       };
     }
+    if (key == BitSliceComputer.class) {
+      return new BitSliceComputer() {
+        @Override
+        public boolean canComputeBitSlices(Connections connections) {
+          // with no input connected, the output is undefined
+          int inputCount = ((GateAttributes) instance.getAttributeSet()).inputs;
+          for (int i = 1; i <= inputCount; i++) {
+            if (connections.isConnected(instance.getPortLocation(i))) return true;
+          }
+          return false;
+        }
+
+        @Override
+        public void computeBitSlices(Map laneMap) {
+          GateAttributes attrs = (GateAttributes) instance.getAttributeSet();
+          int inputCount = attrs.inputs;
+          long negated = attrs.negated;
+          int width = attrs.width.getWidth();
+
+          boolean[] connected = new boolean[inputCount];
+          int numInputs = 0;
+          for (int i = 1; i <= inputCount; i++) {
+            connected[i - 1] = laneMap.isConnected(instance.getPortLocation(i));
+            if (connected[i - 1]) numInputs++;
+          }
+
+          long[] inputs = new long[numInputs];
+          for (int b = 0; b < width; b++) {
+            int n = 0;
+            for (int i = 1; i <= inputCount; i++) {
+              if (!connected[i - 1]) continue;
+              long lanes = laneMap.get(instance.getPortLocation(i), b);
+              inputs[n++] = ((negated >> (i - 1)) & 1) == 1 ? ~lanes : lanes;
+            }
+            long out = AbstractGate.this.computeBitSlice(inputs, numInputs, attrs);
+            laneMap.put(instance.getPortLocation(0), b, out);
+          }
+        }
+      };
+    }
     return super.getInstanceFeature(instance, key);
   }
 
@@ -560,11 +610,9 @@ abstract class AbstractGate extends InstanceFactory {
     GateAttributes attrs = (GateAttributes) state.getAttributeSet();
     int inputCount = attrs.inputs;
     long negated = attrs.negated;
-    AttributeSet opts = state.getProject().getOptions().getAttributeSet();
-    boolean errorIfUndefined =
-        opts.getValue(Options.ATTR_GATE_UNDEFINED).equals(Options.GATE_UNDEFINED_ERROR);
+    boolean errorIfUndefined = state.getProject().getOptions().isGateUndefinedError();
 
-    Value[] inputs = new Value[inputCount];
+    Value[] inputs = inputBuffer.get();
     int numInputs = 0;
     boolean error = false;
     for (int i = 1; i <= inputCount; i++) {
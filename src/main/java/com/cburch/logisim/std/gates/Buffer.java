@@ -31,6 +31,7 @@ package com.cburch.logisim.std.gates;
 import static com.cburch.logisim.std.Strings.S;
 
 import com.cburch.logisim.analyze.model.Expression;
+import com.cburch.logisim.circuit.BitSliceComputer;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -39,7 +40,6 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
-import com.cburch.logisim.file.Options;
 import com.cburch.logisim.fpga.designrulecheck.CorrectLabel;
 import com.cburch.logisim.fpga.hdlgenerator.HDL;
 import com.cburch.logisim.instance.Instance;
@@ -73,9 +73,7 @@ class Buffer extends InstanceFactory {
   // static methods - shared with other classes
   //
   static Value repair(InstanceState state, Value v) {
-    AttributeSet opts = state.getProject().getOptions().getAttributeSet();
-    Object onUndefined = opts.getValue(Options.ATTR_GATE_UNDEFINED);
-    boolean errorIfUndefined = onUndefined.equals(Options.GATE_UNDEFINED_ERROR);
+    boolean errorIfUndefined = state.getProject().getOptions().isGateUndefinedError();
     Value repaired;
     if (errorIfUndefined) {
       int vw = v.getWidth();
@@ -162,6 +160,24 @@ class Buffer extends InstanceFactory {
         }
       };
     }
+    if (key == BitSliceComputer.class) {
+      return new BitSliceComputer() {
+        @Override
+        public boolean canComputeBitSlices(Connections connections) {
+          // an unconnected input leaves the output undefined
+          return connections.isConnected(instance.getPortLocation(1));
+        }
+
+        @Override
+        public void computeBitSlices(Map laneMap) {
+          Location in = instance.getPortLocation(1);
+          int width = instance.getAttributeValue(StdAttr.WIDTH).getWidth();
+          for (int b = 0; b < width; b++) {
+            laneMap.put(instance.getPortLocation(0), b, laneMap.get(in, b));
+          }
+        }
+      };
+    }
     return super.getInstanceFeature(instance, key);
   }
 
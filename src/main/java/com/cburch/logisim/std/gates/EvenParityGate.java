@@ -72,6 +72,11 @@ class EvenParityGate extends AbstractGate {
     return GateFunctions.computeOddParity(inputs, numInputs).not();
   }
 
+  @Override
+  protected long computeBitSlice(long[] inputs, int numInputs, AttributeSet attrs) {
+    return ~GateFunctions.computeOddParity(inputs, numInputs);
+  }
+
   @Override
   protected Value getIdentity() {
     return Value.FALSE;
@@ -31,6 +31,14 @@ package com.cburch.logisim.std.gates;
 import com.cburch.logisim.data.Value;
 
 class GateFunctions {
+  static long computeAnd(long[] inputs, int numInputs) {
+    long ret = inputs[0];
+    for (int i = 1; i < numInputs; i++) {
+      ret &= inputs[i];
+    }
+    return ret;
+  }
+
   static Value computeAnd(Value[] inputs, int numInputs) {
     Value ret = inputs[0];
     for (int i = 1; i < numInputs; i++) {
@@ -39,6 +47,16 @@ class GateFunctions {
     return ret;
   }
 
+  static long computeExactlyOne(long[] inputs, int numInputs) {
+    long seen = 0;
+    long twice = 0;
+    for (int i = 0; i < numInputs; i++) {
+      twice |= seen & inputs[i];
+      seen |= inputs[i];
+    }
+    return seen & ~twice;
+  }
+
   static Value computeExactlyOne(Value[] inputs, int numInputs) {
     int width = inputs[0].getWidth();
     Value[] ret = new Value[width];
@@ -65,6 +83,14 @@ class GateFunctions {
     return Value.create(ret);
   }
 
+  static long computeOddParity(long[] inputs, int numInputs) {
+    long ret = inputs[0];
+    for (int i = 1; i < numInputs; i++) {
+      ret ^= inputs[i];
+    }
+    return ret;
+  }
+
   static Value computeOddParity(Value[] inputs, int numInputs) {
     Value ret = inputs[0];
     for (int i = 1; i < numInputs; i++) {
@@ -73,6 +99,14 @@ class GateFunctions {
     return ret;
   }
 
+  static long computeOr(long[] inputs, int numInputs) {
+    long ret = inputs[0];
+    for (int i = 1; i < numInputs; i++) {
+      ret |= inputs[i];
+    }
+    return ret;
+  }
+
   static Value computeOr(Value[] inputs, int numInputs) {
     Value ret = inputs[0];
     for (int i = 1; i < numInputs; i++) {
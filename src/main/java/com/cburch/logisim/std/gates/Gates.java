@@ -30,6 +30,9 @@ package com.cburch.logisim.std.gates;
 
 import static com.cburch.logisim.std.Strings.S;
 
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.tools.AddTool;
 import com.cburch.logisim.tools.Library;
 import com.cburch.logisim.tools.Tool;
@@ -37,6 +40,23 @@ import java.util.Arrays;
 import java.util.List;
 
 public class Gates extends Library {
+  /**
+   * Tells whether the outputs of a component are a pure function of its inputs that never floats,
+   * which is what the levelized simulation engine needs to evaluate it in topological order. This
+   * holds for all gates of this library except the controlled buffers and gates with an open
+   * collector output.
+   */
+  public static boolean isCombinational(Component comp) {
+    ComponentFactory factory = comp.getFactory();
+    if (!(factory instanceof AbstractGate
+        || factory instanceof NotGate
+        || factory instanceof Buffer
+        || factory instanceof PLA)) return false;
+    AttributeSet attrs = comp.getAttributeSet();
+    return !attrs.containsAttribute(GateAttributes.ATTR_OUTPUT)
+        || attrs.getValue(GateAttributes.ATTR_OUTPUT) == GateAttributes.OUTPUT_01;
+  }
+
   private List<Tool> tools = null;
 
   public Gates() {
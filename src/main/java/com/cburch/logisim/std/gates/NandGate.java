@@ -97,6 +97,11 @@ class NandGate extends AbstractGate {
     return GateFunctions.computeAnd(inputs, numInputs).not();
   }
 
+  @Override
+  protected long computeBitSlice(long[] inputs, int numInputs, AttributeSet attrs) {
+    return ~GateFunctions.computeAnd(inputs, numInputs);
+  }
+
   @Override
   protected Value getIdentity() {
     return Value.TRUE;
@@ -94,6 +94,11 @@ class NorGate extends AbstractGate {
     return GateFunctions.computeOr(inputs, numInputs).not();
   }
 
+  @Override
+  protected long computeBitSlice(long[] inputs, int numInputs, AttributeSet attrs) {
+    return ~GateFunctions.computeOr(inputs, numInputs);
+  }
+
   @Override
   protected Value getIdentity() {
     return Value.FALSE;
@@ -32,6 +32,7 @@ import static com.cburch.logisim.std.Strings.S;
 
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitSliceComputer;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
@@ -177,6 +178,24 @@ class NotGate extends InstanceFactory {
         }
       };
     }
+    if (key == BitSliceComputer.class) {
+      return new BitSliceComputer() {
+        @Override
+        public boolean canComputeBitSlices(Connections connections) {
+          // an unconnected input leaves the output undefined
+          return connections.isConnected(instance.getPortLocation(1));
+        }
+
+        @Override
+        public void computeBitSlices(Map laneMap) {
+          Location in = instance.getPortLocation(1);
+          int width = instance.getAttributeValue(StdAttr.WIDTH).getWidth();
+          for (int b = 0; b < width; b++) {
+            laneMap.put(instance.getPortLocation(0), b, ~laneMap.get(in, b));
+          }
+        }
+      };
+    }
     return super.getInstanceFeature(instance, key);
   }
 
@@ -34,6 +34,7 @@ import com.cburch.hdl.HdlModel;
 import com.cburch.logisim.gui.generic.OptionPane;
 import com.cburch.logisim.instance.Port;
 import com.cburch.logisim.util.Softwares;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreter;
 import java.awt.Dimension;
 import java.awt.Insets;
 import java.io.BufferedReader;
@@ -87,6 +88,7 @@ public class VhdlContentComponent extends HdlContent {
   protected String name;
   protected String libraries;
   protected String architecture;
+  private VhdlInterpreter interpreter;
 
   protected VhdlContentComponent() {
     this.parseContent(TEMPLATE);
@@ -126,6 +128,12 @@ public class VhdlContentComponent extends HdlContent {
     return content.toString();
   }
 
+  /** The built-in simulator of this content, compiled on first use */
+  public VhdlInterpreter getInterpreter() {
+    if (interpreter == null) interpreter = VhdlInterpreter.compile(getContent());
+    return interpreter;
+  }
+
   public Port[] getInputs() {
     if (inputs == null) return new Port[0];
 
@@ -217,6 +225,7 @@ public class VhdlContentComponent extends HdlContent {
     }
 
     this.content = new StringBuffer(content);
+    interpreter = null;
     fireContentSet();
 
     return true;
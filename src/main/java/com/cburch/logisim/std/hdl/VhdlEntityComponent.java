@@ -48,7 +48,7 @@ import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.util.GraphicsUtil;
 import com.cburch.logisim.util.StringUtil;
 import com.cburch.logisim.vhdl.base.VhdlSimConstants;
-import com.cburch.logisim.vhdl.sim.VhdlSimulatorTop;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreter;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.FontMetrics;
@@ -57,6 +57,7 @@ import java.awt.Window;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.WeakHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -256,80 +257,31 @@ public class VhdlEntityComponent extends InstanceFactory {
   /**
    * Propagate signals through the VHDL component. Logisim doesn't have a VHDL simulation tool. So
    * we need to use an external tool. We send signals to Questasim/Modelsim through a socket and a
-   * tcl binder. Then, a simulation step is done and the tcl server sends the output signals back to
-   * Logisim. Then we can set the VHDL component output properly.
+   * tcl binder, together with those of the other VHDL components of the propagation step. Then, a
+   * simulation step is done and the tcl server sends the output signals back to Logisim. Then we
+   * can set the VHDL component output properly.
    *
    * <p>This can be done only if Logisim could connect to the tcl server (socket). This is done in
-   * Simulation.java.
+   * Simulation.java. Otherwise, the built-in simulator runs the component if its content stays in
+   * the subset it supports.
    */
   public void propagate(InstanceState state) {
 
     if (state.getProject().getVhdlSimulator().isEnabled()
         && state.getProject().getVhdlSimulator().isRunning()) {
 
-      VhdlSimulatorTop vhdlSimulator = state.getProject().getVhdlSimulator();
-
-      for (Port p : state.getInstance().getPorts()) {
-        int index = state.getPortIndex(p);
-        Value val = state.getPortValue(index);
-
-        String vhdlEntityName = GetSimName(state.getAttributeSet());
-
-        String message =
-            p.getType()
-                + ":"
-                + vhdlEntityName
-                + "_"
-                + p.getToolTip()
-                + ":"
-                + val.toBinaryString()
-                + ":"
-                + index;
-
-        vhdlSimulator.send(message);
-      }
-
-      vhdlSimulator.send("sync");
-
-      /* Get response from tcl server */
-      String server_response;
-      while ((server_response = vhdlSimulator.receive()) != null
-          && server_response.length() > 0
-          && !server_response.equals("sync")) {
-
-        String[] parameters = server_response.split(":");
-
-        String busValue = parameters[1];
-
-        Value[] vector_values = new Value[busValue.length()];
-
-        int k = busValue.length() - 1;
-        for (char bit : busValue.toCharArray()) {
-
-          try {
-            switch (Character.getNumericValue(bit)) {
-              case 0:
-                vector_values[k] = Value.FALSE;
-                break;
-              case 1:
-                vector_values[k] = Value.TRUE;
-                break;
-              default:
-                vector_values[k] = Value.UNKNOWN;
-                break;
-            }
-          } catch (NumberFormatException e) {
-            vector_values[k] = Value.UNKNOWN;
-          }
-          k--;
-        }
-
-        state.setPort(Integer.parseInt(parameters[2]), Value.create(vector_values), 1);
-      }
+      /* The round trip is done for all the VHDL components of the step at once */
+      state.getProject().getVhdlSimulator().request(state, GetSimName(state.getAttributeSet()));
 
       /* VhdlSimulation stopped/disabled */
     } else {
 
+      VhdlInterpreter interpreter = state.getAttributeValue(CONTENT_ATTR).getInterpreter();
+      if (interpreter.getError() == null) {
+        interpreter.propagate(state, Collections.emptyMap());
+        return;
+      }
+
       for (Port p : state.getInstance().getPorts()) {
         int index = state.getPortIndex(p);
 
@@ -345,7 +297,8 @@ public class VhdlEntityComponent extends InstanceFactory {
       }
 
       throw new UnsupportedOperationException(
-          "VHDL component simulation is not supported. This could be because there is no Questasim/Modelsim simulation server running.");
+          "VHDL component simulation is not supported. This could be because there is no Questasim/Modelsim simulation server running. The built-in simulator cannot run it: "
+              + interpreter.getError());
     }
   }
 
@@ -33,7 +33,9 @@ import com.cburch.logisim.instance.InstanceData;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.InstanceStateImpl;
 import com.cburch.logisim.instance.Port;
+import com.cburch.logisim.util.CosimFrame;
 import com.cburch.logisim.util.SocketClient;
+import java.util.List;
 
 /**
  * The TCL components needs some activity for each instance of component. Here we extend the
@@ -67,6 +69,11 @@ public class TclComponentData implements InstanceData {
 
   private Value prevClockValue = Value.UNKNOWN;
 
+  private final CosimFrame request = new CosimFrame();
+  /* State whose frame has been sent and not answered yet */
+  private InstanceState pendingState;
+  private final Runnable collectTask = this::collect;
+
   TclComponentData(InstanceState state) {
 
     instanceState = state;
@@ -119,12 +126,62 @@ public class TclComponentData implements InstanceData {
     return newTick;
   }
 
-  public String receive() {
-    return tclWrapperListenerThread.receive();
+  /**
+   * Sends the port values to the TCL wrapper. The answer is only collected once the propagation
+   * step is done, so that the wrappers of all the TCL components of the step work at the same time
+   * instead of one after the other.
+   *
+   * @param command STEP to have the console force the sti and return the outputs, EXAMINE to only
+   *     show it the updated obs
+   */
+  public void send(InstanceState state, byte command) {
+    collect();
+
+    request.clear(command);
+    for (Port p : state.getInstance().getPorts()) {
+      int index = state.getPortIndex(p);
+      request.add(p.getType(), p.getToolTip(), index, state.getPortValue(index));
+    }
+    tclClient.send(request);
+
+    pendingState = state;
+    ((InstanceStateImpl) state).getCircuitState().getPropagator().runAtStepEnd(collectTask);
   }
 
-  public void send(String message) {
-    tclClient.send(message);
+  /* Waits for the answer to the last frame and sets the outputs it carries */
+  private void collect() {
+    InstanceState state = pendingState;
+    if (state == null) return;
+    pendingState = null;
+
+    CosimFrame reply = tclWrapperListenerThread.receive();
+    if (reply == null || reply.getCommand() != CosimFrame.STEP) return;
+
+    List<Port> ports = state.getFactory().getPorts();
+    for (int i = 0; i < reply.getSignalCount(); i++) {
+      int portId = reply.getId(i);
+
+      /* Skip if we receive crap, still better than an out of range */
+      if (portId < 0 || portId >= ports.size()) continue;
+
+      /* Cut or complete with X on the MSB to match the expected width */
+      int width = ports.get(portId).getFixedBitWidth().getWidth();
+      Value val = reply.getValue(i);
+      if (val.getWidth() > width) {
+        long mask = width == 64 ? -1L : (1L << width) - 1;
+        val =
+            Value.create(
+                width,
+                val.getErrorMask() & mask,
+                val.getUnknownMask() & mask,
+                val.getValueMask() & mask);
+      } else if (val.getWidth() < width) {
+        val = val.extendWidth(width, Value.UNKNOWN);
+      }
+
+      /* Affect the value to the port */
+      state.setPort(portId, val, 1);
+    }
   }
 
   public void tclWrapperStartCallback() {
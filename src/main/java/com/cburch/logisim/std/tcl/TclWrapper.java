@@ -30,6 +30,7 @@ package com.cburch.logisim.std.tcl;
 
 import com.cburch.logisim.gui.generic.OptionPane;
 import com.cburch.logisim.tools.MessageBox;
+import com.cburch.logisim.util.CosimFrame;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
@@ -202,7 +203,7 @@ public class TclWrapper {
   }
 
   public void stop() {
-    tclConsole.send("end");
+    tclConsole.getTclClient().send(new CosimFrame(CosimFrame.END));
     try {
       tclConsole.getTclClient().getSocket().close();
     } catch (IOException e) {
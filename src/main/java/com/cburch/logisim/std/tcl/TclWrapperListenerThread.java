@@ -29,22 +29,24 @@
 package com.cburch.logisim.std.tcl;
 
 import com.cburch.logisim.circuit.Simulator;
+import com.cburch.logisim.util.CosimFrame;
 import com.cburch.logisim.util.SocketClient;
 import com.cburch.logisim.util.UniquelyNamedThread;
-import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class TclWrapperListenerThread extends UniquelyNamedThread {
 
   final SocketClient socket;
-  final LinkedList<String> messages;
+  final LinkedBlockingQueue<CosimFrame> messages;
   final Simulator sim;
 
-  Boolean socket_open = true;
+  volatile Boolean socket_open = true;
 
   TclWrapperListenerThread(SocketClient socket, Simulator simulator) {
     super("TclWrapperListenerThread");
     this.socket = socket;
-    this.messages = new LinkedList<>();
+    this.messages = new LinkedBlockingQueue<>();
     this.sim = simulator;
   }
 
@@ -54,32 +56,33 @@ public class TclWrapperListenerThread extends UniquelyNamedThread {
    *
    * @return The next message
    */
-  public String receive() {
+  public CosimFrame receive() {
 
-    while (socket_open && messages.size() < 1) {
-      try {
-        sleep(100, 0);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
+    try {
+      while (socket_open) {
+        CosimFrame frame = messages.poll(100, TimeUnit.MILLISECONDS);
+        if (frame != null) return frame;
       }
+    } catch (InterruptedException e) {
+      e.printStackTrace();
     }
 
-    if (messages.size() > 0) return messages.pop();
-    else return null;
+    return messages.poll();
   }
 
   @Override
   public void run() {
-    String line;
+    CosimFrame frame = new CosimFrame();
 
     /* Continuously receive TCL wrapper messages */
-    while ((line = socket.receive()) != null) {
+    while (socket.receive(frame)) {
 
       /* Stock the messages in temp buffer or tick simulation if asked */
-      if (line.equals("run")) {
+      if (frame.getCommand() == CosimFrame.RUN) {
         sim.tick(1);
       } else {
-        messages.add(line);
+        messages.add(frame);
+        frame = new CosimFrame();
       }
     }
 
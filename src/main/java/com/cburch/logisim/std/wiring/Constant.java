@@ -31,6 +31,7 @@ package com.cburch.logisim.std.wiring;
 import static com.cburch.logisim.std.Strings.S;
 
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitSliceComputer;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.data.AbstractAttributeSet;
 import com.cburch.logisim.data.Attribute;
@@ -119,6 +120,23 @@ public class Constant extends InstanceFactory {
     }
   }
 
+  private static class ConstantBitSlices implements BitSliceComputer {
+    private final Instance instance;
+
+    public ConstantBitSlices(Instance instance) {
+      this.instance = instance;
+    }
+
+    public void computeBitSlices(BitSliceComputer.Map laneMap) {
+      AttributeSet attrs = instance.getAttributeSet();
+      int width = attrs.getValue(StdAttr.WIDTH).getWidth();
+      long value = attrs.getValue(ATTR_VALUE);
+      for (int b = 0; b < width; b++) {
+        laneMap.put(instance.getLocation(), b, ((value >> b) & 1) == 1 ? -1L : 0L);
+      }
+    }
+  }
+
   private static class ConstantHDLGeneratorFactory extends AbstractConstantHDLGeneratorFactory {
     @Override
     public long GetConstant(AttributeSet attrs) {
@@ -159,6 +177,7 @@ public class Constant extends InstanceFactory {
   @Override
   protected Object getInstanceFeature(Instance instance, Object key) {
     if (key == ExpressionComputer.class) return new ConstantExpression(instance);
+    if (key == BitSliceComputer.class) return new ConstantBitSlices(instance);
     return super.getInstanceFeature(instance, key);
   }
 
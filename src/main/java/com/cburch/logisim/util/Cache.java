@@ -25,47 +25,112 @@
  *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
  *     http://www.heig-vd.ch/
  */
-
 package com.cburch.logisim.util;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Allows immutable objects to be cached in memory in order to reduce the creation of duplicate
  * objects.
+ *
+ * <p>The cache is a direct-mapped table: an object simply replaces whatever was cached under the
+ * same hash slot. It may be used from several threads at once (the GUI and the simulator both
+ * create values and locations), since an object is published atomically into its slot and the
+ * cached objects are immutable; two threads may at worst both miss and create equal objects.
+ *
+ * <p>A named cache takes its size from the system property <code>logisim.cache.</code><i>name</i>
+ * when it is set (as the base-2 logarithm of the number of slots), and keeps count of its hits and
+ * misses so that the size can be tuned.
  */
 public class Cache {
+  private static final int MAX_LOG_SIZE = 20;
+  private static final List<Cache> namedCaches = new CopyOnWriteArrayList<>();
+
+  /** Returns the named caches created so far. */
+  public static List<Cache> getCaches() {
+    return Collections.unmodifiableList(namedCaches);
+  }
+
+  private final String name;
   private final int mask;
-  private final Object[] data;
+  private final AtomicReferenceArray<Object> data;
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder misses = new LongAdder();
 
   public Cache() {
     this(8);
   }
 
   public Cache(int logSize) {
-    if (logSize > 12) logSize = 12;
+    this(null, logSize);
+  }
 
-    data = new Object[1 << logSize];
-    mask = data.length - 1;
+  public Cache(String name, int logSize) {
+    if (name != null) logSize = Integer.getInteger("logisim.cache." + name, logSize);
+    if (logSize > MAX_LOG_SIZE) logSize = MAX_LOG_SIZE;
+    if (logSize < 0) logSize = 0;
+
+    this.name = name;
+    data = new AtomicReferenceArray<>(1 << logSize);
+    mask = data.length() - 1;
+    if (name != null) namedCaches.add(this);
   }
 
+  /**
+   * Returns the object cached under the given hash code, if any. The caller is to check that it is
+   * the wanted object, and to put the one it creates otherwise; that put counts as a miss.
+   */
   public Object get(int hashCode) {
-    return data[hashCode & mask];
+    lookups.increment();
+    return data.get(hashCode & mask);
   }
 
   public Object get(Object value) {
     if (value == null) return null;
+    lookups.increment();
     int code = value.hashCode() & mask;
-    Object ret = data[code];
+    Object ret = data.get(code);
     if (ret != null && ret.equals(value)) {
       return ret;
     } else {
-      data[code] = value;
+      misses.increment();
+      data.lazySet(code, value);
       return value;
     }
   }
 
   public void put(int hashCode, Object value) {
     if (value != null) {
-      data[hashCode & mask] = value;
+      misses.increment();
+      data.lazySet(hashCode & mask, value);
     }
   }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getSize() {
+    return data.length();
+  }
+
+  public long getHitCount() {
+    return lookups.sum() - misses.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  @Override
+  public String toString() {
+    long hits = getHitCount();
+    long total = hits + getMissCount();
+    String rate = total == 0 ? "-" : String.format("%.1f%%", 100.0 * hits / total);
+    return name + " cache (" + getSize() + " slots): " + hits + " hits of " + total + ", " + rate;
+  }
 }
@@ -0,0 +1,197 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.util;
+
+import com.cburch.logisim.data.Value;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * One message of the binary protocol spoken with the external simulators (the Questasim binder and
+ * the TCL wrapper). A frame is a big-endian 32 bit payload length followed by the payload: a
+ * command byte, a 32 bit signal count and, for each signal, its port type byte, a 32 bit id, its
+ * width byte, the value, unknown and error masks as 64 bit words and a 16 bit length prefixed UTF-8
+ * name. Replies use the same layout with empty names. A frame is meant to be reused from one step
+ * to the next, so that a steady simulation does not allocate.
+ */
+public class CosimFrame {
+
+  /** Something that answers request frames, like the loopback stand-in of a simulator. */
+  public interface Handler {
+    void exchange(CosimFrame request, CosimFrame reply);
+  }
+
+  /** Drive the inputs, run the simulator one step and return the outputs. */
+  public static final byte STEP = 1;
+  /** Drive the inputs and let the script look at them, without returning anything. */
+  public static final byte EXAMINE = 2;
+  public static final byte RESTART = 3;
+  public static final byte END = 4;
+  /** Sent by the TCL wrapper when its script asks Logisim for a clock tick. */
+  public static final byte RUN = 5;
+
+  private static final int HEADER_SIZE = 5;
+  private static final int SIGNAL_SIZE = 1 + 4 + 1 + 3 * 8 + 2;
+  private static final byte[] NO_NAME = new byte[0];
+
+  private byte command;
+  private int count;
+  private byte[] types = new byte[8];
+  private int[] ids = new int[8];
+  private byte[] widths = new byte[8];
+  private long[] values = new long[8];
+  private long[] unknowns = new long[8];
+  private long[] errors = new long[8];
+  private byte[][] names = new byte[8][];
+  private byte[] buffer = new byte[256];
+
+  public CosimFrame() {
+    this(STEP);
+  }
+
+  public CosimFrame(byte command) {
+    this.command = command;
+  }
+
+  /**
+   * Appends a signal to the frame.
+   *
+   * @return the position of the signal in the frame
+   */
+  public int add(int type, String name, int id, Value val) {
+    return add(type, name == null ? NO_NAME : name.getBytes(StandardCharsets.UTF_8), id, val);
+  }
+
+  private int add(int type, byte[] name, int id, Value val) {
+    if (count == ids.length) grow();
+    types[count] = (byte) type;
+    names[count] = name;
+    ids[count] = id;
+    widths[count] = (byte) val.getWidth();
+    values[count] = val.getValueMask();
+    unknowns[count] = val.getUnknownMask();
+    errors[count] = val.getErrorMask();
+    return count++;
+  }
+
+  /** Empties the frame and gives it a new command. */
+  public void clear(byte command) {
+    this.command = command;
+    Arrays.fill(names, 0, count, null);
+    count = 0;
+  }
+
+  public byte getCommand() {
+    return command;
+  }
+
+  public int getId(int index) {
+    return ids[index];
+  }
+
+  public String getName(int index) {
+    return new String(names[index], StandardCharsets.UTF_8);
+  }
+
+  public int getSignalCount() {
+    return count;
+  }
+
+  public int getType(int index) {
+    return types[index];
+  }
+
+  public Value getValue(int index) {
+    int width = widths[index] & 0xff;
+    if (width == 0) return Value.NIL;
+    return Value.create(width, errors[index], unknowns[index], values[index]);
+  }
+
+  private void grow() {
+    int size = 2 * ids.length;
+    types = Arrays.copyOf(types, size);
+    ids = Arrays.copyOf(ids, size);
+    widths = Arrays.copyOf(widths, size);
+    values = Arrays.copyOf(values, size);
+    unknowns = Arrays.copyOf(unknowns, size);
+    errors = Arrays.copyOf(errors, size);
+    names = Arrays.copyOf(names, size);
+  }
+
+  /** Replaces the content of this frame by the next frame of the stream. */
+  public void read(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < HEADER_SIZE) throw new IOException("Malformed co-simulation frame");
+    if (buffer.length < length) buffer = new byte[Math.max(length, 2 * buffer.length)];
+    in.readFully(buffer, 0, length);
+    ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+    try {
+      clear(data.get());
+      int n = data.getInt();
+      for (int i = 0; i < n; i++) {
+        if (count == ids.length) grow();
+        types[count] = data.get();
+        ids[count] = data.getInt();
+        widths[count] = data.get();
+        values[count] = data.getLong();
+        unknowns[count] = data.getLong();
+        errors[count] = data.getLong();
+        int nameLength = data.getShort() & 0xffff;
+        byte[] name = nameLength == 0 ? NO_NAME : new byte[nameLength];
+        data.get(name);
+        names[count++] = name;
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Malformed co-simulation frame", e);
+    }
+  }
+
+  /** Writes the frame, length prefix included; the caller flushes. */
+  public void write(DataOutputStream out) throws IOException {
+    int length = HEADER_SIZE;
+    for (int i = 0; i < count; i++) length += SIGNAL_SIZE + names[i].length;
+    out.writeInt(length);
+    out.writeByte(command);
+    out.writeInt(count);
+    for (int i = 0; i < count; i++) {
+      out.writeByte(types[i]);
+      out.writeInt(ids[i]);
+      out.writeByte(widths[i]);
+      out.writeLong(values[i]);
+      out.writeLong(unknowns[i]);
+      out.writeLong(errors[i]);
+      out.writeShort(names[i].length);
+      out.write(names[i]);
+    }
+  }
+}
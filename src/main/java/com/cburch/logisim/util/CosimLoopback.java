@@ -0,0 +1,95 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.util;
+
+import com.cburch.logisim.data.Value;
+import java.util.HashMap;
+
+/**
+ * Local stand-in for an external simulator, to be attached with {@link
+ * SocketClient#startLoopback}. It keeps the last value driven on each input and answers every
+ * output with {@link #getOutput}, which by default leaves the output as it is. Subclasses model a
+ * design by overriding it, so that co-simulated circuits can be exercised without Questasim and
+ * without the latency of a socket.
+ */
+public class CosimLoopback implements CosimFrame.Handler {
+
+  private final HashMap<String, Value> inputs = new HashMap<>();
+  private int steps = 0;
+
+  @Override
+  public void exchange(CosimFrame request, CosimFrame reply) {
+    switch (request.getCommand()) {
+      case CosimFrame.RESTART:
+        inputs.clear();
+        steps = 0;
+        return;
+      case CosimFrame.STEP:
+      case CosimFrame.EXAMINE:
+        break;
+      default:
+        return;
+    }
+
+    for (int i = 0; i < request.getSignalCount(); i++) {
+      int type = request.getType(i);
+      if (type == 1 || type == 3) inputs.put(request.getName(i), request.getValue(i));
+    }
+    if (request.getCommand() != CosimFrame.STEP) return;
+
+    steps++;
+    for (int i = 0; i < request.getSignalCount(); i++) {
+      int type = request.getType(i);
+      if (type == 2 || type == 3) {
+        Value val = getOutput(request.getName(i), request.getValue(i));
+        reply.add(type, null, request.getId(i), val);
+      }
+    }
+  }
+
+  /** Returns the last value driven on the named input, or null if there is none. */
+  public Value getInput(String name) {
+    return inputs.get(name);
+  }
+
+  /**
+   * Computes the value of an output after a step.
+   *
+   * @param name name of the output, as sent by Logisim
+   * @param current value the output has in Logisim
+   */
+  protected Value getOutput(String name, Value current) {
+    return current;
+  }
+
+  /** Number of STEP requests answered since the start or the last restart. */
+  public int getStepCount() {
+    return steps;
+  }
+}
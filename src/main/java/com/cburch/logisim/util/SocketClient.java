@@ -28,19 +28,24 @@
 
 package com.cburch.logisim.util;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Socket client to talk to the binder.
+ * Socket client to talk to the binder. Messages are {@link CosimFrame}s; a whole simulation step
+ * goes out as one frame and comes back as one frame.
+ *
+ * <p>For testing, the client can also be attached to a {@link CosimFrame.Handler} that stands in
+ * for the binder. The frames are then encoded and decoded in memory, without any socket.
  *
  * @author christian.mueller@heig-vd.ch
  */
@@ -54,8 +59,13 @@ public class SocketClient {
 
   private Socket socket;
 
-  private BufferedReader socket_reader;
-  private PrintWriter socket_writer;
+  private DataInputStream socket_reader;
+  private DataOutputStream socket_writer;
+
+  private CosimFrame.Handler loopback;
+  private ByteArrayOutputStream loopbackBuffer;
+  private final CosimFrame loopbackRequest = new CosimFrame();
+  private final CosimFrame loopbackReply = new CosimFrame();
 
   public SocketClient() {
 
@@ -78,6 +88,11 @@ public class SocketClient {
     return 0;
   }
 
+  /** Tells whether the binder answers a frame with the given command. */
+  public static boolean expectsReply(byte command) {
+    return command == CosimFrame.STEP || command == CosimFrame.EXAMINE;
+  }
+
   public Socket getSocket() {
     return socket;
   }
@@ -86,22 +101,51 @@ public class SocketClient {
     return connected;
   }
 
-  public String receive() {
+  /**
+   * Reads the next frame into the given one.
+   *
+   * @return false if the connection is closed or broken
+   */
+  public boolean receive(CosimFrame frame) {
 
     try {
-      return socket_reader.readLine();
+      if (loopback != null) {
+        synchronized (loopbackRequest) {
+          if (socket_reader.available() == 0) {
+            socket_reader =
+                new DataInputStream(new ByteArrayInputStream(loopbackBuffer.toByteArray()));
+            loopbackBuffer.reset();
+          }
+        }
+      }
+      frame.read(socket_reader);
+      return true;
     } catch (Exception e) {
-      logger.error("Cannot read from socket : {}", e.getMessage());
-      return null;
+      if (connected) logger.error("Cannot read from socket : {}", e.getMessage());
+      return false;
     }
   }
 
-  public void send(String message) {
+  /** Sends a frame; the frame may be reused as soon as this returns. */
+  public void send(CosimFrame frame) {
 
     try {
-      socket_writer.println(message);
+      if (loopback != null) {
+        synchronized (loopbackRequest) {
+          ByteArrayOutputStream request = new ByteArrayOutputStream();
+          frame.write(new DataOutputStream(request));
+          loopbackRequest.read(new DataInputStream(new ByteArrayInputStream(request.toByteArray())));
+          loopbackReply.clear(loopbackRequest.getCommand());
+          loopback.exchange(loopbackRequest, loopbackReply);
+          if (expectsReply(loopbackRequest.getCommand()))
+            loopbackReply.write(new DataOutputStream(loopbackBuffer));
+        }
+        return;
+      }
+      frame.write(socket_writer);
+      socket_writer.flush();
     } catch (Exception e) {
-      logger.error("Cannot write {} to socket {}", message, e.getMessage());
+      logger.error("Cannot write frame {} to socket {}", frame.getCommand(), e.getMessage());
     }
   }
 
@@ -109,12 +153,10 @@ public class SocketClient {
 
     try {
       socket = server.accept();
+      socket.setTcpNoDelay(true);
 
-      socket_reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-      socket_writer =
-          new PrintWriter(
-              new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())), true);
+      socket_reader = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      socket_writer = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
 
       connected = true;
       return;
@@ -125,9 +167,26 @@ public class SocketClient {
     connected = false;
   }
 
+  /**
+   * Connects the client to a stand-in for the binder living in this process, see {@link
+   * CosimLoopback}.
+   */
+  public void startLoopback(CosimFrame.Handler handler) {
+    loopback = handler;
+    loopbackBuffer = new ByteArrayOutputStream();
+    socket_reader = new DataInputStream(new ByteArrayInputStream(new byte[0]));
+    connected = true;
+  }
+
   public void stop() {
     if (!isConnected()) return;
 
+    if (loopback != null) {
+      loopback = null;
+      connected = false;
+      return;
+    }
+
     try {
       socket.close();
       connected = false;
@@ -38,6 +38,7 @@ import com.cburch.logisim.fpga.designrulecheck.CorrectLabel;
 import com.cburch.logisim.gui.generic.OptionPane;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.util.Softwares;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreter;
 import java.awt.Dimension;
 import java.awt.Insets;
 import java.io.BufferedReader;
@@ -115,6 +116,7 @@ public class VhdlContent extends HdlContent {
   protected String libraries;
   protected String architecture;
   private final LogisimFile logiFile;
+  private VhdlInterpreter interpreter;
 
   protected VhdlContent(String name, LogisimFile file) {
     logiFile = file;
@@ -162,6 +164,12 @@ public class VhdlContent extends HdlContent {
     return content.toString();
   }
 
+  /** The built-in simulator of this content, compiled on first use */
+  public VhdlInterpreter getInterpreter() {
+    if (interpreter == null) interpreter = VhdlInterpreter.compile(getContent());
+    return interpreter;
+  }
+
   public Generic[] getGenerics() {
     if (generics == null) {
       return new Generic[0];
@@ -300,6 +308,7 @@ public class VhdlContent extends HdlContent {
   public boolean setContent(String vhdl) {
     if (valid && content.toString().equals(vhdl)) return true;
     content = new StringBuffer(vhdl);
+    interpreter = null;
     valid = false;
     try {
       errTitle.setLength(0);
@@ -54,7 +54,7 @@ import com.cburch.logisim.std.wiring.Pin;
 import com.cburch.logisim.util.GraphicsUtil;
 import com.cburch.logisim.util.StringGetter;
 import com.cburch.logisim.util.StringUtil;
-import com.cburch.logisim.vhdl.sim.VhdlSimulatorTop;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreter;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
@@ -63,6 +63,7 @@ import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.WeakHashMap;
 import org.slf4j.Logger;
@@ -208,80 +209,31 @@ public class VhdlEntity extends InstanceFactory implements HdlModelListener {
   /**
    * Propagate signals through the VHDL component. Logisim doesn't have a VHDL simulation tool. So
    * we need to use an external tool. We send signals to Questasim/Modelsim through a socket and a
-   * tcl binder. Then, a simulation step is done and the tcl server sends the output signals back to
-   * Logisim. Then we can set the VHDL component output properly.
+   * tcl binder, together with those of the other VHDL components of the propagation step. Then, a
+   * simulation step is done and the tcl server sends the output signals back to Logisim. Then we
+   * can set the VHDL component output properly.
    *
    * <p>This can be done only if Logisim could connect to the tcl server (socket). This is done in
-   * Simulation.java.
+   * Simulation.java. Otherwise, the built-in simulator runs the component if its content stays in
+   * the subset it supports.
    */
   public void propagate(InstanceState state) {
 
     if (state.getProject().getVhdlSimulator().isEnabled()
         && state.getProject().getVhdlSimulator().isRunning()) {
 
-      VhdlSimulatorTop vhdlSimulator = state.getProject().getVhdlSimulator();
-
-      for (Port p : state.getInstance().getPorts()) {
-        int index = state.getPortIndex(p);
-        Value val = state.getPortValue(index);
-
-        String vhdlEntityName = GetSimName(state.getAttributeSet());
-
-        String message =
-            p.getType()
-                + ":"
-                + vhdlEntityName
-                + "_"
-                + p.getToolTip()
-                + ":"
-                + val.toBinaryString()
-                + ":"
-                + index;
-
-        vhdlSimulator.send(message);
-      }
-
-      vhdlSimulator.send("sync");
-
-      /* Get response from tcl server */
-      String server_response;
-      while ((server_response = vhdlSimulator.receive()) != null
-          && server_response.length() > 0
-          && !server_response.equals("sync")) {
-
-        String[] parameters = server_response.split(":");
-
-        String busValue = parameters[1];
-
-        Value[] vector_values = new Value[busValue.length()];
-
-        int k = busValue.length() - 1;
-        for (char bit : busValue.toCharArray()) {
-
-          try {
-            switch (Character.getNumericValue(bit)) {
-              case 0:
-                vector_values[k] = Value.FALSE;
-                break;
-              case 1:
-                vector_values[k] = Value.TRUE;
-                break;
-              default:
-                vector_values[k] = Value.UNKNOWN;
-                break;
-            }
-          } catch (NumberFormatException e) {
-            vector_values[k] = Value.UNKNOWN;
-          }
-          k--;
-        }
-
-        state.setPort(Integer.parseInt(parameters[2]), Value.create(vector_values), 1);
-      }
+      /* The round trip is done for all the VHDL components of the step at once */
+      state.getProject().getVhdlSimulator().request(state, GetSimName(state.getAttributeSet()));
 
       /* VhdlSimulation stopped/disabled */
     } else {
 
+      VhdlInterpreter interpreter = this.content.getInterpreter();
+      if (interpreter.getError() == null) {
+        interpreter.propagate(state, getGenericValues(state.getAttributeSet()));
+        return;
+      }
+
       for (Port p : state.getInstance().getPorts()) {
         int index = state.getPortIndex(p);
 
@@ -297,8 +249,20 @@ public class VhdlEntity extends InstanceFactory implements HdlModelListener {
       }
 
       throw new UnsupportedOperationException(
-          "VHDL component simulation is not supported. This could be because there is no Questasim/Modelsim simulation server running.");
+          "VHDL component simulation is not supported. This could be because there is no Questasim/Modelsim simulation server running. The built-in simulator cannot run it: "
+              + interpreter.getError());
+    }
+  }
+
+  /* The values of the generics of an instance, as for the HDL generation */
+  private Map<String, Integer> getGenericValues(AttributeSet attrs) {
+    Map<String, Integer> ret = new HashMap<>();
+    for (Attribute<Integer> a : content.getGenericAttributes()) {
+      VhdlContent.Generic g = ((VhdlEntityAttributes.VhdlGenericAttribute) a).getGeneric();
+      Integer v = attrs.getValue(a);
+      ret.put(g.getName(), v != null ? v : g.getDefaultValue());
     }
+    return ret;
   }
 
   @Override
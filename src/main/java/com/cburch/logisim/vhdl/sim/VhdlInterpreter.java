@@ -0,0 +1,271 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.vhdl.sim;
+
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.InstanceData;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.Port;
+import com.cburch.logisim.vhdl.base.VhdlParser.IllegalVhdlContentException;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Expr;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Frame;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Process;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.RunException;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Type;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.TypeSpec;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Built-in behavioral simulator for VHDL components. It runs the synthesizable subset accepted by
+ * {@link VhdlInterpreterParser} directly in the propagation step, so that VHDL components work
+ * without an external Questasim/Modelsim server. Each instance keeps its signals and variables in
+ * its instance data; a call to {@link #propagate} reads the inputs, runs the processes they wake up
+ * and then the delta cycles that follow, until the signals settle, and drives the outputs.
+ */
+public class VhdlInterpreter {
+
+  static final Logger logger = LoggerFactory.getLogger(VhdlInterpreter.class);
+
+  /* Delta cycles after which a design is considered as oscillating */
+  private static final int MAX_DELTAS = 1000;
+
+  private final String error;
+  private final VhdlInterpreterParser design;
+
+  private VhdlInterpreter(VhdlInterpreterParser design, String error) {
+    this.design = design;
+    this.error = error;
+  }
+
+  /** Compiles the given VHDL source; if it cannot be run, getError tells why */
+  public static VhdlInterpreter compile(String source) {
+    try {
+      VhdlInterpreterParser parser = new VhdlInterpreterParser(source);
+      parser.parse();
+      return new VhdlInterpreter(parser, null);
+    } catch (IllegalVhdlContentException e) {
+      return new VhdlInterpreter(null, e.getMessage());
+    }
+  }
+
+  /** Null if the design can be simulated, otherwise the reason why it cannot */
+  public String getError() {
+    return error;
+  }
+
+  /** Simulation state of one instance of the design */
+  private static class RunState extends Frame implements InstanceData, Cloneable {
+    final VhdlInterpreter owner;
+    final Map<String, Integer> generics;
+    Object[][] vars;
+    boolean started = false;
+    List<Port> ports;
+    int[] portSignals;
+
+    RunState(VhdlInterpreter owner, Map<String, Integer> generics) {
+      this.owner = owner;
+      this.generics = generics;
+    }
+
+    @Override
+    public RunState clone() {
+      try {
+        RunState ret = (RunState) super.clone();
+        ret.cur = cur.clone();
+        ret.next = next.clone();
+        ret.last = last.clone();
+        ret.event = event.clone();
+        ret.assigned = assigned.clone();
+        ret.assignedList = assignedList.clone();
+        ret.vars = vars.clone();
+        for (int i = 0; i < vars.length; i++) ret.vars[i] = vars[i].clone();
+        return ret;
+      } catch (CloneNotSupportedException e) {
+        return null;
+      }
+    }
+  }
+
+  private RunState elaborate(Map<String, Integer> generics) {
+    VhdlInterpreterParser d = design;
+    RunState s = new RunState(this, generics);
+    int n = d.constNames.size();
+    s.consts = new Object[n];
+    s.constTypes = new Type[n];
+    for (int i = 0; i < n; i++) {
+      Type t = d.constSpecs.get(i).elaborate(s);
+      Object v = null;
+      if (i < d.genericCount) {
+        for (Map.Entry<String, Integer> g : generics.entrySet())
+          if (g.getKey().equalsIgnoreCase(d.constNames.get(i))) v = (long) g.getValue();
+      }
+      if (v == null) v = d.constInits.get(i).eval(s, null);
+      s.constTypes[i] = t;
+      s.consts[i] = t.coerce(v);
+    }
+    n = d.sigNames.size();
+    s.sigTypes = new Type[n];
+    s.cur = new Object[n];
+    for (int i = 0; i < n; i++) {
+      Type t = d.sigSpecs.get(i).elaborate(s);
+      Expr init = d.sigInits.get(i);
+      s.sigTypes[i] = t;
+      s.cur[i] = init == null ? t.initial() : t.coerce(init.eval(s, null));
+    }
+    s.last = s.cur.clone();
+    s.next = new Object[n];
+    s.event = new boolean[n];
+    s.assigned = new boolean[n];
+    s.assignedList = new int[n];
+    s.varTypes = new Type[d.processes.size()][];
+    s.vars = new Object[d.processes.size()][];
+    for (int p = 0; p < d.processes.size(); p++) {
+      Process proc = d.processes.get(p);
+      int count = proc.varSpecs == null ? 0 : proc.varSpecs.length;
+      s.varTypes[p] = new Type[count];
+      s.vars[p] = new Object[count];
+      for (int i = 0; i < count; i++) {
+        Type t = proc.varSpecs[i].elaborate(s);
+        Expr init = proc.varInits[i];
+        s.varTypes[p][i] = t;
+        s.vars[p][i] = init == null ? t.initial() : t.coerce(init.eval(s, null));
+      }
+    }
+    return s;
+  }
+
+  /* Binds the ports of the instance to the VHDL ports by name, as the external simulator does */
+  private void bindPorts(RunState s, List<Port> ports) {
+    s.ports = ports;
+    s.portSignals = new int[ports.size()];
+    int count = design.portModes.size();
+    for (int i = 0; i < ports.size(); i++) {
+      s.portSignals[i] = -1;
+      String name = ports.get(i).getToolTip();
+      for (int k = 0; k < count && name != null; k++)
+        if (design.sigNames.get(k).equalsIgnoreCase(name)) s.portSignals[i] = k;
+    }
+  }
+
+  /**
+   * Runs the design for the given instance, the generics giving the values of the generics that
+   * differ from their default. The outputs go to the error value if the design fails at run time,
+   * for instance with a loop that does not end or with signals that never settle, or if the
+   * interpreter itself fails on it; the instance then starts over on its next run.
+   */
+  public void propagate(InstanceState state, Map<String, Integer> generics) {
+    if (design == null) throw new IllegalStateException(error);
+    List<Port> ports = state.getInstance().getPorts();
+    InstanceData data = state.getData();
+    RunState s = data instanceof RunState ? (RunState) data : null;
+    try {
+      if (s == null || s.owner != this || !s.generics.equals(generics)) {
+        s = elaborate(generics);
+        state.setData(s);
+      }
+      if (s.ports != ports) bindPorts(s, ports);
+
+      for (int i = 0; i < ports.size(); i++) {
+        int sig = s.portSignals[i];
+        if (sig < 0 || ports.get(i).getType() == EndData.OUTPUT_ONLY) continue;
+        Object v = s.sigTypes[sig].coerce(state.getPortValue(i));
+        if (!Objects.equals(v, s.cur[sig])) {
+          s.last[sig] = s.cur[sig];
+          s.cur[sig] = v;
+          s.event[sig] = true;
+        }
+      }
+      run(s);
+    } catch (RuntimeException e) {
+      // a failure of the interpreter rather than of the design is a bug, not to go unnoticed
+      if (!(e instanceof RunException)) logger.error("VHDL interpreter failure", e);
+      state.setData(null);
+      for (int i = 0; i < ports.size(); i++) {
+        Port p = ports.get(i);
+        if (p.getType() != EndData.INPUT_ONLY)
+          state.setPort(i, Value.createError(p.getFixedBitWidth()), 1);
+      }
+      return;
+    }
+
+    for (int i = 0; i < ports.size(); i++) {
+      int sig = s.portSignals[i];
+      Port p = ports.get(i);
+      if (p.getType() == EndData.INPUT_ONLY) continue;
+      int width = p.getFixedBitWidth().getWidth();
+      Value v =
+          sig < 0
+              ? Value.createUnknown(p.getFixedBitWidth())
+              : VhdlInterpreterAst.fit(
+                  VhdlInterpreterAst.toBits(s.cur[sig], width),
+                  width,
+                  s.sigTypes[sig].kind == VhdlInterpreterAst.SIGNED);
+      state.setPort(i, v, 1);
+    }
+  }
+
+  /* Runs the woken processes and the delta cycles that follow until the signals settle */
+  private void run(RunState s) {
+    List<Process> processes = design.processes;
+    boolean all = !s.started;
+    s.started = true;
+    for (int delta = 0; ; delta++) {
+      if (delta > MAX_DELTAS) throw new RunException("the signals do not settle");
+      for (int p = 0; p < processes.size(); p++) {
+        Process proc = processes.get(p);
+        if (!all && !proc.isTriggered(s.event)) continue;
+        s.process = p;
+        VhdlInterpreterAst.execAll(proc.body, s, s.vars[p]);
+      }
+      all = false;
+      Arrays.fill(s.event, false);
+      boolean changed = false;
+      for (int k = 0; k < s.assignedCount; k++) {
+        int sig = s.assignedList[k];
+        s.assigned[sig] = false;
+        Object v = s.next[sig];
+        s.next[sig] = null;
+        if (!Objects.equals(v, s.cur[sig])) {
+          s.last[sig] = s.cur[sig];
+          s.cur[sig] = v;
+          s.event[sig] = true;
+          changed = true;
+        }
+      }
+      s.assignedCount = 0;
+      if (!changed) return;
+    }
+  }
+}
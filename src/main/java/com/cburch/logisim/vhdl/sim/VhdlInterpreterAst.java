@@ -0,0 +1,1080 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.vhdl.sim;
+
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Value;
+import java.util.Arrays;
+
+/**
+ * Syntax tree of the VHDL subset run by {@link VhdlInterpreter}, along with the operations on its
+ * values. At run time a std_logic or an unsigned vector is a {@link Value}, a signed vector a
+ * {@link Signed}, an integer or an enumeration literal a Long and a boolean a Boolean. Aggregates
+ * such as (others => '0') stay an {@link Aggregate} until their width is known.
+ */
+class VhdlInterpreterAst {
+
+  /** Raised while running a design, for things the parser could not catch */
+  static class RunException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    RunException(String message) {
+      super(message);
+    }
+  }
+
+  static final class Signed {
+    final Value bits;
+
+    Signed(Value bits) {
+      this.bits = bits;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Signed && ((Signed) other).bits.equals(bits);
+    }
+
+    @Override
+    public int hashCode() {
+      return bits.hashCode();
+    }
+  }
+
+  static final class Aggregate {
+    final int[] positions;
+    final Object[] elements;
+    final Object others;
+
+    Aggregate(int[] positions, Object[] elements, Object others) {
+      this.positions = positions;
+      this.elements = elements;
+      this.others = others;
+    }
+  }
+
+  //
+  // types
+  //
+
+  static final int BIT = 0;
+  static final int VECTOR = 1;
+  static final int SIGNED = 2;
+  static final int INTEGER = 3;
+  static final int BOOLEAN = 4;
+  static final int ENUM = 5;
+
+  /** Type of a declaration; the bounds of a vector may depend on generics */
+  static final class TypeSpec {
+    final int kind;
+    final Expr left;
+    final Expr right;
+    final boolean ascending;
+    final String[] literals;
+
+    TypeSpec(int kind, Expr left, Expr right, boolean ascending, String[] literals) {
+      this.kind = kind;
+      this.left = left;
+      this.right = right;
+      this.ascending = ascending;
+      this.literals = literals;
+    }
+
+    Type elaborate(Frame f) {
+      if (kind != VECTOR && kind != SIGNED) return new Type(kind, 1, 0, 0);
+      int l = (int) toLong(left.eval(f, null));
+      int r = (int) toLong(right.eval(f, null));
+      if (ascending ? l > r : l < r) throw new RunException("null ranges are not supported");
+      return new Type(kind, Math.abs(l - r) + 1, l, r);
+    }
+  }
+
+  static final class Type {
+    final int kind;
+    final int width;
+    final int left;
+    final int right;
+
+    Type(int kind, int width, int left, int right) {
+      this.kind = kind;
+      this.width = width;
+      this.left = left;
+      this.right = right;
+    }
+
+    boolean isVector() {
+      return kind == VECTOR || kind == SIGNED;
+    }
+
+    int high() {
+      return Math.max(left, right);
+    }
+
+    int low() {
+      return Math.min(left, right);
+    }
+
+    /** Position in the Logisim value of the element with the given VHDL index */
+    int bit(long index) {
+      if (index < low() || index > high())
+        throw new RunException("index " + index + " out of range " + left + " to " + right);
+      return (int) (left >= right ? index - right : right - index);
+    }
+
+    Object initial() {
+      switch (kind) {
+        case BIT:
+          return Value.UNKNOWN;
+        case VECTOR:
+          return Value.createUnknown(BitWidth.create(width));
+        case SIGNED:
+          return new Signed(Value.createUnknown(BitWidth.create(width)));
+        case BOOLEAN:
+          return Boolean.FALSE;
+        default:
+          return 0L;
+      }
+    }
+
+    /** Converts a value to this type, as an assignment does */
+    Object coerce(Object v) {
+      switch (kind) {
+        case BIT:
+          return toBits(v, 1);
+        case VECTOR:
+          return fit(toBits(v, width), width, false);
+        case SIGNED:
+          return new Signed(fit(toBits(v, width), width, true));
+        case BOOLEAN:
+          return toBoolean(v);
+        default:
+          return toLong(v);
+      }
+    }
+  }
+
+  //
+  // run time
+  //
+
+  /** Values seen by the statements of one instance during a step */
+  static class Frame {
+    Object[] consts;
+    Type[] constTypes;
+    Object[] cur;
+    Object[] next;
+    Object[] last;
+    boolean[] event;
+    boolean[] assigned;
+    int[] assignedList;
+    int assignedCount;
+    Type[] sigTypes;
+    Type[][] varTypes;
+    int process;
+
+    void assign(int sig, Object v) {
+      next[sig] = v;
+      if (!assigned[sig]) {
+        assigned[sig] = true;
+        assignedList[assignedCount++] = sig;
+      }
+    }
+
+    Object pending(int sig) {
+      return assigned[sig] ? next[sig] : cur[sig];
+    }
+  }
+
+  //
+  // expressions
+  //
+
+  abstract static class Expr {
+    abstract Object eval(Frame f, Object[] vars);
+
+    /** True if the value does not depend on signals or variables */
+    boolean isStatic() {
+      return false;
+    }
+  }
+
+  static final class Literal extends Expr {
+    final Object value;
+
+    Literal(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    Object eval(Frame f, Object[] vars) {
+      return value;
+    }
+
+    @Override
+    boolean isStatic() {
+      return true;
+    }
+  }
+
+  static final int CONST = 0;
+  static final int SIGNAL = 1;
+  static final int VARIABLE = 2;
+
+  /** A constant, generic, signal or variable */
+  static final class Name extends Expr {
+    final int kind;
+    final int index;
+    final String name;
+
+    Name(int kind, int index, String name) {
+      this.kind = kind;
+      this.index = index;
+      this.name = name;
+    }
+
+    @Override
+    Object eval(Frame f, Object[] vars) {
+      switch (kind) {
+        case CONST:
+          return f.consts[index];
+        case SIGNAL:
+          return f.cur[index];
+        default:
+          return vars[index];
+      }
+    }
+
+    Type type(Frame f) {
+      switch (kind) {
+        case CONST:
+          return f.constTypes[index];
+        case SIGNAL:
+          return f.sigTypes[index];
+        default:
+          return f.varTypes[f.process][index];
+      }
+    }
+
+    @Override
+    boolean isStatic() {
+      return kind == CONST;
+    }
+  }
+
+  /** An element or a slice of a vector */
+  static final class Select extends Expr {
+    final Name base;
+    final Expr from;
+    final Expr to;
+
+    Select(Name base, Expr from, Expr to) {
+      this.base = base;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    Object eval(Frame f, Object[] vars) {
+      Type t = base.type(f);
+      Value v = toBits(base.eval(f, vars), t.width);
+      int a = t.bit(toLong(from.eval(f, vars)));
+      if (to == null) return v.get(a);
+      int b = t.bit(toLong(to.eval(f, vars)));
+      Value ret = slice(v, Math.min(a, b), Math.max(a, b));
+      return t.kind == SIGNED ? new Signed(ret) : ret;
+    }
+
+    @Override
+    boolean isStatic() {
+      return base.isStatic() && from.isStatic() && (to == null || to.isStatic());
+    }
+  }
+
+  static final class Attribute extends Expr {
+    final Name base;
+    final String attribute;
+
+    Attribute(Name base, String attribute) {
+      this.base = base;
+      this.attribute = attribute;
+    }
+
+    @Override
+    Object eval(Frame f, Object[] vars) {
+      switch (attribute) {
+        case "event":
+          return f.event[base.index];
+        case "length":
+          return (long) base.type(f).width;
+        case "high":
+          return (long) base.type(f).high();
+        case "low":
+          return (long) base.type(f).low();
+        case "left":
+          return (long) base.type(f).left;
+        default:
+          return (long) base.type(f).right;
+      }
+    }
+
+    @Override
+    boolean isStatic() {
+      return !attribute.equals("event");
+    }
+  }
+
+  static final class Unary extends Expr {
+    final String op;
+    final Expr arg;
+
+    Unary(String op, Expr arg) {
+      this.op = op;
+      this.arg = arg;
+    }
+
+    @Override
+    Object eval(Frame f, Object[] vars) {
+      Object a = arg.eval(f, vars);
+      switch (op) {
+        case "not":
+          if (a instanceof Boolean) return !(Boolean) a;
+          return wrapLike(a, toBits(a, 1).not());
+        case "abs":
+          if (a instanceof Long) return Math.abs((Long) a);
+          if (a instanceof Signed && isNegative(((Signed) a).bits)) return negate(a);
+          return a;
+        case "-":
+          return negate(a);
+        default:
+          return a;
+      }
+    }
+
+    @Override
+    boolean isStatic() {
+      return arg.isStatic();
+    }
+  }
+
+  static final class Binary extends Expr {
+    final String op;
+    final Expr left;
+    final Expr right;
+
+    Binary(String op, Expr left, Expr right) {
+      this.op = op;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object eval(Frame f, Object[] vars) {
+      Object a = left.eval(f, vars);
+      Object b = right.eval(f, vars);
+      switch (op) {
+        case "and":
+        case "or":
+        case "xor":
+        case "nand":
+        case "nor":
+        case "xnor":
+          return logic(op, a, b);
+        case "=":
+          return compare(a, b) == 0;
+        case "/=":
+          return compare(a, b) != 0;
+        case "<":
+          return compare(a, b) < 0;
+        case "<=":
+          return compare(a, b) <= 0;
+        case ">":
+          return compare(a, b) > 0;
+        case ">=":
+          return compare(a, b) >= 0;
+        case "&":
+          return concat(a, b);
+        case "sll":
+        case "srl":
+        case "sla":
+        case "sra":
+        case "rol":
+        case "ror":
+          return shift(op, a, toLong(b));
+        default:
+          return arithmetic(op, a, b);
+      }
+    }
+
+    @Override
+    boolean isStatic() {
+      return left.isStatic() && right.isStatic();
+    }
+  }
+
+  static final class Call extends Expr {
+    final String function;
+    final Expr[] args;
+
+    Call(String function, Expr[] args) {
+      this.function = function;
+      this.args = args;
+    }
+
+    @Override
+    Object eval(Frame f, Object[] vars) {
+      switch (function) {
+        case "rising_edge":
+        case "falling_edge":
+          {
+            int sig = ((Name) args[0]).index;
+            if (!f.event[sig]) return false;
+            Value want = function.equals("rising_edge") ? Value.TRUE : Value.FALSE;
+            Value other = want.not();
+            return toBits(f.cur[sig], 1) == want && toBits(f.last[sig], 1) == other;
+          }
+        default:
+          break;
+      }
+      Object a = args[0].eval(f, vars);
+      Object b = args.length > 1 ? args[1].eval(f, vars) : null;
+      switch (function) {
+        case "to_unsigned":
+        case "conv_std_logic_vector":
+        case "conv_unsigned":
+          return fromLong(toLong(a), (int) toLong(b));
+        case "to_signed":
+        case "conv_signed":
+          return new Signed(fromLong(toLong(a), (int) toLong(b)));
+        case "to_integer":
+        case "conv_integer":
+          return toLong(a);
+        case "unsigned":
+        case "std_logic_vector":
+        case "std_ulogic_vector":
+          return a instanceof Signed ? ((Signed) a).bits : toBits(a, 1);
+        case "signed":
+          return a instanceof Signed ? a : new Signed(toBits(a, 1));
+        case "resize":
+          {
+            int width = (int) toLong(b);
+            Value v = fit(toBits(a, width), width, a instanceof Signed);
+            return a instanceof Signed ? new Signed(v) : v;
+          }
+        case "shift_left":
+          return shift("sll", a, toLong(b));
+        case "shift_right":
+          return shift(a instanceof Signed ? "sra" : "srl", a, toLong(b));
+        case "rotate_left":
+          return shift("rol", a, toLong(b));
+        case "rotate_right":
+          return shift("ror", a, toLong(b));
+        case "to_x01":
+        case "to_ux01":
+          return a;
+        case "minimum":
+          return compare(a, b) <= 0 ? a : b;
+        case "maximum":
+          return compare(a, b) >= 0 ? a : b;
+        default:
+          throw new RunException("unknown function " + function);
+      }
+    }
+
+    @Override
+    boolean isStatic() {
+      if (function.endsWith("_edge")) return false;
+      for (Expr e : args) if (!e.isStatic()) return false;
+      return true;
+    }
+  }
+
+  static final class AggregateExpr extends Expr {
+    final Expr[] positions;
+    final Expr[] elements;
+    final Expr others;
+
+    AggregateExpr(Expr[] positions, Expr[] elements, Expr others) {
+      this.positions = positions;
+      this.elements = elements;
+      this.others = others;
+    }
+
+    @Override
+    Object eval(Frame f, Object[] vars) {
+      int[] pos = positions == null ? null : new int[positions.length];
+      Object[] elts = new Object[elements.length];
+      for (int i = 0; i < elements.length; i++) {
+        if (pos != null) pos[i] = (int) toLong(positions[i].eval(f, vars));
+        elts[i] = elements[i].eval(f, vars);
+      }
+      return new Aggregate(pos, elts, others == null ? null : others.eval(f, vars));
+    }
+
+    @Override
+    boolean isStatic() {
+      if (positions != null) for (Expr e : positions) if (!e.isStatic()) return false;
+      for (Expr e : elements) if (!e.isStatic()) return false;
+      return others == null || others.isStatic();
+    }
+  }
+
+  /** e1 when c1 else e2 ..., also used for selected assignments */
+  static final class Conditional extends Expr {
+    final Expr[] conditions;
+    final Expr[] values;
+
+    Conditional(Expr[] conditions, Expr[] values) {
+      this.conditions = conditions;
+      this.values = values;
+    }
+
+    @Override
+    Object eval(Frame f, Object[] vars) {
+      for (int i = 0; i < conditions.length; i++) {
+        if (conditions[i] == null || toBoolean(conditions[i].eval(f, vars)))
+          return values[i].eval(f, vars);
+      }
+      return null;
+    }
+  }
+
+  /** with subject select ... e1 when choices1, e2 when choices2 ... */
+  static final class Selected extends Expr {
+    final Expr subject;
+    final Choice[][] choices;
+    final Expr[] values;
+
+    Selected(Expr subject, Choice[][] choices, Expr[] values) {
+      this.subject = subject;
+      this.choices = choices;
+      this.values = values;
+    }
+
+    @Override
+    Object eval(Frame f, Object[] vars) {
+      Object v = subject.eval(f, vars);
+      for (int i = 0; i < choices.length; i++) {
+        for (Choice c : choices[i]) {
+          if (c.matches(v, f, vars)) return values[i].eval(f, vars);
+        }
+      }
+      return null;
+    }
+  }
+
+  /** One alternative of a case or selected assignment: a value or a range, null for others */
+  static final class Choice {
+    final Expr low;
+    final Expr high;
+
+    Choice(Expr low, Expr high) {
+      this.low = low;
+      this.high = high;
+    }
+
+    boolean matches(Object v, Frame f, Object[] vars) {
+      if (low == null) return true;
+      Object a = low.eval(f, vars);
+      if (high == null) return compare(v, a) == 0;
+      Object b = high.eval(f, vars);
+      return compare(v, a) * compare(v, b) <= 0;
+    }
+  }
+
+  //
+  // statements
+  //
+
+  static final int NORMAL = 0;
+  static final int EXIT = 1;
+  static final int NEXT = 2;
+
+  abstract static class Stmt {
+    /** Returns NORMAL, or EXIT or NEXT when leaving the enclosing loop */
+    abstract int exec(Frame f, Object[] vars);
+  }
+
+  static int execAll(Stmt[] body, Frame f, Object[] vars) {
+    for (Stmt s : body) {
+      int r = s.exec(f, vars);
+      if (r != NORMAL) return r;
+    }
+    return NORMAL;
+  }
+
+  static final class Assign extends Stmt {
+    final Name target;
+    final Expr from;
+    final Expr to;
+    final Expr value;
+
+    Assign(Name target, Expr from, Expr to, Expr value) {
+      this.target = target;
+      this.from = from;
+      this.to = to;
+      this.value = value;
+    }
+
+    @Override
+    int exec(Frame f, Object[] vars) {
+      Object v = value.eval(f, vars);
+      if (v == null) return NORMAL; // conditional without else
+      Type t = target.type(f);
+      if (from != null) {
+        Object old = target.kind == SIGNAL ? f.pending(target.index) : vars[target.index];
+        Value bits = toBits(old, t.width);
+        int a = t.bit(toLong(from.eval(f, vars)));
+        int b = to == null ? a : t.bit(toLong(to.eval(f, vars)));
+        int lo = Math.min(a, b);
+        int hi = Math.max(a, b);
+        Value part = fit(toBits(v, hi - lo + 1), hi - lo + 1, false);
+        Value[] all = bits.getAll();
+        for (int i = lo; i <= hi; i++) all[i] = part.get(i - lo);
+        v = Value.create(all);
+      }
+      v = t.coerce(v);
+      if (target.kind == SIGNAL) f.assign(target.index, v);
+      else vars[target.index] = v;
+      return NORMAL;
+    }
+  }
+
+  static final class If extends Stmt {
+    final Expr[] conditions;
+    final Stmt[][] bodies;
+
+    If(Expr[] conditions, Stmt[][] bodies) {
+      this.conditions = conditions;
+      this.bodies = bodies;
+    }
+
+    @Override
+    int exec(Frame f, Object[] vars) {
+      for (int i = 0; i < conditions.length; i++) {
+        if (conditions[i] == null || toBoolean(conditions[i].eval(f, vars)))
+          return execAll(bodies[i], f, vars);
+      }
+      return NORMAL;
+    }
+  }
+
+  static final class Case extends Stmt {
+    final Expr subject;
+    final Choice[][] choices;
+    final Stmt[][] bodies;
+
+    Case(Expr subject, Choice[][] choices, Stmt[][] bodies) {
+      this.subject = subject;
+      this.choices = choices;
+      this.bodies = bodies;
+    }
+
+    @Override
+    int exec(Frame f, Object[] vars) {
+      Object v = subject.eval(f, vars);
+      for (int i = 0; i < choices.length; i++) {
+        for (Choice c : choices[i]) {
+          if (c.matches(v, f, vars)) return execAll(bodies[i], f, vars);
+        }
+      }
+      return NORMAL;
+    }
+  }
+
+  static final int MAX_LOOP = 1 << 16;
+
+  /** A for loop; with down null, the loop goes from one bound to the other as for x'range */
+  static final class For extends Stmt {
+    final int var;
+    final Expr from;
+    final Expr to;
+    final Boolean down;
+    final Stmt[] body;
+
+    For(int var, Expr from, Expr to, Boolean down, Stmt[] body) {
+      this.var = var;
+      this.from = from;
+      this.to = to;
+      this.down = down;
+      this.body = body;
+    }
+
+    @Override
+    int exec(Frame f, Object[] vars) {
+      long a = toLong(from.eval(f, vars));
+      long b = toLong(to.eval(f, vars));
+      boolean down = this.down != null ? this.down : a > b;
+      for (long i = a; down ? i >= b : i <= b; i += down ? -1 : 1) {
+        vars[var] = i;
+        if (execAll(body, f, vars) == EXIT) break;
+      }
+      return NORMAL;
+    }
+  }
+
+  static final class While extends Stmt {
+    final Expr condition;
+    final Stmt[] body;
+
+    While(Expr condition, Stmt[] body) {
+      this.condition = condition;
+      this.body = body;
+    }
+
+    @Override
+    int exec(Frame f, Object[] vars) {
+      int n = 0;
+      while (toBoolean(condition.eval(f, vars))) {
+        if (++n > MAX_LOOP) throw new RunException("while loop does not end");
+        if (execAll(body, f, vars) == EXIT) break;
+      }
+      return NORMAL;
+    }
+  }
+
+  /** exit or next, with an optional condition */
+  static final class Jump extends Stmt {
+    final int kind;
+    final Expr condition;
+
+    Jump(int kind, Expr condition) {
+      this.kind = kind;
+      this.condition = condition;
+    }
+
+    @Override
+    int exec(Frame f, Object[] vars) {
+      if (condition != null && !toBoolean(condition.eval(f, vars))) return NORMAL;
+      return kind;
+    }
+  }
+
+  /** A process, or a concurrent statement turned into one */
+  static final class Process {
+    final int[] sensitivity;
+    final Stmt[] body;
+    final TypeSpec[] varSpecs;
+    final Expr[] varInits;
+
+    Process(int[] sensitivity, Stmt[] body, TypeSpec[] varSpecs, Expr[] varInits) {
+      this.sensitivity = sensitivity;
+      this.body = body;
+      this.varSpecs = varSpecs;
+      this.varInits = varInits;
+    }
+
+    boolean isTriggered(boolean[] event) {
+      for (int s : sensitivity) if (event[s]) return true;
+      return false;
+    }
+  }
+
+  //
+  // operations on values
+  //
+
+  static boolean toBoolean(Object v) {
+    if (v instanceof Boolean) return (Boolean) v;
+    if (v instanceof Long) return (Long) v != 0;
+    return toBits(v, 1) == Value.TRUE;
+  }
+
+  static long toLong(Object v) {
+    if (v instanceof Long) return (Long) v;
+    if (v instanceof Boolean) return (Boolean) v ? 1 : 0;
+    if (v instanceof Signed) {
+      Value bits = ((Signed) v).bits;
+      checkDefined(bits);
+      int shift = 64 - bits.getWidth();
+      return shift == 64 ? 0 : (bits.getValueMask() << shift) >> shift;
+    }
+    Value bits = toBits(v, 1);
+    checkDefined(bits);
+    return bits.getValueMask();
+  }
+
+  private static void checkDefined(Value bits) {
+    if (!bits.isFullyDefined())
+      throw new RunException("metavalue in " + bits.toBinaryString() + " used as a number");
+  }
+
+  static Value fromLong(long value, int width) {
+    if (width < 1 || width > BitWidth.MAXWIDTH)
+      throw new RunException("vectors of " + width + " bits are not supported");
+    return Value.createKnown(BitWidth.create(width), value);
+  }
+
+  /** Converts any value to bits; the width is only used by integers and aggregates */
+  static Value toBits(Object v, int width) {
+    if (v instanceof Value) return (Value) v;
+    if (v instanceof Signed) return ((Signed) v).bits;
+    if (v instanceof Long) return fromLong((Long) v, width);
+    if (v instanceof Boolean) return (Boolean) v ? Value.TRUE : Value.FALSE;
+    if (v instanceof Aggregate) return expand((Aggregate) v, width);
+    throw new RunException("value " + v + " has no bits");
+  }
+
+  private static Value expand(Aggregate a, int width) {
+    if (a.positions == null && a.others == null) {
+      // positional, the first element is the leftmost one
+      Value ret = null;
+      for (Object e : a.elements) {
+        Value bits = toBits(e, 1);
+        ret = ret == null ? bits : concat(ret, bits);
+      }
+      return ret;
+    }
+    if (width < 1 || width > BitWidth.MAXWIDTH)
+      throw new RunException("cannot tell the width of an aggregate");
+    Value[] all = new Value[width];
+    Value others = a.others == null ? Value.UNKNOWN : toBits(a.others, 1);
+    Arrays.fill(all, others);
+    for (int i = 0; i < a.elements.length; i++) {
+      int p = a.positions[i];
+      if (p < 0 || p >= width) throw new RunException("aggregate index " + p + " out of range");
+      all[p] = toBits(a.elements[i], 1);
+    }
+    return Value.create(all);
+  }
+
+  static Value slice(Value v, int lo, int hi) {
+    if (lo == 0 && hi == v.getWidth() - 1) return v;
+    int width = hi - lo + 1;
+    long mask = width == 64 ? -1L : (1L << width) - 1;
+    return Value.create(
+        width,
+        (v.getErrorMask() >>> lo) & mask,
+        (v.getUnknownMask() >>> lo) & mask,
+        (v.getValueMask() >>> lo) & mask);
+  }
+
+  /** Cuts or extends to the given width, the sign bit is repeated for signed values */
+  static Value fit(Value v, int width, boolean signed) {
+    if (v.getWidth() == width) return v;
+    if (v.getWidth() > width) return slice(v, 0, width - 1);
+    Value fill = signed && v.getWidth() > 0 ? v.get(v.getWidth() - 1) : Value.FALSE;
+    return v.extendWidth(width, fill);
+  }
+
+  private static Object wrapLike(Object model, Value bits) {
+    return model instanceof Signed ? new Signed(bits) : bits;
+  }
+
+  private static boolean isNegative(Value bits) {
+    return bits.get(bits.getWidth() - 1) == Value.TRUE;
+  }
+
+  private static Object negate(Object a) {
+    if (a instanceof Long) return -(Long) a;
+    Value bits = toBits(a, 1);
+    if (!bits.isFullyDefined()) return wrapLike(a, Value.createError(bits.getBitWidth()));
+    return wrapLike(a, fromLong(-bits.getValueMask(), bits.getWidth()));
+  }
+
+  static Object logic(String op, Object a, Object b) {
+    if (a instanceof Boolean && b instanceof Boolean) {
+      boolean x = (Boolean) a;
+      boolean y = (Boolean) b;
+      switch (op) {
+        case "and":
+          return x && y;
+        case "or":
+          return x || y;
+        case "xor":
+          return x ^ y;
+        case "nand":
+          return !(x && y);
+        case "nor":
+          return !(x || y);
+        default:
+          return x == y;
+      }
+    }
+    int width = a instanceof Aggregate ? toBits(b, 1).getWidth() : toBits(a, 1).getWidth();
+    Value x = toBits(a, width);
+    Value y = toBits(b, width);
+    if (x.getWidth() != y.getWidth())
+      throw new RunException("operands of " + op + " differ in width");
+    Value r;
+    switch (op) {
+      case "and":
+        r = x.and(y);
+        break;
+      case "or":
+        r = x.or(y);
+        break;
+      case "xor":
+        r = x.xor(y);
+        break;
+      case "nand":
+        r = x.and(y).not();
+        break;
+      case "nor":
+        r = x.or(y).not();
+        break;
+      default:
+        r = x.xor(y).not();
+        break;
+    }
+    return wrapLike(a, r);
+  }
+
+  /** Orders two values; vectors compare as numbers when both are fully defined */
+  static int compare(Object a, Object b) {
+    if (a instanceof Long && b instanceof Long) return Long.compare((Long) a, (Long) b);
+    if (a instanceof Boolean || b instanceof Boolean) return toBoolean(a) == toBoolean(b) ? 0 : 1;
+    boolean signed = a instanceof Signed || b instanceof Signed;
+    if (a instanceof Long || b instanceof Long) {
+      Object vec = a instanceof Long ? b : a;
+      Value bits = toBits(vec, 1);
+      if (!bits.isFullyDefined()) return 1;
+      long x = a instanceof Long ? (Long) a : toLong(a);
+      long y = b instanceof Long ? (Long) b : toLong(b);
+      return Long.compare(x, y);
+    }
+    int width = a instanceof Aggregate ? toBits(b, 1).getWidth() : toBits(a, 1).getWidth();
+    Value x = toBits(a, width);
+    Value y = toBits(b, x.getWidth());
+    if (!x.isFullyDefined() || !y.isFullyDefined()) return x.equals(y) ? 0 : 1;
+    if (signed) return Long.compare(toLong(new Signed(x)), toLong(new Signed(y)));
+    if (x.getWidth() == 1 && y.getWidth() == 1) return Long.compare(x.getValueMask(), y.getValueMask());
+    return Long.compareUnsigned(x.getValueMask(), y.getValueMask());
+  }
+
+  static Value concat(Object a, Object b) {
+    Value x = toBits(a, 1);
+    Value y = toBits(b, 1);
+    int width = x.getWidth() + y.getWidth();
+    if (width > BitWidth.MAXWIDTH)
+      throw new RunException("vectors of " + width + " bits are not supported");
+    int s = y.getWidth();
+    return Value.create(
+        width,
+        (x.getErrorMask() << s) | y.getErrorMask(),
+        (x.getUnknownMask() << s) | y.getUnknownMask(),
+        (x.getValueMask() << s) | y.getValueMask());
+  }
+
+  static Object shift(String op, Object a, long n) {
+    Value v = toBits(a, 1);
+    int w = v.getWidth();
+    Value[] src = v.getAll();
+    Value[] dst = new Value[w];
+    for (int i = 0; i < w; i++) {
+      long from;
+      switch (op) {
+        case "sll":
+        case "sla":
+          from = i - n;
+          break;
+        case "rol":
+          from = Math.floorMod(i - n, w);
+          break;
+        case "ror":
+          from = Math.floorMod(i + n, w);
+          break;
+        default:
+          from = i + n;
+          break;
+      }
+      if (from >= 0 && from < w) dst[i] = src[(int) from];
+      else if (op.equals("sra")) dst[i] = src[w - 1];
+      else if (op.equals("sla")) dst[i] = src[0];
+      else dst[i] = Value.FALSE;
+    }
+    return wrapLike(a, Value.create(dst));
+  }
+
+  static Object arithmetic(String op, Object a, Object b) {
+    if (a instanceof Long && b instanceof Long) {
+      long x = (Long) a;
+      long y = (Long) b;
+      switch (op) {
+        case "+":
+          return x + y;
+        case "-":
+          return x - y;
+        case "*":
+          return x * y;
+        case "**":
+          {
+            long r = 1;
+            for (long i = 0; i < y; i++) r *= x;
+            return r;
+          }
+        default:
+          if (y == 0) throw new RunException("division by zero");
+          switch (op) {
+            case "/":
+              return x / y;
+            case "mod":
+              return Math.floorMod(x, y);
+            default:
+              return x % y;
+          }
+      }
+    }
+    boolean signed = a instanceof Signed || b instanceof Signed;
+    int wa = a instanceof Long ? 0 : toBits(a, 1).getWidth();
+    int wb = b instanceof Long ? 0 : toBits(b, 1).getWidth();
+    int width = op.equals("*") && wa > 0 && wb > 0 ? wa + wb : Math.max(wa, wb);
+    if (width > BitWidth.MAXWIDTH)
+      throw new RunException("vectors of " + width + " bits are not supported");
+    Value x = a instanceof Long ? null : toBits(a, 1);
+    Value y = b instanceof Long ? null : toBits(b, 1);
+    if ((x != null && !x.isFullyDefined()) || (y != null && !y.isFullyDefined())) {
+      Value error = Value.createError(BitWidth.create(width));
+      return signed ? new Signed(error) : error;
+    }
+    long p = x == null ? (Long) a : signed ? toLong(new Signed(x)) : x.getValueMask();
+    long q = y == null ? (Long) b : signed ? toLong(new Signed(y)) : y.getValueMask();
+    long r;
+    switch (op) {
+      case "+":
+        r = p + q;
+        break;
+      case "-":
+        r = p - q;
+        break;
+      case "*":
+        r = p * q;
+        break;
+      default:
+        if (q == 0) throw new RunException("division by zero");
+        if (!signed && op.equals("/")) r = Long.divideUnsigned(p, q);
+        else if (!signed) r = Long.remainderUnsigned(p, q);
+        else if (op.equals("/")) r = p / q;
+        else if (op.equals("mod")) r = Math.floorMod(p, q);
+        else r = p % q;
+        break;
+    }
+    Value bits = fromLong(r, width);
+    return signed ? new Signed(bits) : bits;
+  }
+}
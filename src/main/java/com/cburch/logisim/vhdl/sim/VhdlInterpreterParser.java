@@ -0,0 +1,1063 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.vhdl.sim;
+
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.vhdl.base.VhdlParser.IllegalVhdlContentException;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.AggregateExpr;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Assign;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Attribute;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Binary;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Call;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Case;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Choice;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Conditional;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Expr;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.For;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.If;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Jump;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Literal;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Name;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Process;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Select;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Selected;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Stmt;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.TypeSpec;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.Unary;
+import com.cburch.logisim.vhdl.sim.VhdlInterpreterAst.While;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Parser for the VHDL subset run by {@link VhdlInterpreter}: one entity with integer generics and
+ * std_logic, std_logic_vector, unsigned or signed ports, and one architecture made of signal,
+ * constant, enumeration type and subtype declarations, processes with a sensitivity list and
+ * concurrent, conditional or selected signal assignments. Names are resolved while parsing, so the
+ * result can be run without any further lookup.
+ */
+class VhdlInterpreterParser {
+
+  private static final int ID = 0;
+  private static final int NUMBER = 1;
+  private static final int CHAR = 2;
+  private static final int STRING = 3;
+  private static final int BITSTRING = 4;
+  private static final int SYMBOL = 5;
+  private static final int EOF = 6;
+
+  private static final class Token {
+    final int kind;
+    final String text;
+    final int line;
+
+    Token(int kind, String text, int line) {
+      this.kind = kind;
+      this.text = text;
+      this.line = line;
+    }
+  }
+
+  private static final class Symbol {
+    final int kind;
+    final int index;
+    final TypeSpec type;
+    final Long literal;
+
+    Symbol(int kind, int index, TypeSpec type, Long literal) {
+      this.kind = kind;
+      this.index = index;
+      this.type = type;
+      this.literal = literal;
+    }
+  }
+
+  private static final int ENUM_LITERAL = 3;
+
+  /* Functions known to the simulator, with their number of arguments */
+  private static final HashMap<String, Integer> FUNCTIONS = new HashMap<>();
+
+  static {
+    for (String name :
+        new String[] {
+          "rising_edge", "falling_edge", "to_integer", "conv_integer", "unsigned", "signed",
+          "std_logic_vector", "std_ulogic_vector", "to_x01", "to_ux01"
+        }) FUNCTIONS.put(name, 1);
+    for (String name :
+        new String[] {
+          "to_unsigned", "to_signed", "conv_std_logic_vector", "conv_unsigned", "conv_signed",
+          "resize", "shift_left", "shift_right", "rotate_left", "rotate_right", "minimum", "maximum"
+        }) FUNCTIONS.put(name, 2);
+  }
+
+  private static final HashSet<String> LOGICAL =
+      new HashSet<>(Arrays.asList("and", "or", "xor", "nand", "nor", "xnor"));
+  private static final HashSet<String> RELATIONAL =
+      new HashSet<>(Arrays.asList("=", "/=", "<", "<=", ">", ">="));
+  private static final HashSet<String> SHIFTS =
+      new HashSet<>(Arrays.asList("sll", "srl", "sla", "sra", "rol", "ror"));
+
+  /* Reserved words that can come before a character literal */
+  private static final HashSet<String> RESERVED =
+      new HashSet<>(
+          Arrays.asList(
+              "and", "or", "xor", "nand", "nor", "xnor", "not", "else", "when", "then", "is",
+              "mod", "rem", "abs", "report", "return", "select", "sll", "srl", "sla", "sra", "rol",
+              "ror", "until", "in", "to", "downto"));
+
+  private final ArrayList<Token> tokens = new ArrayList<>();
+  private int pos = 0;
+
+  private final HashMap<String, Symbol> globals = new HashMap<>();
+  private HashMap<String, Symbol> locals = null;
+  private final HashMap<String, TypeSpec> types = new HashMap<>();
+  private BitSet reads = new BitSet();
+  private boolean inProcess = false;
+
+  /* What the parsing yields, see VhdlInterpreter */
+  String entityName;
+  final List<String> constNames = new ArrayList<>();
+  final List<TypeSpec> constSpecs = new ArrayList<>();
+  final List<Expr> constInits = new ArrayList<>();
+  int genericCount;
+  final List<String> sigNames = new ArrayList<>();
+  final List<TypeSpec> sigSpecs = new ArrayList<>();
+  final List<Expr> sigInits = new ArrayList<>();
+  final List<String> portModes = new ArrayList<>();
+  final List<Process> processes = new ArrayList<>();
+
+  private ArrayList<TypeSpec> varSpecs;
+  private ArrayList<Expr> varInits;
+
+  VhdlInterpreterParser(String source) throws IllegalVhdlContentException {
+    lex(source);
+  }
+
+  //
+  // lexer
+  //
+
+  private void lex(String src) throws IllegalVhdlContentException {
+    int line = 1;
+    int i = 0;
+    int n = src.length();
+    while (i < n) {
+      char c = src.charAt(i);
+      if (c == '\n') {
+        line++;
+        i++;
+      } else if (Character.isWhitespace(c)) {
+        i++;
+      } else if (src.startsWith("--", i)) {
+        while (i < n && src.charAt(i) != '\n') i++;
+      } else if (src.startsWith("/*", i)) {
+        int end = src.indexOf("*/", i + 2);
+        if (end < 0) end = n - 2;
+        for (int k = i; k < end; k++) if (src.charAt(k) == '\n') line++;
+        i = end + 2;
+      } else if (Character.isLetter(c)) {
+        int start = i;
+        while (i < n && (Character.isLetterOrDigit(src.charAt(i)) || src.charAt(i) == '_')) i++;
+        String word = src.substring(start, i).toLowerCase();
+        if (i < n
+            && src.charAt(i) == '"'
+            && (word.equals("b") || word.equals("o") || word.equals("x"))) {
+          int end = src.indexOf('"', i + 1);
+          if (end < 0) throw error(line, "unterminated bit string");
+          tokens.add(new Token(BITSTRING, word + src.substring(i + 1, end), line));
+          i = end + 1;
+        } else {
+          tokens.add(new Token(ID, word, line));
+        }
+      } else if (Character.isDigit(c)) {
+        int start = i;
+        while (i < n && (Character.isLetterOrDigit(src.charAt(i)) || src.charAt(i) == '_')) i++;
+        String text = src.substring(start, i).replace("_", "");
+        if (i < n && src.charAt(i) == '#') {
+          int end = src.indexOf('#', i + 1);
+          if (end < 0) throw error(line, "unterminated based literal");
+          text = text + "#" + src.substring(i + 1, end).replace("_", "");
+          i = end + 1;
+        } else if (i + 1 < n && src.charAt(i) == '.' && Character.isDigit(src.charAt(i + 1))) {
+          throw error(line, "real numbers are not supported");
+        }
+        tokens.add(new Token(NUMBER, text, line));
+      } else if (c == '\'' && i + 2 < n && src.charAt(i + 2) == '\'' && !afterName()) {
+        tokens.add(new Token(CHAR, src.substring(i + 1, i + 2).toUpperCase(), line));
+        i += 3;
+      } else if (c == '"') {
+        StringBuilder s = new StringBuilder();
+        i++;
+        while (true) {
+          if (i >= n) throw error(line, "unterminated string");
+          if (src.charAt(i) == '"') {
+            if (i + 1 < n && src.charAt(i + 1) == '"') {
+              s.append('"');
+              i += 2;
+              continue;
+            }
+            i++;
+            break;
+          }
+          s.append(src.charAt(i++));
+        }
+        tokens.add(new Token(STRING, s.toString(), line));
+      } else {
+        String two = i + 1 < n ? src.substring(i, i + 2) : "";
+        if (two.equals("<=")
+            || two.equals(">=")
+            || two.equals("/=")
+            || two.equals(":=")
+            || two.equals("=>")
+            || two.equals("**")) {
+          tokens.add(new Token(SYMBOL, two, line));
+          i += 2;
+        } else if ("();:,.+-*/&|<>='".indexOf(c) >= 0) {
+          tokens.add(new Token(SYMBOL, String.valueOf(c), line));
+          i++;
+        } else {
+          throw error(line, "unexpected character '" + c + "'");
+        }
+      }
+    }
+    tokens.add(new Token(EOF, "end of file", line));
+  }
+
+  /* A quote right after a name starts an attribute, not a character literal */
+  private boolean afterName() {
+    if (tokens.isEmpty()) return false;
+    Token t = tokens.get(tokens.size() - 1);
+    if (t.kind == ID) return !RESERVED.contains(t.text);
+    return t.text.equals(")");
+  }
+
+  //
+  // helpers
+  //
+
+  private static IllegalVhdlContentException error(int line, String message) {
+    return new IllegalVhdlContentException("line " + line + ": " + message);
+  }
+
+  private IllegalVhdlContentException error(String message) {
+    return error(peek().line, message);
+  }
+
+  private IllegalVhdlContentException unsupported(String what) {
+    return error(what + " is not supported by the built-in simulator");
+  }
+
+  private Token peek() {
+    return tokens.get(pos);
+  }
+
+  private Token peek(int ahead) {
+    return tokens.get(Math.min(pos + ahead, tokens.size() - 1));
+  }
+
+  private boolean peekIs(String text) {
+    Token t = peek();
+    return (t.kind == ID || t.kind == SYMBOL) && t.text.equals(text);
+  }
+
+  private boolean accept(String text) {
+    if (!peekIs(text)) return false;
+    pos++;
+    return true;
+  }
+
+  private void expect(String text) throws IllegalVhdlContentException {
+    if (!accept(text)) throw error("'" + text + "' expected instead of '" + peek().text + "'");
+  }
+
+  private String ident() throws IllegalVhdlContentException {
+    Token t = peek();
+    if (t.kind != ID) throw error("name expected instead of '" + t.text + "'");
+    pos++;
+    return t.text;
+  }
+
+  private List<String> identList() throws IllegalVhdlContentException {
+    ArrayList<String> ret = new ArrayList<>();
+    do ret.add(ident());
+    while (accept(","));
+    return ret;
+  }
+
+  private void skipTo(String text) {
+    while (peek().kind != EOF && !peekIs(text)) pos++;
+    accept(text);
+  }
+
+  private Symbol lookup(String name) {
+    if (locals != null && locals.containsKey(name)) return locals.get(name);
+    return globals.get(name);
+  }
+
+  private void declare(String name, Symbol s) throws IllegalVhdlContentException {
+    HashMap<String, Symbol> scope = locals != null ? locals : globals;
+    if (scope.containsKey(name)) throw error("'" + name + "' is declared twice");
+    scope.put(name, s);
+  }
+
+  //
+  // design units
+  //
+
+  void parse() throws IllegalVhdlContentException {
+    while (accept("library") || accept("use")) skipTo(";");
+    if (peekIs("package")) throw unsupported("package");
+    expect("entity");
+    entityName = ident();
+    expect("is");
+    if (accept("generic")) {
+      expect("(");
+      do {
+        List<String> names = identList();
+        expect(":");
+        TypeSpec type = subtype();
+        Expr init = accept(":=") ? staticExpr() : new Literal(0L);
+        for (String name : names) addConst(name, type, init);
+      } while (accept(";"));
+      expect(")");
+      expect(";");
+    }
+    genericCount = constNames.size();
+    if (accept("port")) {
+      expect("(");
+      do {
+        List<String> names = identList();
+        expect(":");
+        String mode = "in";
+        if (peekIs("in") || peekIs("out") || peekIs("inout") || peekIs("buffer")) mode = ident();
+        TypeSpec type = subtype();
+        Expr init = accept(":=") ? staticExpr() : null;
+        for (String name : names) {
+          addSignal(name, type, init);
+          portModes.add(mode);
+        }
+      } while (accept(";"));
+      expect(")");
+      expect(";");
+    }
+    if (accept("begin")) throw unsupported("entity statement part");
+    expect("end");
+    accept("entity");
+    accept(entityName);
+    expect(";");
+
+    while (accept("library") || accept("use")) skipTo(";");
+    expect("architecture");
+    String archName = ident();
+    expect("of");
+    if (!ident().equals(entityName)) throw error("architecture of another entity");
+    expect("is");
+    while (!accept("begin")) declaration();
+    while (!peekIs("end")) concurrent();
+    expect("end");
+    accept("architecture");
+    accept(archName);
+    expect(";");
+  }
+
+  private void addConst(String name, TypeSpec type, Expr init) throws IllegalVhdlContentException {
+    declare(name, new Symbol(VhdlInterpreterAst.CONST, constNames.size(), type, null));
+    constNames.add(name);
+    constSpecs.add(type);
+    constInits.add(init);
+  }
+
+  private void addSignal(String name, TypeSpec type, Expr init) throws IllegalVhdlContentException {
+    declare(name, new Symbol(VhdlInterpreterAst.SIGNAL, sigNames.size(), type, null));
+    sigNames.add(name);
+    sigSpecs.add(type);
+    sigInits.add(init);
+  }
+
+  private void addVariable(String name, TypeSpec type, Expr init)
+      throws IllegalVhdlContentException {
+    declare(name, new Symbol(VhdlInterpreterAst.VARIABLE, varSpecs.size(), type, null));
+    varSpecs.add(type);
+    varInits.add(init);
+  }
+
+  /* Declarations of an architecture or of a process */
+  private void declaration() throws IllegalVhdlContentException {
+    if (accept("signal")) {
+      if (inProcess) throw error("signals cannot be declared in a process");
+      List<String> names = identList();
+      expect(":");
+      TypeSpec type = subtype();
+      Expr init = accept(":=") ? staticExpr() : null;
+      expect(";");
+      for (String name : names) addSignal(name, type, init);
+    } else if (accept("variable") || accept("shared")) {
+      if (!inProcess) throw unsupported("shared variable");
+      List<String> names = identList();
+      expect(":");
+      TypeSpec type = subtype();
+      Expr init = accept(":=") ? staticExpr() : null;
+      expect(";");
+      for (String name : names) addVariable(name, type, init);
+    } else if (accept("constant")) {
+      List<String> names = identList();
+      expect(":");
+      TypeSpec type = subtype();
+      expect(":=");
+      Expr init = staticExpr();
+      expect(";");
+      for (String name : names) addConst(name, type, init);
+    } else if (accept("type")) {
+      String name = ident();
+      expect("is");
+      if (!accept("(")) throw unsupported("type " + name + ", only enumerations are");
+      List<String> literals = identList();
+      expect(")");
+      expect(";");
+      TypeSpec type =
+          new TypeSpec(VhdlInterpreterAst.ENUM, null, null, false, literals.toArray(new String[0]));
+      types.put(name, type);
+      for (int i = 0; i < literals.size(); i++)
+        declare(literals.get(i), new Symbol(ENUM_LITERAL, i, type, (long) i));
+    } else if (accept("subtype")) {
+      String name = ident();
+      expect("is");
+      types.put(name, subtype());
+      expect(";");
+    } else if (accept("attribute")) {
+      skipTo(";");
+    } else if (accept("component")) {
+      skipTo("end");
+      expect("component");
+      if (peek().kind == ID) pos++;
+      expect(";");
+    } else if (peekIs("function") || peekIs("procedure") || peekIs("impure") || peekIs("pure")) {
+      throw unsupported("subprogram");
+    } else {
+      throw error("unexpected '" + peek().text + "' in declarations");
+    }
+  }
+
+  private TypeSpec subtype() throws IllegalVhdlContentException {
+    String name = ident();
+    if (types.containsKey(name)) return types.get(name);
+    switch (name) {
+      case "std_logic":
+      case "std_ulogic":
+      case "bit":
+        return new TypeSpec(VhdlInterpreterAst.BIT, null, null, false, null);
+      case "std_logic_vector":
+      case "std_ulogic_vector":
+      case "bit_vector":
+      case "unsigned":
+      case "signed":
+        {
+          expect("(");
+          Expr left = staticExpr();
+          boolean ascending = accept("to");
+          if (!ascending) expect("downto");
+          Expr right = staticExpr();
+          expect(")");
+          int kind = name.equals("signed") ? VhdlInterpreterAst.SIGNED : VhdlInterpreterAst.VECTOR;
+          return new TypeSpec(kind, left, right, ascending, null);
+        }
+      case "integer":
+      case "natural":
+      case "positive":
+        if (accept("range")) {
+          staticExpr();
+          if (!accept("to")) expect("downto");
+          staticExpr();
+        }
+        return new TypeSpec(VhdlInterpreterAst.INTEGER, null, null, false, null);
+      case "boolean":
+        return new TypeSpec(VhdlInterpreterAst.BOOLEAN, null, null, false, null);
+      default:
+        throw unsupported("type " + name);
+    }
+  }
+
+  //
+  // concurrent statements
+  //
+
+  private void concurrent() throws IllegalVhdlContentException {
+    if (peek().kind == ID && peek(1).text.equals(":") && !peek(1).text.equals(":=")) pos += 2;
+    if (accept("postponed") || peekIs("process")) {
+      expect("process");
+      process();
+      return;
+    }
+    if (accept("assert")) {
+      skipTo(";");
+      return;
+    }
+    if (peekIs("entity")
+        || peekIs("component")
+        || peek(1).text.equals("port")
+        || peek(1).text.equals("generic")) throw unsupported("component instantiation");
+    if (peekIs("block") || peekIs("for") || peekIs("if"))
+      throw unsupported("'" + peek().text + "' statement");
+
+    reads = new BitSet();
+    Stmt assign;
+    if (accept("with")) {
+      Expr subject = expr();
+      expect("select");
+      assign = selectedAssign(subject);
+    } else {
+      assign = assignment(true);
+    }
+    processes.add(new Process(reads.stream().toArray(), new Stmt[] {assign}, null, null));
+  }
+
+  private Stmt selectedAssign(Expr subject) throws IllegalVhdlContentException {
+    TargetRef target = target();
+    expect("<=");
+    ArrayList<Choice[]> choices = new ArrayList<>();
+    ArrayList<Expr> values = new ArrayList<>();
+    do {
+      values.add(waveform());
+      expect("when");
+      choices.add(choices());
+    } while (accept(","));
+    expect(";");
+    Expr value =
+        new Selected(subject, choices.toArray(new Choice[0][]), values.toArray(new Expr[0]));
+    return target.assign(value);
+  }
+
+  private void process() throws IllegalVhdlContentException {
+    BitSet sensitivity = new BitSet();
+    boolean all = false;
+    boolean hasList = false;
+    if (accept("(")) {
+      hasList = true;
+      if (accept("all")) {
+        all = true;
+      } else {
+        do {
+          String name = ident();
+          Symbol s = lookup(name);
+          if (s == null || s.kind != VhdlInterpreterAst.SIGNAL)
+            throw error("'" + name + "' is not a signal");
+          sensitivity.set(s.index);
+        } while (accept(","));
+      }
+      expect(")");
+    }
+    accept("is");
+    locals = new HashMap<>();
+    varSpecs = new ArrayList<>();
+    varInits = new ArrayList<>();
+    inProcess = true;
+    reads = new BitSet();
+    try {
+      while (!accept("begin")) declaration();
+      Stmt[] body = statements();
+      if (!hasList) throw unsupported("process without sensitivity list");
+      expect("end");
+      accept("postponed");
+      expect("process");
+      if (peek().kind == ID) pos++;
+      expect(";");
+      if (all) sensitivity = reads;
+      processes.add(
+          new Process(
+              sensitivity.stream().toArray(),
+              body,
+              varSpecs.toArray(new TypeSpec[0]),
+              varInits.toArray(new Expr[0])));
+    } finally {
+      locals = null;
+      inProcess = false;
+    }
+  }
+
+  //
+  // sequential statements
+  //
+
+  private Stmt[] statements() throws IllegalVhdlContentException {
+    ArrayList<Stmt> ret = new ArrayList<>();
+    while (!peekIs("end") && !peekIs("elsif") && !peekIs("else") && !peekIs("when")) {
+      if (peek().kind == EOF) throw error("unexpected end of file");
+      Stmt s = statement();
+      if (s != null) ret.add(s);
+    }
+    return ret.toArray(new Stmt[0]);
+  }
+
+  private Stmt statement() throws IllegalVhdlContentException {
+    if (peek().kind == ID && peek(1).text.equals(":")) pos += 2;
+    if (accept("if")) {
+      ArrayList<Expr> conditions = new ArrayList<>();
+      ArrayList<Stmt[]> bodies = new ArrayList<>();
+      conditions.add(expr());
+      expect("then");
+      bodies.add(statements());
+      while (accept("elsif")) {
+        conditions.add(expr());
+        expect("then");
+        bodies.add(statements());
+      }
+      if (accept("else")) {
+        conditions.add(null);
+        bodies.add(statements());
+      }
+      expect("end");
+      expect("if");
+      if (peek().kind == ID) pos++;
+      expect(";");
+      return new If(conditions.toArray(new Expr[0]), bodies.toArray(new Stmt[0][]));
+    }
+    if (accept("case")) {
+      Expr subject = expr();
+      expect("is");
+      ArrayList<Choice[]> choices = new ArrayList<>();
+      ArrayList<Stmt[]> bodies = new ArrayList<>();
+      while (accept("when")) {
+        choices.add(choices());
+        expect("=>");
+        bodies.add(statements());
+      }
+      expect("end");
+      expect("case");
+      if (peek().kind == ID) pos++;
+      expect(";");
+      return new Case(subject, choices.toArray(new Choice[0][]), bodies.toArray(new Stmt[0][]));
+    }
+    if (accept("for")) {
+      String name = ident();
+      expect("in");
+      if (peek().kind == ID && peek(1).text.equals("'") && peek(2).text.endsWith("range")) {
+        Name base = nameRef(ident());
+        expect("'");
+        boolean reverse = ident().equals("reverse_range");
+        Expr left = new Attribute(base, "left");
+        Expr right = new Attribute(base, "right");
+        return loop(name, reverse ? right : left, reverse ? left : right, null);
+      }
+      Expr from = expr();
+      Boolean down = accept("downto");
+      if (!down) expect("to");
+      Expr to = expr();
+      return loop(name, from, to, down);
+    }
+    if (accept("while")) {
+      Expr condition = expr();
+      expect("loop");
+      Stmt[] body = statements();
+      endLoop();
+      return new While(condition, body);
+    }
+    if (accept("exit") || accept("next")) {
+      int kind = tokens.get(pos - 1).text.equals("exit") ? VhdlInterpreterAst.EXIT : VhdlInterpreterAst.NEXT;
+      if (peek().kind == ID && !peekIs("when")) pos++;
+      Expr condition = accept("when") ? expr() : null;
+      expect(";");
+      return new Jump(kind, condition);
+    }
+    if (accept("null")) {
+      expect(";");
+      return null;
+    }
+    if (accept("report") || accept("assert")) {
+      skipTo(";");
+      return null;
+    }
+    if (peekIs("wait")) throw unsupported("wait statement");
+    if (peekIs("loop")) throw unsupported("loop without iteration scheme");
+    return assignment(false);
+  }
+
+  /* The for statement, once its range is known */
+  private Stmt loop(String name, Expr from, Expr to, Boolean down)
+      throws IllegalVhdlContentException {
+    Symbol previous = locals.get(name);
+    int slot = varSpecs.size();
+    varSpecs.add(new TypeSpec(VhdlInterpreterAst.INTEGER, null, null, false, null));
+    varInits.add(null);
+    locals.put(name, new Symbol(VhdlInterpreterAst.VARIABLE, slot, varSpecs.get(slot), null));
+    try {
+      expect("loop");
+      Stmt[] body = statements();
+      endLoop();
+      return new For(slot, from, to, down, body);
+    } finally {
+      if (previous == null) locals.remove(name);
+      else locals.put(name, previous);
+    }
+  }
+
+  private void endLoop() throws IllegalVhdlContentException {
+    expect("end");
+    expect("loop");
+    if (peek().kind == ID) pos++;
+    expect(";");
+  }
+
+  private Choice[] choices() throws IllegalVhdlContentException {
+    ArrayList<Choice> ret = new ArrayList<>();
+    do {
+      if (accept("others")) {
+        ret.add(new Choice(null, null));
+      } else {
+        Expr low = simpleExpr();
+        Expr high = null;
+        if (accept("to") || accept("downto")) high = simpleExpr();
+        ret.add(new Choice(low, high));
+      }
+    } while (accept("|"));
+    return ret.toArray(new Choice[0]);
+  }
+
+  private final class TargetRef {
+    final Name name;
+    final Expr from;
+    final Expr to;
+
+    TargetRef(Name name, Expr from, Expr to) {
+      this.name = name;
+      this.from = from;
+      this.to = to;
+    }
+
+    Stmt assign(Expr value) {
+      return new Assign(name, from, to, value);
+    }
+  }
+
+  private TargetRef target() throws IllegalVhdlContentException {
+    if (peekIs("(")) throw unsupported("aggregate target");
+    String id = ident();
+    Symbol s = lookup(id);
+    if (s == null) throw error("unknown name '" + id + "'");
+    if (s.kind == VhdlInterpreterAst.CONST || s.kind == ENUM_LITERAL)
+      throw error("cannot assign to '" + id + "'");
+    if (s.kind == VhdlInterpreterAst.SIGNAL && s.index < portModes.size()
+        && portModes.get(s.index).equals("in")) throw error("cannot assign to input " + id);
+    Name name = new Name(s.kind, s.index, id);
+    Expr from = null;
+    Expr to = null;
+    if (accept("(")) {
+      from = expr();
+      if (accept("downto") || accept("to")) to = expr();
+      expect(")");
+    }
+    return new TargetRef(name, from, to);
+  }
+
+  /* target <= value [when cond else value ...]; or target := value; */
+  private Stmt assignment(boolean concurrentStatement) throws IllegalVhdlContentException {
+    TargetRef target = target();
+    boolean variable = target.name.kind == VhdlInterpreterAst.VARIABLE;
+    if (variable) {
+      expect(":=");
+    } else {
+      if (peekIs(":=")) throw error("signals are assigned with <=");
+      expect("<=");
+      accept("guarded");
+    }
+    Expr value = waveform();
+    if (peekIs("when")) {
+      ArrayList<Expr> conditions = new ArrayList<>();
+      ArrayList<Expr> values = new ArrayList<>();
+      values.add(value);
+      while (accept("when")) {
+        conditions.add(expr());
+        if (!accept("else")) break;
+        values.add(waveform());
+        if (!peekIs("when")) conditions.add(null);
+      }
+      value = new Conditional(conditions.toArray(new Expr[0]), values.toArray(new Expr[0]));
+    }
+    if (peekIs(",")) throw unsupported("waveform with several elements");
+    expect(";");
+    if (concurrentStatement && variable) throw error("variables only exist in processes");
+    return target.assign(value);
+  }
+
+  /* An expression with an optional after clause, which is ignored */
+  private Expr waveform() throws IllegalVhdlContentException {
+    if (accept("unaffected")) return new Literal(null);
+    Expr value = expr();
+    if (accept("after")) {
+      while (!peekIs(";") && !peekIs("when") && !peekIs("else") && !peekIs(",")) pos++;
+    }
+    return value;
+  }
+
+  //
+  // expressions
+  //
+
+  private Expr staticExpr() throws IllegalVhdlContentException {
+    BitSet saved = reads;
+    reads = new BitSet();
+    Expr e = expr();
+    boolean dynamic = !reads.isEmpty() || !e.isStatic();
+    reads = saved;
+    if (dynamic) throw error("constant expression expected");
+    return e;
+  }
+
+  private Expr expr() throws IllegalVhdlContentException {
+    Expr left = relation();
+    while (peek().kind == ID && LOGICAL.contains(peek().text)) {
+      String op = ident();
+      left = new Binary(op, left, relation());
+    }
+    return left;
+  }
+
+  private Expr relation() throws IllegalVhdlContentException {
+    Expr left = shiftExpr();
+    if (peek().kind == SYMBOL && RELATIONAL.contains(peek().text)) {
+      String op = peek().text;
+      pos++;
+      left = new Binary(op, left, shiftExpr());
+    }
+    return left;
+  }
+
+  private Expr shiftExpr() throws IllegalVhdlContentException {
+    Expr left = simpleExpr();
+    if (peek().kind == ID && SHIFTS.contains(peek().text)) {
+      String op = ident();
+      left = new Binary(op, left, simpleExpr());
+    }
+    return left;
+  }
+
+  private Expr simpleExpr() throws IllegalVhdlContentException {
+    Expr left;
+    if (accept("-")) left = new Unary("-", term());
+    else {
+      accept("+");
+      left = term();
+    }
+    while (peekIs("+") || peekIs("-") || peekIs("&")) {
+      String op = peek().text;
+      pos++;
+      left = new Binary(op, left, term());
+    }
+    return left;
+  }
+
+  private Expr term() throws IllegalVhdlContentException {
+    Expr left = factor();
+    while (peekIs("*") || peekIs("/") || peekIs("mod") || peekIs("rem")) {
+      String op = peek().text;
+      pos++;
+      left = new Binary(op, left, factor());
+    }
+    return left;
+  }
+
+  private Expr factor() throws IllegalVhdlContentException {
+    if (accept("not")) return new Unary("not", primary());
+    if (accept("abs")) return new Unary("abs", primary());
+    Expr left = primary();
+    if (accept("**")) left = new Binary("**", left, primary());
+    return left;
+  }
+
+  private Expr primary() throws IllegalVhdlContentException {
+    Token t = peek();
+    switch (t.kind) {
+      case NUMBER:
+        pos++;
+        return new Literal(number(t));
+      case CHAR:
+        pos++;
+        return new Literal(bit(t.text.charAt(0), t.line));
+      case STRING:
+        pos++;
+        return new Literal(bits(t.text, 1, t.line));
+      case BITSTRING:
+        pos++;
+        {
+          char base = t.text.charAt(0);
+          return new Literal(bits(t.text.substring(1), base == 'x' ? 4 : base == 'o' ? 3 : 1, t.line));
+        }
+      case SYMBOL:
+        if (t.text.equals("(")) return parenthesized();
+        throw error("unexpected '" + t.text + "'");
+      case ID:
+        return namePrimary();
+      default:
+        throw error("unexpected end of file");
+    }
+  }
+
+  private Long number(Token t) throws IllegalVhdlContentException {
+    try {
+      int hash = t.text.indexOf('#');
+      if (hash < 0) return Long.parseLong(t.text);
+      return Long.parseLong(t.text.substring(hash + 1), Integer.parseInt(t.text.substring(0, hash)));
+    } catch (NumberFormatException e) {
+      throw error(t.line, "bad number " + t.text);
+    }
+  }
+
+  private static Value bit(char c, int line) throws IllegalVhdlContentException {
+    switch (c) {
+      case '0':
+      case 'L':
+        return Value.FALSE;
+      case '1':
+      case 'H':
+        return Value.TRUE;
+      case 'X':
+      case 'W':
+        return Value.ERROR;
+      case 'U':
+      case 'Z':
+      case '-':
+        return Value.UNKNOWN;
+      default:
+        throw error(line, "'" + c + "' is not a std_logic value");
+    }
+  }
+
+  /* A string or bit string literal, digits being of the given number of bits */
+  private static Value bits(String text, int digitBits, int line)
+      throws IllegalVhdlContentException {
+    text = text.replace("_", "").toUpperCase();
+    ArrayList<Value> all = new ArrayList<>();
+    for (int i = text.length() - 1; i >= 0; i--) {
+      char c = text.charAt(i);
+      if (digitBits == 1) {
+        all.add(bit(c, line));
+        continue;
+      }
+      int d = Character.digit(c, 1 << digitBits);
+      for (int k = 0; k < digitBits; k++) {
+        if (d < 0) all.add(bit(c, line));
+        else all.add((d >> k & 1) != 0 ? Value.TRUE : Value.FALSE);
+      }
+    }
+    if (all.isEmpty() || all.size() > 64) throw error(line, "bad vector literal \"" + text + "\"");
+    return Value.create(all.toArray(new Value[0]));
+  }
+
+  private Expr parenthesized() throws IllegalVhdlContentException {
+    expect("(");
+    ArrayList<Expr> positions = new ArrayList<>();
+    ArrayList<Expr> elements = new ArrayList<>();
+    Expr others = null;
+    boolean named = false;
+    do {
+      if (accept("others")) {
+        expect("=>");
+        others = expr();
+        named = true;
+        continue;
+      }
+      Expr e = expr();
+      if (accept("=>")) {
+        named = true;
+        positions.add(e);
+        elements.add(expr());
+      } else {
+        elements.add(e);
+      }
+    } while (accept(","));
+    expect(")");
+    if (!named && elements.size() == 1) return elements.get(0);
+    if (named && positions.size() != elements.size())
+      throw unsupported("mixing named and positional associations");
+    return new AggregateExpr(
+        named ? positions.toArray(new Expr[0]) : null, elements.toArray(new Expr[0]), others);
+  }
+
+  private Name nameRef(String id) throws IllegalVhdlContentException {
+    Symbol s = lookup(id);
+    if (s == null || s.kind == ENUM_LITERAL) throw error("unknown name '" + id + "'");
+    if (s.kind == VhdlInterpreterAst.SIGNAL) reads.set(s.index);
+    return new Name(s.kind, s.index, id);
+  }
+
+  private Expr namePrimary() throws IllegalVhdlContentException {
+    String id = ident();
+    if (id.equals("true") || id.equals("false")) return new Literal(id.equals("true"));
+    Symbol s = lookup(id);
+    if (s != null && s.kind == ENUM_LITERAL) return new Literal(s.literal);
+    if (s == null) {
+      if (!FUNCTIONS.containsKey(id)) {
+        if (types.containsKey(id)) throw unsupported("qualified expression or conversion to " + id);
+        throw error("unknown name '" + id + "'");
+      }
+      expect("(");
+      ArrayList<Expr> args = new ArrayList<>();
+      do {
+        if (peek().kind == ID && peek(1).text.equals("=>")) pos += 2;
+        args.add(expr());
+      } while (accept(","));
+      expect(")");
+      if (id.endsWith("_edge")
+          && !(args.get(0) instanceof Name
+              && ((Name) args.get(0)).kind == VhdlInterpreterAst.SIGNAL))
+        throw error(id + " needs a signal");
+      int needed = FUNCTIONS.get(id);
+      if (args.size() != needed) throw error(id + " takes " + needed + " argument(s)");
+      return new Call(id, args.toArray(new Expr[0]));
+    }
+    Name name = nameRef(id);
+    if (accept("(")) {
+      Expr from = expr();
+      Expr to = null;
+      if (accept("downto") || accept("to")) to = expr();
+      expect(")");
+      return new Select(name, from, to);
+    }
+    if (peekIs("'") && peek(1).kind == ID) {
+      pos++;
+      String attribute = ident();
+      switch (attribute) {
+        case "event":
+          if (s.kind != VhdlInterpreterAst.SIGNAL) throw error("'event needs a signal");
+          return new Attribute(name, attribute);
+        case "length":
+        case "high":
+        case "low":
+        case "left":
+        case "right":
+          return new Attribute(name, attribute);
+        default:
+          throw unsupported("attribute '" + attribute);
+      }
+    }
+    return name;
+  }
+}
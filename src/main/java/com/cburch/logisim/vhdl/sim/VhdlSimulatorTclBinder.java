@@ -30,6 +30,7 @@ package com.cburch.logisim.vhdl.sim;
 
 import com.cburch.logisim.gui.generic.OptionPane;
 import com.cburch.logisim.tools.MessageBox;
+import com.cburch.logisim.util.CosimFrame;
 import com.cburch.logisim.util.FileUtil;
 import com.cburch.logisim.util.Softwares;
 import com.cburch.logisim.vhdl.base.VhdlSimConstants;
@@ -178,7 +179,7 @@ public class VhdlSimulatorTclBinder {
     if (!running) return;
 
     /* We ask the binder to end itself */
-    if (vsim.getSocketClient() != null) vsim.getSocketClient().send("end");
+    if (vsim.getSocketClient() != null) vsim.getSocketClient().send(new CosimFrame(CosimFrame.END));
 
     /* Wait for the process to end */
     /*
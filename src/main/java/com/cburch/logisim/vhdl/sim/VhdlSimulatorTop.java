@@ -33,8 +33,13 @@ import com.cburch.logisim.circuit.CircuitListener;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.InstanceStateImpl;
+import com.cburch.logisim.instance.Port;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.hdl.VhdlEntityComponent;
+import com.cburch.logisim.util.CosimFrame;
+import com.cburch.logisim.util.CosimLoopback;
 import com.cburch.logisim.util.SocketClient;
 import com.cburch.logisim.vhdl.base.VhdlEntity;
 import com.cburch.logisim.vhdl.base.VhdlSimConstants;
@@ -45,6 +50,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import javax.help.UnsupportedOperationException;
 
@@ -63,6 +69,13 @@ public class VhdlSimulatorTop implements CircuitListener {
   private VhdlSimulatorTclBinder tclBinder;
   private final SocketClient socketClient = new SocketClient();
 
+  /* Port values of the VHDL components propagated during the current step */
+  private final CosimFrame request = new CosimFrame();
+  private final CosimFrame reply = new CosimFrame();
+  private final ArrayList<InstanceState> requestStates = new ArrayList<>();
+  private int[] requestPorts = new int[16];
+  private final Runnable flushTask = this::flush;
+
   private final Project project;
 
   private static final ArrayList<VhdlSimulatorListener> listeners =
@@ -89,6 +102,51 @@ public class VhdlSimulatorTop implements CircuitListener {
     else stop();
   }
 
+  /**
+   * Queues the port values of a VHDL component for the simulator. All the components propagated
+   * during a step are sent together once the step is done, the simulator runs once for all of them
+   * and the outputs it returns are set with the usual delay of one.
+   *
+   * @param state state of the component being propagated
+   * @param simName name of the component in the generated top level
+   */
+  public void request(InstanceState state, String simName) {
+    if (!isRunning()) throw new UnsupportedOperationException();
+
+    synchronized (request) {
+      for (Port p : state.getInstance().getPorts()) {
+        int index = state.getPortIndex(p);
+        int id = requestStates.size();
+        request.add(p.getType(), simName + "_" + p.getToolTip(), id, state.getPortValue(index));
+        if (id == requestPorts.length) requestPorts = Arrays.copyOf(requestPorts, 2 * id);
+        requestPorts[id] = index;
+        requestStates.add(state);
+      }
+    }
+    ((InstanceStateImpl) state).getCircuitState().getPropagator().runAtStepEnd(flushTask);
+  }
+
+  /** Does the round trip for all the components queued during the step */
+  private void flush() {
+    synchronized (request) {
+      if (requestStates.isEmpty()) return;
+
+      if (isRunning()) {
+        socketClient.send(request);
+        if (socketClient.receive(reply)) {
+          for (int i = 0; i < reply.getSignalCount(); i++) {
+            int id = reply.getId(i);
+            if (id < 0 || id >= requestStates.size()) continue;
+            requestStates.get(id).setPort(requestPorts[id], reply.getValue(i), 1);
+          }
+        }
+      }
+
+      request.clear(CosimFrame.STEP);
+      requestStates.clear();
+    }
+  }
+
   /** Disable the simulator. If it is running, stops it first. */
   public void disable() {
 
@@ -214,16 +272,7 @@ public class VhdlSimulatorTop implements CircuitListener {
       e.printStackTrace();
     }
 
-    List<Component> VhdlComponents =
-        VhdlSimConstants.getVhdlComponents(project.getCircuitState(), true);
-    for (int index = 0; index < VhdlComponents.size(); index++) {
-      ComponentFactory fact = VhdlComponents.get(index).getFactory();
-      String label = VhdlSimConstants.VHDL_COMPONENT_SIM_NAME + index;
-      if (fact instanceof VhdlEntity)
-        ((VhdlEntity) fact).SetSimName(VhdlComponents.get(index).getAttributeSet(), label);
-      else
-        ((VhdlEntityComponent) fact).SetSimName(VhdlComponents.get(index).getAttributeSet(), label);
-    }
+    List<Component> VhdlComponents = setSimNames();
 
     vhdlTop.generate(VhdlComponents);
     tclRun.generate(VhdlComponents);
@@ -236,6 +285,21 @@ public class VhdlSimulatorTop implements CircuitListener {
     }
   }
 
+  /** Gives each VHDL component the name of its instance in the generated top level */
+  private List<Component> setSimNames() {
+    List<Component> VhdlComponents =
+        VhdlSimConstants.getVhdlComponents(project.getCircuitState(), true);
+    for (int index = 0; index < VhdlComponents.size(); index++) {
+      ComponentFactory fact = VhdlComponents.get(index).getFactory();
+      String label = VhdlSimConstants.VHDL_COMPONENT_SIM_NAME + index;
+      if (fact instanceof VhdlEntity)
+        ((VhdlEntity) fact).SetSimName(VhdlComponents.get(index).getAttributeSet(), label);
+      else
+        ((VhdlEntityComponent) fact).SetSimName(VhdlComponents.get(index).getAttributeSet(), label);
+    }
+    return VhdlComponents;
+  }
+
   public Project getProject() {
     return project;
   }
@@ -284,23 +348,12 @@ public class VhdlSimulatorTop implements CircuitListener {
     return state == State.RUNNING;
   }
 
-  /**
-   * Receive a message from the VHDL simulator
-   *
-   * @return
-   */
-  public String receive() {
-    if (!isRunning()) throw new UnsupportedOperationException();
-
-    return socketClient.receive();
-  }
-
   public void removeVhdlSimStateListener(VhdlSimulatorListener l) {
     listeners.remove(l);
   }
 
   public void reset() {
-    if (isEnabled()) socketClient.send("restart");
+    if (isEnabled()) socketClient.send(new CosimFrame(CosimFrame.RESTART));
   }
 
   /** Stop and restart. If not running, just start */
@@ -323,17 +376,6 @@ public class VhdlSimulatorTop implements CircuitListener {
     }
   }
 
-  /**
-   * Send a message to the VHDL simulator
-   *
-   * @param message
-   */
-  public void send(String message) {
-    if (!isRunning()) throw new UnsupportedOperationException();
-
-    socketClient.send(message);
-  }
-
   public void setEnabled(Boolean enable) {
     if (enable) enable();
     else disable();
@@ -389,12 +431,24 @@ public class VhdlSimulatorTop implements CircuitListener {
             "Cannot stop VHDL simulator from " + state + " state");
     }
 
-    tclBinder.stop();
+    if (tclBinder != null) tclBinder.stop();
     socketClient.stop();
 
     setState(State.ENABLED);
   }
 
+  /**
+   * Runs the VHDL components against a stand-in living in this process, such as a {@link
+   * CosimLoopback}, instead of Questasim. Nothing is generated nor launched; this is meant for
+   * testing.
+   */
+  public void startLoopback(CosimFrame.Handler handler) {
+    stop();
+    setSimNames();
+    socketClient.startLoopback(handler);
+    setState(State.RUNNING);
+  }
+
   public void tclStartCallback() {
     socketClient.start();
     setState(State.RUNNING);
@@ -19,102 +19,169 @@
 # Version   Author Date               Description
 # v1.1      CMR    25.06.14           - Exit if socket fails
 # v1.2      CMR    23.07.14           - Better error handling, add reset option
+# v1.3                                - Binary frames, one frame for all the
+#                                       components of a propagation step
 #-------------------------------------------------------------------------------
-set Version 1.2
+set Version 1.3
 
-set msgs {}
 set channel 0
 
+# Frame commands, see CosimFrame.java
+set CMD_STEP 1
+set CMD_RESTART 3
+set CMD_END 4
+
+# Reads the next frame. A frame is a 32 bit length followed by the command
+# byte, the 32 bit number of signals and, for each signal, its type byte, 32 bit
+# id, width byte, value, unknown and error masks on 64 bits and its name,
+# prefixed by its 16 bit length. Returns {command signals}, or an empty list
+# at the end of the stream.
+proc readFrame {channel} {
+	set header [read $channel 4]
+	if {[string length $header] < 4} {
+		return {}
+	}
+	binary scan $header I length
+	set payload [read $channel $length]
+	if {[string length $payload] < $length} {
+		return {}
+	}
+
+	binary scan $payload cI command count
+	set offset 5
+	set signals {}
+	for {set i 0} {$i < $count} {incr i} {
+		binary scan $payload @${offset}cIcWWWS type id width value unknown error nameLength
+		set width [expr {$width & 0xff}]
+		set nameLength [expr {$nameLength & 0xffff}]
+		incr offset 32
+		set name [encoding convertfrom utf-8 [string range $payload $offset [expr {$offset + $nameLength - 1}]]]
+		incr offset $nameLength
+		lappend signals [list $type $id $width $value $unknown $error $name]
+	}
+	return [list $command $signals]
+}
+
+# Sends a frame whose signals are {type id width value unknown error} lists
+proc writeFrame {channel command signals} {
+	set payload [binary format cI $command [llength $signals]]
+	foreach signal $signals {
+		lassign $signal type id width value unknown error
+		append payload [binary format cIcWWWS $type $id $width $value $unknown $error 0]
+	}
+	puts -nonewline $channel [binary format I [string length $payload]]$payload
+	flush $channel
+}
+
+proc bitMask {i} {
+	if {$i == 63} {
+		return [expr {-1 << 63}]
+	}
+	return [expr {1 << $i}]
+}
+
+# Logisim masks to a std_logic literal, MSB first
+proc masksToBits {width value unknown error} {
+	set bits ""
+	for {set i [expr {$width - 1}]} {$i >= 0} {incr i -1} {
+		if {($error >> $i) & 1} {
+			append bits X
+		} elseif {($unknown >> $i) & 1} {
+			append bits U
+		} else {
+			append bits [expr {($value >> $i) & 1}]
+		}
+	}
+	return $bits
+}
+
+# A std_logic literal to a reply signal, missing MSBs are unknown
+proc bitsToSignal {type id width bits} {
+	set value 0
+	set unknown 0
+	set last [expr {[string length $bits] - 1}]
+	for {set i 0} {$i < $width} {incr i} {
+		set bit [string index $bits [expr {$last - $i}]]
+		if {$bit eq "1"} {
+			set value [expr {$value | [bitMask $i]}]
+		} elseif {$bit ne "0"} {
+			set unknown [expr {$unknown | [bitMask $i]}]
+		}
+	}
+	return [list $type $id $width $value $unknown 0]
+}
+
 proc MessageReceived {channel} {
-	global msgs ;
+	global CMD_STEP CMD_RESTART CMD_END
 
-	if {[eof $channel] || [catch {gets $channel msg}]} {
+	if {[eof $channel] || [catch {readFrame $channel} frame] || [llength $frame] == 0} {
 		end_binder $channel
-  } else {
+		return
+	}
+	lassign $frame command signals
 
-		# If end of communication is asked
-		if {$msg == "end"} {
+	# If end of communication is asked
+	if {$command == $CMD_END} {
 
-			# Sim end procedure
-			end_binder $channel
+		# Sim end procedure
+		end_binder $channel
 
-		# When restart is requested
-		} elseif {$msg == "restart"} {
-			puts "Restart simulation"
-			if {[catch {restart -f} errmsg]} {
-				puts "Error at simulation reset: $errmsg"
-			}
-			set msgs {}
-
-		# When a sync is received
-		} elseif {$msg == "sync"} {
-
-			# Drive input signals in simulation
-			foreach msg $msgs {
-
-				# Get parameters from message
-				set signal [split $msg :]
-				set type [lindex $signal 0]
-				set name [lindex $signal 1]
-				set value [lindex $signal 2]
-				set id [lindex $signal 3]
-
-				# If signal is "in"
-				if {$type == 1} {
-					# Drive simulation signal (force signal, no internal logic changes possible)
-					if {[catch {force -freeze sim:/top_sim/$name $value} errmsg]} {
-						puts "Error forcing simulation signal: $errmsg"
-					}
-
-				# If signal is "inout"
-				} elseif {$type == 3} {
-
-					# Use deposit so value can be changed by internal logic
-					if {[catch {force -deposit sim:/top_sim/$name $value} errmsg]} {
-						puts "Error forcing simulation signal: $errmsg"
-					}
+	# When restart is requested
+	} elseif {$command == $CMD_RESTART} {
+		puts "Restart simulation"
+		if {[catch {restart -f} errmsg]} {
+			puts "Error at simulation reset: $errmsg"
+		}
+
+	# A step for all the components propagated by Logisim
+	} elseif {$command == $CMD_STEP} {
+
+		# Drive input signals in simulation
+		foreach signal $signals {
+			lassign $signal type id width value unknown error name
+
+			# If signal is "in"
+			if {$type == 1} {
+				# Drive simulation signal (force signal, no internal logic changes possible)
+				if {[catch {force -freeze sim:/top_sim/$name [masksToBits $width $value $unknown $error]} errmsg]} {
+					puts "Error forcing simulation signal: $errmsg"
 				}
-			}
 
-			# Run the simulation
-			if {[catch {run 100} errmsg]} {
-				puts "Error running simulation: $errmsg"
-			}
+			# If signal is "inout"
+			} elseif {$type == 3} {
 
-			# Read output signals from simulation
-			foreach msg $msgs {
-				# Get signal and value from message
-				set signal [split $msg :]
-				set type [lindex $signal 0]
-				set name [lindex $signal 1]
-				set value [lindex $signal 2]
-				set id [lindex $signal 3]
-
-				# If signal is "out" or "inout"
-				if {$type == 2 || $type == 3} {
-
-					# Read in sim
-					if {[catch {set value [examine sim:/top_sim/$name]} errmsg]} {
-						puts "Error examining simulation signal: $errmsg"
-					} else {
-						# Send to logisim
-						puts $channel [concat $name:$value:$id]
-					}
+				# Use deposit so value can be changed by internal logic
+				if {[catch {force -deposit sim:/top_sim/$name [masksToBits $width $value $unknown $error]} errmsg]} {
+					puts "Error forcing simulation signal: $errmsg"
 				}
 			}
+		}
 
-			# Send sync to alert logisim of end of step
-			puts $channel "sync"
-			#puts "sent : sync"
-			flush $channel
+		# Run the simulation
+		if {[catch {run 100} errmsg]} {
+			puts "Error running simulation: $errmsg"
+		}
 
-			set msgs {}
+		# Read output signals from simulation
+		set reply {}
+		foreach signal $signals {
+			lassign $signal type id width value unknown error name
 
-		# If it's a signal, add to list
-		} else {
-			lappend msgs $msg ;
+			# If signal is "out" or "inout"
+			if {$type == 2 || $type == 3} {
+
+				# Read in sim
+				if {[catch {set bits [examine sim:/top_sim/$name]} errmsg]} {
+					puts "Error examining simulation signal: $errmsg"
+				} else {
+					lappend reply [bitsToSignal $type $id $width $bits]
+				}
+			}
 		}
-  }
+
+		# Send all the outputs back at once, this also ends the step for logisim
+		writeFrame $channel $CMD_STEP $reply
+	}
 }
 
 proc {main} {port} {
@@ -131,6 +198,7 @@ proc {main} {port} {
 		puts "TCL_BINDER_CONNECTED"
 		puts "TCL_BINDER_RUNNING"
 
+		fconfigure $channel -translation binary
 		fileevent $channel readable [list MessageReceived $channel]
 
 		vwait forever
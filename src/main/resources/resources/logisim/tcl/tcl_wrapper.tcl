@@ -18,11 +18,17 @@
 # Version   Author Date               Description
 # v1.0      CMR 20.08.2014  Original, copied from questasim_binder
 # v1.1      YSR 26.06.2015  Modifications to support and fix issues with sequential systems
+# v1.2                      Binary frames, the same as questasim_binder
 #-------------------------------------------------------------------------------
-set Version 1.1
+set Version 1.2
 
 set channel 0
-set msgs {}
+
+# Frame commands, see CosimFrame.java
+set CMD_STEP 1
+set CMD_EXAMINE 2
+set CMD_END 4
+set CMD_RUN 5
 
 
 
@@ -99,8 +105,9 @@ proc force3 {type signal value} {
 
 proc run {args} {
 	global channel
+	global CMD_RUN
 
-	send_socket $channel "run"
+	writeFrame $channel $CMD_RUN {}
 }
 
 proc restart {args} {
@@ -133,107 +140,141 @@ proc getIndex {signal} {
 	return $index
 }
 
+# Reads the next frame. A frame is a 32 bit length followed by the command
+# byte, the 32 bit number of signals and, for each signal, its type byte, 32 bit
+# id, width byte, value, unknown and error masks on 64 bits and its name,
+# prefixed by its 16 bit length. Returns {command signals}, or an empty list
+# at the end of the stream.
+proc readFrame {channel} {
+	set header [read $channel 4]
+	if {[string length $header] < 4} {
+		return {}
+	}
+	binary scan $header I length
+	set payload [read $channel $length]
+	if {[string length $payload] < $length} {
+		return {}
+	}
+
+	binary scan $payload cI command count
+	set offset 5
+	set signals {}
+	for {set i 0} {$i < $count} {incr i} {
+		binary scan $payload @${offset}cIcWWWS type id width value unknown error nameLength
+		set width [expr {$width & 0xff}]
+		set nameLength [expr {$nameLength & 0xffff}]
+		incr offset 32
+		set name [encoding convertfrom utf-8 [string range $payload $offset [expr {$offset + $nameLength - 1}]]]
+		incr offset $nameLength
+		lappend signals [list $type $id $width $value $unknown $error $name]
+	}
+	return [list $command $signals]
+}
+
+# Sends a frame whose signals are {type id width value unknown error} lists
+proc writeFrame {channel command signals} {
+	set payload [binary format cI $command [llength $signals]]
+	foreach signal $signals {
+		lassign $signal type id width value unknown error
+		append payload [binary format cIcWWWS $type $id $width $value $unknown $error 0]
+	}
+	puts -nonewline $channel [binary format I [string length $payload]]$payload
+	flush $channel
+}
+
+proc bitMask {i} {
+	if {$i == 63} {
+		return [expr {-1 << 63}]
+	}
+	return [expr {1 << $i}]
+}
+
+# Logisim masks to the string the scripts work with, MSB first
+proc masksToBits {width value unknown error} {
+	set bits ""
+	for {set i [expr {$width - 1}]} {$i >= 0} {incr i -1} {
+		if {($error >> $i) & 1} {
+			append bits E
+		} elseif {($unknown >> $i) & 1} {
+			append bits U
+		} else {
+			append bits [expr {($value >> $i) & 1}]
+		}
+	}
+	return $bits
+}
+
+# A string of bits to a reply signal, missing MSBs are unknown
+proc bitsToSignal {type id width bits} {
+	set value 0
+	set unknown 0
+	set last [expr {[string length $bits] - 1}]
+	for {set i 0} {$i < $width} {incr i} {
+		set bit [string index $bits [expr {$last - $i}]]
+		if {$bit eq "1"} {
+			set value [expr {$value | [bitMask $i]}]
+		} elseif {$bit ne "0"} {
+			set unknown [expr {$unknown | [bitMask $i]}]
+		}
+	}
+	return [list $type $id $width $value $unknown 0]
+}
+
 proc MessageReceived {channel} {
-	global msgs
+	global CMD_STEP CMD_EXAMINE CMD_END
 
-	if {[eof $channel] || [catch {gets $channel msg}]} {
+	if {[eof $channel] || [catch {readFrame $channel} frame] || [llength $frame] == 0} {
 		end_binder $channel
-  } else {
-
-		# If end of communication is asked
-		if {$msg == "end"} {
-
-			# Sim end procedure
-			end_binder $channel
-
-		# When a sync_force is received
-		} elseif {$msg == "sync_force"} {
-                        #echo "Recieved sync_force!"
-
-			# Drive input signals in simulation
-			foreach msg $msgs {
-
-				# Get parameters from message
-				set signal [split $msg :]
-				set type [lindex $signal 0]
-				set name [lindex $signal 1]
-				set value [lindex $signal 2]
-				set id [lindex $signal 3]
-
-				global $name
-				# If signal is "in" or "inout"
-				if {$type == 1 || $type == 3} {
-					#echo "Received from Logsim : $name:$value"
-					set $name $value
-				} else {
-					set $name X
-				}
-			}
+		return
+	}
+	lassign $frame command signals
 
-			logisimForce
+	# If end of communication is asked
+	if {$command == $CMD_END} {
 
-			# Read output signals from simulation
-			foreach msg $msgs {
+		# Sim end procedure
+		end_binder $channel
 
-				# Get signal and value from message
-				set signal [split $msg :]
-				set type [lindex $signal 0]
-				set name [lindex $signal 1]
-				set value [lindex $signal 2]
-				set id [lindex $signal 3]
+	# A step (new tick) or an examine
+	} elseif {$command == $CMD_STEP || $command == $CMD_EXAMINE} {
 
+		# Drive input signals in simulation
+		foreach signal $signals {
+			lassign $signal type id width value unknown error name
 
-				# If signal is "out" or "inout"
-				if {$type == 2 || $type == 3} {
-					#echo "Send [concat $name:[set $name]:$id] to logisim"
-					# Send to logisim
-					send_socket $channel [concat $name:[set $name]:$id]
-				}
-			}
-
-			# Send sync to alert logisim of end of step
-			#echo "Send : sync"
-			send_socket $channel "sync"
-
-			set msgs {}
-
-		# When a sync_examine is received
-		} elseif {$msg == "sync_examine"} {
-                        #echo "Recieved sync_examine!"
-
-			# Drive input signals in simulation
-			foreach msg $msgs {
-
-				# Get parameters from message
-				set signal [split $msg :]
-				set type [lindex $signal 0]
-				set name [lindex $signal 1]
-				set value [lindex $signal 2]
-				set id [lindex $signal 3]
-
-				global $name
-				# If signal is "in" or "inout"
-				if {$type == 1 || $type == 3} {
-					#echo "Received from Logsim : $name:$value"
-					set $name $value
-				} else {
-					set $name X
-				}
+			global $name
+			# If signal is "in" or "inout"
+			if {$type == 1 || $type == 3} {
+				set $name [masksToBits $width $value $unknown $error]
+			} else {
+				set $name X
 			}
+		}
 
+		if {$command == $CMD_EXAMINE} {
 			logisimExamine
 
-			# Send sync to alert logisim of end of step
-			#echo "Send : sync"
-			send_socket $channel "sync"
+			# Empty reply to alert logisim of end of step
+			writeFrame $channel $CMD_EXAMINE {}
+			return
+		}
 
-			set msgs {}
+		logisimForce
 
-		# If it's a signal, add to list
-		} else {
-			lappend msgs $msg ;
+		# Read output signals from simulation
+		set reply {}
+		foreach signal $signals {
+			lassign $signal type id width value unknown error name
+
+			# If signal is "out" or "inout"
+			if {$type == 2 || $type == 3} {
+				lappend reply [bitsToSignal $type $id $width [set $name]]
+			}
 		}
-  }
+
+		# Send all the outputs back at once, this also ends the step for logisim
+		writeFrame $channel $CMD_STEP $reply
+	}
 }
 
 proc end_binder {channel} {
@@ -245,7 +286,6 @@ proc end_binder {channel} {
 
 proc init_wrapper {} {
 
-	global msgs
 	global argv
 	global channel
 
@@ -262,16 +302,11 @@ proc init_wrapper {} {
 		puts "TCL_WRAPPER_RUNNING"
 	}
 
-	# fconfigure $channel -buffering line
+	fconfigure $channel -translation binary
 	fileevent $channel readable [list MessageReceived $channel]
 
 }
 
-proc send_socket {channel message} {
-	puts $channel $message
-	flush $channel
-}
-
 proc echo {message} {
 	puts "\[TCL\] $message"
 }
@@ -0,0 +1,125 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.analyze.model;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that the covers the heuristic minimizer returns, for sums of products and products of
+ * sums alike, take in every row of the value sought and none of the opposite value.
+ */
+public class EspressoMinimizerTest {
+  private static final long BUDGET = 1000000000L; // one second, in nanoseconds
+
+  @Test
+  public void testRandomFunctionsAreCovered() {
+    Random random = new Random(17);
+    for (int inputs = 1; inputs <= 10; inputs++) {
+      for (int trial = 0; trial < 12; trial++) {
+        // from sparse to dense functions, with more or fewer don't cares
+        int ones = 1 + trial % 4 * 3;
+        int dontCares = trial / 4 * 2;
+        Entry[] column = new Entry[1 << inputs];
+        for (int row = 0; row < column.length; row++) {
+          int v = random.nextInt(12);
+          column[row] = v < ones ? Entry.ONE : v < ones + dontCares ? Entry.DONT_CARE : Entry.ZERO;
+        }
+        String message = inputs + " inputs, trial " + trial;
+        checkBothForms(message, column, System.nanoTime() + BUDGET);
+      }
+    }
+  }
+
+  @Test
+  public void testConstantColumns() {
+    for (int inputs = 1; inputs <= 6; inputs++) {
+      Entry[] zeros = new Entry[1 << inputs];
+      Entry[] ones = new Entry[1 << inputs];
+      Entry[] dontCares = new Entry[1 << inputs];
+      for (int row = 0; row < zeros.length; row++) {
+        zeros[row] = Entry.ZERO;
+        ones[row] = Entry.ONE;
+        dontCares[row] = Entry.DONT_CARE;
+      }
+      checkBothForms("zeros, " + inputs + " inputs", zeros, System.nanoTime() + BUDGET);
+      checkBothForms("ones, " + inputs + " inputs", ones, System.nanoTime() + BUDGET);
+      // a column without a single known value has nothing to cover
+      TruthTable table = table(dontCares);
+      assertNull(EspressoMinimizer.minimize(table, 0, Entry.ONE, System.nanoTime() + BUDGET));
+      assertNull(EspressoMinimizer.minimize(table, 0, Entry.ZERO, System.nanoTime() + BUDGET));
+    }
+  }
+
+  @Test
+  public void testExpiredDeadlineStillCovers() {
+    Random random = new Random(5);
+    for (int inputs = 1; inputs <= 10; inputs++) {
+      Entry[] column = new Entry[1 << inputs];
+      for (int row = 0; row < column.length; row++) {
+        int v = random.nextInt(10);
+        column[row] = v < 4 ? Entry.ONE : v < 8 ? Entry.ZERO : Entry.DONT_CARE;
+      }
+      checkBothForms(inputs + " inputs, out of time", column, System.nanoTime() - 1);
+    }
+  }
+
+  private static void checkBothForms(String message, Entry[] column, long deadline) {
+    TruthTable table = table(column);
+    assertCovers(message + ", SOP", column, Entry.ONE, table, deadline);
+    assertCovers(message + ", POS", column, Entry.ZERO, table, deadline);
+  }
+
+  private static void assertCovers(
+      String message, Entry[] column, Entry desired, TruthTable table, long deadline) {
+    List<Implicant> cover = EspressoMinimizer.minimize(table, 0, desired, deadline);
+    assertNotNull(message, cover);
+    Entry opposite = desired == Entry.ONE ? Entry.ZERO : Entry.ONE;
+    for (int row = 0; row < column.length; row++) {
+      boolean covered = false;
+      for (Implicant imp : cover) {
+        if ((row & ~imp.unknowns) == imp.values) covered = true;
+      }
+      if (column[row] == desired) assertTrue(message + ", row " + row + " left out", covered);
+      if (column[row] == opposite) assertFalse(message + ", row " + row + " taken in", covered);
+    }
+  }
+
+  private static TruthTable table(Entry[] column) {
+    int inputs = Integer.numberOfTrailingZeros(column.length);
+    AnalyzerModel model = new AnalyzerModel();
+    model.setVariables(List.of(new Var("x", inputs)), List.of(new Var("o", 1)));
+    TruthTable ret = model.getTruthTable();
+    ret.setOutputColumn(0, column);
+    return ret;
+  }
+}
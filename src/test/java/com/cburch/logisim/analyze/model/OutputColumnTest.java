@@ -0,0 +1,148 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.analyze.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks the packed output column, and its word at a time paths above all, against a plain array
+ * of entries that undergoes the same changes.
+ */
+public class OutputColumnTest {
+  private static final Entry[] VALUES = {
+    Entry.ZERO, Entry.ONE, Entry.DONT_CARE, Entry.BUS_ERROR, Entry.OSCILLATE_ERROR
+  };
+
+  @Test
+  public void testMatchesArrayOfEntries() {
+    Random random = new Random(16);
+    for (int inputs = 1; inputs <= 8; inputs++) {
+      for (int trial = 0; trial < 20; trial++) {
+        int size = 1 << inputs;
+        Entry[] expected = new Entry[size];
+        for (int i = 0; i < size; i++) expected[i] = randomEntry(random, trial);
+        OutputColumn column = new OutputColumn(expected);
+        String message = inputs + " inputs, trial " + trial;
+        assertArrayEquals(message, expected, column.toArray());
+
+        for (int op = 0; op < 200; op++) {
+          int dcMask = randomMask(random, inputs);
+          int base = random.nextInt(size) & ~dcMask;
+          String where = message + ", op " + op + ", base " + base + ", mask " + dcMask;
+          switch (random.nextInt(4)) {
+            case 0:
+              {
+                int idx = random.nextInt(size);
+                Entry value = randomEntry(random, trial);
+                assertEquals(where, expected[idx] != value, column.set(idx, value));
+                expected[idx] = value;
+                break;
+              }
+            case 1:
+              {
+                Entry value = randomEntry(random, trial);
+                boolean changed = false;
+                int sub = 0;
+                do {
+                  changed |= expected[base | sub] != value;
+                  expected[base | sub] = value;
+                  sub = (sub - dcMask) & dcMask;
+                } while (sub != 0);
+                assertEquals(where, changed, column.fill(base, dcMask, value));
+                break;
+              }
+            case 2:
+              {
+                int from = random.nextInt(size);
+                int to = random.nextInt(size);
+                assertEquals(where, expected[from] == expected[to], column.sameEntry(from, to));
+                assertEquals(where, expected[from] != expected[to], column.copyEntry(from, to));
+                expected[to] = expected[from];
+                break;
+              }
+            default:
+              break;
+          }
+          assertEquals(where, isUniform(expected, base, dcMask), column.isUniform(base, dcMask));
+          for (int i = 0; i < size; i++) {
+            assertSame(where + ", row " + i, expected[i], column.get(i));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testUniformErrors() {
+    // rows that all hold an error are only uniform if they all oscillate or none does
+    for (int inputs = 5; inputs <= 8; inputs++) {
+      int size = 1 << inputs;
+      for (int dcMask : new int[] {31, size - 1, (size - 1) & ~32}) {
+        for (Entry value : new Entry[] {Entry.BUS_ERROR, Entry.OSCILLATE_ERROR}) {
+          Entry other = value == Entry.BUS_ERROR ? Entry.OSCILLATE_ERROR : Entry.BUS_ERROR;
+          OutputColumn column = new OutputColumn(size);
+          column.set(size - 1, Entry.OSCILLATE_ERROR);
+          assertTrue(column.fill(0, dcMask, value));
+          assertFalse(column.fill(0, dcMask, value));
+          assertTrue(column.isUniform(0, dcMask));
+          column.set(dcMask, other);
+          assertFalse(column.isUniform(0, dcMask));
+          column.set(dcMask, value);
+          assertTrue(column.isUniform(0, dcMask));
+        }
+      }
+    }
+  }
+
+  // a random don't care mask, taking in the five low bits half the time
+  private static int randomMask(Random random, int inputs) {
+    int all = (1 << inputs) - 1;
+    int ret = random.nextInt(1 << inputs) & random.nextInt(1 << inputs);
+    if (inputs >= 5 && random.nextBoolean()) ret |= 31;
+    return ret & all;
+  }
+
+  // errors come in most often in some trials, rarely in others
+  private static Entry randomEntry(Random random, int trial) {
+    int v = random.nextInt(trial % 2 == 0 ? 20 : 5);
+    return v < VALUES.length ? VALUES[v] : VALUES[v % 3];
+  }
+
+  private static boolean isUniform(Entry[] entries, int base, int dcMask) {
+    int sub = 0;
+    do {
+      if (entries[base | sub] != entries[base]) return false;
+      sub = (sub - dcMask) & dcMask;
+    } while (sub != 0);
+    return true;
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.*;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Tunnel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+
+/**
+ * Checks that the bundle map that a circuit derives from the previous one after a change is the
+ * map computed from scratch for the circuit as it is then, and so is the rest of the snapshot.
+ */
+public class CircuitWiresTest {
+  private static final String[] LABELS = {"a", "b", "c"};
+
+  @Test
+  public void testUpdatedMapMatchesComputedMap() throws Exception {
+    LogisimFile file = TestCircuits.newFile();
+    Circuit main = file.getCircuit("main");
+    main.SetProject(new Project(file));
+    // a part that none of the changes touches, whose bundles the updates take over
+    CircuitMutation m = new CircuitMutation(main);
+    m.add(Wire.create(Location.create(200, 200), Location.create(300, 200)));
+    TestCircuits.tunnel(m, Location.create(200, 200), BitWidth.create(8), "far");
+    TestCircuits.tunnel(m, Location.create(200, 300), BitWidth.create(8), "far");
+    m.add(Wire.create(Location.create(200, 300), Location.create(300, 300)));
+    m.execute();
+
+    Random random = new Random(7);
+    int updates = 0;
+    for (int step = 0; step < 300; step++) {
+      CircuitWires.BundleMap last = main.getSnapshot().bundleMap;
+      m = new CircuitMutation(main);
+      switch (step % 6) {
+        case 0:
+        case 1:
+          m.add(randomWire(random));
+          break;
+        case 2:
+          removeAny(m, getWires(main), random);
+          break;
+        case 3:
+          if (random.nextBoolean()) m.add(splitter(random));
+          else removeAny(m, getSplitters(main), random);
+          break;
+        case 4:
+          if (random.nextBoolean()) {
+            BitWidth width = BitWidth.create(random.nextBoolean() ? 1 : 4);
+            TestCircuits.tunnel(m, randomPoint(random), width, LABELS[random.nextInt(3)]);
+          } else {
+            removeAny(m, getTunnels(main), random);
+          }
+          break;
+        default:
+          List<Component> tunnels = getTunnels(main);
+          if (!tunnels.isEmpty()) {
+            Component tunnel = tunnels.get(random.nextInt(tunnels.size()));
+            m.set(tunnel, StdAttr.LABEL, LABELS[random.nextInt(3)]);
+          }
+          break;
+      }
+      m.execute();
+
+      CircuitWires.BundleMap map = main.getSnapshot().bundleMap;
+      assertEquals("step " + step, describe(computeMap(main)), describe(map));
+      assertIncompatibilitiesListed(map);
+      assertDenseIds(map);
+      assertSnapshotMatches("step " + step, main);
+      if (last != map && !Collections.disjoint(last.getBundles(), map.getBundles())) updates++;
+    }
+    // most maps are to have been derived from the previous one, not computed from scratch
+    assertTrue("updates " + updates, updates > 100);
+  }
+
+  @Test
+  public void testSnapshotFollowsGrowingAndShrinkingCircuit() throws Exception {
+    LogisimFile file = TestCircuits.newFile();
+    Circuit main = file.getCircuit("main");
+    main.SetProject(new Project(file));
+    // enough points for the snapshot to rehash them, and enough components removed for it to
+    // pack the others again
+    List<Component> added = new ArrayList<>();
+    for (int row = 0; row < 40; row++) {
+      CircuitMutation m = new CircuitMutation(main);
+      for (int col = 0; col < 10; col++) {
+        Location p = Location.create(100 * col, 20 * row);
+        m.add(Wire.create(p, p.translate(50, 0)));
+        added.add(TestCircuits.tunnel(m, p, BitWidth.ONE, "t" + row));
+      }
+      m.execute();
+      assertSnapshotMatches("row " + row, main);
+    }
+    Random random = new Random(11);
+    Collections.shuffle(added, random);
+    for (int i = 0; i < added.size(); i += 20) {
+      CircuitMutation m = new CircuitMutation(main);
+      for (Component comp : added.subList(i, i + 20)) m.remove(comp);
+      if (i % 100 == 0) m.add(randomWire(random));
+      m.execute();
+      assertSnapshotMatches("removed " + i, main);
+    }
+  }
+
+  // the map computed from scratch for the components of the circuit
+  private static CircuitWires.BundleMap computeMap(Circuit circuit) {
+    CircuitWires wires = new CircuitWires();
+    for (Component comp : circuit.getWires()) wires.add(comp);
+    for (Component comp : circuit.getNonWires()) wires.add(comp);
+    CircuitWires.BundleMap ret =
+        wires.takeSnapshot(Collections.emptySet(), Collections.emptyList()).bundleMap;
+    for (Component comp : circuit.getNonWires()) wires.remove(comp);
+    return ret;
+  }
+
+  // describes each point by the points of its bundle, its width, and, for each bit, the points
+  // and bits that share its thread. The threads of a bundle whose widths disagree are left alone
+  // by the simulator, and how many it has depends on the order of the ends; so does which of the
+  // ends it lists, but not their widths.
+  private static Map<Location, String> describe(CircuitWires.BundleMap map) {
+    HashMap<WireThread, Set<String>> threads = new HashMap<>();
+    for (WireBundle b : map.getBundles()) {
+      if (!b.isValid() || b.threads == null) continue;
+      for (Location p : b.points) {
+        for (int i = 0; i < b.threads.length; i++) {
+          threads.computeIfAbsent(b.threads[i], t -> new TreeSet<>()).add(p + "/" + i);
+        }
+      }
+    }
+    HashMap<Location, String> ret = new HashMap<>();
+    for (Location p : map.getBundlePoints()) {
+      WireBundle b = map.getBundleAt(p);
+      StringBuilder s = new StringBuilder();
+      s.append(new TreeSet<>(b.points)).append(" width ").append(b.getWidth());
+      WidthIncompatibilityData e = b.getWidthIncompatibilityData();
+      if (e != null) {
+        TreeSet<Integer> widths = new TreeSet<>();
+        for (int i = 0; i < e.size(); i++) widths.add(e.getBitWidth(i).getWidth());
+        s.append(" incompatible ").append(widths);
+      }
+      if (b.isValid() && b.threads != null) {
+        for (WireThread t : b.threads) s.append(' ').append(threads.get(t));
+      }
+      ret.put(p, s.toString());
+    }
+    return ret;
+  }
+
+  // the snapshot, built from the previous one, holds what the circuit holds now
+  private static void assertSnapshotMatches(String message, Circuit circuit) {
+    CircuitSnapshot snap = circuit.getSnapshot();
+    assertEquals(
+        message, new ArrayList<>(circuit.getNonWires()), new ArrayList<>(snap.getNonWires()));
+    assertEquals(message, circuit.getNonWires().size(), snap.getNonWires().size());
+    CircuitPoints points = circuit.wires.points;
+    assertEquals(message, points.getSplitLocations(), new HashSet<>(snap.getSplitLocations()));
+    assertEquals(message, points.getSplitLocations().size(), snap.getSplitLocations().size());
+    for (Location p : points.getSplitLocations()) {
+      assertTrue(message, snap.getSplitLocations().contains(p));
+      assertEquals(
+          message, new ArrayList<>(points.getComponents(p)), List.of(snap.getComponents(p)));
+      assertEquals(message, circuit.getWidth(p), snap.getWidth(p));
+    }
+  }
+
+  // the map lists the bundles whose widths disagree, for the canvas to show them
+  private static void assertIncompatibilitiesListed(CircuitWires.BundleMap map) {
+    for (WireBundle b : map.getBundles()) {
+      WidthIncompatibilityData e = b.getWidthIncompatibilityData();
+      if (e != null) assertTrue(map.getWidthIncompatibilityData().contains(e));
+    }
+  }
+
+  // the values of a CircuitState are indexed by these numbers
+  private static void assertDenseIds(CircuitWires.BundleMap map) {
+    HashSet<Integer> bundleIds = new HashSet<>();
+    HashSet<Integer> threadIds = new HashSet<>();
+    HashSet<WireThread> threads = new HashSet<>();
+    for (WireBundle b : map.getBundles()) {
+      assertTrue(b.id >= 0 && b.id < map.bundleCount);
+      assertTrue(bundleIds.add(b.id));
+      if (b.threads == null) continue;
+      for (WireThread t : b.threads) {
+        if (!threads.add(t)) continue;
+        assertTrue(t.id >= 0 && t.id < map.threadCount);
+        assertTrue(threadIds.add(t.id));
+      }
+    }
+  }
+
+  private static Location randomPoint(Random random) {
+    return Location.create(10 * random.nextInt(6), 10 * random.nextInt(6));
+  }
+
+  private static Wire randomWire(Random random) {
+    Location p = randomPoint(random);
+    int length = 10 * (1 + random.nextInt(3));
+    return random.nextBoolean()
+        ? Wire.create(p, p.translate(length, 0))
+        : Wire.create(p, p.translate(0, length));
+  }
+
+  private static Component splitter(Random random) {
+    AttributeSet attrs = SplitterFactory.instance.createAttributeSet();
+    attrs.setValue(SplitterAttributes.ATTR_WIDTH, BitWidth.create(4));
+    attrs.setValue(SplitterAttributes.ATTR_FANOUT, 1 + random.nextInt(4));
+    return SplitterFactory.instance.createComponent(randomPoint(random), attrs);
+  }
+
+  private static List<Component> getSplitters(Circuit circuit) {
+    ArrayList<Component> ret = new ArrayList<>();
+    for (Component comp : circuit.getNonWires()) {
+      if (comp instanceof Splitter) ret.add(comp);
+    }
+    return ret;
+  }
+
+  // the tunnels but those of the part left alone
+  private static List<Component> getTunnels(Circuit circuit) {
+    ArrayList<Component> ret = new ArrayList<>();
+    for (Component comp : circuit.getNonWires()) {
+      if (comp.getFactory() instanceof Tunnel
+          && !"far".equals(comp.getAttributeSet().getValue(StdAttr.LABEL))) {
+        ret.add(comp);
+      }
+    }
+    return ret;
+  }
+
+  // the wires but those of the part left alone
+  private static List<Component> getWires(Circuit circuit) {
+    ArrayList<Component> ret = new ArrayList<>();
+    for (Wire w : circuit.getWires()) {
+      if (w.getEnd0().getX() < 200) ret.add(w);
+    }
+    return ret;
+  }
+
+  private static void removeAny(CircuitMutation m, List<Component> comps, Random random) {
+    if (!comps.isEmpty()) m.remove(comps.get(random.nextInt(comps.size())));
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertEquals;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.file.Options;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.proj.Project;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class ParallelPropagationTest {
+  private static final int SLICES = 8;
+
+  /** An 8-bit ripple-carry adder made of full adder subcircuits, simulated from the main state. */
+  private static class Adder {
+    final CircuitState state;
+    final List<Component> inputs = new ArrayList<>();
+    final List<Component> outputs = new ArrayList<>();
+
+    Adder(boolean parallel) throws Exception {
+      LogisimFile file = TestCircuits.newFile();
+      Project proj = new Project(file);
+      proj.getOptions().getAttributeSet().setValue(Options.ATTR_SIM_PARALLEL, parallel);
+      Circuit slice = new Circuit("slice", file, proj);
+      file.addCircuit(slice);
+      buildSlice(file, slice);
+      Circuit main = file.getCircuit("main");
+      main.SetProject(proj);
+      CircuitMutation m = new CircuitMutation(main);
+      for (int i = 0; i < SLICES; i++) {
+        inputs.add(TestCircuits.pin(m, Location.create(100, 100 + 40 * i), 1, false, "a" + i));
+        inputs.add(TestCircuits.pin(m, Location.create(300, 100 + 40 * i), 1, false, "b" + i));
+        outputs.add(TestCircuits.pin(m, Location.create(500, 100 + 40 * i), 1, true, "s" + i));
+      }
+      inputs.add(TestCircuits.pin(m, Location.create(700, 100), 1, false, "c0"));
+      outputs.add(TestCircuits.pin(m, Location.create(700, 300), 1, true, "c" + SLICES));
+      SubcircuitFactory factory = slice.getSubcircuitFactory();
+      for (int i = 0; i < SLICES; i++) {
+        Location loc = Location.create(1000, 1000 + 200 * i);
+        Component comp = factory.createComponent(loc, factory.createAttributeSet());
+        Instance[] pins = ((CircuitAttributes) comp.getAttributeSet()).getPinInstances();
+        String[] nets = new String[pins.length];
+        for (int p = 0; p < pins.length; p++) {
+          String label = pins[p].getAttributeValue(StdAttr.LABEL);
+          if (label.equals("ci")) nets[p] = "c" + i;
+          else if (label.equals("co")) nets[p] = "c" + (i + 1);
+          else nets[p] = label + i;
+        }
+        m.add(comp);
+        for (int p = 0; p < nets.length; p++) {
+          TestCircuits.tunnel(m, comp.getEnd(p).getLocation(), comp.getEnd(p).getWidth(), nets[p]);
+        }
+      }
+      m.execute();
+      state = proj.getCircuitState(main);
+    }
+
+    private static void buildSlice(LogisimFile file, Circuit slice) {
+      ComponentFactory xor = TestCircuits.getFactory(file, "Gates", "XOR Gate");
+      ComponentFactory and = TestCircuits.getFactory(file, "Gates", "AND Gate");
+      ComponentFactory or = TestCircuits.getFactory(file, "Gates", "OR Gate");
+      CircuitMutation m = new CircuitMutation(slice);
+      TestCircuits.pin(m, Location.create(100, 100), 1, false, "a");
+      TestCircuits.pin(m, Location.create(100, 200), 1, false, "b");
+      TestCircuits.pin(m, Location.create(100, 300), 1, false, "ci");
+      TestCircuits.pin(m, Location.create(900, 100), 1, true, "s");
+      TestCircuits.pin(m, Location.create(900, 300), 1, true, "co");
+      // the ends of a gate are its output, then its inputs
+      gate(m, xor, 0, "t1", "a", "b");
+      gate(m, xor, 1, "s", "t1", "ci");
+      gate(m, and, 2, "t2", "a", "b");
+      gate(m, and, 3, "t3", "t1", "ci");
+      gate(m, or, 4, "co", "t2", "t3");
+      m.execute();
+    }
+
+    private static void gate(CircuitMutation m, ComponentFactory f, int n, String... nets) {
+      TestCircuits.add(m, f, f.createAttributeSet(), Location.create(500, 100 + 200 * n), nets);
+    }
+
+    /** Applies the inputs, and returns the outputs after every step until the circuit settles. */
+    List<String> run(long bits) {
+      for (int i = 0; i < inputs.size(); i++) {
+        TestCircuits.setInput(state, inputs.get(i), (bits >> i & 1) != 0 ? Value.TRUE : Value.FALSE);
+      }
+      List<String> trace = new ArrayList<>();
+      Propagator prop = state.getPropagator();
+      while (prop.step(null)) {
+        StringBuilder outs = new StringBuilder();
+        for (Component out : outputs) outs.append(state.getValue(out.getLocation()));
+        trace.add(outs.toString());
+      }
+      return trace;
+    }
+
+    long sum() {
+      long ret = 0;
+      for (int i = 0; i < outputs.size(); i++) {
+        if (state.getValue(outputs.get(i).getLocation()) == Value.TRUE) ret |= 1L << i;
+      }
+      return ret;
+    }
+  }
+
+  @Test
+  public void parallelPropagationMatchesSerial() throws Exception {
+    Adder serial = new Adder(false);
+    Adder parallel = new Adder(true);
+    Random random = new Random(3);
+    for (int round = 0; round < 200; round++) {
+      long bits = random.nextLong() & ((1L << (2 * SLICES + 1)) - 1);
+      assertEquals("trace of round " + round, serial.run(bits), parallel.run(bits));
+      long a = 0;
+      long b = 0;
+      for (int i = 0; i < SLICES; i++) {
+        a |= (bits >> (2 * i) & 1) << i;
+        b |= (bits >> (2 * i + 1) & 1) << i;
+      }
+      assertEquals("sum of round " + round, a + b + (bits >> (2 * SLICES) & 1), parallel.sum());
+    }
+    assertEquals(
+        serial.state.getPropagator().getEventCount(),
+        parallel.state.getPropagator().getEventCount());
+  }
+}
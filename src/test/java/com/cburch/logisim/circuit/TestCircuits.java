@@ -0,0 +1,119 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Direction;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.Tunnel;
+import com.cburch.logisim.tools.AddTool;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Builds small circuits for the tests. Every end of a component gets a tunnel named after the net
+ * it belongs to, so that the tests never have to know where the ends of a component are.
+ */
+public final class TestCircuits {
+  private static final String EMPTY_PROJECT =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+          + "<project source=\"3.5.0\" version=\"1.0\">\n"
+          + "<lib desc=\"#Wiring\" name=\"0\"/><lib desc=\"#Gates\" name=\"1\"/>\n"
+          + "<main name=\"main\"/>\n"
+          + "<circuit name=\"main\"/>\n"
+          + "</project>\n";
+
+  private TestCircuits() {}
+
+  /** Returns a new file holding an empty circuit named "main". */
+  public static LogisimFile newFile() throws IOException {
+    byte[] xml = EMPTY_PROJECT.getBytes(StandardCharsets.UTF_8);
+    return new Loader(null).openLogisimFile(new ByteArrayInputStream(xml));
+  }
+
+  /** Returns the factory of the given tool of a library, such as ("Gates", "AND Gate"). */
+  public static ComponentFactory getFactory(LogisimFile file, String lib, String tool) {
+    return ((AddTool) file.getLibrary(lib).getTool(tool)).getFactory();
+  }
+
+  /**
+   * Adds a component and ties its ends to the given nets, in the order of its ends. A null net
+   * leaves an end unconnected.
+   */
+  public static Component add(
+      CircuitMutation m, ComponentFactory factory, AttributeSet attrs, Location loc,
+      String... nets) {
+    Component comp = factory.createComponent(loc, attrs);
+    m.add(comp);
+    List<EndData> ends = comp.getEnds();
+    for (int i = 0; i < nets.length; i++) {
+      if (nets[i] != null) tunnel(m, ends.get(i).getLocation(), ends.get(i).getWidth(), nets[i]);
+    }
+    return comp;
+  }
+
+  /** Adds an input or an output pin on the given net. */
+  public static Component pin(
+      CircuitMutation m, Location loc, int width, boolean output, String net) {
+    AttributeSet attrs = Pin.FACTORY.createAttributeSet();
+    attrs.setValue(StdAttr.WIDTH, BitWidth.create(width));
+    attrs.setValue(StdAttr.LABEL, net);
+    attrs.setValue(Pin.ATTR_TYPE, output);
+    attrs.setValue(StdAttr.FACING, output ? Direction.WEST : Direction.EAST);
+    return add(m, Pin.FACTORY, attrs, loc, net);
+  }
+
+  public static Component tunnel(CircuitMutation m, Location loc, BitWidth width, String net) {
+    AttributeSet attrs = Tunnel.FACTORY.createAttributeSet();
+    attrs.setValue(StdAttr.WIDTH, width);
+    attrs.setValue(StdAttr.LABEL, net);
+    Component comp = Tunnel.FACTORY.createComponent(loc, attrs);
+    m.add(comp);
+    return comp;
+  }
+
+  /** Sets the value of an input pin, to be taken up on the next propagation. */
+  public static void setInput(CircuitState state, Component pin, Value value) {
+    InstanceState pinState = state.getInstanceState(pin);
+    Pin.FACTORY.setValue(pinState, value);
+    pinState.fireInvalidated();
+  }
+}
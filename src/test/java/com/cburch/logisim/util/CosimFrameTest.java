@@ -0,0 +1,111 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.util;
+
+import static org.junit.Assert.*;
+
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Value;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+
+public class CosimFrameTest {
+
+  private static CosimFrame roundTrip(CosimFrame frame) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    frame.write(new DataOutputStream(bytes));
+    CosimFrame ret = new CosimFrame(CosimFrame.END);
+    ret.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    return ret;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Value[] values = {
+      Value.TRUE,
+      Value.UNKNOWN,
+      Value.ERROR,
+      Value.createKnown(64, 0x8000_0000_0000_0001L),
+      Value.create(64, 0xff00L, 0x00ffL, 0x8000_0000_0000_0000L),
+      Value.create(64, -1L, 0, 0),
+      Value.create(64, 0, -1L, 0),
+    };
+    CosimFrame frame = new CosimFrame(CosimFrame.STEP);
+    for (int i = 0; i < values.length; i++) {
+      assertEquals(i, frame.add(1 + i % 3, "top_comp_p" + i, 100 + i, values[i]));
+    }
+    // replies carry no names
+    frame.add(2, null, -1, Value.FALSE);
+
+    CosimFrame read = roundTrip(frame);
+    assertEquals(CosimFrame.STEP, read.getCommand());
+    assertEquals(values.length + 1, read.getSignalCount());
+    for (int i = 0; i < values.length; i++) {
+      assertEquals(1 + i % 3, read.getType(i));
+      assertEquals(100 + i, read.getId(i));
+      assertEquals("top_comp_p" + i, read.getName(i));
+      assertEquals(values[i], read.getValue(i));
+    }
+    assertEquals("", read.getName(values.length));
+    assertEquals(-1, read.getId(values.length));
+    assertEquals(Value.FALSE, read.getValue(values.length));
+  }
+
+  @Test
+  public void testReuse() throws IOException {
+    CosimFrame frame = new CosimFrame();
+    for (int i = 0; i < 20; i++) frame.add(1, "s" + i, i, Value.createKnown(8, i));
+    frame.clear(CosimFrame.EXAMINE);
+    frame.add(3, "s", 7, Value.createUnknown(BitWidth.create(4)));
+
+    CosimFrame read = roundTrip(frame);
+    assertEquals(CosimFrame.EXAMINE, read.getCommand());
+    assertEquals(1, read.getSignalCount());
+    assertEquals(Value.createUnknown(BitWidth.create(4)), read.getValue(0));
+  }
+
+  @Test
+  public void testTruncatedFrame() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(9);
+    out.writeByte(CosimFrame.STEP);
+    out.writeInt(1); // one signal announced, none there
+    try {
+      new CosimFrame().read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.util;
+
+import static org.junit.Assert.*;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitMutation;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.circuit.TestCircuits;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.vhdl.base.VhdlContent;
+import com.cburch.logisim.vhdl.base.VhdlEntity;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Runs VHDL components against a loopback stand-in of the simulator, which must be asked once per
+ * propagation step for all of them.
+ */
+public class CosimLoopbackTest {
+  private static final String INVERTER =
+      "library ieee;\n"
+          + "use ieee.std_logic_1164.all;\n"
+          + "entity inv is\n"
+          + "  port ( a : in std_logic_vector(7 downto 0);\n"
+          + "         y : out std_logic_vector(7 downto 0));\n"
+          + "end inv;\n"
+          + "architecture behavior of inv is\n"
+          + "begin\n"
+          + "  y <= not a;\n"
+          + "end behavior;\n";
+  private static final int INSTANCES = 3;
+  private static final BitWidth BYTE = BitWidth.create(8);
+
+  // stands for a simulator running the inverters, and keeps the instances each step was for
+  private static class Inverters extends CosimLoopback {
+    final List<List<String>> steps = new ArrayList<>();
+
+    @Override
+    public void exchange(CosimFrame request, CosimFrame reply) {
+      if (request.getCommand() == CosimFrame.STEP) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < request.getSignalCount(); i++) names.add(request.getName(i));
+        steps.add(names);
+      }
+      super.exchange(request, reply);
+    }
+
+    @Override
+    protected Value getOutput(String name, Value current) {
+      Value in = getInput(name.substring(0, name.lastIndexOf('_') + 1) + "a");
+      return in == null ? current : in.not();
+    }
+  }
+
+  @Test
+  public void testOneStepForAllInstances() throws Exception {
+    LogisimFile file = TestCircuits.newFile();
+    Project proj = new Project(file);
+    Circuit main = file.getCircuit("main");
+    main.SetProject(proj);
+    VhdlContent content = VhdlContent.parse("inv", INVERTER, file);
+    file.addVhdlContent(content);
+    VhdlEntity factory = new VhdlEntity(content);
+
+    CircuitMutation m = new CircuitMutation(main);
+    Component[] ins = new Component[INSTANCES];
+    Component[] outs = new Component[INSTANCES];
+    for (int i = 0; i < INSTANCES; i++) {
+      AttributeSet attrs = factory.createAttributeSet();
+      attrs.setValue(StdAttr.LABEL, "inv" + i);
+      TestCircuits.add(m, factory, attrs, Location.create(500, 100 + 200 * i), "a" + i, "y" + i);
+      ins[i] = TestCircuits.pin(m, Location.create(100, 100 + 200 * i), 8, false, "a" + i);
+      outs[i] = TestCircuits.pin(m, Location.create(900, 100 + 200 * i), 8, true, "y" + i);
+    }
+    m.execute();
+
+    Inverters loopback = new Inverters();
+    CircuitState state = proj.getCircuitState(main);
+    proj.getVhdlSimulator().startLoopback(loopback);
+    Propagator prop = state.getPropagator();
+    prop.propagate();
+    int startSteps = loopback.getStepCount();
+    for (int round = 0; round < 20; round++) {
+      loopback.steps.clear();
+      for (int i = 0; i < INSTANCES; i++) {
+        TestCircuits.setInput(state, ins[i], Value.createKnown(BYTE, 7 * round + i + 1));
+      }
+      prop.propagate();
+
+      // the instances run again in the step their outputs come back, and nowhere else
+      assertEquals(2, loopback.steps.size());
+      for (List<String> step : loopback.steps) {
+        assertEquals(2 * INSTANCES, step.size());
+        assertEquals(step.size(), new HashSet<>(step).size());
+      }
+      for (int i = 0; i < INSTANCES; i++) {
+        Value out = state.getValue(outs[i].getLocation());
+        assertEquals(~(7 * round + i + 1) & 0xff, out.toLongValue());
+      }
+    }
+    assertEquals(40, loopback.getStepCount() - startSteps);
+  }
+}
@@ -0,0 +1,315 @@
+/*
+ * This file is part of logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with logisim-evolution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + College of the Holy Cross
+ *     http://www.holycross.edu
+ *   + Haute École Spécialisée Bernoise/Berner Fachhochschule
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ */
+
+package com.cburch.logisim.vhdl.sim;
+
+import static org.junit.Assert.*;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitMutation;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.TestCircuits;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.Port;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.vhdl.base.VhdlContent;
+import com.cburch.logisim.vhdl.base.VhdlEntity;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VhdlInterpreterTest {
+  private static final String HEADER =
+      "library ieee;\n"
+          + "use ieee.std_logic_1164.all;\n"
+          + "use ieee.numeric_std.all;\n";
+
+  private LogisimFile file;
+  private Circuit main;
+  private CircuitState state;
+  private int y = 100;
+
+  @Before
+  public void setUp() throws Exception {
+    file = TestCircuits.newFile();
+    Project proj = new Project(file);
+    main = file.getCircuit("main");
+    main.SetProject(proj);
+    state = proj.getCircuitState(main);
+  }
+
+  // places an instance of the design with a pin on each port, found by the name of the port
+  private HashMap<String, Component> place(String name, String source) throws Exception {
+    VhdlContent content = VhdlContent.parse(name, source, file);
+    assertNull(content.getInterpreter().getError());
+    file.addVhdlContent(content);
+    VhdlEntity factory = new VhdlEntity(content);
+    AttributeSet attrs = factory.createAttributeSet();
+    attrs.setValue(StdAttr.LABEL, name + "_0");
+    Component comp = factory.createComponent(Location.create(500, y), attrs);
+    CircuitMutation m = new CircuitMutation(main);
+    m.add(comp);
+    HashMap<String, Component> ret = new HashMap<>();
+    List<Port> ports = Instance.getInstanceFor(comp).getPorts();
+    for (int i = 0; i < ports.size(); i++) {
+      Port port = ports.get(i);
+      String net = name + "_" + port.getToolTip();
+      boolean output = port.getType() != EndData.INPUT_ONLY;
+      int width = port.getFixedBitWidth().getWidth();
+      Location loc = Location.create(output ? 900 : 100, y + 100 * i);
+      TestCircuits.tunnel(m, comp.getEnd(i).getLocation(), port.getFixedBitWidth(), net);
+      ret.put(port.getToolTip(), TestCircuits.pin(m, loc, width, output, net));
+    }
+    y += 100 * ports.size() + 200;
+    m.execute();
+    return ret;
+  }
+
+  private void set(HashMap<String, Component> pins, String port, long value) {
+    Component pin = pins.get(port);
+    BitWidth width = pin.getAttributeSet().getValue(StdAttr.WIDTH);
+    TestCircuits.setInput(state, pin, Value.createKnown(width, value));
+  }
+
+  private Value get(HashMap<String, Component> pins, String port) {
+    return state.getValue(pins.get(port).getLocation());
+  }
+
+  private void propagate() {
+    state.getPropagator().propagate();
+  }
+
+  @Test
+  public void testCombinationalProcess() throws Exception {
+    HashMap<String, Component> pins =
+        place(
+            "parity",
+            HEADER
+                + "entity parity is\n"
+                + "  port ( a : in std_logic_vector(7 downto 0);\n"
+                + "         odd : out std_logic;\n"
+                + "         ones : out std_logic_vector(3 downto 0));\n"
+                + "end parity;\n"
+                + "architecture behavior of parity is\n"
+                + "begin\n"
+                + "  process (a)\n"
+                + "    variable p : std_logic;\n"
+                + "    variable n : integer range 0 to 8;\n"
+                + "  begin\n"
+                + "    p := '0';\n"
+                + "    n := 0;\n"
+                + "    for i in a'range loop\n"
+                + "      p := p xor a(i);\n"
+                + "      if a(i) = '1' then\n"
+                + "        n := n + 1;\n"
+                + "      end if;\n"
+                + "    end loop;\n"
+                + "    odd <= p;\n"
+                + "    ones <= std_logic_vector(to_unsigned(n, 4));\n"
+                + "  end process;\n"
+                + "end behavior;\n");
+    for (int a = 0; a < 256; a += 7) {
+      set(pins, "a", a);
+      propagate();
+      assertEquals(Integer.bitCount(a) & 1, get(pins, "odd").toLongValue());
+      assertEquals(Integer.bitCount(a), get(pins, "ones").toLongValue());
+    }
+  }
+
+  @Test
+  public void testRisingEdgeRegister() throws Exception {
+    HashMap<String, Component> pins =
+        place(
+            "reg",
+            HEADER
+                + "entity reg is\n"
+                + "  port ( clk : in std_logic;\n"
+                + "         d : in std_logic_vector(3 downto 0);\n"
+                + "         q : out std_logic_vector(3 downto 0));\n"
+                + "end reg;\n"
+                + "architecture rtl of reg is\n"
+                + "begin\n"
+                + "  process (clk)\n"
+                + "  begin\n"
+                + "    if rising_edge(clk) then\n"
+                + "      q <= d;\n"
+                + "    end if;\n"
+                + "  end process;\n"
+                + "end rtl;\n");
+    set(pins, "clk", 0);
+    set(pins, "d", 5);
+    propagate();
+    set(pins, "clk", 1);
+    propagate();
+    assertEquals(5, get(pins, "q").toLongValue());
+    // held while the clock stays high, on its falling edge and while it stays low
+    set(pins, "d", 9);
+    propagate();
+    assertEquals(5, get(pins, "q").toLongValue());
+    set(pins, "clk", 0);
+    propagate();
+    assertEquals(5, get(pins, "q").toLongValue());
+    set(pins, "clk", 1);
+    propagate();
+    assertEquals(9, get(pins, "q").toLongValue());
+  }
+
+  @Test
+  public void testSelectedAndConditionalAssignments() throws Exception {
+    HashMap<String, Component> pins =
+        place(
+            "mux",
+            HEADER
+                + "entity mux is\n"
+                + "  port ( a : in std_logic_vector(7 downto 0);\n"
+                + "         b : in std_logic_vector(7 downto 0);\n"
+                + "         sel : in std_logic_vector(1 downto 0);\n"
+                + "         y : out std_logic_vector(7 downto 0);\n"
+                + "         lt : out std_logic);\n"
+                + "end mux;\n"
+                + "architecture behavior of mux is\n"
+                + "begin\n"
+                + "  with sel select\n"
+                + "    y <= a when \"00\",\n"
+                + "         b when \"01\",\n"
+                + "         a and b when \"10\",\n"
+                + "         x\"5A\" when others;\n"
+                + "  lt <= '1' when unsigned(a) < unsigned(b) else '0';\n"
+                + "end behavior;\n");
+    long[][] cases = {{3, 200}, {200, 3}, {0x0f, 0x3c}, {7, 7}};
+    for (long[] c : cases) {
+      for (int sel = 0; sel < 4; sel++) {
+        set(pins, "a", c[0]);
+        set(pins, "b", c[1]);
+        set(pins, "sel", sel);
+        propagate();
+        long expected = sel == 0 ? c[0] : sel == 1 ? c[1] : sel == 2 ? c[0] & c[1] : 0x5a;
+        assertEquals(expected, get(pins, "y").toLongValue());
+        assertEquals(c[0] < c[1] ? 1 : 0, get(pins, "lt").toLongValue());
+      }
+    }
+  }
+
+  @Test
+  public void testUnsignedWrapAround() throws Exception {
+    HashMap<String, Component> pins =
+        place(
+            "counter",
+            HEADER
+                + "entity counter is\n"
+                + "  port ( clk : in std_logic;\n"
+                + "         q : out std_logic_vector(3 downto 0);\n"
+                + "         sum : out std_logic_vector(3 downto 0));\n"
+                + "end counter;\n"
+                + "architecture rtl of counter is\n"
+                + "  signal cnt : unsigned(3 downto 0) := (others => '0');\n"
+                + "begin\n"
+                + "  process (clk)\n"
+                + "  begin\n"
+                + "    if rising_edge(clk) then\n"
+                + "      cnt <= cnt + 1;\n"
+                + "    end if;\n"
+                + "  end process;\n"
+                + "  q <= std_logic_vector(cnt);\n"
+                + "  sum <= std_logic_vector(cnt + 12);\n"
+                + "end rtl;\n");
+    set(pins, "clk", 0);
+    propagate();
+    for (int i = 1; i <= 40; i++) {
+      set(pins, "clk", 1);
+      propagate();
+      set(pins, "clk", 0);
+      propagate();
+      assertEquals(i % 16, get(pins, "q").toLongValue());
+      assertEquals((i + 12) % 16, get(pins, "sum").toLongValue());
+    }
+  }
+
+  @Test
+  public void testIndexOutOfRange() throws Exception {
+    HashMap<String, Component> pins =
+        place(
+            "pick",
+            HEADER
+                + "entity pick is\n"
+                + "  port ( a : in std_logic_vector(3 downto 0);\n"
+                + "         s : in std_logic_vector(2 downto 0);\n"
+                + "         y : out std_logic);\n"
+                + "end pick;\n"
+                + "architecture behavior of pick is\n"
+                + "begin\n"
+                + "  y <= a(to_integer(unsigned(s)));\n"
+                + "end behavior;\n");
+    set(pins, "a", 0b0100);
+    set(pins, "s", 2);
+    propagate();
+    assertEquals(Value.TRUE, get(pins, "y"));
+    set(pins, "s", 6);
+    propagate();
+    assertEquals(Value.ERROR, get(pins, "y"));
+    // the instance runs again once the index is back in range
+    set(pins, "s", 1);
+    propagate();
+    assertEquals(Value.FALSE, get(pins, "y"));
+  }
+
+  @Test
+  public void testRejectedDesign() {
+    String source =
+        HEADER
+            + "entity waiter is\n"
+            + "  port ( clk : in std_logic;\n"
+            + "         y : out std_logic);\n"
+            + "end waiter;\n"
+            + "architecture behavior of waiter is\n"
+            + "begin\n"
+            + "  process\n"
+            + "  begin\n"
+            + "    wait until clk = '1';\n"
+            + "    y <= '1';\n"
+            + "  end process;\n"
+            + "end behavior;\n";
+    String error = VhdlInterpreter.compile(source).getError();
+    assertNotNull(error);
+    assertTrue(error, error.startsWith("line 12: wait statement"));
+
+    error = VhdlInterpreter.compile(source.replace("y <= '1'", "clk <= '1'")
+        .replace("    wait until clk = '1';\n", "")).getError();
+    assertNotNull(error);
+    assertTrue(error, error.startsWith("line 12: cannot assign to input clk"));
+  }
+}